@@ -0,0 +1,369 @@
+// @formatter:off
+/**
+ * Copyright 2014 Initium.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+// @formatter:on
+package io.initium.camel.component.metrics;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.support.ServiceSupport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+
+import static io.initium.camel.component.metrics.MetricsComponent.MARKER;
+
+/**
+ * Records exchanges for the MetricGroups of one MetricsEndpoint asynchronously. The route thread evaluates the
+ * expressions of the custom metrics and publishes the values, together with the group and a time stamp, into a
+ * preallocated ring buffer of mutable events. A single applier thread takes them from there and updates the metrics.
+ * The ring buffer is a bounded multi-producer queue where each slot carries a sequence number, so publishing claims a
+ * slot with one compare-and-set and allocates nothing.
+ * <p>
+ * Stopping the recorder loses nothing: exchanges recorded after the stop are applied on the calling thread, and the
+ * applier only exits once every event claimed before the stop has been published and applied.
+ *
+ * @author Steve Fosdal, <steve@initium.io>
+ * @author Hector Veiga Ortiz, <hector@initium.io>
+ * @version 1.4
+ * @since 2026-10-18
+ */
+final class AsyncMetricRecorder extends ServiceSupport implements Runnable {
+
+	/**
+	 * What to do with an exchange when the ring buffer is full.
+	 */
+	public enum OverflowPolicy {
+		DROP, // drop the exchange and count it
+		BLOCK, // wait for the applier to free a slot
+		SAMPLE; // once the buffer is half full, record one exchange in sampleEvery with a matching weight, drop when full
+	}
+
+	/**
+	 * A preallocated slot of the ring buffer.
+	 */
+	private static final class MetricEvent {
+		private MetricGroup	metricGroup;
+		private long		nanoTime;
+		private long		weight;
+		private long[]		values;
+	}
+
+	// logging
+	private static final String		SELF					= Thread.currentThread().getStackTrace()[1].getClassName();
+	private static final Logger		LOGGER					= LoggerFactory.getLogger(SELF);
+
+	// constants
+	private static final int		SPIN_TRIES				= 100;
+	private static final int		YIELD_TRIES				= 200;
+	private static final long		DRAIN_PARK_NANOS		= TimeUnit.MILLISECONDS.toNanos(1);
+	private static final long		STOP_TIMEOUT_MILLIS		= 10000;
+
+	// fields
+	private final MetricsEndpoint	metricsEndpoint;
+	private final OverflowPolicy	overflowPolicy;
+	private final int				sampleEvery;
+	private final int				capacity;
+	private final int				mask;
+	private final int				highWatermark;
+	private final MetricEvent[]		events;
+	private final AtomicLongArray	sequences;
+	private final AtomicLong		tail					= new AtomicLong();
+	private final AtomicLong		overflowCount			= new AtomicLong();
+	// the producers between their check of running and the publication of their event
+	private final AtomicInteger		publishers				= new AtomicInteger();
+	private volatile long			head;
+	private volatile boolean		running;
+	private volatile boolean		applierWaiting;
+	private volatile Thread			applierThread;
+	private ExecutorService			executorService;
+
+	// self metrics
+	private final Counter			dropped					= new Counter();
+	private final Counter			sampled					= new Counter();
+	private final Gauge<Long>		depth;
+
+	/**
+	 * @param metricsEndpoint
+	 * @param bufferSize
+	 *            rounded up to a power of two
+	 * @param overflowPolicy
+	 * @param sampleEvery
+	 *            used by OverflowPolicy.SAMPLE
+	 * @param valueCount
+	 *            the number of evaluated values per exchange, used to preallocate the events
+	 */
+	AsyncMetricRecorder(final MetricsEndpoint metricsEndpoint, final int bufferSize, final OverflowPolicy overflowPolicy, final int sampleEvery, final int valueCount) {
+		this.metricsEndpoint = metricsEndpoint;
+		this.overflowPolicy = overflowPolicy;
+		this.sampleEvery = Math.max(1, sampleEvery);
+		this.capacity = Integer.highestOneBit(Math.max(2, bufferSize) * 2 - 1);
+		this.mask = this.capacity - 1;
+		this.highWatermark = this.capacity / 2;
+		this.events = new MetricEvent[this.capacity];
+		this.sequences = new AtomicLongArray(this.capacity);
+		for (int i = 0; i < this.capacity; i++) {
+			this.events[i] = new MetricEvent();
+			this.events[i].values = new long[valueCount];
+			this.sequences.set(i, i);
+		}
+		this.depth = new Gauge<Long>() {
+			@Override
+			public Long getValue() {
+				return getDepth();
+			}
+		};
+	}
+
+	/**
+	 * @return the number of events published but not applied yet
+	 */
+	long getDepth() {
+		return Math.max(0, this.tail.get() - this.head);
+	}
+
+	/**
+	 * @return the number of exchanges dropped because the ring buffer was full
+	 */
+	long getDropped() {
+		return this.dropped.getCount();
+	}
+
+	/**
+	 * @return the number of exchanges skipped by OverflowPolicy.SAMPLE
+	 */
+	long getSampled() {
+		return this.sampled.getCount();
+	}
+
+	/**
+	 * Records an exchange for the metric group. If the recorder is not running the exchange is applied on the calling
+	 * thread.
+	 *
+	 * @param metricGroup
+	 * @param exchange
+	 * @param exchangeWeight
+	 *            the number of exchanges this one stands for
+	 */
+	void record(final MetricGroup metricGroup, final Exchange exchange, final long exchangeWeight) {
+		this.publishers.incrementAndGet();
+		try {
+			if (!this.running) {
+				metricGroup.mark(exchange, exchangeWeight);
+				return;
+			}
+			publish(metricGroup, exchange, exchangeWeight);
+		} finally {
+			this.publishers.decrementAndGet();
+		}
+	}
+
+	/**
+	 * Registers the self metrics with the metric group.
+	 *
+	 * @param metricGroup
+	 */
+	void registerMetrics(final MetricGroup metricGroup) {
+		metricGroup.registerAdditionalMetric("async.depth", this.depth);
+		metricGroup.registerAdditionalMetric("async.dropped", this.dropped);
+		metricGroup.registerAdditionalMetric("async.sampled", this.sampled);
+	}
+
+	@Override
+	public void run() {
+		this.applierThread = Thread.currentThread();
+		int idleCount = 0;
+		while (true) {
+			if (applyNext()) {
+				idleCount = 0;
+			} else if (this.running || !isDrained()) {
+				idle(idleCount);
+				if (idleCount < YIELD_TRIES) {
+					idleCount++;
+				}
+			} else {
+				break;
+			}
+		}
+		LOGGER.debug(MARKER, "applier stopped for {}", this.metricsEndpoint.getName());
+	}
+
+	/**
+	 * Applies the next published event, if there is one.
+	 *
+	 * @return
+	 */
+	private boolean applyNext() {
+		long position = this.head;
+		int index = (int) position & this.mask;
+		if (this.sequences.get(index) != position + 1) {
+			return false;
+		}
+		MetricEvent event = this.events[index];
+		try {
+			if (event.metricGroup != null) {
+				event.metricGroup.apply(event.nanoTime, event.values, event.weight);
+			}
+		} catch (Exception e) {
+			LOGGER.warn(MARKER, "could not apply metrics of {}", event.metricGroup.getFullName(), e);
+		} finally {
+			event.metricGroup = null;
+			this.head = position + 1;
+			this.sequences.lazySet(index, position + this.capacity);
+		}
+		return true;
+	}
+
+	/**
+	 * Claims the next slot for publishing, waiting for a free one if the policy is OverflowPolicy.BLOCK.
+	 *
+	 * @return the claimed position, or -1 if the ring buffer is full
+	 */
+	private long claim() {
+		int tries = 0;
+		while (true) {
+			long position = this.tail.get();
+			long sequence = this.sequences.get((int) position & this.mask);
+			if (sequence == position) {
+				if (this.tail.compareAndSet(position, position + 1)) {
+					return position;
+				}
+			} else if (sequence < position) {
+				// the slot still holds an event from the previous lap, so the ring buffer is full
+				if (this.overflowPolicy != OverflowPolicy.BLOCK || !this.running) {
+					return -1;
+				}
+				if (tries++ < SPIN_TRIES) {
+					Thread.yield();
+				} else {
+					LockSupport.parkNanos(this, TimeUnit.MICROSECONDS.toNanos(10));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Backs off while there is nothing to apply: spins, then yields, then parks until a producer wakes it up. The
+	 * applier sets applierWaiting before it checks the next slot, and a producer publishes with a volatile set before
+	 * it checks applierWaiting, so either the applier sees the event or the producer sees the flag and unparks it. Only
+	 * while draining after the stop is the park bounded, since a producer may then leave without publishing.
+	 *
+	 * @param idleCount
+	 */
+	private void idle(final int idleCount) {
+		if (idleCount < SPIN_TRIES) {
+			return;
+		} else if (idleCount < YIELD_TRIES) {
+			Thread.yield();
+		} else {
+			this.applierWaiting = true;
+			if (this.sequences.get((int) this.head & this.mask) != this.head + 1) {
+				if (this.running) {
+					LockSupport.park(this);
+				} else {
+					LockSupport.parkNanos(this, DRAIN_PARK_NANOS);
+				}
+			}
+			this.applierWaiting = false;
+		}
+	}
+
+	/**
+	 * Only meaningful once running is false: a producer that starts recording after that applies the exchange itself,
+	 * so once no producer is publishing and every claimed position was applied, nothing more reaches the ring buffer.
+	 *
+	 * @return true if every event claimed so far has been applied and no producer is about to claim another
+	 */
+	private boolean isDrained() {
+		return this.publishers.get() == 0 && this.head == this.tail.get();
+	}
+
+	/**
+	 * Publishes the exchange into the ring buffer, or applies it on the calling thread if the recorder stopped while
+	 * the ring buffer is full.
+	 *
+	 * @param metricGroup
+	 * @param exchange
+	 * @param exchangeWeight
+	 */
+	private void publish(final MetricGroup metricGroup, final Exchange exchange, final long exchangeWeight) {
+		long nanoTime = System.nanoTime();
+		long weight = exchangeWeight;
+		if (this.overflowPolicy == OverflowPolicy.SAMPLE && getDepth() >= this.highWatermark) {
+			if (this.overflowCount.incrementAndGet() % this.sampleEvery != 0) {
+				this.sampled.inc(weight);
+				return;
+			}
+			weight *= this.sampleEvery;
+		}
+		long position = claim();
+		if (position < 0) {
+			if (this.running) {
+				this.dropped.inc(weight);
+			} else {
+				metricGroup.mark(exchange, weight);
+			}
+			return;
+		}
+		int index = (int) position & this.mask;
+		MetricEvent event = this.events[index];
+		try {
+			int valueCount = metricGroup.getEvaluatedValueCount();
+			if (event.values.length < valueCount) {
+				event.values = new long[valueCount];
+			}
+			metricGroup.evaluate(exchange, event.values);
+			event.metricGroup = metricGroup;
+			event.nanoTime = nanoTime;
+			event.weight = weight;
+		} finally {
+			// a volatile set, so that the check of applierWaiting cannot move before it
+			this.sequences.set(index, position + 1);
+			if (this.applierWaiting) {
+				LockSupport.unpark(this.applierThread);
+			}
+		}
+	}
+
+	@Override
+	protected void doStart() throws Exception {
+		LOGGER.debug(MARKER, "doStart()");
+		this.running = true;
+		this.executorService = this.metricsEndpoint.getCamelContext().getExecutorServiceManager().newSingleThreadExecutor(this, "MetricsApplier[" + this.metricsEndpoint.getName() + "]");
+		this.executorService.execute(this);
+	}
+
+	@Override
+	protected void doStop() throws Exception {
+		LOGGER.debug(MARKER, "doStop()");
+		this.running = false;
+		Thread lclApplierThread = this.applierThread;
+		if (lclApplierThread != null) {
+			LockSupport.unpark(lclApplierThread);
+		}
+		if (this.executorService != null) {
+			this.metricsEndpoint.getCamelContext().getExecutorServiceManager().shutdownGraceful(this.executorService, STOP_TIMEOUT_MILLIS);
+			this.executorService = null;
+		}
+	}
+
+}
@@ -0,0 +1,35 @@
+// @formatter:off
+/**
+ * Copyright 2014 Initium.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+// @formatter:on
+package io.initium.camel.component.metrics;
+
+/**
+ * A scheduled reporter that gathers what it reports for its metric group and sends it together with what the
+ * reporters of the other metric groups of the same reporter definition reported in the period. The pipeline driving
+ * the reporters calls {@link #endPeriod()} on each of them once all of them have reported.
+ *
+ * @author Steve Fosdal, <steve@initium.io>
+ * @author Hector Veiga Ortiz, <hector@initium.io>
+ * @version 1.4
+ * @since 2026-10-18
+ */
+public interface BatchingReporter {
+
+	/**
+	 * Sends what was gathered in the period, if it was not sent already.
+	 */
+	void endPeriod();
+
+}
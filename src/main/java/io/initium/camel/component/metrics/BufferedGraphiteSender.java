@@ -0,0 +1,664 @@
+// @formatter:off
+/**
+ * Copyright 2014 Initium.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+// @formatter:on
+package io.initium.camel.component.metrics;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+import org.apache.camel.spi.ExecutorServiceManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.graphite.GraphiteSender;
+
+import io.initium.camel.component.metrics.definition.reporter.GraphiteReporterDefinition.GraphiteProtocol;
+
+import static io.initium.camel.component.metrics.MetricsComponent.MARKER;
+
+/**
+ * A GraphiteSender that never blocks the reporting thread. Sent values go into a bounded buffer, dropping the oldest
+ * value when it is full, and one writer thread per protocol, host and port sends them in batches over a connection
+ * that is kept open and reopened with exponential backoff after a failure. A batch is kept while graphite cannot be
+ * reached, but discarded if it cannot be encoded, or if writing it to an open connection fails
+ * {@value #MAX_WRITE_ATTEMPTS} times; with udp a datagram that fails is discarded. Every reporter opens its own
+ * sender, but the senders of a MetricsComponent to the same destination with the same settings share the buffer, the
+ * writer thread and the connection. The writer threads come from the ExecutorServiceManager of the CamelContext, and
+ * the connections still open when the component stops are stopped with it.
+ *
+ * @author Steve Fosdal, <steve@initium.io>
+ * @author Hector Veiga Ortiz, <hector@initium.io>
+ * @version 1.4
+ * @since 2026-10-18
+ */
+public final class BufferedGraphiteSender implements GraphiteSender {
+
+	/**
+	 * One value to send.
+	 */
+	static final class Record {
+		private final String	name;
+		private final String	value;
+		private final long		timestamp;
+
+		private Record(final String name, final String value, final long timestamp) {
+			this.name = name;
+			this.value = value;
+			this.timestamp = timestamp;
+		}
+	}
+
+	/**
+	 * The buffer, writer thread and connection shared by the senders to one destination.
+	 */
+	static final class Connection implements Runnable {
+
+		// fields
+		private final String						key;
+		private final GraphiteProtocol				protocol;
+		private final InetSocketAddress				address;
+		private final int							batchSize;
+		private final long							minBackoffMillis;
+		private final long							maxBackoffMillis;
+		private final LinkedBlockingDeque<Record>	buffer;
+		private final AtomicLong					dropped		= new AtomicLong();
+		private final AtomicLong					discarded	= new AtomicLong();
+		private final AtomicLong					sent		= new AtomicLong();
+		private final AtomicInteger					failures	= new AtomicInteger();
+		private final ExecutorServiceManager		executorServiceManager;
+		private ExecutorService						executorService;
+		private volatile boolean					isRunning	= true;
+		private int									references;
+		private Socket								socket;
+		private OutputStream						outputStream;
+		private DatagramChannel						datagramChannel;
+
+		/**
+		 * @param key
+		 * @param protocol
+		 * @param address
+		 * @param batchSize
+		 * @param bufferSize
+		 * @param minBackoffMillis
+		 * @param maxBackoffMillis
+		 * @param executorServiceManager
+		 */
+		private Connection(final String key, final GraphiteProtocol protocol, final InetSocketAddress address, final int batchSize, final int bufferSize, final long minBackoffMillis, final long maxBackoffMillis, final ExecutorServiceManager executorServiceManager) {
+			this.key = key;
+			this.protocol = protocol;
+			this.address = address;
+			this.batchSize = batchSize;
+			this.minBackoffMillis = minBackoffMillis;
+			this.maxBackoffMillis = maxBackoffMillis;
+			this.buffer = new LinkedBlockingDeque<Record>(bufferSize);
+			this.executorServiceManager = executorServiceManager;
+		}
+
+		@Override
+		public void run() {
+			List<Record> batch = new ArrayList<Record>(this.batchSize);
+			int writeAttempts = 0;
+			long backoffMillis = this.minBackoffMillis;
+			while (this.isRunning) {
+				try {
+					// a batch that failed is sent again before anything newer
+					if (batch.isEmpty()) {
+						Record record = this.buffer.pollFirst(POLL_MILLIS, TimeUnit.MILLISECONDS);
+						if (record == null) {
+							continue;
+						}
+						batch.add(record);
+						this.buffer.drainTo(batch, this.batchSize - 1);
+						writeAttempts = 0;
+					}
+					List<byte[]> payloads;
+					try {
+						payloads = encode(batch);
+					} catch (IOException e) {
+						discard(batch, e);
+						continue;
+					}
+					OutputStream outputStream = connect();
+					int sentCount;
+					try {
+						sentCount = write(outputStream, payloads, batch.size());
+					} catch (IOException e) {
+						if (++writeAttempts >= MAX_WRITE_ATTEMPTS) {
+							closeQuietly();
+							discard(batch, e);
+							continue;
+						}
+						throw e;
+					}
+					this.sent.addAndGet(sentCount);
+					batch.clear();
+					backoffMillis = this.minBackoffMillis;
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					break;
+				} catch (IOException e) {
+					this.failures.incrementAndGet();
+					LOGGER.warn(MARKER, "unable to send {} values to graphite at {}, retrying in {} ms: {}", batch.size(), this.key, backoffMillis, e.toString());
+					closeQuietly();
+					try {
+						Thread.sleep(backoffMillis);
+					} catch (InterruptedException e1) {
+						Thread.currentThread().interrupt();
+						break;
+					}
+					backoffMillis = Math.min(backoffMillis * 2, this.maxBackoffMillis);
+				}
+			}
+			closeQuietly();
+		}
+
+		/**
+		 * @return the number of values discarded because they could not be encoded or sent
+		 */
+		long getDiscardedCount() {
+			return this.discarded.get();
+		}
+
+		/**
+		 * @return true once the writer thread has stopped
+		 */
+		boolean isStopped() {
+			return this.executorService.isTerminated();
+		}
+
+		/**
+		 * @return the number of values waiting to be sent
+		 */
+		int getBufferedCount() {
+			return this.buffer.size();
+		}
+
+		/**
+		 * @return the number of values dropped because the buffer was full
+		 */
+		long getDroppedCount() {
+			return this.dropped.get();
+		}
+
+		/**
+		 * @return the number of values sent
+		 */
+		long getSentCount() {
+			return this.sent.get();
+		}
+
+		/**
+		 * @param record
+		 */
+		private void add(final Record record) {
+			while (!this.buffer.offerLast(record)) {
+				if (this.buffer.pollFirst() != null) {
+					this.dropped.incrementAndGet();
+				}
+			}
+		}
+
+		/**
+		 *
+		 */
+		private void closeQuietly() {
+			try {
+				if (this.socket != null) {
+					this.socket.close();
+				}
+				if (this.datagramChannel != null) {
+					this.datagramChannel.close();
+				}
+			} catch (IOException e) {
+				LOGGER.debug(MARKER, "error closing connection to graphite at {}: {}", this.key, e.toString());
+			}
+			this.socket = null;
+			this.outputStream = null;
+			this.datagramChannel = null;
+		}
+
+		/**
+		 * @param owner
+		 *            the source of the writer thread
+		 */
+		private void start(final Object owner) {
+			this.executorService = this.executorServiceManager.newSingleThreadExecutor(owner, "MetricsGraphiteSender[" + this.key + "]");
+			this.executorService.execute(this);
+		}
+
+		/**
+		 *
+		 */
+		private void stop() {
+			this.isRunning = false;
+			this.executorServiceManager.shutdownNow(this.executorService);
+			try {
+				this.executorService.awaitTermination(1, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		/**
+		 * @param batch
+		 * @param cause
+		 */
+		private void discard(final List<Record> batch, final IOException cause) {
+			this.failures.incrementAndGet();
+			this.discarded.addAndGet(batch.size());
+			LOGGER.warn(MARKER, "discarding {} values to graphite at {}: {}", batch.size(), this.key, cause.toString());
+			batch.clear();
+		}
+
+		/**
+		 * @param batch
+		 * @return the payloads of the batch: one pickle frame, or the datagrams, or the plaintext lines
+		 * @throws IOException
+		 *             if the batch cannot be encoded
+		 */
+		private List<byte[]> encode(final List<Record> batch) throws IOException {
+			switch (this.protocol) {
+				case UDP:
+					return datagrams(batch, MAX_DATAGRAM_SIZE);
+				case PICKLE:
+					return Collections.singletonList(pickle(batch));
+				default:
+					return Collections.singletonList(plaintext(batch));
+			}
+		}
+
+		/**
+		 * @param outputStream
+		 *            the output stream of the connection, null with udp
+		 * @param payloads
+		 * @param valueCount
+		 *            the number of values of the batch
+		 * @return the number of values sent
+		 * @throws IOException
+		 */
+		private int write(final OutputStream outputStream, final List<byte[]> payloads, final int valueCount) throws IOException {
+			switch (this.protocol) {
+				case UDP:
+					int encodedCount = 0;
+					int sentCount = 0;
+					for (byte[] datagram : payloads) {
+						int datagramCount = countLines(datagram);
+						encodedCount += datagramCount;
+						try {
+							this.datagramChannel.send(ByteBuffer.wrap(datagram), this.address);
+							sentCount += datagramCount;
+						} catch (IOException e) {
+							this.failures.incrementAndGet();
+							this.discarded.addAndGet(datagramCount);
+							LOGGER.warn(MARKER, "discarding a datagram of {} values to graphite at {}: {}", datagramCount, this.key, e.toString());
+						}
+					}
+					// the lines that do not fit in a datagram
+					this.discarded.addAndGet(valueCount - encodedCount);
+					return sentCount;
+				case PICKLE:
+					byte[] payload = payloads.get(0);
+					outputStream.write(new byte[] {(byte) (payload.length >>> 24), (byte) (payload.length >>> 16), (byte) (payload.length >>> 8), (byte) payload.length});
+					outputStream.write(payload);
+					outputStream.flush();
+					return valueCount;
+				default:
+					outputStream.write(payloads.get(0));
+					outputStream.flush();
+					return valueCount;
+			}
+		}
+
+		/**
+		 * @return the output stream of the connection, opened if needed, null with udp
+		 * @throws IOException
+		 */
+		private OutputStream connect() throws IOException {
+			if (this.protocol == GraphiteProtocol.UDP) {
+				if (this.datagramChannel == null) {
+					this.datagramChannel = DatagramChannel.open();
+				}
+				return null;
+			}
+			if (this.socket == null) {
+				if (this.address.isUnresolved()) {
+					throw new IOException("unresolved address: " + this.address);
+				}
+				Socket lclSocket = new Socket();
+				try {
+					lclSocket.connect(this.address, CONNECT_TIMEOUT_MILLIS);
+				} catch (IOException e) {
+					lclSocket.close();
+					throw e;
+				}
+				this.socket = lclSocket;
+				this.outputStream = new BufferedOutputStream(lclSocket.getOutputStream());
+			}
+			return this.outputStream;
+		}
+	}
+
+	// logging
+	private static final String					SELF					= Thread.currentThread().getStackTrace()[1].getClassName();
+	private static final Logger					LOGGER					= LoggerFactory.getLogger(SELF);
+
+	// constants
+	public static final int						DEFAULT_BATCH_SIZE		= 100;
+	public static final int						DEFAULT_BUFFER_SIZE		= 10000;
+	static final long							MIN_BACKOFF_MILLIS		= 100;
+	static final long							MAX_BACKOFF_MILLIS		= TimeUnit.MINUTES.toMillis(1);
+	// the most bytes of plaintext lines in a udp datagram, so that it is not fragmented
+	static final int							MAX_DATAGRAM_SIZE		= 1432;
+	// the most bytes of a pickle frame, carbon drops the connection on larger ones
+	static final int							MAX_PICKLE_FRAME_SIZE	= 1 << 20;
+	static final int							MAX_WRITE_ATTEMPTS		= 2;
+	private static final int					CONNECT_TIMEOUT_MILLIS	= 5000;
+	private static final long					POLL_MILLIS				= 100;
+	private static final Pattern				WHITESPACE				= Pattern.compile("[\\s]+");
+	private static final Charset				UTF_8					= Charset.forName("UTF-8");
+
+	/**
+	 * @param metricsComponent
+	 *            the component owning the connection
+	 * @param protocol
+	 * @param host
+	 * @param port
+	 * @param batchSize
+	 *            the most values written at once
+	 * @param bufferSize
+	 *            the most values kept while graphite cannot be reached
+	 * @return a sender to the destination, to be closed once it is no longer used
+	 */
+	public static BufferedGraphiteSender open(final MetricsComponent metricsComponent, final GraphiteProtocol protocol, final String host, final int port, final int batchSize, final int bufferSize) {
+		return open(metricsComponent, protocol, host, port, batchSize, bufferSize, MIN_BACKOFF_MILLIS, MAX_BACKOFF_MILLIS);
+	}
+
+	/**
+	 * @param metricsComponent
+	 * @param protocol
+	 * @param host
+	 * @param port
+	 * @param batchSize
+	 * @param bufferSize
+	 * @param minBackoffMillis
+	 * @param maxBackoffMillis
+	 * @return
+	 */
+	static BufferedGraphiteSender open(final MetricsComponent metricsComponent, final GraphiteProtocol protocol, final String host, final int port, final int batchSize, final int bufferSize, final long minBackoffMillis, final long maxBackoffMillis) {
+		if (batchSize < 1 || bufferSize < 1) {
+			throw new IllegalArgumentException("batchSize and bufferSize must be positive: " + batchSize + ", " + bufferSize);
+		}
+		String key = protocol.name().toLowerCase() + "://" + host + ":" + port + "?batchSize=" + batchSize + "&bufferSize=" + bufferSize + "&backoff=" + minBackoffMillis + "-" + maxBackoffMillis;
+		Map<String, Connection> connections = metricsComponent.getGraphiteConnections();
+		synchronized (connections) {
+			Connection connection = connections.get(key);
+			if (connection == null) {
+				LOGGER.info(MARKER, "opening graphite connection: {}", key);
+				connection = new Connection(key, protocol, new InetSocketAddress(host, port), batchSize, bufferSize, minBackoffMillis, maxBackoffMillis, metricsComponent.getCamelContext().getExecutorServiceManager());
+				connection.start(metricsComponent);
+				connections.put(key, connection);
+			}
+			connection.references++;
+			return new BufferedGraphiteSender(connection, connections);
+		}
+	}
+
+	/**
+	 * Stops the connections of a component that are still open, dropping what they still buffer.
+	 *
+	 * @param metricsComponent
+	 */
+	static void stopAll(final MetricsComponent metricsComponent) {
+		Map<String, Connection> connections = metricsComponent.getGraphiteConnections();
+		List<Connection> openConnections;
+		synchronized (connections) {
+			openConnections = new ArrayList<Connection>(connections.values());
+			connections.clear();
+		}
+		for (Connection connection : openConnections) {
+			LOGGER.info(MARKER, "closing graphite connection: {}", connection.key);
+			connection.stop();
+		}
+	}
+
+	/**
+	 * @param batch
+	 * @return the values in the pickle protocol, a list of (name, (timestamp, value)) tuples; names and values are
+	 *         binary unicode strings, so nothing in them needs escaping
+	 * @throws IOException
+	 *             if the frame is larger than {@value #MAX_PICKLE_FRAME_SIZE} bytes
+	 */
+	static byte[] pickle(final List<Record> batch) throws IOException {
+		ByteArrayOutputStream frame = new ByteArrayOutputStream(batch.size() * 64);
+		// mark, list
+		frame.write('(');
+		frame.write('l');
+		for (Record record : batch) {
+			// mark, the name, mark, the timestamp as a long and the value, tuple, tuple, append
+			frame.write('(');
+			writeBinaryUnicode(frame, record.name);
+			frame.write('(');
+			frame.write('L');
+			frame.write(Long.toString(record.timestamp).getBytes(UTF_8));
+			frame.write('L');
+			frame.write('\n');
+			writeBinaryUnicode(frame, record.value);
+			frame.write('t');
+			frame.write('t');
+			frame.write('a');
+		}
+		// stop
+		frame.write('.');
+		if (frame.size() > MAX_PICKLE_FRAME_SIZE) {
+			throw new IOException("pickle frame of " + frame.size() + " bytes exceeds " + MAX_PICKLE_FRAME_SIZE);
+		}
+		return frame.toByteArray();
+	}
+
+	/**
+	 * @param name
+	 * @param value
+	 * @param timestamp
+	 * @return a value to send, as given
+	 */
+	static Record record(final String name, final String value, final long timestamp) {
+		return new Record(name, value, timestamp);
+	}
+
+	/**
+	 * @param batch
+	 * @return the values in the plaintext protocol, one line each
+	 */
+	static byte[] plaintext(final List<Record> batch) {
+		StringBuilder lines = new StringBuilder(batch.size() * 64);
+		for (Record record : batch) {
+			appendLine(lines, record);
+		}
+		return lines.toString().getBytes(UTF_8);
+	}
+
+	/**
+	 * @param batch
+	 * @param maxDatagramSize
+	 * @return the values in the plaintext protocol, as many whole lines in each datagram as fit in maxDatagramSize
+	 *         bytes; a line that alone does not fit is left out
+	 */
+	static List<byte[]> datagrams(final List<Record> batch, final int maxDatagramSize) {
+		List<byte[]> datagrams = new ArrayList<byte[]>(1);
+		ByteArrayOutputStream datagram = new ByteArrayOutputStream(maxDatagramSize);
+		StringBuilder line = new StringBuilder(64);
+		for (Record record : batch) {
+			line.setLength(0);
+			byte[] lineBytes = appendLine(line, record).toString().getBytes(UTF_8);
+			if (lineBytes.length > maxDatagramSize) {
+				continue;
+			}
+			if (datagram.size() + lineBytes.length > maxDatagramSize) {
+				datagrams.add(datagram.toByteArray());
+				datagram.reset();
+			}
+			datagram.write(lineBytes, 0, lineBytes.length);
+		}
+		if (datagram.size() > 0) {
+			datagrams.add(datagram.toByteArray());
+		}
+		return datagrams;
+	}
+
+	/**
+	 * @param lines
+	 * @param record
+	 * @return lines
+	 */
+	private static StringBuilder appendLine(final StringBuilder lines, final Record record) {
+		return lines.append(record.name).append(' ').append(record.value).append(' ').append(record.timestamp).append('\n');
+	}
+
+	/**
+	 * @param datagram
+	 * @return the number of plaintext lines in the datagram, names and values hold no whitespace
+	 */
+	private static int countLines(final byte[] datagram) {
+		int lineCount = 0;
+		for (byte b : datagram) {
+			if (b == '\n') {
+				lineCount++;
+			}
+		}
+		return lineCount;
+	}
+
+	/**
+	 * Writes a BINUNICODE opcode: the UTF-8 bytes of the value, preceded by their length as 4 little-endian bytes.
+	 *
+	 * @param frame
+	 * @param value
+	 */
+	private static void writeBinaryUnicode(final ByteArrayOutputStream frame, final String value) {
+		byte[] bytes = value.getBytes(UTF_8);
+		frame.write('X');
+		frame.write(bytes.length);
+		frame.write(bytes.length >>> 8);
+		frame.write(bytes.length >>> 16);
+		frame.write(bytes.length >>> 24);
+		frame.write(bytes, 0, bytes.length);
+	}
+
+	/**
+	 * @param value
+	 * @return
+	 */
+	private static String sanitize(final String value) {
+		return WHITESPACE.matcher(value).replaceAll("-");
+	}
+
+	// fields
+	private final Connection				connection;
+	private final Map<String, Connection>	connections;
+	private final AtomicBoolean				isClosed	= new AtomicBoolean(false);
+
+	/**
+	 * @param connection
+	 * @param connections
+	 *            the connections of the component, by destination and settings
+	 */
+	private BufferedGraphiteSender(final Connection connection, final Map<String, Connection> connections) {
+		this.connection = connection;
+		this.connections = connections;
+	}
+
+	/**
+	 * Releases the shared connection; the last sender to close stops the writer thread, dropping what is still
+	 * buffered.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (!this.isClosed.compareAndSet(false, true)) {
+			return;
+		}
+		synchronized (this.connections) {
+			if (--this.connection.references > 0 || this.connections.get(this.connection.key) != this.connection) {
+				// still in use, or already stopped with the component
+				return;
+			}
+			this.connections.remove(this.connection.key);
+		}
+		LOGGER.info(MARKER, "closing graphite connection: {}", this.connection.key);
+		this.connection.stop();
+	}
+
+	/**
+	 * Does nothing, the writer thread connects.
+	 */
+	@Override
+	public void connect() {
+		// the writer thread connects
+	}
+
+	/**
+	 * Does nothing, the writer thread sends as soon as values are buffered.
+	 */
+	@Override
+	public void flush() {
+		// the writer thread sends as soon as values are buffered
+	}
+
+	/**
+	 * @return the shared connection, for monitoring
+	 */
+	Connection getConnection() {
+		return this.connection;
+	}
+
+	@Override
+	public int getFailures() {
+		return this.connection.failures.get();
+	}
+
+	/**
+	 * @return true, the writer thread keeps the connection open
+	 */
+	@Override
+	public boolean isConnected() {
+		return true;
+	}
+
+	@Override
+	public void send(final String name, final String value, final long timestamp) {
+		if (this.isClosed.get()) {
+			return;
+		}
+		this.connection.add(new Record(sanitize(name), sanitize(value), timestamp));
+	}
+
+}
@@ -0,0 +1,161 @@
+// @formatter:off
+/**
+ * Copyright 2014 Initium.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+// @formatter:on
+package io.initium.camel.component.metrics;
+
+import java.util.Arrays;
+
+import com.codahale.metrics.Counting;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Metric;
+
+/**
+ * Remembers the value last reported for each metric of a reporter, so that unchanged metrics can be skipped. A value is
+ * kept as a long fingerprint in an open addressing table: the value of numeric gauges, the hash of other gauges and the
+ * count of counters, histograms, meters and timers, so a meter whose count did not change is unchanged even though its
+ * rates decay. Every refreshPeriods periods every metric is reported again and the table is rebuilt, which also drops
+ * the names of removed metrics. Not thread safe, a tracker belongs to the reporter pipeline thread.
+ *
+ * @author Steve Fosdal, <steve@initium.io>
+ * @author Hector Veiga Ortiz, <hector@initium.io>
+ * @version 1.4
+ * @since 2026-10-18
+ */
+final class ChangeTracker {
+
+	// constants
+	private static final int	INITIAL_CAPACITY	= 64;
+	private static final long	NULL_FINGERPRINT	= 0x9e3779b97f4a7c15L;
+
+	/**
+	 * @param metric
+	 * @return
+	 */
+	@SuppressWarnings("rawtypes")
+	static long fingerprint(final Metric metric) {
+		if (metric instanceof Counting) {
+			return ((Counting) metric).getCount();
+		}
+		if (metric instanceof Gauge) {
+			Object value = ((Gauge) metric).getValue();
+			if (value == null) {
+				return NULL_FINGERPRINT;
+			}
+			if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+				return ((Number) value).longValue();
+			}
+			if (value instanceof Number) {
+				return Double.doubleToLongBits(((Number) value).doubleValue());
+			}
+			return value.hashCode();
+		}
+		return 0;
+	}
+
+	// fields
+	private final int	refreshPeriods;
+	private int			periods;
+	private boolean		isRefreshing;
+	private String[]	names			= new String[INITIAL_CAPACITY];
+	private long[]		fingerprints	= new long[INITIAL_CAPACITY];
+	private int			size;
+
+	/**
+	 * @param refreshPeriods
+	 *            every metric is reported every refreshPeriods periods, 0 for never
+	 */
+	ChangeTracker(final int refreshPeriods) {
+		this.refreshPeriods = refreshPeriods;
+	}
+
+	/**
+	 * Starts the next report; the first report and every refreshPeriods-th report include every metric.
+	 */
+	void beginPeriod() {
+		this.isRefreshing = this.periods == 0;
+		if (this.isRefreshing && this.size > 0) {
+			Arrays.fill(this.names, null);
+			this.size = 0;
+		}
+		this.periods = this.refreshPeriods > 0 ? (this.periods + 1) % this.refreshPeriods : 1;
+	}
+
+	/**
+	 * Records the current value of the metric.
+	 *
+	 * @param name
+	 * @param metric
+	 * @return true if the metric is to be reported, its value changed since it was last reported or this is a refresh
+	 */
+	boolean hasChanged(final String name, final Metric metric) {
+		long fingerprint = fingerprint(metric);
+		int mask = this.names.length - 1;
+		int index = spread(name.hashCode()) & mask;
+		while (this.names[index] != null) {
+			if (this.names[index].equals(name)) {
+				if (this.fingerprints[index] == fingerprint && !this.isRefreshing) {
+					return false;
+				}
+				this.fingerprints[index] = fingerprint;
+				return true;
+			}
+			index = (index + 1) & mask;
+		}
+		this.names[index] = name;
+		this.fingerprints[index] = fingerprint;
+		if (++this.size * 2 > this.names.length) {
+			grow();
+		}
+		return true;
+	}
+
+	/**
+	 * @return the number of metrics tracked
+	 */
+	int size() {
+		return this.size;
+	}
+
+	/**
+	 * @param hash
+	 * @return
+	 */
+	private static int spread(final int hash) {
+		int h = hash * 0x9e3779b9;
+		return h ^ (h >>> 16);
+	}
+
+	/**
+	 * Doubles the table.
+	 */
+	private void grow() {
+		String[] oldNames = this.names;
+		long[] oldFingerprints = this.fingerprints;
+		this.names = new String[oldNames.length * 2];
+		this.fingerprints = new long[oldNames.length * 2];
+		int mask = this.names.length - 1;
+		for (int i = 0; i < oldNames.length; i++) {
+			if (oldNames[i] != null) {
+				int index = spread(oldNames[i].hashCode()) & mask;
+				while (this.names[index] != null) {
+					index = (index + 1) & mask;
+				}
+				this.names[index] = oldNames[i];
+				this.fingerprints[index] = oldFingerprints[i];
+			}
+		}
+	}
+
+}
@@ -0,0 +1,407 @@
+// @formatter:off
+/**
+ * Copyright 2014 Initium.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+// @formatter:on
+package io.initium.camel.component.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanConstructorInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanNotificationInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+
+import org.apache.camel.RuntimeCamelException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Metered;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricFilter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Sampling;
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.Timer;
+
+import static io.initium.camel.component.metrics.MetricsComponent.MARKER;
+
+/**
+ * Exposes every metric of a metric group as attributes of one MBean, named domain:type=MetricGroup,name=fullName. The
+ * attributes are named after the metric, without the name of the group, and the attribute of the JmxReporter MBean of
+ * the metric, e.g. rate.OneMinuteRate. The attributes are read from the registry when they are requested, through the
+ * report cache of the group if it has one, so that a snapshot or gauge value read by a reporter, or by another request,
+ * less than a second ago is reused. The MBean is registered and unregistered by the given executor, so that creating a
+ * metric group does not wait on the MBeanServer.
+ *
+ * @author Steve Fosdal, <steve@initium.io>
+ * @author Hector Veiga Ortiz, <hector@initium.io>
+ * @version 1.4
+ * @since 2026-10-18
+ */
+public final class GroupMBean implements DynamicMBean {
+
+	// logging
+	private static final String		SELF					= Thread.currentThread().getStackTrace()[1].getClassName();
+	private static final Logger		LOGGER					= LoggerFactory.getLogger(SELF);
+
+	// constants
+	private static final String[]	SAMPLING_ATTRIBUTES		= {"Min", "Max", "Mean", "StdDev", "50thPercentile", "75thPercentile", "95thPercentile", "98thPercentile", "99thPercentile", "999thPercentile"};
+	private static final String[]	METERED_ATTRIBUTES		= {"MeanRate", "OneMinuteRate", "FiveMinuteRate", "FifteenMinuteRate"};
+	private static final String		COUNT					= "Count";
+	private static final String		VALUE					= "Value";
+	private static final String		RATE_UNIT				= "RateUnit";
+	private static final String		DURATION_UNIT			= "DurationUnit";
+	private static final long		FRESH_NANOS				= TimeUnit.SECONDS.toNanos(1);
+
+	// fields
+	private final MetricRegistry	metricRegistry;
+	private final MetricFilter		filter;
+	private final String			prefix;
+	private final ObjectName		objectName;
+	private final TimeUnit			rateUnit;
+	private final TimeUnit			durationUnit;
+	private final double			rateFactor;
+	private final double			durationFactor;
+	private final MBeanServer		mBeanServer				= ManagementFactory.getPlatformMBeanServer();
+	private ReportCache.Reader		reader;
+
+	/**
+	 * @param metricRegistry
+	 * @param filter
+	 * @param domain
+	 * @param groupName
+	 *            the full name of the metric group, also removed from the start of the attribute names
+	 * @param rateUnit
+	 * @param durationUnit
+	 */
+	public GroupMBean(final MetricRegistry metricRegistry, final MetricFilter filter, final String domain, final String groupName, final TimeUnit rateUnit, final TimeUnit durationUnit) {
+		this.metricRegistry = metricRegistry;
+		this.filter = filter;
+		this.prefix = groupName + ".";
+		this.rateUnit = rateUnit;
+		this.durationUnit = durationUnit;
+		this.rateFactor = rateUnit.toSeconds(1);
+		this.durationFactor = 1.0 / durationUnit.toNanos(1);
+		try {
+			this.objectName = new ObjectName(domain, createProperties(groupName));
+		} catch (MalformedObjectNameException e) {
+			throw new RuntimeCamelException("invalid object name for metric group: " + groupName, e);
+		}
+	}
+
+	/**
+	 * @param groupName
+	 * @return
+	 */
+	private static Hashtable<String, String> createProperties(final String groupName) {
+		Hashtable<String, String> properties = new Hashtable<String, String>();
+		properties.put("type", "MetricGroup");
+		boolean isQuoted = false;
+		for (int i = 0; i < groupName.length() && !isQuoted; i++) {
+			isQuoted = ",=:\"*?\n".indexOf(groupName.charAt(i)) >= 0;
+		}
+		properties.put("name", isQuoted ? ObjectName.quote(groupName) : groupName);
+		return properties;
+	}
+
+	@Override
+	public Object getAttribute(final String attribute) throws AttributeNotFoundException {
+		int separator = attribute.lastIndexOf('.');
+		if (separator > 0) {
+			String name = this.prefix + attribute.substring(0, separator);
+			Metric metric = this.metricRegistry.getMetrics().get(name);
+			if (metric != null && this.filter.matches(name, metric)) {
+				Object value;
+				synchronized (this) {
+					beginRequest();
+					value = getValue(view(metric), attribute.substring(separator + 1), new HashMap<Metric, Snapshot>());
+				}
+				if (value != null) {
+					return value;
+				}
+			}
+		}
+		throw new AttributeNotFoundException(attribute);
+	}
+
+	@Override
+	public synchronized AttributeList getAttributes(final String[] attributes) {
+		AttributeList attributeList = new AttributeList(attributes.length);
+		Map<String, Metric> metrics = this.metricRegistry.getMetrics();
+		// one snapshot per histogram or timer, however many of its attributes are requested
+		Map<Metric, Snapshot> snapshots = new HashMap<Metric, Snapshot>();
+		beginRequest();
+		for (String attribute : attributes) {
+			int separator = attribute.lastIndexOf('.');
+			if (separator <= 0) {
+				continue;
+			}
+			String name = this.prefix + attribute.substring(0, separator);
+			Metric metric = metrics.get(name);
+			if (metric == null || !this.filter.matches(name, metric)) {
+				continue;
+			}
+			Object value = getValue(view(metric), attribute.substring(separator + 1), snapshots);
+			if (value != null) {
+				attributeList.add(new Attribute(attribute, value));
+			}
+		}
+		return attributeList;
+	}
+
+	/**
+	 * Lists the attributes of the metrics registered now.
+	 */
+	@Override
+	public MBeanInfo getMBeanInfo() {
+		List<MBeanAttributeInfo> attributeInfos = new ArrayList<MBeanAttributeInfo>();
+		for (Entry<String, Metric> entry : this.metricRegistry.getMetrics().entrySet()) {
+			String name = entry.getKey();
+			Metric metric = entry.getValue();
+			if (!name.startsWith(this.prefix) || !this.filter.matches(name, metric)) {
+				continue;
+			}
+			String attributePrefix = name.substring(this.prefix.length()) + ".";
+			if (metric instanceof Gauge) {
+				attributeInfos.add(attributeInfo(attributePrefix + VALUE, Object.class));
+			} else if (metric instanceof Counter) {
+				attributeInfos.add(attributeInfo(attributePrefix + COUNT, Long.class));
+			} else {
+				attributeInfos.add(attributeInfo(attributePrefix + COUNT, Long.class));
+				if (metric instanceof Sampling) {
+					for (String samplingAttribute : SAMPLING_ATTRIBUTES) {
+						attributeInfos.add(attributeInfo(attributePrefix + samplingAttribute, Double.class));
+					}
+				}
+				if (metric instanceof Metered) {
+					for (String meteredAttribute : METERED_ATTRIBUTES) {
+						attributeInfos.add(attributeInfo(attributePrefix + meteredAttribute, Double.class));
+					}
+					attributeInfos.add(attributeInfo(attributePrefix + RATE_UNIT, String.class));
+				}
+				if (metric instanceof Timer) {
+					attributeInfos.add(attributeInfo(attributePrefix + DURATION_UNIT, String.class));
+				}
+			}
+		}
+		return new MBeanInfo(SELF, "metrics of " + this.objectName, attributeInfos.toArray(new MBeanAttributeInfo[attributeInfos.size()]), new MBeanConstructorInfo[0], new MBeanOperationInfo[0], new MBeanNotificationInfo[0]);
+	}
+
+	/**
+	 * @return the name of the MBean
+	 */
+	public ObjectName getObjectName() {
+		return this.objectName;
+	}
+
+	@Override
+	public Object invoke(final String actionName, final Object[] params, final String[] signature) throws ReflectionException {
+		throw new ReflectionException(new NoSuchMethodException(actionName));
+	}
+
+	@Override
+	public void setAttribute(final Attribute attribute) throws AttributeNotFoundException {
+		throw new AttributeNotFoundException("read only: " + attribute.getName());
+	}
+
+	@Override
+	public AttributeList setAttributes(final AttributeList attributes) {
+		return new AttributeList();
+	}
+
+	/**
+	 * Reads the snapshots and gauge values through the report cache of the metric group from now on.
+	 *
+	 * @param reportCache
+	 */
+	synchronized void setReportCache(final ReportCache reportCache) {
+		this.reader = reportCache.newReader();
+	}
+
+	/**
+	 * Registers the MBean.
+	 *
+	 * @param executor
+	 *            the thread registering the MBean
+	 */
+	public void start(final Executor executor) {
+		submit(executor, new Runnable() {
+			@Override
+			public void run() {
+				try {
+					GroupMBean.this.mBeanServer.registerMBean(GroupMBean.this, GroupMBean.this.objectName);
+				} catch (Exception e) {
+					LOGGER.warn(MARKER, "unable to register MBean " + GroupMBean.this.objectName, e);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Unregisters the MBean.
+	 *
+	 * @param executor
+	 *            the thread that registered the MBean
+	 */
+	public void stop(final Executor executor) {
+		submit(executor, new Runnable() {
+			@Override
+			public void run() {
+				try {
+					if (GroupMBean.this.mBeanServer.isRegistered(GroupMBean.this.objectName)) {
+						GroupMBean.this.mBeanServer.unregisterMBean(GroupMBean.this.objectName);
+					}
+				} catch (Exception e) {
+					LOGGER.warn(MARKER, "unable to unregister MBean " + GroupMBean.this.objectName, e);
+				}
+			}
+		});
+	}
+
+	/**
+	 * @param name
+	 * @param type
+	 * @return
+	 */
+	private MBeanAttributeInfo attributeInfo(final String name, final Class<?> type) {
+		return new MBeanAttributeInfo(name, type.getName(), name, true, false, false);
+	}
+
+	/**
+	 * Starts reading for a request, reusing what was read less than a second ago.
+	 */
+	private void beginRequest() {
+		if (this.reader != null) {
+			this.reader.beginPeriod(System.nanoTime() - FRESH_NANOS);
+		}
+	}
+
+	/**
+	 * @param metric
+	 * @param field
+	 *            the attribute of the metric
+	 * @param snapshots
+	 *            the snapshots already taken
+	 * @return the value, or null if the metric has no such attribute
+	 */
+	@SuppressWarnings("rawtypes")
+	private Object getValue(final Metric metric, final String field, final Map<Metric, Snapshot> snapshots) {
+		if (metric instanceof Gauge) {
+			return VALUE.equals(field) ? ((Gauge) metric).getValue() : null;
+		}
+		if (metric instanceof Counter) {
+			return COUNT.equals(field) ? ((Counter) metric).getCount() : null;
+		}
+		if (COUNT.equals(field)) {
+			if (metric instanceof Histogram) {
+				return ((Histogram) metric).getCount();
+			}
+			if (metric instanceof Metered) {
+				return ((Metered) metric).getCount();
+			}
+			return null;
+		}
+		if (metric instanceof Metered) {
+			Metered metered = (Metered) metric;
+			if ("MeanRate".equals(field)) {
+				return metered.getMeanRate() * this.rateFactor;
+			} else if ("OneMinuteRate".equals(field)) {
+				return metered.getOneMinuteRate() * this.rateFactor;
+			} else if ("FiveMinuteRate".equals(field)) {
+				return metered.getFiveMinuteRate() * this.rateFactor;
+			} else if ("FifteenMinuteRate".equals(field)) {
+				return metered.getFifteenMinuteRate() * this.rateFactor;
+			} else if (RATE_UNIT.equals(field)) {
+				return "events/" + this.rateUnit.toString().toLowerCase().replaceAll("s$", "");
+			}
+		}
+		if (metric instanceof Timer && DURATION_UNIT.equals(field)) {
+			return this.durationUnit.toString().toLowerCase();
+		}
+		if (metric instanceof Sampling) {
+			Snapshot snapshot = snapshots.get(metric);
+			if (snapshot == null) {
+				snapshot = ((Sampling) metric).getSnapshot();
+				snapshots.put(metric, snapshot);
+			}
+			double factor = metric instanceof Timer ? this.durationFactor : 1;
+			if ("Min".equals(field)) {
+				return snapshot.getMin() * factor;
+			} else if ("Max".equals(field)) {
+				return snapshot.getMax() * factor;
+			} else if ("Mean".equals(field)) {
+				return snapshot.getMean() * factor;
+			} else if ("StdDev".equals(field)) {
+				return snapshot.getStdDev() * factor;
+			} else if ("50thPercentile".equals(field)) {
+				return snapshot.getMedian() * factor;
+			} else if ("75thPercentile".equals(field)) {
+				return snapshot.get75thPercentile() * factor;
+			} else if ("95thPercentile".equals(field)) {
+				return snapshot.get95thPercentile() * factor;
+			} else if ("98thPercentile".equals(field)) {
+				return snapshot.get98thPercentile() * factor;
+			} else if ("99thPercentile".equals(field)) {
+				return snapshot.get99thPercentile() * factor;
+			} else if ("999thPercentile".equals(field)) {
+				return snapshot.get999thPercentile() * factor;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @param executor
+	 * @param task
+	 */
+	private void submit(final Executor executor, final Runnable task) {
+		try {
+			executor.execute(task);
+		} catch (RejectedExecutionException e) {
+			// the component is stopping
+			task.run();
+		}
+	}
+
+	/**
+	 * @param metric
+	 * @return the metric read through the report cache, if there is one
+	 */
+	private Metric view(final Metric metric) {
+		return this.reader == null ? metric : this.reader.view(metric);
+	}
+
+}
@@ -0,0 +1,246 @@
+// @formatter:off
+/**
+ * Copyright 2014 Initium.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+// @formatter:on
+package io.initium.camel.component.metrics;
+
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramIterationValue;
+import org.HdrHistogram.Recorder;
+
+import com.codahale.metrics.Clock;
+import com.codahale.metrics.Reservoir;
+import com.codahale.metrics.Snapshot;
+
+/**
+ * A Reservoir backed by an HdrHistogram Recorder. Recording a value is wait-free and allocates nothing, and the
+ * memory used is fixed by the highest trackable value and the number of significant digits. A snapshot covers the values
+ * of the last window, kept as a ring of interval histograms that each cover a sixth of the window: a value belongs to
+ * the interval in which a snapshot first sees it, so it is dropped between one window and one window plus an interval
+ * after that snapshot. Values above the highest trackable value are recorded as the highest trackable value, negative
+ * values as zero.
+ *
+ * @author Steve Fosdal, <steve@initium.io>
+ * @author Hector Veiga Ortiz, <hector@initium.io>
+ * @version 1.4
+ * @since 2026-10-18
+ */
+public final class HdrHistogramReservoir implements Reservoir {
+
+	/**
+	 * A snapshot of the intervals of the window, merged into one histogram. Its values are the distinct recorded values,
+	 * each standing for all values within the precision of the histogram, and its size is the number of those values.
+	 * The mean, the standard deviation and the quantiles are weighted by the number of values recorded in each bucket.
+	 */
+	static final class HdrSnapshot extends Snapshot {
+
+		// constants
+		private static final Charset	UTF_8	= Charset.forName("UTF-8");
+
+		// fields
+		private final Histogram			histogram;
+
+		/**
+		 * @param histogram
+		 */
+		private HdrSnapshot(final Histogram histogram) {
+			this.histogram = histogram;
+		}
+
+		@Override
+		public void dump(final OutputStream output) {
+			PrintWriter out = new PrintWriter(new OutputStreamWriter(output, UTF_8));
+			try {
+				for (long value : getValues()) {
+					out.printf("%d%n", value);
+				}
+			} finally {
+				out.close();
+			}
+		}
+
+		@Override
+		public long getMax() {
+			if (isEmpty()) {
+				return 0;
+			}
+			return this.histogram.getMaxValue();
+		}
+
+		@Override
+		public double getMean() {
+			if (isEmpty()) {
+				return 0;
+			}
+			return this.histogram.getMean();
+		}
+
+		@Override
+		public long getMin() {
+			if (isEmpty()) {
+				return 0;
+			}
+			return this.histogram.getMinValue();
+		}
+
+		@Override
+		public double getStdDev() {
+			if (isEmpty()) {
+				return 0;
+			}
+			return this.histogram.getStdDeviation();
+		}
+
+		@Override
+		public double getValue(final double quantile) {
+			if (quantile < 0.0 || quantile > 1.0 || Double.isNaN(quantile)) {
+				throw new IllegalArgumentException(quantile + " is not in [0..1]");
+			}
+			if (isEmpty()) {
+				return 0;
+			}
+			return this.histogram.getValueAtPercentile(quantile * 100.0);
+		}
+
+		@Override
+		public long[] getValues() {
+			List<Long> values = new ArrayList<Long>();
+			for (HistogramIterationValue value : this.histogram.recordedValues()) {
+				values.add(this.histogram.highestEquivalentValue(value.getValueIteratedTo()));
+			}
+			long[] result = new long[values.size()];
+			for (int i = 0; i < result.length; i++) {
+				result[i] = values.get(i);
+			}
+			return result;
+		}
+
+		@Override
+		public int size() {
+			int size = 0;
+			Iterator<HistogramIterationValue> values = this.histogram.recordedValues().iterator();
+			while (values.hasNext()) {
+				values.next();
+				size++;
+			}
+			return size;
+		}
+
+		/**
+		 * @return
+		 */
+		private boolean isEmpty() {
+			return this.histogram.getTotalCount() == 0;
+		}
+	}
+
+	// constants
+	private static final int	INTERVALS	= 6;
+
+	// fields
+	private final long			highestTrackableValue;
+	private final int			significantDigits;
+	private final long			intervalNanos;
+	private final Clock			clock;
+	private final long			startTick;
+	private final Recorder		recorder;
+	private final Histogram[]	intervals	= new Histogram[INTERVALS];
+	private long				currentInterval;
+	private Histogram			recycled;
+
+	/**
+	 * @param highestTrackableValue
+	 *            the highest value that is recorded exactly, at least 2
+	 * @param significantDigits
+	 *            the number of significant decimal digits kept for every value, 0 to 5
+	 * @param window
+	 *            the length of the window a snapshot covers
+	 * @param windowUnit
+	 *            the unit of the window
+	 */
+	public HdrHistogramReservoir(final long highestTrackableValue, final int significantDigits, final long window, final TimeUnit windowUnit) {
+		this(highestTrackableValue, significantDigits, window, windowUnit, Clock.defaultClock());
+	}
+
+	/**
+	 * @param highestTrackableValue
+	 * @param significantDigits
+	 * @param window
+	 * @param windowUnit
+	 * @param clock
+	 */
+	HdrHistogramReservoir(final long highestTrackableValue, final int significantDigits, final long window, final TimeUnit windowUnit, final Clock clock) {
+		this.highestTrackableValue = highestTrackableValue;
+		this.significantDigits = significantDigits;
+		this.intervalNanos = Math.max(1, windowUnit.toNanos(window) / INTERVALS);
+		this.clock = clock;
+		this.startTick = clock.getTick();
+		this.recorder = new Recorder(highestTrackableValue, significantDigits);
+		for (int i = 0; i < INTERVALS; i++) {
+			this.intervals[i] = new Histogram(highestTrackableValue, significantDigits);
+		}
+	}
+
+	@Override
+	public synchronized Snapshot getSnapshot() {
+		advance();
+		Histogram window = new Histogram(this.highestTrackableValue, this.significantDigits);
+		for (Histogram interval : this.intervals) {
+			window.add(interval);
+		}
+		return new HdrSnapshot(window);
+	}
+
+	/**
+	 * @return the number of values recorded in the window
+	 */
+	@Override
+	public synchronized int size() {
+		advance();
+		long size = 0;
+		for (Histogram interval : this.intervals) {
+			size += interval.getTotalCount();
+		}
+		return (int) Math.min(Integer.MAX_VALUE, size);
+	}
+
+	@Override
+	public void update(final long value) {
+		this.recorder.recordValue(Math.min(Math.max(value, 0), this.highestTrackableValue));
+	}
+
+	/**
+	 * Clears the intervals that left the window since the last call and moves the values recorded since then into the
+	 * current interval, recycling the histogram taken from the recorder.
+	 */
+	private void advance() {
+		long interval = (this.clock.getTick() - this.startTick) / this.intervalNanos;
+		for (long i = Math.max(this.currentInterval + 1, interval - INTERVALS + 1); i <= interval; i++) {
+			this.intervals[(int) (i % INTERVALS)].reset();
+		}
+		this.currentInterval = Math.max(this.currentInterval, interval);
+		this.recycled = this.recorder.getIntervalHistogram(this.recycled);
+		this.intervals[(int) (this.currentInterval % INTERVALS)].add(this.recycled);
+	}
+
+}
@@ -0,0 +1,437 @@
+// @formatter:off
+/**
+ * Copyright 2014 Initium.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+// @formatter:on
+package io.initium.camel.component.metrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.RuntimeCamelException;
+import org.apache.camel.support.ServiceSupport;
+import org.apache.camel.util.ServiceHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+
+import static io.initium.camel.component.metrics.MetricsComponent.MARKER;
+
+/**
+ * The runtime metric groups one MetricsEndpoint created for its infix values, cached per value. A cache hit only stamps
+ * the group with the time of the access, without any lock. With maxInfixGroups, an exchange that creates a group past
+ * the limit asks the eviction thread to trim the cache: it evicts the groups with the oldest stamps, which is the least
+ * recently used order up to the accesses made while it trims. With infixIdleTtl a group that has not been used for that
+ * long is evicted by a periodic sweep on the same thread. An evicted group is marked evicted, its metrics are removed
+ * from the MetricRegistry, its reporters are stopped, it is removed as a service and its timer slot is freed, all on
+ * the eviction thread; exchanges only take and free places in the cache. The next exchange with the same infix value
+ * creates a new group, once the evicted one has been torn down.
+ * <p>
+ * With maxLiveInfixGroups no group is ever created past that many live groups: exchanges with a new infix value are
+ * recorded in one shared overflow group, metricName.__other__, until groups are evicted. The number of distinct values
+ * folded into the overflow group is estimated by a HyperLogLog.
+ *
+ * @author Steve Fosdal, <steve@initium.io>
+ * @author Hector Veiga Ortiz, <hector@initium.io>
+ * @version 1.4
+ * @since 2026-10-18
+ */
+final class InfixMetricGroups extends ServiceSupport implements Runnable {
+
+	// logging
+	private static final String									SELF					= Thread.currentThread().getStackTrace()[1].getClassName();
+	private static final Logger									LOGGER					= LoggerFactory.getLogger(SELF);
+
+	// constants
+	static final String											EVICTIONS_NAME			= "infix.evictions";
+	static final String											OVERFLOW_DISTINCT_NAME	= "infix.overflow.distinct";
+	static final String											OVERFLOW_INFIX			= "__other__";
+	private static final long									MIN_SWEEP_NANOS			= TimeUnit.MILLISECONDS.toNanos(10);
+	private static final long									REMOVAL_TIMEOUT_SECONDS	= 10;
+
+	// fields
+	private final MetricsEndpoint								metricsEndpoint;
+	private final ConcurrentMap<String, ResolvedMetricGroup>	resolvedMetricGroups	= new ConcurrentHashMap<String, ResolvedMetricGroup>();
+	// true while a trim down to maxGroups is queued on the eviction thread
+	private final AtomicBoolean									isTrimQueued			= new AtomicBoolean();
+	private final int											maxGroups;
+	private final long											idleTtlNanos;
+	private final boolean										isEvicting;
+	private volatile Counter									evictions;
+
+	// for the hard limit
+	private final int											maxLiveGroups;
+	private final AtomicInteger									liveGroups			= new AtomicInteger();
+	private final HyperLogLog									overflowValues		= new HyperLogLog();
+	private volatile ResolvedMetricGroup						overflowMetricGroup;
+	private volatile Gauge<Long>								overflowDistinct;
+	private volatile ScheduledExecutorService					evictionExecutorService;
+
+	/**
+	 * @param metricsEndpoint
+	 * @param maxGroups
+	 *            the number of groups kept, 0 for no limit
+	 * @param idleTtlMillis
+	 *            how long an unused group is kept, 0 for ever
+	 * @param maxLiveGroups
+	 *            the number of groups never exceeded, 0 for no limit
+	 */
+	InfixMetricGroups(final MetricsEndpoint metricsEndpoint, final int maxGroups, final long idleTtlMillis, final int maxLiveGroups) {
+		this.metricsEndpoint = metricsEndpoint;
+		this.maxGroups = maxGroups;
+		this.maxLiveGroups = maxLiveGroups;
+		this.idleTtlNanos = TimeUnit.MILLISECONDS.toNanos(idleTtlMillis);
+		this.isEvicting = maxGroups > 0 || idleTtlMillis > 0;
+	}
+
+	/**
+	 * @return the number of evicted groups, 0 if nothing is evicted
+	 */
+	long getEvictionCount() {
+		Counter lclEvictions = this.evictions;
+		if (lclEvictions == null) {
+			return 0;
+		}
+		return lclEvictions.getCount();
+	}
+
+	/**
+	 * @return the estimated number of distinct infix values recorded in the overflow group
+	 */
+	long getOverflowDistinctEstimate() {
+		return this.overflowValues.estimate();
+	}
+
+	/**
+	 * @return true if groups are evicted, on a thread of their own
+	 */
+	boolean isEvicting() {
+		return this.isEvicting;
+	}
+
+	/**
+	 * Registers the eviction counter and the estimate of distinct overflow values with the base metric group of the
+	 * endpoint, if groups are evicted or limited at all.
+	 *
+	 * @param metricGroup
+	 */
+	void registerIn(final MetricGroup metricGroup) {
+		if (this.isEvicting && this.evictions == null) {
+			synchronized (this) {
+				if (this.evictions == null) {
+					this.evictions = metricGroup.registerAdditionalMetric(EVICTIONS_NAME, new Counter());
+				}
+			}
+		}
+		if (this.maxLiveGroups > 0 && this.overflowDistinct == null) {
+			synchronized (this) {
+				if (this.overflowDistinct == null) {
+					this.overflowDistinct = metricGroup.registerAdditionalMetric(OVERFLOW_DISTINCT_NAME, new Gauge<Long>() {
+						@Override
+						public Long getValue() {
+							return getOverflowDistinctEstimate();
+						}
+					});
+				}
+			}
+		}
+	}
+
+	/**
+	 * Resolves the runtime metric group for an evaluated infix value, caching the result per value. Once a value has
+	 * been seen, resolving it again is a single hash lookup and builds no names.
+	 *
+	 * @param infixValue
+	 *            a non-empty evaluated infix value
+	 * @param exchange
+	 *            the exchange used to create the metric group if it does not exist yet
+	 * @return
+	 * @throws Exception
+	 */
+	ResolvedMetricGroup resolve(final String infixValue, final Exchange exchange) throws Exception {
+		ResolvedMetricGroup resolved = this.resolvedMetricGroups.get(infixValue);
+		if (resolved != null) {
+			if (!resolved.getMetricGroup().isEvicted()) {
+				if (this.isEvicting) {
+					resolved.touch(System.nanoTime());
+				}
+				return resolved;
+			}
+			// evicted, possibly by another endpoint using the same metric group
+			forget(resolved);
+		}
+		if (!reserveLiveGroup()) {
+			this.overflowValues.offer(infixValue);
+			return resolveOverflow(exchange);
+		}
+		try {
+			resolved = new ResolvedMetricGroup(lookupMetricGroup(infixValue, exchange), infixValue, this.metricsEndpoint.getTimingName(), this.metricsEndpoint.getMetricComponent());
+		} catch (Exception e) {
+			this.liveGroups.decrementAndGet();
+			throw e;
+		}
+		ResolvedMetricGroup existing = this.resolvedMetricGroups.putIfAbsent(infixValue, resolved);
+		if (existing != null) {
+			this.liveGroups.decrementAndGet();
+			return existing;
+		}
+		if (this.maxGroups > 0 && this.resolvedMetricGroups.size() > this.maxGroups) {
+			queueTrim();
+		}
+		return resolved;
+	}
+
+	/**
+	 * Resolves the overflow group, which is created once and never evicted.
+	 *
+	 * @param exchange
+	 * @return
+	 * @throws Exception
+	 */
+	ResolvedMetricGroup resolveOverflow(final Exchange exchange) throws Exception {
+		ResolvedMetricGroup resolved = this.overflowMetricGroup;
+		if (resolved == null) {
+			synchronized (this) {
+				resolved = this.overflowMetricGroup;
+				if (resolved == null) {
+					MetricGroup metricGroup = this.metricsEndpoint.lookupMetricGroup(this.metricsEndpoint.getName(), OVERFLOW_INFIX, exchange);
+					resolved = new ResolvedMetricGroup(metricGroup, OVERFLOW_INFIX, this.metricsEndpoint.getTimingName(), this.metricsEndpoint.getMetricComponent());
+					this.overflowMetricGroup = resolved;
+				}
+			}
+		}
+		return resolved;
+	}
+
+	/**
+	 * @return the number of cached groups
+	 */
+	int size() {
+		return this.resolvedMetricGroups.size();
+	}
+
+	/**
+	 * Evicts every group that has been idle for longer than infixIdleTtl, then the least recently used groups until no
+	 * more than maxInfixGroups are left. Runs on the eviction thread only.
+	 */
+	@Override
+	public void run() {
+		this.isTrimQueued.set(false);
+		try {
+			long now = System.nanoTime();
+			for (ResolvedMetricGroup resolved : this.resolvedMetricGroups.values()) {
+				if (resolved.getMetricGroup().isEvicted()) {
+					forget(resolved);
+				} else if (this.idleTtlNanos > 0 && now - resolved.getLastAccessTime() > this.idleTtlNanos) {
+					LOGGER.debug(MARKER, "evicting idle metric group: {}", resolved.getFullName());
+					evict(resolved);
+				}
+			}
+			if (this.maxGroups > 0) {
+				trim();
+			}
+		} catch (Exception e) {
+			// keep the sweep scheduled
+			LOGGER.warn(MARKER, "failed to evict metric groups of: " + this.metricsEndpoint.getName(), e);
+		}
+	}
+
+	/**
+	 * Evicts the groups with the oldest access stamps until no more than maxInfixGroups are left.
+	 *
+	 * @throws Exception
+	 */
+	private void trim() throws Exception {
+		int excess = this.resolvedMetricGroups.size() - this.maxGroups;
+		if (excess <= 0) {
+			return;
+		}
+		List<ResolvedMetricGroup> candidates = new ArrayList<ResolvedMetricGroup>(this.resolvedMetricGroups.values());
+		final long[] lastAccessTimes = new long[candidates.size()];
+		List<Integer> order = new ArrayList<Integer>(candidates.size());
+		for (int i = 0; i < lastAccessTimes.length; i++) {
+			// read each stamp once, an exchange may touch the group while sorting
+			lastAccessTimes[i] = candidates.get(i).getLastAccessTime();
+			order.add(i);
+		}
+		Collections.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(final Integer left, final Integer right) {
+				// nanoTime values are compared by their difference
+				long difference = lastAccessTimes[left] - lastAccessTimes[right];
+				return difference < 0 ? -1 : difference > 0 ? 1 : 0;
+			}
+		});
+		for (int i = 0; i < order.size() && excess > 0; i++) {
+			ResolvedMetricGroup leastRecentlyUsedGroup = candidates.get(order.get(i));
+			LOGGER.debug(MARKER, "evicting least recently used metric group: {}", leastRecentlyUsedGroup.getFullName());
+			if (forgetOrEvict(leastRecentlyUsedGroup)) {
+				excess--;
+			}
+		}
+	}
+
+	/**
+	 * @param resolved
+	 * @return true if the group was still cached
+	 * @throws Exception
+	 */
+	private boolean forgetOrEvict(final ResolvedMetricGroup resolved) throws Exception {
+		if (resolved.getMetricGroup().isEvicted()) {
+			return forget(resolved);
+		}
+		return evict(resolved);
+	}
+
+	/**
+	 * Asks the eviction thread to trim the cache down to maxInfixGroups, unless it has already been asked.
+	 */
+	private void queueTrim() {
+		ScheduledExecutorService lclEvictionExecutorService = this.evictionExecutorService;
+		if (lclEvictionExecutorService == null || !this.isTrimQueued.compareAndSet(false, true)) {
+			return;
+		}
+		try {
+			lclEvictionExecutorService.execute(this);
+		} catch (RejectedExecutionException e) {
+			// stopping
+			this.isTrimQueued.set(false);
+		}
+	}
+
+	/**
+	 * @param resolved
+	 * @return true if the group was still cached
+	 * @throws Exception
+	 */
+	private boolean evict(final ResolvedMetricGroup resolved) throws Exception {
+		if (!forget(resolved)) {
+			return false;
+		}
+		MetricGroup metricGroup = resolved.getMetricGroup();
+		if (!metricGroup.evict()) {
+			return true;
+		}
+		MetricsComponent metricsComponent = this.metricsEndpoint.getMetricComponent();
+		// tear down before forgetting the group, so that a group created for the same name never sees its leftovers
+		try {
+			this.metricsEndpoint.getCamelContext().removeService(metricGroup);
+			ServiceHelper.stopService(metricGroup);
+			metricsComponent.releaseTimerSlot(resolved.getFullTimerName());
+			// counted before the removal is visible
+			Counter lclEvictions = this.evictions;
+			if (lclEvictions != null) {
+				lclEvictions.inc();
+			}
+		} finally {
+			metricsComponent.removeMetricGroup(metricGroup);
+			metricGroup.markRemoved();
+		}
+		return true;
+	}
+
+	/**
+	 * Removes a group from the cache, freeing its place under maxLiveInfixGroups.
+	 *
+	 * @param resolved
+	 * @return true if the group was cached
+	 */
+	private boolean forget(final ResolvedMetricGroup resolved) {
+		if (!this.resolvedMetricGroups.remove(resolved.getInfixValue(), resolved)) {
+			return false;
+		}
+		this.liveGroups.decrementAndGet();
+		return true;
+	}
+
+	/**
+	 * Looks up the metric group, waiting for an evicted group of the same name to be torn down, for at most
+	 * {@value #REMOVAL_TIMEOUT_SECONDS} seconds.
+	 *
+	 * @param infixValue
+	 * @param exchange
+	 * @return
+	 * @throws Exception
+	 */
+	private MetricGroup lookupMetricGroup(final String infixValue, final Exchange exchange) throws Exception {
+		MetricGroup metricGroup = this.metricsEndpoint.lookupMetricGroup(this.metricsEndpoint.getName(), infixValue, exchange);
+		while (metricGroup.isEvicted()) {
+			if (!metricGroup.awaitRemoval(REMOVAL_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+				throw new RuntimeCamelException("timed out waiting for the evicted metric group to be removed: " + metricGroup.getFullName());
+			}
+			metricGroup = this.metricsEndpoint.lookupMetricGroup(this.metricsEndpoint.getName(), infixValue, exchange);
+		}
+		return metricGroup;
+	}
+
+	/**
+	 * Takes a place for a new group under maxLiveInfixGroups.
+	 *
+	 * @return false if the limit has been reached
+	 */
+	private boolean reserveLiveGroup() {
+		if (this.maxLiveGroups <= 0) {
+			this.liveGroups.incrementAndGet();
+			return true;
+		}
+		int current = this.liveGroups.get();
+		while (current < this.maxLiveGroups) {
+			if (this.liveGroups.compareAndSet(current, current + 1)) {
+				return true;
+			}
+			current = this.liveGroups.get();
+		}
+		return false;
+	}
+
+	@Override
+	protected void doStart() throws Exception {
+		LOGGER.debug(MARKER, "doStart()");
+		if (this.isEvicting) {
+			ScheduledExecutorService lclEvictionExecutorService = this.metricsEndpoint.getCamelContext().getExecutorServiceManager().newSingleThreadScheduledExecutor(this, "MetricsInfixEviction[" + this.metricsEndpoint.getName() + "]");
+			if (this.idleTtlNanos > 0) {
+				long sweepNanos = Math.max(MIN_SWEEP_NANOS, this.idleTtlNanos / 2);
+				lclEvictionExecutorService.scheduleWithFixedDelay(this, sweepNanos, sweepNanos, TimeUnit.NANOSECONDS);
+			}
+			this.evictionExecutorService = lclEvictionExecutorService;
+			// groups created before the start
+			if (this.maxGroups > 0 && this.resolvedMetricGroups.size() > this.maxGroups) {
+				queueTrim();
+			}
+		}
+	}
+
+	@Override
+	protected void doStop() throws Exception {
+		LOGGER.debug(MARKER, "doStop()");
+		ScheduledExecutorService lclEvictionExecutorService = this.evictionExecutorService;
+		if (lclEvictionExecutorService != null) {
+			this.evictionExecutorService = null;
+			this.metricsEndpoint.getCamelContext().getExecutorServiceManager().shutdownNow(lclEvictionExecutorService);
+			this.isTrimQueued.set(false);
+		}
+	}
+
+}
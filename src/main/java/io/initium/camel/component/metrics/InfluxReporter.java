@@ -0,0 +1,262 @@
+// @formatter:off
+/**
+ * Copyright 2014 Initium.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+// @formatter:on
+package io.initium.camel.component.metrics;
+
+import java.nio.charset.Charset;
+import java.util.Map.Entry;
+import java.util.SortedMap;
+import java.util.concurrent.TimeUnit;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Metered;
+import com.codahale.metrics.MetricFilter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.ScheduledReporter;
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.Timer;
+
+/**
+ * Reports the metrics of a metric group in the InfluxDB line protocol, one line per metric: the measurement is the
+ * name of the metric without the name of the group, the base name and the infix of the group are tags, and the values
+ * of the metric are the fields, e.g. rate,group=orders,infix=eu count=2i,m1_rate=0.4,... 1476784800000000000. The
+ * lines of a report are added to the period of the {@link InfluxSender}, which the reporters of every metric group
+ * writing to the same URL share, and the period is handed to the writer as one block when it ends.
+ *
+ * @author Steve Fosdal, <steve@initium.io>
+ * @author Hector Veiga Ortiz, <hector@initium.io>
+ * @version 1.4
+ * @since 2026-10-18
+ */
+@SuppressWarnings("rawtypes")
+public final class InfluxReporter extends ScheduledReporter implements BatchingReporter {
+
+	// constants
+	private static final Charset		UTF_8					= Charset.forName("UTF-8");
+	private static final long			NANOS_PER_MILLISECOND	= TimeUnit.MILLISECONDS.toNanos(1);
+
+	/**
+	 * @param text
+	 * @param escaped
+	 *            the characters to escape
+	 * @param builder
+	 *            the builder the text is appended to, with the characters escaped by a backslash
+	 */
+	private static void appendEscaped(final String text, final String escaped, final StringBuilder builder) {
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if (c == '\n') {
+				builder.append(' ');
+				continue;
+			}
+			if (escaped.indexOf(c) >= 0) {
+				builder.append('\\');
+			}
+			builder.append(c);
+		}
+	}
+
+	/**
+	 * @param tagSet
+	 * @param key
+	 * @param value
+	 */
+	private static void appendTag(final StringBuilder tagSet, final String key, final String value) {
+		if (value == null || value.isEmpty()) {
+			return;
+		}
+		tagSet.append(',');
+		appendEscaped(key, ", =", tagSet);
+		tagSet.append('=');
+		appendEscaped(value, ", =", tagSet);
+	}
+
+	// fields
+	private final InfluxSender			influxSender;
+	private final String				prefix;
+	private final String				tags;
+	private final StringBuilder			line					= new StringBuilder();
+	private long						timestamp;
+	private boolean						hasFields;
+
+	/**
+	 * @param metricRegistry
+	 * @param filter
+	 * @param rateUnit
+	 * @param durationUnit
+	 * @param baseName
+	 *            the base name of the metric group
+	 * @param infixName
+	 *            the infix of the metric group, null if it has none
+	 * @param groupTag
+	 *            the name of the tag holding the base name
+	 * @param infixTag
+	 *            the name of the tag holding the infix
+	 * @param influxSender
+	 *            the sender, closed when the reporter is stopped
+	 */
+	public InfluxReporter(final MetricRegistry metricRegistry, final MetricFilter filter, final TimeUnit rateUnit, final TimeUnit durationUnit, final String baseName, final String infixName, final String groupTag, final String infixTag, final InfluxSender influxSender) {
+		super(metricRegistry, "influx-reporter", filter, rateUnit, durationUnit);
+		this.influxSender = influxSender;
+		this.prefix = (infixName == null ? baseName : MetricRegistry.name(baseName, infixName)) + ".";
+		StringBuilder tagSet = new StringBuilder();
+		appendTag(tagSet, groupTag, baseName);
+		appendTag(tagSet, infixTag, infixName);
+		this.tags = tagSet.toString();
+	}
+
+	@Override
+	public void endPeriod() {
+		this.influxSender.endPeriod();
+	}
+
+	@Override
+	public synchronized void report(final SortedMap<String, Gauge> gauges, final SortedMap<String, Counter> counters, final SortedMap<String, Histogram> histograms, final SortedMap<String, Meter> meters, final SortedMap<String, Timer> timers) {
+		this.timestamp = System.currentTimeMillis() * NANOS_PER_MILLISECOND;
+		for (Entry<String, Gauge> entry : gauges.entrySet()) {
+			Object value = entry.getValue().getValue();
+			startLine(entry.getKey());
+			if (value instanceof Double || value instanceof Float) {
+				appendField("value", ((Number) value).doubleValue());
+			} else if (value instanceof Number) {
+				appendField("value", ((Number) value).longValue());
+			} else if (value instanceof Boolean) {
+				startField("value");
+				this.line.append(value);
+			}
+			endLine();
+		}
+		for (Entry<String, Counter> entry : counters.entrySet()) {
+			startLine(entry.getKey());
+			appendField("count", entry.getValue().getCount());
+			endLine();
+		}
+		for (Entry<String, Histogram> entry : histograms.entrySet()) {
+			Histogram histogram = entry.getValue();
+			startLine(entry.getKey());
+			appendField("count", histogram.getCount());
+			appendSnapshot(histogram.getSnapshot(), 1);
+			endLine();
+		}
+		for (Entry<String, Meter> entry : meters.entrySet()) {
+			startLine(entry.getKey());
+			appendMetered(entry.getValue());
+			endLine();
+		}
+		for (Entry<String, Timer> entry : timers.entrySet()) {
+			Timer timer = entry.getValue();
+			startLine(entry.getKey());
+			appendMetered(timer);
+			appendSnapshot(timer.getSnapshot(), convertDuration(1));
+			endLine();
+		}
+	}
+
+	@Override
+	public void stop() {
+		super.stop();
+		this.influxSender.close();
+	}
+
+	/**
+	 * Appends a float field, unless the value is not a number.
+	 *
+	 * @param key
+	 * @param value
+	 */
+	private void appendField(final String key, final double value) {
+		if (Double.isNaN(value) || Double.isInfinite(value)) {
+			return;
+		}
+		startField(key);
+		this.line.append(value);
+	}
+
+	/**
+	 * Appends an integer field.
+	 *
+	 * @param key
+	 * @param value
+	 */
+	private void appendField(final String key, final long value) {
+		startField(key);
+		this.line.append(value).append('i');
+	}
+
+	/**
+	 * @param metered
+	 */
+	private void appendMetered(final Metered metered) {
+		appendField("count", metered.getCount());
+		appendField("m1_rate", convertRate(metered.getOneMinuteRate()));
+		appendField("m5_rate", convertRate(metered.getFiveMinuteRate()));
+		appendField("m15_rate", convertRate(metered.getFifteenMinuteRate()));
+		appendField("mean_rate", convertRate(metered.getMeanRate()));
+	}
+
+	/**
+	 * @param snapshot
+	 * @param factor
+	 *            the factor converting the values of the snapshot
+	 */
+	private void appendSnapshot(final Snapshot snapshot, final double factor) {
+		appendField("min", snapshot.getMin() * factor);
+		appendField("max", snapshot.getMax() * factor);
+		appendField("mean", snapshot.getMean() * factor);
+		appendField("stddev", snapshot.getStdDev() * factor);
+		appendField("p50", snapshot.getMedian() * factor);
+		appendField("p75", snapshot.get75thPercentile() * factor);
+		appendField("p95", snapshot.get95thPercentile() * factor);
+		appendField("p98", snapshot.get98thPercentile() * factor);
+		appendField("p99", snapshot.get99thPercentile() * factor);
+		appendField("p999", snapshot.get999thPercentile() * factor);
+	}
+
+	/**
+	 * Adds the line to the period of the sender, unless it has no field.
+	 */
+	private void endLine() {
+		if (!this.hasFields) {
+			return;
+		}
+		this.line.append(' ').append(this.timestamp).append('\n');
+		this.influxSender.add(this.line.toString().getBytes(UTF_8));
+	}
+
+	/**
+	 * @param key
+	 */
+	private void startField(final String key) {
+		this.line.append(this.hasFields ? ',' : ' ');
+		appendEscaped(key, ", =", this.line);
+		this.line.append('=');
+		this.hasFields = true;
+	}
+
+	/**
+	 * @param name
+	 *            the name of the metric
+	 */
+	private void startLine(final String name) {
+		this.line.setLength(0);
+		this.hasFields = false;
+		appendEscaped(name.startsWith(this.prefix) ? name.substring(this.prefix.length()) : name, ", ", this.line);
+		this.line.append(this.tags);
+	}
+
+}
@@ -0,0 +1,409 @@
+// @formatter:off
+/**
+ * Copyright 2014 Initium.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+// @formatter:on
+package io.initium.camel.component.metrics;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.camel.spi.ExecutorServiceManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static io.initium.camel.component.metrics.MetricsComponent.MARKER;
+
+/**
+ * Writes lines of the InfluxDB line protocol to an HTTP(S) write endpoint without blocking the reporting thread; the
+ * UDP and TCP listeners of InfluxDB are not supported. The lines {@link #add(byte[])}ed in a period are gathered into
+ * one block, handed on by {@link #endPeriod()} or as soon as the next line would not fit in the batch size. Every
+ * {@link #write(byte[])} adds a block of lines to a bounded buffer, dropping the oldest block when it is full, and one
+ * writer thread per sender posts the buffered blocks, as many as fit in the batch size, as one optionally gzipped
+ * request. A request that fails, or is answered with 429 or a 5xx status, is posted again with exponential backoff
+ * before anything newer; one answered with another error status is dropped. Reporters of every metric group of a
+ * MetricsComponent writing to the same URL with the same settings share one instance. The writer threads come from
+ * the ExecutorServiceManager of the CamelContext, and the senders still open when the component stops are stopped
+ * with it.
+ *
+ * @author Steve Fosdal, <steve@initium.io>
+ * @author Hector Veiga Ortiz, <hector@initium.io>
+ * @version 1.4
+ * @since 2026-10-18
+ */
+public final class InfluxSender implements Runnable {
+
+	// logging
+	private static final String						SELF					= Thread.currentThread().getStackTrace()[1].getClassName();
+	private static final Logger						LOGGER					= LoggerFactory.getLogger(SELF);
+
+	// constants
+	static final long								MIN_BACKOFF_MILLIS		= 100;
+	static final long								MAX_BACKOFF_MILLIS		= TimeUnit.MINUTES.toMillis(1);
+	private static final int						TIMEOUT_MILLIS			= 5000;
+	private static final long						POLL_MILLIS				= 100;
+
+	/**
+	 * @param metricsComponent
+	 *            the component owning the sender
+	 * @param url
+	 *            the http or https write endpoint, e.g. http://localhost:8086/write?db=metrics
+	 * @param batchSize
+	 *            the most bytes of lines posted at once, before compression
+	 * @param bufferSize
+	 *            the most blocks of lines kept while the endpoint cannot be reached
+	 * @param gzip
+	 *            whether request bodies are gzipped
+	 * @return the sender, to be closed once it is no longer used
+	 * @throws IOException
+	 *             if the url is malformed or not an http or https url
+	 */
+	public static InfluxSender open(final MetricsComponent metricsComponent, final String url, final int batchSize, final int bufferSize, final boolean gzip) throws IOException {
+		return open(metricsComponent, url, batchSize, bufferSize, gzip, MIN_BACKOFF_MILLIS, MAX_BACKOFF_MILLIS);
+	}
+
+	/**
+	 * @param metricsComponent
+	 * @param url
+	 * @param batchSize
+	 * @param bufferSize
+	 * @param gzip
+	 * @param minBackoffMillis
+	 * @param maxBackoffMillis
+	 * @return
+	 * @throws IOException
+	 */
+	static InfluxSender open(final MetricsComponent metricsComponent, final String url, final int batchSize, final int bufferSize, final boolean gzip, final long minBackoffMillis, final long maxBackoffMillis) throws IOException {
+		if (batchSize < 1 || bufferSize < 1) {
+			throw new IllegalArgumentException("batchSize and bufferSize must be positive: " + batchSize + ", " + bufferSize);
+		}
+		URL writeUrl = new URL(url);
+		if (!"http".equals(writeUrl.getProtocol()) && !"https".equals(writeUrl.getProtocol())) {
+			throw new IOException("influx lines are only written over http or https: " + url);
+		}
+		String key = url + " batchSize=" + batchSize + ",bufferSize=" + bufferSize + ",gzip=" + gzip + ",backoff=" + minBackoffMillis + "-" + maxBackoffMillis;
+		Map<String, InfluxSender> influxSenders = metricsComponent.getInfluxSenders();
+		synchronized (influxSenders) {
+			InfluxSender influxSender = influxSenders.get(key);
+			if (influxSender == null) {
+				LOGGER.info(MARKER, "opening influx sender: {}", key);
+				influxSender = new InfluxSender(key, writeUrl, batchSize, bufferSize, gzip, minBackoffMillis, maxBackoffMillis, influxSenders, metricsComponent.getCamelContext().getExecutorServiceManager());
+				influxSender.start(metricsComponent);
+				influxSenders.put(key, influxSender);
+			}
+			influxSender.references++;
+			return influxSender;
+		}
+	}
+
+	/**
+	 * Stops the senders of a component that are still open, dropping what they still buffer.
+	 *
+	 * @param metricsComponent
+	 */
+	static void stopAll(final MetricsComponent metricsComponent) {
+		Map<String, InfluxSender> influxSenders = metricsComponent.getInfluxSenders();
+		List<InfluxSender> openSenders;
+		synchronized (influxSenders) {
+			openSenders = new ArrayList<InfluxSender>(influxSenders.values());
+			influxSenders.clear();
+		}
+		for (InfluxSender influxSender : openSenders) {
+			LOGGER.info(MARKER, "closing influx sender: {}", influxSender.key);
+			influxSender.stop();
+		}
+	}
+
+	// fields
+	private final String							key;
+	private final URL								url;
+	private final int								batchSize;
+	private final boolean							gzip;
+	private final long								minBackoffMillis;
+	private final long								maxBackoffMillis;
+	private final LinkedBlockingDeque<byte[]>		buffer;
+	private final AtomicLong						droppedCount			= new AtomicLong();
+	private final AtomicLong						rejectedCount			= new AtomicLong();
+	private final AtomicLong						requestCount			= new AtomicLong();
+	private final AtomicInteger						failures				= new AtomicInteger();
+	private final Map<String, InfluxSender>			influxSenders;
+	private final ExecutorServiceManager			executorServiceManager;
+	private ExecutorService							executorService;
+	private volatile boolean						isRunning				= true;
+	private int										references;
+	// a block taken from the buffer that did not fit in the last request
+	private byte[]									pendingBlock;
+	// the lines added in the current period
+	private final ByteArrayOutputStream				periodBlock;
+
+	/**
+	 * @param key
+	 * @param url
+	 * @param batchSize
+	 * @param bufferSize
+	 * @param gzip
+	 * @param minBackoffMillis
+	 * @param maxBackoffMillis
+	 * @param influxSenders
+	 *            the senders of the component, by url and settings
+	 * @param executorServiceManager
+	 */
+	private InfluxSender(final String key, final URL url, final int batchSize, final int bufferSize, final boolean gzip, final long minBackoffMillis, final long maxBackoffMillis, final Map<String, InfluxSender> influxSenders, final ExecutorServiceManager executorServiceManager) {
+		this.key = key;
+		this.url = url;
+		this.batchSize = batchSize;
+		this.gzip = gzip;
+		this.minBackoffMillis = minBackoffMillis;
+		this.maxBackoffMillis = maxBackoffMillis;
+		this.buffer = new LinkedBlockingDeque<byte[]>(bufferSize);
+		this.periodBlock = new ByteArrayOutputStream(Math.min(batchSize, 65536));
+		this.influxSenders = influxSenders;
+		this.executorServiceManager = executorServiceManager;
+	}
+
+	/**
+	 * Adds a line to the block of the period, writing the block first if the line does not fit in it.
+	 *
+	 * @param line
+	 *            a line ending with a newline
+	 */
+	public synchronized void add(final byte[] line) {
+		if (this.periodBlock.size() > 0 && this.periodBlock.size() + line.length > this.batchSize) {
+			endPeriod();
+		}
+		this.periodBlock.write(line, 0, line.length);
+	}
+
+	/**
+	 * Releases the sender; the last user stops the writer thread, dropping what is still buffered.
+	 */
+	public void close() {
+		synchronized (this.influxSenders) {
+			if (--this.references > 0 || this.influxSenders.get(this.key) != this) {
+				// still in use, or already stopped with the component
+				return;
+			}
+			this.influxSenders.remove(this.key);
+		}
+		LOGGER.info(MARKER, "closing influx sender: {}", this.key);
+		stop();
+	}
+
+	/**
+	 * Writes the lines added since the last block as one block, if any.
+	 */
+	public synchronized void endPeriod() {
+		if (this.periodBlock.size() > 0) {
+			write(this.periodBlock.toByteArray());
+			this.periodBlock.reset();
+		}
+	}
+
+	/**
+	 * @return the number of blocks dropped because the buffer was full
+	 */
+	public long getDroppedCount() {
+		return this.droppedCount.get();
+	}
+
+	/**
+	 * @return the number of requests that failed and were retried
+	 */
+	public int getFailures() {
+		return this.failures.get();
+	}
+
+	/**
+	 * @return the number of requests dropped because the endpoint rejected them
+	 */
+	public long getRejectedCount() {
+		return this.rejectedCount.get();
+	}
+
+	/**
+	 * @return the number of requests accepted by the endpoint
+	 */
+	public long getRequestCount() {
+		return this.requestCount.get();
+	}
+
+	/**
+	 * @return true once the writer thread has stopped
+	 */
+	boolean isStopped() {
+		return this.executorService.isTerminated();
+	}
+
+	@Override
+	public void run() {
+		byte[] body = null;
+		long backoffMillis = this.minBackoffMillis;
+		while (this.isRunning) {
+			try {
+				// a request that failed is posted again before anything newer
+				if (body == null) {
+					body = nextBody();
+					if (body == null) {
+						continue;
+					}
+				}
+				int status = post(body);
+				if (status == 429 || status >= 500) {
+					throw new IOException("HTTP status " + status);
+				}
+				if (status / 100 == 2) {
+					this.requestCount.incrementAndGet();
+				} else {
+					this.rejectedCount.incrementAndGet();
+					LOGGER.warn(MARKER, "influx at {} rejected {} bytes of lines with HTTP status {}", this.url, body.length, status);
+				}
+				body = null;
+				backoffMillis = this.minBackoffMillis;
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			} catch (IOException e) {
+				this.failures.incrementAndGet();
+				LOGGER.warn(MARKER, "unable to write to influx at {}, retrying in {} ms: {}", this.url, backoffMillis, e.toString());
+				try {
+					Thread.sleep(backoffMillis);
+				} catch (InterruptedException e1) {
+					Thread.currentThread().interrupt();
+					break;
+				}
+				backoffMillis = Math.min(backoffMillis * 2, this.maxBackoffMillis);
+			}
+		}
+	}
+
+	/**
+	 * Buffers a block of lines, each ending with a newline, to be posted.
+	 *
+	 * @param lines
+	 */
+	public void write(final byte[] lines) {
+		if (!this.isRunning) {
+			return;
+		}
+		while (!this.buffer.offerLast(lines)) {
+			if (this.buffer.pollFirst() != null) {
+				this.droppedCount.incrementAndGet();
+			}
+		}
+	}
+
+	/**
+	 * @return the body of the next request, the buffered blocks that fit in the batch size, or null if none was
+	 *         buffered in time
+	 * @throws InterruptedException
+	 * @throws IOException
+	 */
+	private byte[] nextBody() throws InterruptedException, IOException {
+		byte[] block = this.pendingBlock;
+		this.pendingBlock = null;
+		if (block == null) {
+			block = this.buffer.pollFirst(POLL_MILLIS, TimeUnit.MILLISECONDS);
+			if (block == null) {
+				return null;
+			}
+		}
+		ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream(Math.min(this.batchSize, block.length * 2));
+		OutputStream outputStream = this.gzip ? new GZIPOutputStream(byteArrayOutputStream) : byteArrayOutputStream;
+		// the first block is sent even if it alone exceeds the batch size
+		int size = block.length;
+		outputStream.write(block);
+		for (block = this.buffer.pollFirst(); block != null; block = this.buffer.pollFirst()) {
+			if (size + block.length > this.batchSize) {
+				this.pendingBlock = block;
+				break;
+			}
+			size += block.length;
+			outputStream.write(block);
+		}
+		outputStream.close();
+		return byteArrayOutputStream.toByteArray();
+	}
+
+	/**
+	 * @param owner
+	 *            the source of the writer thread
+	 */
+	private void start(final Object owner) {
+		this.executorService = this.executorServiceManager.newSingleThreadExecutor(owner, "MetricsInfluxSender[" + this.url + "]");
+		this.executorService.execute(this);
+	}
+
+	/**
+	 *
+	 */
+	private void stop() {
+		this.isRunning = false;
+		this.executorServiceManager.shutdownNow(this.executorService);
+		try {
+			this.executorService.awaitTermination(1, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * @param body
+	 * @return the status of the response
+	 * @throws IOException
+	 */
+	private int post(final byte[] body) throws IOException {
+		HttpURLConnection connection = (HttpURLConnection) this.url.openConnection();
+		try {
+			connection.setConnectTimeout(TIMEOUT_MILLIS);
+			connection.setReadTimeout(TIMEOUT_MILLIS);
+			connection.setRequestMethod("POST");
+			connection.setDoOutput(true);
+			connection.setFixedLengthStreamingMode(body.length);
+			connection.setRequestProperty("Content-Type", "text/plain; charset=utf-8");
+			if (this.gzip) {
+				connection.setRequestProperty("Content-Encoding", "gzip");
+			}
+			OutputStream outputStream = connection.getOutputStream();
+			outputStream.write(body);
+			outputStream.close();
+			int status = connection.getResponseCode();
+			// read the response so that the connection can be kept alive
+			InputStream inputStream = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+			if (inputStream != null) {
+				byte[] discarded = new byte[512];
+				while (inputStream.read(discarded) >= 0) {
+					// discard
+				}
+				inputStream.close();
+			}
+			return status;
+		} catch (IOException e) {
+			connection.disconnect();
+			throw e;
+		}
+	}
+
+}
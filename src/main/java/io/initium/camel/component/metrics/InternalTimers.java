@@ -0,0 +1,143 @@
+// @formatter:off
+/**
+ * Copyright 2014 Initium.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+// @formatter:on
+package io.initium.camel.component.metrics;
+
+import java.util.concurrent.TimeUnit;
+
+import com.codahale.metrics.Timer;
+
+import io.initium.camel.component.metrics.MetricsEndpoint.TimingAction;
+
+/**
+ * Measures the component's own cost for one MetricsEndpoint, enabled with enableInternalTimer=true. The time spent
+ * in the producer is broken down into phases, each recorded by its own Timer named
+ * metricName.internal.timingAction.phase. Phases are measured as laps between consecutive System.nanoTime() calls,
+ * so no Timer.Context is created.
+ *
+ * @author Steve Fosdal, <steve@initium.io>
+ * @author Hector Veiga Ortiz, <hector@initium.io>
+ * @version 1.4
+ * @since 2026-10-18
+ */
+final class InternalTimers {
+
+	/**
+	 * The measured phases of MetricsProducer.process.
+	 */
+	enum Phase {
+		LOOKUP, // resolving metric groups
+		EVALUATE, // evaluating infix and custom metric expressions
+		UPDATE, // updating the metrics, or evaluating and publishing them if async=true
+		TIMING, // starting and stopping timers
+		TOTAL; // the whole exchange
+	}
+
+	// constants
+	static final String						NAMESPACE			= "internal";
+
+	// fields
+	private final TimingAction				timingAction;
+	private final Timer[]					timers				= new Timer[Phase.values().length];
+	private final ThreadLocal<long[]>		valueBuffers		= new ThreadLocal<long[]>();
+	private volatile boolean				isRegistered		= false;
+
+	/**
+	 * @param timingAction
+	 *            the timing action of the endpoint, which decides the phases that are measured
+	 */
+	InternalTimers(final TimingAction timingAction) {
+		this.timingAction = timingAction;
+	}
+
+	/**
+	 * @param phase
+	 * @param timingAction
+	 * @return
+	 */
+	private static boolean isMeasured(final Phase phase, final TimingAction timingAction) {
+		switch (phase) {
+			case EVALUATE:
+			case UPDATE:
+				return timingAction != TimingAction.STOP;
+			case TIMING:
+				return timingAction != TimingAction.NOOP;
+			default:
+				return true;
+		}
+	}
+
+	/**
+	 * @param phase
+	 * @return the timer of the phase, null if it is not measured
+	 */
+	Timer getTimer(final Phase phase) {
+		return this.timers[phase.ordinal()];
+	}
+
+	/**
+	 * @param size
+	 * @return a buffer of at least size values, reused by the calling thread
+	 */
+	long[] getValueBuffer(final int size) {
+		long[] valueBuffer = this.valueBuffers.get();
+		if (valueBuffer == null || valueBuffer.length < size) {
+			valueBuffer = new long[size];
+			this.valueBuffers.set(valueBuffer);
+		}
+		return valueBuffer;
+	}
+
+	/**
+	 * Registers the timers with the base metric group of the endpoint, so that its reporters include them. Nothing is
+	 * measured before. Endpoints with the same name and timing action share their timers.
+	 *
+	 * @param metricGroup
+	 */
+	void registerIn(final MetricGroup metricGroup) {
+		if (this.isRegistered) {
+			return;
+		}
+		synchronized (this) {
+			if (!this.isRegistered) {
+				String prefix = NAMESPACE + '.' + this.timingAction.name().toLowerCase() + '.';
+				for (Phase phase : Phase.values()) {
+					if (isMeasured(phase, this.timingAction)) {
+						this.timers[phase.ordinal()] = metricGroup.registerAdditionalMetric(prefix + phase.name().toLowerCase(), new Timer());
+					}
+				}
+				this.isRegistered = true;
+			}
+		}
+	}
+
+	/**
+	 * Records the time since the previous lap.
+	 *
+	 * @param phase
+	 * @param since
+	 *            the System.nanoTime() of the previous lap
+	 * @return the System.nanoTime() of this lap
+	 */
+	long lap(final Phase phase, final long since) {
+		long now = System.nanoTime();
+		Timer timer = this.timers[phase.ordinal()];
+		if (timer != null) {
+			timer.update(now - since, TimeUnit.NANOSECONDS);
+		}
+		return now;
+	}
+
+}
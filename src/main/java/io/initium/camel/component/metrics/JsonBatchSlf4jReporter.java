@@ -0,0 +1,264 @@
+// @formatter:off
+/**
+ * Copyright 2014 Initium.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+// @formatter:on
+package io.initium.camel.component.metrics;
+
+import java.util.Map.Entry;
+import java.util.SortedMap;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.Marker;
+
+import com.codahale.metrics.Clock;
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Metered;
+import com.codahale.metrics.MetricFilter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.ScheduledReporter;
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.Timer;
+
+/**
+ * Logs each report as a single event whose message is one JSON object:
+ * {"t":millis,"rateUnit":...,"durationUnit":...,"gauges":{name:value},"counters":{name:count},"histograms":{name:{...}},"meters":{name:{...}},"timers":{name:{...}}}.
+ * Types without metrics are left out, and nothing is logged when there is no metric at all. The JSON is written
+ * directly into a StringBuilder kept by the reporter.
+ *
+ * @author Steve Fosdal, <steve@initium.io>
+ * @author Hector Veiga Ortiz, <hector@initium.io>
+ * @version 1.4
+ * @since 2026-10-18
+ */
+@SuppressWarnings("rawtypes")
+public final class JsonBatchSlf4jReporter extends ScheduledReporter {
+
+	// constants
+	private static final int		INITIAL_CAPACITY	= 4096;
+	private static final char[]		HEX_DIGITS			= "0123456789abcdef".toCharArray();
+
+	// fields
+	private final Logger			logger;
+	private final Marker			marker;
+	private final Clock				clock;
+	private final String			rateUnit;
+	private final String			durationUnit;
+	private final StringBuilder		builder				= new StringBuilder(INITIAL_CAPACITY);
+
+	/**
+	 * @param metricRegistry
+	 * @param filter
+	 * @param rateUnit
+	 * @param durationUnit
+	 * @param logger
+	 * @param marker
+	 * @param clock
+	 */
+	public JsonBatchSlf4jReporter(final MetricRegistry metricRegistry, final MetricFilter filter, final TimeUnit rateUnit, final TimeUnit durationUnit, final Logger logger, final Marker marker, final Clock clock) {
+		super(metricRegistry, "json-batch-slf4j-reporter", filter, rateUnit, durationUnit);
+		this.logger = logger;
+		this.marker = marker;
+		this.clock = clock;
+		this.rateUnit = getRateUnit();
+		this.durationUnit = getDurationUnit();
+	}
+
+	@Override
+	public synchronized void report(final SortedMap<String, Gauge> gauges, final SortedMap<String, Counter> counters, final SortedMap<String, Histogram> histograms, final SortedMap<String, Meter> meters, final SortedMap<String, Timer> timers) {
+		if (gauges.isEmpty() && counters.isEmpty() && histograms.isEmpty() && meters.isEmpty() && timers.isEmpty()) {
+			return;
+		}
+		StringBuilder json = this.builder;
+		json.setLength(0);
+		json.append("{\"t\":").append(this.clock.getTime());
+		json.append(",\"rateUnit\":");
+		appendString(json, "events/" + this.rateUnit);
+		json.append(",\"durationUnit\":");
+		appendString(json, this.durationUnit);
+		if (!gauges.isEmpty()) {
+			json.append(",\"gauges\":{");
+			boolean isFirst = true;
+			for (Entry<String, Gauge> entry : gauges.entrySet()) {
+				isFirst = appendName(json, entry.getKey(), isFirst);
+				appendValue(json, entry.getValue().getValue());
+			}
+			json.append('}');
+		}
+		if (!counters.isEmpty()) {
+			json.append(",\"counters\":{");
+			boolean isFirst = true;
+			for (Entry<String, Counter> entry : counters.entrySet()) {
+				isFirst = appendName(json, entry.getKey(), isFirst);
+				json.append(entry.getValue().getCount());
+			}
+			json.append('}');
+		}
+		if (!histograms.isEmpty()) {
+			json.append(",\"histograms\":{");
+			boolean isFirst = true;
+			for (Entry<String, Histogram> entry : histograms.entrySet()) {
+				isFirst = appendName(json, entry.getKey(), isFirst);
+				Histogram histogram = entry.getValue();
+				json.append("{\"count\":").append(histogram.getCount());
+				appendSnapshot(json, histogram.getSnapshot(), 1);
+				json.append('}');
+			}
+			json.append('}');
+		}
+		if (!meters.isEmpty()) {
+			json.append(",\"meters\":{");
+			boolean isFirst = true;
+			for (Entry<String, Meter> entry : meters.entrySet()) {
+				isFirst = appendName(json, entry.getKey(), isFirst);
+				appendMetered(json, entry.getValue());
+				json.append('}');
+			}
+			json.append('}');
+		}
+		if (!timers.isEmpty()) {
+			json.append(",\"timers\":{");
+			boolean isFirst = true;
+			for (Entry<String, Timer> entry : timers.entrySet()) {
+				isFirst = appendName(json, entry.getKey(), isFirst);
+				Timer timer = entry.getValue();
+				appendMetered(json, timer);
+				appendSnapshot(json, timer.getSnapshot(), convertDuration(1));
+				json.append('}');
+			}
+			json.append('}');
+		}
+		json.append('}');
+		this.logger.info(this.marker, json.toString());
+		// do not keep the buffer of an unusually large report
+		if (json.capacity() > INITIAL_CAPACITY * 256) {
+			json.setLength(0);
+			json.trimToSize();
+		}
+	}
+
+	/**
+	 * @param json
+	 * @param value
+	 */
+	private static void appendDouble(final StringBuilder json, final double value) {
+		if (Double.isNaN(value) || Double.isInfinite(value)) {
+			json.append("null");
+		} else {
+			json.append(value);
+		}
+	}
+
+	/**
+	 * @param json
+	 * @param name
+	 * @param isFirst
+	 * @return false, the value of isFirst for the next name
+	 */
+	private static boolean appendName(final StringBuilder json, final String name, final boolean isFirst) {
+		if (!isFirst) {
+			json.append(',');
+		}
+		appendString(json, name);
+		json.append(':');
+		return false;
+	}
+
+	/**
+	 * @param json
+	 * @param value
+	 */
+	private static void appendString(final StringBuilder json, final String value) {
+		json.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '"' || c == '\\') {
+				json.append('\\').append(c);
+			} else if (c < 0x20) {
+				json.append("\\u00").append(HEX_DIGITS[c >> 4]).append(HEX_DIGITS[c & 0xf]);
+			} else {
+				json.append(c);
+			}
+		}
+		json.append('"');
+	}
+
+	/**
+	 * @param json
+	 * @param value
+	 *            the value of a gauge
+	 */
+	private static void appendValue(final StringBuilder json, final Object value) {
+		if (value == null) {
+			json.append("null");
+		} else if (value instanceof Double || value instanceof Float) {
+			appendDouble(json, ((Number) value).doubleValue());
+		} else if (value instanceof Number || value instanceof Boolean) {
+			json.append(value);
+		} else {
+			appendString(json, value.toString());
+		}
+	}
+
+	/**
+	 * Opens the object of the metric, left open for more fields.
+	 *
+	 * @param json
+	 * @param metered
+	 */
+	private void appendMetered(final StringBuilder json, final Metered metered) {
+		json.append("{\"count\":").append(metered.getCount());
+		json.append(",\"mean_rate\":");
+		appendDouble(json, convertRate(metered.getMeanRate()));
+		json.append(",\"m1_rate\":");
+		appendDouble(json, convertRate(metered.getOneMinuteRate()));
+		json.append(",\"m5_rate\":");
+		appendDouble(json, convertRate(metered.getFiveMinuteRate()));
+		json.append(",\"m15_rate\":");
+		appendDouble(json, convertRate(metered.getFifteenMinuteRate()));
+	}
+
+	/**
+	 * @param json
+	 * @param snapshot
+	 * @param factor
+	 *            the factor converting the values of the snapshot
+	 */
+	private void appendSnapshot(final StringBuilder json, final Snapshot snapshot, final double factor) {
+		json.append(",\"min\":");
+		appendDouble(json, snapshot.getMin() * factor);
+		json.append(",\"max\":");
+		appendDouble(json, snapshot.getMax() * factor);
+		json.append(",\"mean\":");
+		appendDouble(json, snapshot.getMean() * factor);
+		json.append(",\"stddev\":");
+		appendDouble(json, snapshot.getStdDev() * factor);
+		json.append(",\"p50\":");
+		appendDouble(json, snapshot.getMedian() * factor);
+		json.append(",\"p75\":");
+		appendDouble(json, snapshot.get75thPercentile() * factor);
+		json.append(",\"p95\":");
+		appendDouble(json, snapshot.get95thPercentile() * factor);
+		json.append(",\"p98\":");
+		appendDouble(json, snapshot.get98thPercentile() * factor);
+		json.append(",\"p99\":");
+		appendDouble(json, snapshot.get99thPercentile() * factor);
+		json.append(",\"p999\":");
+		appendDouble(json, snapshot.get999thPercentile() * factor);
+	}
+
+}
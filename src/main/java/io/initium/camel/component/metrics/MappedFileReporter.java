@@ -0,0 +1,300 @@
+// @formatter:off
+/**
+ * Copyright 2014 Initium.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+// @formatter:on
+package io.initium.camel.component.metrics;
+
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.SortedMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Metered;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricFilter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.MetricRegistryListener;
+import com.codahale.metrics.ScheduledReporter;
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.Timer;
+
+/**
+ * Reports into the slots of a {@link MappedMetricsFile}. A slot is allocated, and the name written, when a metric is
+ * registered in the reporter's registry, and freed when it is removed; each report only writes values.
+ *
+ * @author Steve Fosdal, <steve@initium.io>
+ * @author Hector Veiga Ortiz, <hector@initium.io>
+ * @version 1.4
+ * @since 2026-10-18
+ */
+@SuppressWarnings("rawtypes")
+public final class MappedFileReporter extends ScheduledReporter {
+
+	/**
+	 * Allocates and frees the slots of the metrics passing the filter.
+	 */
+	private final class SlotAllocator extends MetricRegistryListener.Base {
+
+		@Override
+		public void onCounterAdded(final String name, final Counter counter) {
+			allocate(name, counter, MappedMetricsFile.TYPE_COUNTER);
+		}
+
+		@Override
+		public void onCounterRemoved(final String name) {
+			free(name);
+		}
+
+		@Override
+		public void onGaugeAdded(final String name, final Gauge<?> gauge) {
+			allocate(name, gauge, MappedMetricsFile.TYPE_GAUGE);
+		}
+
+		@Override
+		public void onGaugeRemoved(final String name) {
+			free(name);
+		}
+
+		@Override
+		public void onHistogramAdded(final String name, final Histogram histogram) {
+			allocate(name, histogram, MappedMetricsFile.TYPE_HISTOGRAM);
+		}
+
+		@Override
+		public void onHistogramRemoved(final String name) {
+			free(name);
+		}
+
+		@Override
+		public void onMeterAdded(final String name, final Meter meter) {
+			allocate(name, meter, MappedMetricsFile.TYPE_METER);
+		}
+
+		@Override
+		public void onMeterRemoved(final String name) {
+			free(name);
+		}
+
+		@Override
+		public void onTimerAdded(final String name, final Timer timer) {
+			allocate(name, timer, MappedMetricsFile.TYPE_TIMER);
+		}
+
+		@Override
+		public void onTimerRemoved(final String name) {
+			free(name);
+		}
+	}
+
+	// fields
+	private final MetricRegistry		metricRegistry;
+	private final MetricFilter			filter;
+	private final MappedMetricsFile		mappedMetricsFile;
+	private final Map<String, Long>		leases			= new ConcurrentHashMap<String, Long>();
+	private final SlotAllocator			slotAllocator	= new SlotAllocator();
+
+	/**
+	 * @param metricRegistry
+	 * @param filter
+	 * @param rateUnit
+	 * @param durationUnit
+	 * @param mappedMetricsFile
+	 *            the file to write to, closed when the reporter is stopped
+	 */
+	public MappedFileReporter(final MetricRegistry metricRegistry, final MetricFilter filter, final TimeUnit rateUnit, final TimeUnit durationUnit, final MappedMetricsFile mappedMetricsFile) {
+		super(metricRegistry, "mapped-file-reporter", filter, rateUnit, durationUnit);
+		this.metricRegistry = metricRegistry;
+		this.filter = filter;
+		this.mappedMetricsFile = mappedMetricsFile;
+		// also called for the metrics already registered
+		metricRegistry.addListener(this.slotAllocator);
+	}
+
+	/**
+	 * @param name
+	 * @return the slot of the metric, -1 if it has none
+	 */
+	public int getSlot(final String name) {
+		long lease = getLease(name);
+		return lease < 0 ? -1 : MappedMetricsFile.slot(lease);
+	}
+
+	@Override
+	public void report(final SortedMap<String, Gauge> gauges, final SortedMap<String, Counter> counters, final SortedMap<String, Histogram> histograms, final SortedMap<String, Meter> meters, final SortedMap<String, Timer> timers) {
+		for (Entry<String, Gauge> entry : gauges.entrySet()) {
+			long lease = getLease(entry.getKey());
+			if (lease >= 0) {
+				int slot = MappedMetricsFile.slot(lease);
+				Object value = entry.getValue().getValue();
+				if (!this.mappedMetricsFile.beginWrite(lease)) {
+					// freed since it was looked up
+					continue;
+				}
+				try {
+					this.mappedMetricsFile.putDouble(slot, MappedMetricsFile.VALUE, value instanceof Number ? ((Number) value).doubleValue() : Double.NaN);
+				} finally {
+					this.mappedMetricsFile.endWrite(lease);
+				}
+			}
+		}
+		for (Entry<String, Counter> entry : counters.entrySet()) {
+			long lease = getLease(entry.getKey());
+			if (lease >= 0) {
+				int slot = MappedMetricsFile.slot(lease);
+				if (!this.mappedMetricsFile.beginWrite(lease)) {
+					// freed since it was looked up
+					continue;
+				}
+				try {
+					this.mappedMetricsFile.putLong(slot, MappedMetricsFile.COUNT, entry.getValue().getCount());
+				} finally {
+					this.mappedMetricsFile.endWrite(lease);
+				}
+			}
+		}
+		for (Entry<String, Histogram> entry : histograms.entrySet()) {
+			long lease = getLease(entry.getKey());
+			if (lease >= 0) {
+				int slot = MappedMetricsFile.slot(lease);
+				Histogram histogram = entry.getValue();
+				Snapshot snapshot = histogram.getSnapshot();
+				if (!this.mappedMetricsFile.beginWrite(lease)) {
+					// freed since it was looked up
+					continue;
+				}
+				try {
+					this.mappedMetricsFile.putLong(slot, MappedMetricsFile.COUNT, histogram.getCount());
+					putSnapshot(slot, snapshot, 1);
+				} finally {
+					this.mappedMetricsFile.endWrite(lease);
+				}
+			}
+		}
+		for (Entry<String, Meter> entry : meters.entrySet()) {
+			long lease = getLease(entry.getKey());
+			if (lease >= 0) {
+				int slot = MappedMetricsFile.slot(lease);
+				if (!this.mappedMetricsFile.beginWrite(lease)) {
+					// freed since it was looked up
+					continue;
+				}
+				try {
+					putMetered(slot, entry.getValue());
+				} finally {
+					this.mappedMetricsFile.endWrite(lease);
+				}
+			}
+		}
+		for (Entry<String, Timer> entry : timers.entrySet()) {
+			long lease = getLease(entry.getKey());
+			if (lease >= 0) {
+				int slot = MappedMetricsFile.slot(lease);
+				Timer timer = entry.getValue();
+				Snapshot snapshot = timer.getSnapshot();
+				if (!this.mappedMetricsFile.beginWrite(lease)) {
+					// freed since it was looked up
+					continue;
+				}
+				try {
+					putMetered(slot, timer);
+					putSnapshot(slot, snapshot, convertDuration(1));
+				} finally {
+					this.mappedMetricsFile.endWrite(lease);
+				}
+			}
+		}
+		this.mappedMetricsFile.touch(System.currentTimeMillis());
+	}
+
+	@Override
+	public void stop() {
+		super.stop();
+		this.metricRegistry.removeListener(this.slotAllocator);
+		for (Long lease : this.leases.values()) {
+			this.mappedMetricsFile.free(lease);
+		}
+		this.leases.clear();
+		this.mappedMetricsFile.close();
+	}
+
+	/**
+	 * @param name
+	 * @param metric
+	 * @param type
+	 */
+	private void allocate(final String name, final Metric metric, final byte type) {
+		if (!this.filter.matches(name, metric) || this.leases.containsKey(name)) {
+			return;
+		}
+		long lease = this.mappedMetricsFile.allocate(name, type);
+		if (lease >= 0) {
+			this.leases.put(name, lease);
+		}
+	}
+
+	/**
+	 * @param name
+	 */
+	private void free(final String name) {
+		Long lease = this.leases.remove(name);
+		if (lease != null) {
+			this.mappedMetricsFile.free(lease);
+		}
+	}
+
+	/**
+	 * @param name
+	 * @return the lease on the slot of the metric, -1 if it has none
+	 */
+	private long getLease(final String name) {
+		Long lease = this.leases.get(name);
+		return lease == null ? -1 : lease;
+	}
+
+	/**
+	 * @param slot
+	 * @param metered
+	 */
+	private void putMetered(final int slot, final Metered metered) {
+		this.mappedMetricsFile.putLong(slot, MappedMetricsFile.COUNT, metered.getCount());
+		this.mappedMetricsFile.putDouble(slot, MappedMetricsFile.M1_RATE, convertRate(metered.getOneMinuteRate()));
+		this.mappedMetricsFile.putDouble(slot, MappedMetricsFile.M5_RATE, convertRate(metered.getFiveMinuteRate()));
+		this.mappedMetricsFile.putDouble(slot, MappedMetricsFile.M15_RATE, convertRate(metered.getFifteenMinuteRate()));
+		this.mappedMetricsFile.putDouble(slot, MappedMetricsFile.MEAN_RATE, convertRate(metered.getMeanRate()));
+	}
+
+	/**
+	 * @param slot
+	 * @param snapshot
+	 * @param factor
+	 *            the factor converting the values of the snapshot
+	 */
+	private void putSnapshot(final int slot, final Snapshot snapshot, final double factor) {
+		this.mappedMetricsFile.putDouble(slot, MappedMetricsFile.MIN, snapshot.getMin() * factor);
+		this.mappedMetricsFile.putDouble(slot, MappedMetricsFile.MAX, snapshot.getMax() * factor);
+		this.mappedMetricsFile.putDouble(slot, MappedMetricsFile.MEAN, snapshot.getMean() * factor);
+		this.mappedMetricsFile.putDouble(slot, MappedMetricsFile.STDDEV, snapshot.getStdDev() * factor);
+		this.mappedMetricsFile.putDouble(slot, MappedMetricsFile.P50, snapshot.getMedian() * factor);
+		this.mappedMetricsFile.putDouble(slot, MappedMetricsFile.P75, snapshot.get75thPercentile() * factor);
+		this.mappedMetricsFile.putDouble(slot, MappedMetricsFile.P95, snapshot.get95thPercentile() * factor);
+		this.mappedMetricsFile.putDouble(slot, MappedMetricsFile.P99, snapshot.get99thPercentile() * factor);
+		this.mappedMetricsFile.putDouble(slot, MappedMetricsFile.P999, snapshot.get999thPercentile() * factor);
+	}
+
+}
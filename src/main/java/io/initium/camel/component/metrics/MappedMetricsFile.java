@@ -0,0 +1,429 @@
+// @formatter:off
+/**
+ * Copyright 2014 Initium.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+// @formatter:on
+package io.initium.camel.component.metrics;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static io.initium.camel.component.metrics.MetricsComponent.MARKER;
+
+/**
+ * A memory-mapped file of fixed-offset metric slots, for other processes to read current values without sockets or
+ * serialization. The file, all numbers big-endian, is:
+ * <ul>
+ * <li>a 64 byte header: the magic int 0x434d4d46 ("CMMF"), the int version 1, the int capacity in slots, the int size
+ * of a name entry, the int size of a value entry, the int number of slots ever used, and at offset 24 the long time in
+ * milliseconds of the last update;</li>
+ * <li>the names region, one name entry per slot: the byte type (0 for a free slot, see the TYPE constants), a reserved
+ * byte, the unsigned short length of the name and the name in UTF-8;</li>
+ * <li>the values region, one value entry per slot: the long sequence, odd while the values are being written, then the
+ * long count and the doubles value, min, max, mean, stddev, p50, p75, p95, p99, p999, m1_rate, m5_rate, m15_rate and
+ * mean_rate.</li>
+ * </ul>
+ * A reader copies the values of a slot between two reads of an even, unchanged sequence. Names are written when a slot
+ * is allocated, values by the reporters. Reporters of every metric group using the same path share one instance.
+ * <p>
+ * Allocating a slot returns a lease on it, which writing its values and freeing it require: once the slot is freed,
+ * and possibly allocated to another metric, {@link #beginWrite(long)} refuses the old lease, so a report that looked up
+ * a slot before its metric was removed never writes under the name of the next one. Writers of a slot, allocating
+ * and freeing it included, are serialized by a lock striped over the slots. A MappedByteBuffer has no ordered or volatile
+ * puts, so every sequence is mirrored in an AtomicLongArray: the odd sequence is put into the mapping before its
+ * volatile write to the mirror, and the even sequence after it, once the values have been put. A reader in another
+ * process relies on the stores to the mapping becoming visible in that order, which holds because HotSpot follows
+ * every volatile write with a full fence, and needs a load fence of its own between reading the sequence and the
+ * values, e.g. a volatile read in Java.
+ *
+ * @author Steve Fosdal, <steve@initium.io>
+ * @author Hector Veiga Ortiz, <hector@initium.io>
+ * @version 1.4
+ * @since 2026-10-18
+ */
+public final class MappedMetricsFile {
+
+	// logging
+	private static final String								SELF				= Thread.currentThread().getStackTrace()[1].getClassName();
+	private static final Logger								LOGGER				= LoggerFactory.getLogger(SELF);
+
+	// constants
+	public static final int									MAGIC				= 0x434d4d46;
+	public static final int									VERSION				= 1;
+	public static final int									HEADER_SIZE			= 64;
+	public static final int									VALUE_SIZE			= 128;
+	public static final int									LAST_UPDATE_OFFSET	= 24;
+	public static final byte								TYPE_FREE			= 0;
+	public static final byte								TYPE_GAUGE			= 1;
+	public static final byte								TYPE_COUNTER		= 2;
+	public static final byte								TYPE_HISTOGRAM		= 3;
+	public static final byte								TYPE_METER			= 4;
+	public static final byte								TYPE_TIMER			= 5;
+	// offsets within a value entry
+	public static final int									SEQUENCE			= 0;
+	public static final int									COUNT				= 8;
+	public static final int									VALUE				= 16;
+	public static final int									MIN					= 24;
+	public static final int									MAX					= 32;
+	public static final int									MEAN				= 40;
+	public static final int									STDDEV				= 48;
+	public static final int									P50					= 56;
+	public static final int									P75					= 64;
+	public static final int									P95					= 72;
+	public static final int									P99					= 80;
+	public static final int									P999				= 88;
+	public static final int									M1_RATE				= 96;
+	public static final int									M5_RATE				= 104;
+	public static final int									M15_RATE			= 112;
+	public static final int									MEAN_RATE			= 120;
+	private static final int								USED_OFFSET			= 20;
+	private static final int								NAME_HEADER_SIZE	= 4;
+	private static final Charset							UTF_8				= Charset.forName("UTF-8");
+	private static final int								WRITE_LOCKS			= 64;
+
+	/**
+	 * Opens the file, replacing its content, or returns the instance the component already has open for the path.
+	 *
+	 * @param metricsComponent
+	 * @param file
+	 * @param capacity
+	 *            the number of slots
+	 * @param nameSize
+	 *            the size of a name entry, names longer than nameSize - 4 bytes get no slot
+	 * @return the file, to be closed once it is no longer used
+	 * @throws IOException
+	 *             if the file cannot be mapped, or is already open with another capacity or name size
+	 */
+	public static MappedMetricsFile open(final MetricsComponent metricsComponent, final File file, final int capacity, final int nameSize) throws IOException {
+		if (capacity < 1 || nameSize <= NAME_HEADER_SIZE || nameSize - NAME_HEADER_SIZE > 0xffff) {
+			throw new IllegalArgumentException("invalid capacity or name size: " + capacity + ", " + nameSize);
+		}
+		String key = file.getCanonicalPath();
+		Map<String, MappedMetricsFile> mappedMetricsFiles = metricsComponent.getMappedMetricsFiles();
+		synchronized (mappedMetricsFiles) {
+			MappedMetricsFile mappedMetricsFile = mappedMetricsFiles.get(key);
+			if (mappedMetricsFile == null) {
+				LOGGER.info(MARKER, "opening mapped metrics file: {}", key);
+				mappedMetricsFile = new MappedMetricsFile(key, new File(key), capacity, nameSize, mappedMetricsFiles);
+				mappedMetricsFiles.put(key, mappedMetricsFile);
+			} else if (mappedMetricsFile.capacity != capacity || mappedMetricsFile.nameSize != nameSize) {
+				throw new IOException(key + " is already open with a capacity of " + mappedMetricsFile.capacity + " and a name size of " + mappedMetricsFile.nameSize + ", not " + capacity + " and " + nameSize);
+			}
+			mappedMetricsFile.references++;
+			return mappedMetricsFile;
+		}
+	}
+
+	/**
+	 * Flushes the files of a component that are still open.
+	 *
+	 * @param metricsComponent
+	 */
+	static void stopAll(final MetricsComponent metricsComponent) {
+		Map<String, MappedMetricsFile> mappedMetricsFiles = metricsComponent.getMappedMetricsFiles();
+		List<MappedMetricsFile> openFiles;
+		synchronized (mappedMetricsFiles) {
+			openFiles = new ArrayList<MappedMetricsFile>(mappedMetricsFiles.values());
+			mappedMetricsFiles.clear();
+		}
+		for (MappedMetricsFile mappedMetricsFile : openFiles) {
+			LOGGER.info(MARKER, "closing mapped metrics file: {}", mappedMetricsFile.key);
+			mappedMetricsFile.buffer.force();
+		}
+	}
+
+	// fields
+	private final String							key;
+	private final File								file;
+	private final int								capacity;
+	private final int								nameSize;
+	private final int								valuesOffset;
+	private final MappedByteBuffer					buffer;
+	private final AtomicLongArray					sequences;
+	// the generation of each slot, incremented when it is allocated or freed, guarded by its write lock
+	private final int[]								generations;
+	private final ReentrantLock[]					writeLocks;
+	private final Deque<Integer>					freeSlots	= new ArrayDeque<Integer>();
+	private final Map<String, MappedMetricsFile>	mappedMetricsFiles;
+	private int										used;
+	// guarded by mappedMetricsFiles
+	private int										references;
+
+	/**
+	 * @param key
+	 * @param file
+	 * @param capacity
+	 * @param nameSize
+	 * @param mappedMetricsFiles
+	 *            the open files of the component, this one is removed from when closed
+	 * @throws IOException
+	 */
+	private MappedMetricsFile(final String key, final File file, final int capacity, final int nameSize, final Map<String, MappedMetricsFile> mappedMetricsFiles) throws IOException {
+		this.key = key;
+		this.mappedMetricsFiles = mappedMetricsFiles;
+		this.file = file;
+		this.capacity = capacity;
+		this.nameSize = nameSize;
+		this.valuesOffset = HEADER_SIZE + capacity * nameSize;
+		long size = (long) this.valuesOffset + (long) capacity * VALUE_SIZE;
+		if (size > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("mapped metrics file too large: " + size + " bytes");
+		}
+		File parent = file.getParentFile();
+		if (parent != null && !parent.exists() && !parent.mkdirs()) {
+			throw new IOException("unable to create directory: " + parent);
+		}
+		RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+		try {
+			// the values of a previous run must not be read as current
+			randomAccessFile.setLength(0);
+			randomAccessFile.setLength(size);
+			this.buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+		} finally {
+			// the mapping stays valid
+			randomAccessFile.close();
+		}
+		this.sequences = new AtomicLongArray(capacity);
+		this.generations = new int[capacity];
+		this.writeLocks = new ReentrantLock[Math.min(capacity, WRITE_LOCKS)];
+		for (int i = 0; i < this.writeLocks.length; i++) {
+			this.writeLocks[i] = new ReentrantLock();
+		}
+		this.buffer.putInt(4, VERSION);
+		this.buffer.putInt(8, capacity);
+		this.buffer.putInt(12, nameSize);
+		this.buffer.putInt(16, VALUE_SIZE);
+		this.buffer.putInt(USED_OFFSET, 0);
+		this.buffer.putInt(0, MAGIC);
+	}
+
+	/**
+	 * @param lease
+	 *            a lease returned by {@link #allocate(String, byte)}
+	 * @return the slot of the lease
+	 */
+	public static int slot(final long lease) {
+		return (int) lease;
+	}
+
+	/**
+	 * Takes a free slot and writes its name.
+	 *
+	 * @param name
+	 * @param type
+	 * @return the lease on the slot, see {@link #slot(long)}, or -1 if the file is full or the name too long
+	 */
+	public synchronized long allocate(final String name, final byte type) {
+		byte[] nameBytes = name.getBytes(UTF_8);
+		if (nameBytes.length > this.nameSize - NAME_HEADER_SIZE) {
+			LOGGER.warn(MARKER, "metric name too long for {}: {}", this.key, name);
+			return -1;
+		}
+		int slot;
+		if (!this.freeSlots.isEmpty()) {
+			slot = this.freeSlots.pollFirst();
+		} else if (this.used < this.capacity) {
+			slot = this.used++;
+			this.buffer.putInt(USED_OFFSET, this.used);
+		} else {
+			LOGGER.warn(MARKER, "no slot left in {} for: {}", this.key, name);
+			return -1;
+		}
+		int valueOffset = valueOffset(slot);
+		writeLock(slot).lock();
+		int generation = ++this.generations[slot];
+		markWriting(slot);
+		try {
+			for (int offset = COUNT; offset < VALUE_SIZE; offset += 8) {
+				this.buffer.putLong(valueOffset + offset, 0);
+			}
+			int nameOffset = nameOffset(slot);
+			this.buffer.putShort(nameOffset + 2, (short) nameBytes.length);
+			for (int i = 0; i < nameBytes.length; i++) {
+				this.buffer.put(nameOffset + NAME_HEADER_SIZE + i, nameBytes[i]);
+			}
+			this.buffer.put(nameOffset, type);
+		} finally {
+			markWritten(slot);
+			writeLock(slot).unlock();
+		}
+		return (long) generation << 32 | slot;
+	}
+
+	/**
+	 * Takes the write lock of the slot of the lease and marks its values as being written, unless the slot was freed
+	 * since the lease was taken. Must be followed by {@link #endWrite(long)} in a finally block if it returns true.
+	 *
+	 * @param lease
+	 * @return false, without holding the lock, if the lease is no longer valid
+	 */
+	public boolean beginWrite(final long lease) {
+		int slot = slot(lease);
+		writeLock(slot).lock();
+		if (this.generations[slot] != (int) (lease >>> 32)) {
+			writeLock(slot).unlock();
+			return false;
+		}
+		markWriting(slot);
+		return true;
+	}
+
+	/**
+	 * Releases the file; the last user unmaps it by dropping the mapping, leaving the file for readers.
+	 */
+	public void close() {
+		synchronized (this.mappedMetricsFiles) {
+			if (--this.references > 0 || this.mappedMetricsFiles.get(this.key) != this) {
+				// still in use, or already closed with the component
+				return;
+			}
+			this.mappedMetricsFiles.remove(this.key);
+		}
+		LOGGER.info(MARKER, "closing mapped metrics file: {}", this.key);
+		this.buffer.force();
+	}
+
+	/**
+	 * Marks the values of the slot of the lease as written and releases its write lock.
+	 *
+	 * @param lease
+	 */
+	public void endWrite(final long lease) {
+		int slot = slot(lease);
+		try {
+			markWritten(slot);
+		} finally {
+			writeLock(slot).unlock();
+		}
+	}
+
+	/**
+	 * Frees the slot of the lease for another metric, unless it was already freed.
+	 *
+	 * @param lease
+	 */
+	public synchronized void free(final long lease) {
+		int slot = slot(lease);
+		writeLock(slot).lock();
+		try {
+			if (this.generations[slot] != (int) (lease >>> 32)) {
+				return;
+			}
+			// no writer holding the old lease gets the lock from now on
+			this.generations[slot]++;
+			this.buffer.put(nameOffset(slot), TYPE_FREE);
+		} finally {
+			writeLock(slot).unlock();
+		}
+		this.freeSlots.addLast(slot);
+	}
+
+	/**
+	 * @return the file
+	 */
+	public File getFile() {
+		return this.file;
+	}
+
+	/**
+	 * @param slot
+	 * @param offset
+	 *            one of the value offsets, e.g. {@link #MEAN}
+	 * @param value
+	 */
+	public void putDouble(final int slot, final int offset, final double value) {
+		this.buffer.putDouble(valueOffset(slot) + offset, value);
+	}
+
+	/**
+	 * @param slot
+	 * @param offset
+	 *            one of the value offsets, e.g. {@link #COUNT}
+	 * @param value
+	 */
+	public void putLong(final int slot, final int offset, final long value) {
+		this.buffer.putLong(valueOffset(slot) + offset, value);
+	}
+
+	/**
+	 * Records the time of the last update in the header.
+	 *
+	 * @param millis
+	 */
+	public void touch(final long millis) {
+		this.buffer.putLong(LAST_UPDATE_OFFSET, millis);
+	}
+
+	/**
+	 * Marks the values of the slot as being written, with its write lock held.
+	 *
+	 * @param slot
+	 */
+	private void markWriting(final int slot) {
+		long sequence = this.sequences.get(slot) + 1;
+		this.buffer.putLong(valueOffset(slot) + SEQUENCE, sequence);
+		// the odd sequence is stored before any value
+		this.sequences.set(slot, sequence);
+	}
+
+	/**
+	 * Marks the values of the slot as written, with its write lock held.
+	 *
+	 * @param slot
+	 */
+	private void markWritten(final int slot) {
+		long sequence = this.sequences.get(slot) + 1;
+		// every value is stored before the even sequence
+		this.sequences.set(slot, sequence);
+		this.buffer.putLong(valueOffset(slot) + SEQUENCE, sequence);
+	}
+
+	/**
+	 * @param slot
+	 * @return
+	 */
+	private int nameOffset(final int slot) {
+		return HEADER_SIZE + slot * this.nameSize;
+	}
+
+	/**
+	 * @param slot
+	 * @return
+	 */
+	private int valueOffset(final int slot) {
+		return this.valuesOffset + slot * VALUE_SIZE;
+	}
+
+	/**
+	 * @param slot
+	 * @return the lock serializing the writers of the slot
+	 */
+	private ReentrantLock writeLock(final int slot) {
+		return this.writeLocks[slot % this.writeLocks.length];
+	}
+
+}
@@ -0,0 +1,269 @@
+// @formatter:off
+/**
+ * Copyright 2014 Initium.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+// @formatter:on
+package io.initium.camel.component.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.Expression;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+
+import io.initium.camel.component.metrics.definition.metric.CounterDefinition;
+import io.initium.camel.component.metrics.definition.metric.HistogramDefinition;
+import io.initium.camel.component.metrics.definition.metric.MeterDefinition;
+import io.initium.common.util.ExpressionUtils;
+
+import static io.initium.camel.component.metrics.MetricsComponent.MARKER;
+
+/**
+ * The custom counters, meters and histograms of a MetricGroup compiled into a flat array of steps, each pairing the
+ * value of a definition with the metric it updates. A value without an expression, such as the default value 1, is
+ * parsed once and never evaluated.
+ *
+ * @author Steve Fosdal, <steve@initium.io>
+ * @author Hector Veiga Ortiz, <hector@initium.io>
+ * @version 1.4
+ * @since 2026-10-18
+ */
+final class MarkPlan {
+
+	/**
+	 * Evaluates one value and updates one metric with it.
+	 */
+	private abstract static class Step {
+
+		// fields
+		private final Expression	expression;
+		private final long			constant;
+		private final String		warning;
+
+		/**
+		 * @param value
+		 *            the value of the definition
+		 * @param expression
+		 *            the expression created from the value
+		 * @param warning
+		 *            logged when the expression does not evaluate to a Long
+		 */
+		Step(final String value, final Expression expression, final String warning) {
+			Long constantValue = ExpressionUtils.parseConstantLong(value);
+			if (constantValue != null) {
+				this.expression = null;
+				this.constant = constantValue;
+			} else {
+				this.expression = expression;
+				this.constant = MetricGroup.NO_VALUE;
+			}
+			this.warning = warning;
+		}
+
+		/**
+		 * @param exchange
+		 * @return the value, NO_VALUE if it did not evaluate to a Long
+		 */
+		final long evaluate(final Exchange exchange) {
+			if (this.expression == null) {
+				return this.constant;
+			}
+			Object result = this.expression.evaluate(exchange, Object.class);
+			if (result instanceof Number) {
+				return ((Number) result).longValue();
+			}
+			Long valueLong = null;
+			if (result != null) {
+				valueLong = exchange.getContext().getTypeConverter().convertTo(Long.class, exchange, result);
+			}
+			if (valueLong == null) {
+				LOGGER.warn(MARKER, this.warning);
+				return MetricGroup.NO_VALUE;
+			}
+			return valueLong;
+		}
+
+		/**
+		 * @param value
+		 * @param weight
+		 *            the number of exchanges the value stands for
+		 */
+		abstract void update(long value, long weight);
+	}
+
+	/**
+	 *
+	 */
+	private static final class CounterStep extends Step {
+
+		// fields
+		private final Counter	counter;
+
+		/**
+		 * @param counterDefinition
+		 * @param counter
+		 */
+		CounterStep(final CounterDefinition counterDefinition, final Counter counter) {
+			super(counterDefinition.getValue(), counterDefinition.getExpression(), "ignoring attempt to increment custom counter by non-Long");
+			this.counter = counter;
+		}
+
+		@Override
+		void update(final long value, final long weight) {
+			this.counter.inc(value * weight);
+		}
+	}
+
+	/**
+	 *
+	 */
+	private static final class MeterStep extends Step {
+
+		// fields
+		private final Meter	meter;
+
+		/**
+		 * @param meterDefinition
+		 * @param meter
+		 */
+		MeterStep(final MeterDefinition meterDefinition, final Meter meter) {
+			super(meterDefinition.getValue(), meterDefinition.getExpression(), "ignoring attempt to mark custom by non-Long");
+			this.meter = meter;
+		}
+
+		@Override
+		void update(final long value, final long weight) {
+			this.meter.mark(value * weight);
+		}
+	}
+
+	/**
+	 *
+	 */
+	private static final class HistogramStep extends Step {
+
+		// fields
+		private final Histogram	histogram;
+
+		/**
+		 * @param histogramDefinition
+		 * @param histogram
+		 */
+		HistogramStep(final HistogramDefinition histogramDefinition, final Histogram histogram) {
+			super(histogramDefinition.getValue(), histogramDefinition.getExpression(), "ignoring attempt to update histogram by non-Long");
+			this.histogram = histogram;
+		}
+
+		@Override
+		void update(final long value, final long weight) {
+			// a histogram records the distribution of values, so a sampled value is recorded once
+			this.histogram.update(value);
+		}
+	}
+
+	// logging
+	private static final String	SELF	= Thread.currentThread().getStackTrace()[1].getClassName();
+	private static final Logger	LOGGER	= LoggerFactory.getLogger(SELF);
+
+	// constants
+	static final MarkPlan		EMPTY	= new MarkPlan(new Step[0]);
+
+	/**
+	 * Compiles the definitions in the order counters, meters, histograms.
+	 *
+	 * @param counters
+	 * @param meters
+	 * @param histograms
+	 * @return
+	 */
+	static MarkPlan compile(final Map<CounterDefinition, Counter> counters, final Map<MeterDefinition, Meter> meters, final Map<HistogramDefinition, Histogram> histograms) {
+		List<Step> steps = new ArrayList<Step>();
+		for (Entry<CounterDefinition, Counter> entry : counters.entrySet()) {
+			steps.add(new CounterStep(entry.getKey(), entry.getValue()));
+		}
+		for (Entry<MeterDefinition, Meter> entry : meters.entrySet()) {
+			steps.add(new MeterStep(entry.getKey(), entry.getValue()));
+		}
+		for (Entry<HistogramDefinition, Histogram> entry : histograms.entrySet()) {
+			steps.add(new HistogramStep(entry.getKey(), entry.getValue()));
+		}
+		return new MarkPlan(steps.toArray(new Step[steps.size()]));
+	}
+
+	// fields
+	private final Step[]	steps;
+
+	/**
+	 * @param steps
+	 */
+	private MarkPlan(final Step[] steps) {
+		this.steps = steps;
+	}
+
+	/**
+	 * Applies values evaluated earlier by {@link #evaluate(Exchange, long[])}.
+	 *
+	 * @param values
+	 * @param weight
+	 */
+	void apply(final long[] values, final long weight) {
+		for (int i = 0; i < this.steps.length; i++) {
+			long value = values[i];
+			if (value != MetricGroup.NO_VALUE) {
+				this.steps[i].update(value, weight);
+			}
+		}
+	}
+
+	/**
+	 * @param exchange
+	 * @param values
+	 *            at least {@link #size()} long
+	 */
+	void evaluate(final Exchange exchange, final long[] values) {
+		for (int i = 0; i < this.steps.length; i++) {
+			values[i] = this.steps[i].evaluate(exchange);
+		}
+	}
+
+	/**
+	 * Evaluates and applies every step.
+	 *
+	 * @param exchange
+	 * @param weight
+	 */
+	void mark(final Exchange exchange, final long weight) {
+		for (Step step : this.steps) {
+			long value = step.evaluate(exchange);
+			if (value != MetricGroup.NO_VALUE) {
+				step.update(value, weight);
+			}
+		}
+	}
+
+	/**
+	 * @return the number of steps, which is the number of values {@link #evaluate(Exchange, long[])} produces
+	 */
+	int size() {
+		return this.steps.length;
+	}
+
+}
@@ -18,14 +18,19 @@ package io.initium.camel.component.metrics;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import com.codahale.metrics.*;
 import org.apache.camel.Exchange;
@@ -40,13 +45,21 @@ import io.initium.camel.component.metrics.definition.metric.CounterDefinition;
 import io.initium.camel.component.metrics.definition.metric.GaugeDefinition;
 import io.initium.camel.component.metrics.definition.metric.HistogramDefinition;
 import io.initium.camel.component.metrics.definition.metric.MeterDefinition;
+import io.initium.camel.component.metrics.definition.metric.ReservoirDefinition;
 import io.initium.camel.component.metrics.definition.metric.TimerDefinition;
+import io.initium.camel.component.metrics.definition.reporter.AbstractReporterDefinition;
 import io.initium.camel.component.metrics.definition.reporter.ConsoleReporterDefinition;
 import io.initium.camel.component.metrics.definition.reporter.CsvReporterDefinition;
 import io.initium.camel.component.metrics.definition.reporter.GraphiteReporterDefinition;
+import io.initium.camel.component.metrics.definition.reporter.InfluxReporterDefinition;
 import io.initium.camel.component.metrics.definition.reporter.JmxReporterDefinition;
+import io.initium.camel.component.metrics.definition.reporter.JmxReporterDefinition.JmxMode;
+import io.initium.camel.component.metrics.definition.reporter.MmapReporterDefinition;
+import io.initium.camel.component.metrics.definition.reporter.OtlpReporterDefinition;
+import io.initium.camel.component.metrics.definition.reporter.PrometheusReporterDefinition;
 import io.initium.camel.component.metrics.definition.reporter.ReporterDefinition;
 import io.initium.camel.component.metrics.definition.reporter.Slf4jReporterDefinition;
+import io.initium.camel.component.metrics.definition.reporter.StatsdReporterDefinition;
 import io.initium.common.util.MetricUtils;
 
 import static io.initium.camel.component.metrics.MetricsComponent.MARKER;
@@ -54,7 +67,7 @@ import static io.initium.camel.component.metrics.MetricsComponent.MARKER;
 /**
  * @author Steve Fosdal, <steve@initium.io>
  * @author Hector Veiga Ortiz, <hector@initium.io>
- * @version 1.2
+ * @version 1.4
  * @since 2014-02-19
  */
 @SuppressWarnings({"rawtypes", "unchecked"})
@@ -68,6 +81,9 @@ public class MetricGroup extends ServiceSupport {
 	private static final List<TimeUnit>						DEFAULT_SINCE_TIME_UNIT_VALUES		= Arrays.asList(TimeUnit.MILLISECONDS, TimeUnit.SECONDS, TimeUnit.MINUTES, TimeUnit.HOURS);
 	private static final List<TimeUnit>						DEFAULT_INTERVAL_TIME_UNIT_VALUES	= Arrays.asList(TimeUnit.MILLISECONDS, TimeUnit.SECONDS, TimeUnit.MINUTES, TimeUnit.HOURS);
 
+	// constants
+	static final long										NO_VALUE							= Long.MIN_VALUE;
+
 	// fields
 	private MetricsEndpoint									metricsEndpoint;
 	private final MetricRegistry							metricRegistry;
@@ -78,20 +94,36 @@ public class MetricGroup extends ServiceSupport {
 
 	// default metrics
 	private final Meter										rate;
-	private long											lastExchangeTime					= System.nanoTime();
-	private Exchange										lastExchange;
+	private volatile long									lastExchangeTime					= System.nanoTime();
+	private volatile Exchange								lastExchange;
 	private boolean											haveProcessedAtLeastOneExchange		= false;
+	private Histogram										intervalNanos;
 	private final Map<TimeUnit, Histogram>					intervals							= new HashMap<TimeUnit, Histogram>();
 	private Timer											timer;
 	private TimerDefinition									timerDefinition;
-	private final Set<Gauge>								sinceGauges							= new HashSet<Gauge>();
 
 	// for expression based metrics
-	private final Map<HistogramDefinition, Histogram>		histograms							= new HashMap<HistogramDefinition, Histogram>();
-	private final Map<CounterDefinition, Counter>			counters							= new HashMap<CounterDefinition, Counter>();
-	private final Map<MeterDefinition, Meter>				meters								= new HashMap<MeterDefinition, Meter>();
+	private final Map<HistogramDefinition, Histogram>		histograms							= new LinkedHashMap<HistogramDefinition, Histogram>();
+	private final Map<CounterDefinition, Counter>			counters							= new LinkedHashMap<CounterDefinition, Counter>();
+	private final Map<MeterDefinition, Meter>				meters								= new LinkedHashMap<MeterDefinition, Meter>();
 	private final Map<GaugeDefinition, Gauge>				gauges								= new HashMap<GaugeDefinition, Gauge>();
 	private final Map<CachedGaugeDefinition, CachedGauge>	cachedGauges						= new HashMap<CachedGaugeDefinition, CachedGauge>();
+	private volatile MarkPlan								markPlan							= MarkPlan.EMPTY;
+
+	// every metric of this group, compared by identity and copied on write so that reporter filters never lock
+	private volatile Set<Metric>							metrics								= Collections.emptySet();
+	private final Object									metricsLock							= new Object();
+
+	// the metrics of this group only, which the reporters of this group report from
+	private final MetricRegistry							partition							= new MetricRegistry();
+
+	// the snapshots and gauge values read by the reporters of this group, shared by them within a period
+	private final ReportCache								reportCache							= new ReportCache();
+
+	// the names of every metric registered by this group, removed from the registry on eviction
+	private final Set<String>								metricNames							= Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+	private final AtomicBoolean								isEvicted							= new AtomicBoolean(false);
+	private final CountDownLatch							isRemoved							= new CountDownLatch(1);
 
 	// reporter definitions
 	private final Map<String, ReporterDefinition>			componentReporterDefinitions;
@@ -99,11 +131,8 @@ public class MetricGroup extends ServiceSupport {
 
 	// active reporters
 	private final List<JmxReporter>							jmxReporters						= new ArrayList<JmxReporter>();
-	private final List<ConsoleReporter>						consoleReporters					= new ArrayList<ConsoleReporter>();
-	private final List<GraphiteReporter>					graphiteReporters					= new ArrayList<GraphiteReporter>();
-	private final List<Slf4jReporter>						slf4jReporters						= new ArrayList<Slf4jReporter>();
-	private final List<CsvReporter>							csvReporters						= new ArrayList<CsvReporter>();
-    private final List<ScheduledReporter>                   scheduledReporters                  = new ArrayList<ScheduledReporter>();
+	private final List<GroupMBean>							groupMBeans							= new ArrayList<GroupMBean>();
+	private final List<PrometheusReporter>					prometheusReporters					= new ArrayList<PrometheusReporter>();
 
 	/**
 	 * @param metricsEndpoint
@@ -124,6 +153,7 @@ public class MetricGroup extends ServiceSupport {
 		// rate meter
 		String rateMetricName = MetricUtils.calculateFullMetricName(this.fullName, this.metricsEndpoint.getRateName());
 		this.rate = this.metricRegistry.meter(rateMetricName);
+		track(rateMetricName, this.rate);
 
 		// since gauge
 		List<TimeUnit> sinceTimeUnitValues;
@@ -142,8 +172,8 @@ public class MetricGroup extends ServiceSupport {
 					return lastExchangeDelta(timeUnit);
 				}
 			};
-			this.sinceGauges.add(sinceGauge);
 			this.metricRegistry.register(sinceName, sinceGauge);
+			track(sinceName, sinceGauge);
 		}
 
 		// interval histogram
@@ -154,10 +184,25 @@ public class MetricGroup extends ServiceSupport {
 		} else {
 			intervalTimeUnitValues = DEFAULT_INTERVAL_TIME_UNIT_VALUES;
 		}
+		// one histogram of nanoseconds, every time unit is a view of it
+		if (!intervalTimeUnitValues.isEmpty()) {
+			ReservoirDefinition intervalReservoirDefinition = this.metricsEndpoint.getIntervalReservoir();
+			if (intervalReservoirDefinition != null) {
+				this.intervalNanos = new Histogram(intervalReservoirDefinition.buildReservoir());
+			} else {
+				this.intervalNanos = new Histogram(new ExponentiallyDecayingReservoir());
+			}
+		}
 		for (final TimeUnit timeUnit : intervalTimeUnitValues) {
 			String lclName = MetricUtils.calculateFullMetricName(this.fullName, this.metricsEndpoint.getIntervalName() + '.' + getPrettyName(timeUnit));
-			Histogram intervalHistogram = new Histogram(new ExponentiallyDecayingReservoir());
+			Histogram intervalHistogram;
+			if (timeUnit == TimeUnit.NANOSECONDS) {
+				intervalHistogram = this.intervalNanos;
+			} else {
+				intervalHistogram = new TimeUnitHistogram(this.intervalNanos, timeUnit);
+			}
 			this.metricRegistry.register(lclName, intervalHistogram);
+			track(lclName, intervalHistogram);
 			this.intervals.put(timeUnit, intervalHistogram);
 		}
 
@@ -203,6 +248,7 @@ public class MetricGroup extends ServiceSupport {
 				}
 			};
 			this.metricRegistry.register(lclName, cachedGauge);
+			track(lclName, cachedGauge);
 			this.cachedGauges.put(cachedGaugeDefinition, cachedGauge);
 		}
 	}
@@ -230,7 +276,9 @@ public class MetricGroup extends ServiceSupport {
 			String lclName = MetricUtils.calculateFullMetricName(this.fullName, subName);
 			LOGGER.debug(MARKER, "enabling counter metric: {} based on definition: {}", lclName, counterDefinition);
 			Counter counter = this.metricRegistry.counter(lclName);
+			track(lclName, counter);
 			this.counters.put(counterDefinition, counter);
+			compileMarkPlan();
 		}
 	}
 
@@ -274,6 +322,7 @@ public class MetricGroup extends ServiceSupport {
 				}
 			};
 			this.metricRegistry.register(lclName, gauge);
+			track(lclName, gauge);
 			this.gauges.put(gaugeDefinition, gauge);
 		}
 	}
@@ -300,8 +349,15 @@ public class MetricGroup extends ServiceSupport {
 			}
 			String lclName = MetricUtils.calculateFullMetricName(this.fullName, subName);
 			LOGGER.debug(MARKER, "enabling histogram metric: {} based on definition: {}", lclName, histogramDefinition);
-			Histogram histogram = this.metricRegistry.histogram(lclName);
+			Histogram histogram;
+			if (histogramDefinition.getReservoir() != null) {
+				histogram = registerOrGet(lclName, new Histogram(histogramDefinition.getReservoir().buildReservoir()));
+			} else {
+				histogram = this.metricRegistry.histogram(lclName);
+			}
+			track(lclName, histogram);
 			this.histograms.put(histogramDefinition, histogram);
+			compileMarkPlan();
 		}
 	}
 
@@ -328,7 +384,9 @@ public class MetricGroup extends ServiceSupport {
 			String lclName = MetricUtils.calculateFullMetricName(this.fullName, subName);
 			LOGGER.debug(MARKER, "enabling meter metric: {} based on definition: {}", lclName, meterDefinition);
 			Meter meter = this.metricRegistry.meter(lclName);
+			track(lclName, meter);
 			this.meters.put(meterDefinition, meter);
+			compileMarkPlan();
 		}
 	}
 
@@ -350,7 +408,12 @@ public class MetricGroup extends ServiceSupport {
 		this.timerDefinition = timerDefinition;
 		String lclName = MetricUtils.calculateFullMetricName(this.fullName, this.timerDefinition.getName());
 		LOGGER.debug(MARKER, "enabling timer metric: {}", lclName);
-		this.timer = this.metricRegistry.timer(lclName);
+		if (this.timerDefinition.getReservoir() != null) {
+			this.timer = registerOrGet(lclName, new Timer(this.timerDefinition.getReservoir().buildReservoir()));
+		} else {
+			this.timer = this.metricRegistry.timer(lclName);
+		}
+		track(lclName, this.timer);
 	}
 
 	/**
@@ -358,26 +421,27 @@ public class MetricGroup extends ServiceSupport {
 	 * @return
 	 */
 	public boolean contains(final Metric metric) {
-		if (metric == this.rate) {
-			return true;
-		} else if (this.intervals.values().contains(metric)) {
-			return true;
-		} else if (this.sinceGauges.contains(metric)) {
-			return true;
-		} else if (metric == this.timer) {
-			return true;
-		} else if (this.counters.values().contains(metric)) {
-			return true;
-		} else if (this.histograms.values().contains(metric)) {
-			return true;
-		} else if (this.meters.values().contains(metric)) {
-			return true;
-		} else if (this.gauges.values().contains(metric)) {
-			return true;
-		} else if (this.cachedGauges.values().contains(metric)) {
-			return true;
-		}
-		return false;
+		return this.metrics.contains(metric);
+	}
+
+	/**
+	 * Marks this group as evicted and removes every metric it registered from the metric registry. Only the first call
+	 * has any effect. The caller is responsible for stopping the group and forgetting it.
+	 * 
+	 * @return true if this call evicted the group
+	 */
+	public boolean evict() {
+		if (!this.isEvicted.compareAndSet(false, true)) {
+			return false;
+		}
+		LOGGER.debug(MARKER, "evicting metric group: {}", this.fullName);
+		for (String metricName : this.metricNames) {
+			this.metricRegistry.remove(metricName);
+			this.partition.remove(metricName);
+		}
+		this.metricNames.clear();
+		this.reportCache.clear();
+		return true;
 	}
 
 	/**
@@ -401,6 +465,20 @@ public class MetricGroup extends ServiceSupport {
 		return this.infixName;
 	}
 
+	/**
+	 * @return the component of the endpoint that created this group
+	 */
+	public MetricsComponent getMetricComponent() {
+		return this.metricsEndpoint.getMetricComponent();
+	}
+
+	/**
+	 * @return the registry holding only the metrics of this group, under the names they have in the shared registry
+	 */
+	public MetricRegistry getPartition() {
+		return this.partition;
+	}
+
 	/**
 	 * @return
 	 */
@@ -418,22 +496,125 @@ public class MetricGroup extends ServiceSupport {
 		return null;
 	}
 
+	/**
+	 * @return true once {@link #evict()} has been called
+	 */
+	public boolean isEvicted() {
+		return this.isEvicted.get();
+	}
+
+	/**
+	 * Waits for an evicted group to be torn down and removed from the component.
+	 *
+	 * @param timeout
+	 * @param unit
+	 * @return false if the group was not removed in time
+	 * @throws InterruptedException
+	 */
+	boolean awaitRemoval(final long timeout, final TimeUnit unit) throws InterruptedException {
+		return this.isRemoved.await(timeout, unit);
+	}
+
+	/**
+	 * Releases the threads waiting in {@link #awaitRemoval(long, TimeUnit)}, called once the evicted group has been
+	 * torn down.
+	 */
+	void markRemoved() {
+		this.isRemoved.countDown();
+	}
+
 	/**
 	 * 
 	 */
 	public void mark(final Exchange exchange) {
-		long deltaInNanos = lastExchangeDelta();
+		mark(exchange, 1);
+	}
+
+	/**
+	 * Marks a sampled exchange. The rate, custom counters and custom meters are scaled by the weight, the interval and
+	 * custom histograms record the exchange once: the interval is the time since the last recorded exchange.
+	 * 
+	 * @param exchange
+	 * @param weight
+	 *            the number of exchanges this one stands for
+	 */
+	public void mark(final Exchange exchange, final long weight) {
 		this.lastExchange = exchange;
-		this.lastExchangeTime = System.nanoTime();
-		this.rate.mark();
-		if (this.haveProcessedAtLeastOneExchange) {
-			LOGGER.trace("deltaInNanos: {}", deltaInNanos);
-			updateAllIntervals(deltaInNanos);
+		markRateAndIntervals(System.nanoTime(), weight);
+		this.markPlan.mark(exchange, weight);
+	}
+
+	/**
+	 * Registers a metric under this group's name, so that reporters of this group include it. Reporters pick up
+	 * metrics when they are registered, so this also works after the group has been started.
+	 * 
+	 * @param subName
+	 * @param metric
+	 * @return the registered metric, or the metric of the same type that was already registered under that name
+	 */
+	public <T extends Metric> T registerAdditionalMetric(final String subName, final T metric) {
+		String lclName = MetricUtils.calculateFullMetricName(this.fullName, subName);
+		LOGGER.debug(MARKER, "registering additional metric: {}", lclName);
+		try {
+			T registeredMetric = this.metricRegistry.register(lclName, metric);
+			track(lclName, registeredMetric);
+			return registeredMetric;
+		} catch (IllegalArgumentException e) {
+			Metric existingMetric = this.metricRegistry.getMetrics().get(lclName);
+			if (existingMetric != null && metric.getClass().isInstance(existingMetric) && contains(existingMetric)) {
+				return (T) existingMetric;
+			}
+			throw e;
 		}
-		this.haveProcessedAtLeastOneExchange = true;
-		markCounters(exchange);
-		markMeters(exchange);
-		markHistograms(exchange);
+	}
+
+	/**
+	 * Applies an exchange whose values were evaluated earlier by {@link #evaluate(Exchange, long[])}. A weight greater
+	 * than one stands for that many exchanges, of which only this one was recorded.
+	 * 
+	 * @param nanoTime
+	 *            when the exchange was seen
+	 * @param values
+	 * @param weight
+	 */
+	void apply(final long nanoTime, final long[] values, final long weight) {
+		markRateAndIntervals(nanoTime, weight);
+		this.markPlan.apply(values, weight);
+	}
+
+	/**
+	 * Evaluates the expressions of the custom counters, meters and histograms against the exchange, in the order
+	 * {@link #apply(long, long[], long)} expects them. Values that do not evaluate to a Long are stored as NO_VALUE.
+	 * 
+	 * @param exchange
+	 * @param values
+	 *            at least {@link #getEvaluatedValueCount()} long
+	 */
+	void evaluate(final Exchange exchange, final long[] values) {
+		this.lastExchange = exchange;
+		this.markPlan.evaluate(exchange, values);
+	}
+
+	/**
+	 * @return the number of values {@link #evaluate(Exchange, long[])} produces
+	 */
+	int getEvaluatedValueCount() {
+		return this.markPlan.size();
+	}
+
+	/**
+	 * @return the snapshots and gauge values read by the reporters of this group
+	 */
+	ReportCache getReportCache() {
+		return this.reportCache;
+	}
+
+	/**
+	 * Compiles the custom counters, meters and histograms into the plan used for every exchange. Definitions are only
+	 * added while the group is created, so the plan never changes once the group is in use.
+	 */
+	private synchronized void compileMarkPlan() {
+		this.markPlan = MarkPlan.compile(this.counters, this.meters, this.histograms);
 	}
 
 	/**
@@ -445,6 +626,18 @@ public class MetricGroup extends ServiceSupport {
 		return timeUnit.toString().toLowerCase();
 	}
 
+	/**
+	 * @param metric
+	 */
+	private void includeMetric(final Metric metric) {
+		synchronized (this.metricsLock) {
+			Set<Metric> lclMetrics = Collections.newSetFromMap(new IdentityHashMap<Metric, Boolean>());
+			lclMetrics.addAll(this.metrics);
+			lclMetrics.add(metric);
+			this.metrics = lclMetrics;
+		}
+	}
+
 	/**
 	 * @return
 	 */
@@ -460,127 +653,141 @@ public class MetricGroup extends ServiceSupport {
 	}
 
 	/**
-	 * @param exchange
+	 * @param nanoTime
+	 * @param weight
 	 */
-	private void markCounters(final Exchange exchange) {
-		for (Entry<CounterDefinition, Counter> entry : this.counters.entrySet()) {
-			CounterDefinition counterDefinition = entry.getKey();
-			Counter counter = entry.getValue();
-			if (counterDefinition != null) {
-				if (counter != null) {
-					Long valueLong = counterDefinition.getExpression().evaluate(exchange, Long.class);
-					if (valueLong != null) {
-						counter.inc(valueLong);
-					} else {
-						LOGGER.warn(MARKER, "ignoring attempt to increment custom counter by non-Long");
-					}
-				} else {
-					LOGGER.warn(MARKER, "ignoring attempt to increment a null custom counter");
-				}
-			}
-		}
-	}
-
-	/**
-	 * @param exchange
-	 */
-	private void markHistograms(final Exchange exchange) {
-		for (Entry<HistogramDefinition, Histogram> entry : this.histograms.entrySet()) {
-			HistogramDefinition histogramDefinition = entry.getKey();
-			Histogram histogram = entry.getValue();
-			if (histogramDefinition != null) {
-				if (histogram != null) {
-					Long valueLong = histogramDefinition.getExpression().evaluate(exchange, Long.class);
-					if (valueLong != null) {
-						histogram.update(valueLong);
-					} else {
-						LOGGER.warn(MARKER, "ignoring attempt to update histogram by non-Long");
-					}
-				} else {
-					LOGGER.warn(MARKER, "ignoring attempt to update a null histogram");
-				}
+	private void markRateAndIntervals(final long nanoTime, final long weight) {
+		long deltaInNanos = Math.max(0, nanoTime - this.lastExchangeTime);
+		this.lastExchangeTime = nanoTime;
+		this.rate.mark(weight);
+		if (this.haveProcessedAtLeastOneExchange) {
+			if (LOGGER.isTraceEnabled()) {
+				// boxing the delta would allocate on every exchange
+				LOGGER.trace("deltaInNanos: {}", deltaInNanos);
 			}
+			updateAllIntervals(deltaInNanos);
 		}
+		this.haveProcessedAtLeastOneExchange = true;
 	}
 
 	/**
-	 * @param exchange
+	 * Registers a metric built from a definition, like the metric registry does for its default metrics: if a metric of
+	 * the same type is already registered under the name, that one is used.
+	 * 
+	 * @param name
+	 * @param metric
+	 * @return
 	 */
-	private void markMeters(final Exchange exchange) {
-		for (Entry<MeterDefinition, Meter> entry : this.meters.entrySet()) {
-			MeterDefinition meterDefinition = entry.getKey();
-			Meter meter = entry.getValue();
-			if (meterDefinition != null) {
-				if (meter != null) {
-					Long valueLong = meterDefinition.getExpression().evaluate(exchange, Long.class);
-					if (valueLong != null) {
-						meter.mark(valueLong);
-					} else {
-						LOGGER.warn(MARKER, "ignoring attempt to mark custom by non-Long");
-					}
-				} else {
-					LOGGER.warn(MARKER, "ignoring attempt to mark a null custom meter");
-				}
+	private <T extends Metric> T registerOrGet(final String name, final T metric) {
+		try {
+			return this.metricRegistry.register(name, metric);
+		} catch (IllegalArgumentException e) {
+			Metric existingMetric = this.metricRegistry.getMetrics().get(name);
+			if (existingMetric != null && metric.getClass().isInstance(existingMetric)) {
+				LOGGER.warn(MARKER, "using the metric already registered as: {}, its reservoir may differ", name);
+				return (T) existingMetric;
 			}
+			throw e;
 		}
 	}
 
 	/**
 	 * @param reporterDefinition
 	 */
-	private void registerAndStart(final ReporterDefinition reporterDefinition) {
+	private void registerAndStart(final ReporterDefinition reporterDefinition) throws Exception {
 		if (reporterDefinition instanceof JmxReporterDefinition) {
 			JmxReporterDefinition jmxReporterDefinition = ((JmxReporterDefinition) reporterDefinition).getReporterDefinitionWithDefaults();
 			LOGGER.info(MARKER, "adding JmxReporterDefinition: {}", jmxReporterDefinition);
-			JmxReporter jmxReporter = jmxReporterDefinition.buildReporter(this.metricRegistry, this.creatingExchange, this);
-			this.jmxReporters.add(jmxReporter);
-			LOGGER.info(MARKER, "starting reporter: {}", jmxReporter);
-			jmxReporter.start();
+			if (JmxMode.parse(jmxReporterDefinition.getMode()) == JmxMode.COMPACT) {
+				GroupMBean groupMBean = jmxReporterDefinition.buildGroupMBean(this.partition, this.creatingExchange, this);
+				groupMBean.setReportCache(this.reportCache);
+				this.groupMBeans.add(groupMBean);
+				LOGGER.info(MARKER, "registering MBean: {}", groupMBean.getObjectName());
+				groupMBean.start(this.metricsEndpoint.getMetricComponent().getJmxRegistrar());
+			} else {
+				JmxReporter jmxReporter = jmxReporterDefinition.buildReporter(this.partition, this.creatingExchange, this);
+				this.jmxReporters.add(jmxReporter);
+				LOGGER.info(MARKER, "starting reporter: {}", jmxReporter);
+				jmxReporter.start();
+			}
 		} else if (reporterDefinition instanceof ConsoleReporterDefinition) {
 			ConsoleReporterDefinition consoleReporterDefinition = ((ConsoleReporterDefinition) reporterDefinition).getReporterDefinitionWithDefaults();
 			LOGGER.info(MARKER, "adding ConsoleReporterDefinition: {}", consoleReporterDefinition);
-			ConsoleReporter consoleReporter = consoleReporterDefinition.buildReporter(this.metricRegistry, this.creatingExchange, this);
-			this.consoleReporters.add(consoleReporter);
-			LOGGER.info(MARKER, "starting reporter: {}", consoleReporter);
-			consoleReporter.start(consoleReporterDefinition.getPeriodDuration(), consoleReporterDefinition.getPeriodDurationUnit());
+			ConsoleReporter consoleReporter = consoleReporterDefinition.buildReporter(this.partition, this.creatingExchange, this);
+			scheduleReporter(consoleReporterDefinition, consoleReporter, consoleReporterDefinition.buildFilter(this.creatingExchange, this));
 		} else if (reporterDefinition instanceof GraphiteReporterDefinition) {
 			GraphiteReporterDefinition graphiteReporterDefinition = ((GraphiteReporterDefinition) reporterDefinition).getReporterDefinitionWithDefaults();
 			LOGGER.info(MARKER, "adding GraphiteReporterDefinition: {}", graphiteReporterDefinition);
-			GraphiteReporter graphiteReporter = graphiteReporterDefinition.buildReporter(this.metricRegistry, this.creatingExchange, this);
-			this.graphiteReporters.add(graphiteReporter);
-			LOGGER.info(MARKER, "starting reporter: {}", graphiteReporter);
-			graphiteReporter.start(graphiteReporterDefinition.getPeriodDuration(), graphiteReporterDefinition.getPeriodDurationUnit());
+			GraphiteReporter graphiteReporter = graphiteReporterDefinition.buildReporter(this.partition, this.creatingExchange, this);
+			scheduleReporter(graphiteReporterDefinition, graphiteReporter, graphiteReporterDefinition.buildFilter(this.creatingExchange, this));
 		} else if (reporterDefinition instanceof Slf4jReporterDefinition) {
 			Slf4jReporterDefinition slf4jReporterDefinition = ((Slf4jReporterDefinition) reporterDefinition).getReporterDefinitionWithDefaults();
 			LOGGER.info(MARKER, "adding Slf4jReporterDefinition: {}", slf4jReporterDefinition);
-			Slf4jReporter slf4jReporter = slf4jReporterDefinition.buildReporter(this.metricRegistry, this.creatingExchange, this);
-			this.slf4jReporters.add(slf4jReporter);
-			LOGGER.info(MARKER, "starting reporter: {}", slf4jReporter);
-			slf4jReporter.start(slf4jReporterDefinition.getPeriodDuration(), slf4jReporterDefinition.getPeriodDurationUnit());
+			ScheduledReporter slf4jReporter = slf4jReporterDefinition.buildScheduledReporter(this.partition, this.creatingExchange, this);
+			scheduleReporter(slf4jReporterDefinition, slf4jReporter, slf4jReporterDefinition.buildFilter(this.creatingExchange, this));
 		} else if (reporterDefinition instanceof CsvReporterDefinition) {
 			CsvReporterDefinition csvReporterDefinition = ((CsvReporterDefinition) reporterDefinition).getReporterDefinitionWithDefaults();
 			LOGGER.info(MARKER, "adding CsvjReporterDefinition: {}", csvReporterDefinition);
-			CsvReporter csvReporter = csvReporterDefinition.buildReporter(this.metricRegistry, this.creatingExchange, this);
-			this.csvReporters.add(csvReporter);
-			LOGGER.info(MARKER, "starting reporter: {}", csvReporter);
-			csvReporter.start(csvReporterDefinition.getPeriodDuration(), csvReporterDefinition.getPeriodDurationUnit());
+			ScheduledReporter csvReporter = csvReporterDefinition.buildScheduledReporter(this.partition, this.creatingExchange, this);
+			scheduleReporter(csvReporterDefinition, csvReporter, csvReporterDefinition.buildFilter(this.creatingExchange, this));
+		} else if (reporterDefinition instanceof MmapReporterDefinition) {
+			MmapReporterDefinition mmapReporterDefinition = ((MmapReporterDefinition) reporterDefinition).getReporterDefinitionWithDefaults();
+			LOGGER.info(MARKER, "adding MmapReporterDefinition: {}", mmapReporterDefinition);
+			MappedFileReporter mappedFileReporter = mmapReporterDefinition.buildReporter(this.partition, this.creatingExchange, this);
+			scheduleReporter(mmapReporterDefinition, mappedFileReporter, mmapReporterDefinition.buildFilter(this.creatingExchange, this));
+		} else if (reporterDefinition instanceof PrometheusReporterDefinition) {
+			PrometheusReporterDefinition prometheusReporterDefinition = ((PrometheusReporterDefinition) reporterDefinition).getReporterDefinitionWithDefaults();
+			LOGGER.info(MARKER, "adding PrometheusReporterDefinition: {}", prometheusReporterDefinition);
+			PrometheusReporter prometheusReporter = prometheusReporterDefinition.buildReporter(this.partition, this.creatingExchange, this);
+			this.prometheusReporters.add(prometheusReporter);
+			LOGGER.info(MARKER, "starting reporter: {}", prometheusReporter);
+			prometheusReporter.start();
+		} else if (reporterDefinition instanceof StatsdReporterDefinition) {
+			StatsdReporterDefinition statsdReporterDefinition = ((StatsdReporterDefinition) reporterDefinition).getReporterDefinitionWithDefaults();
+			LOGGER.info(MARKER, "adding StatsdReporterDefinition: {}", statsdReporterDefinition);
+			StatsdReporter statsdReporter = statsdReporterDefinition.buildReporter(this.partition, this.creatingExchange, this);
+			scheduleReporter(statsdReporterDefinition, statsdReporter, statsdReporterDefinition.buildFilter(this.creatingExchange, this));
+		} else if (reporterDefinition instanceof InfluxReporterDefinition) {
+			InfluxReporterDefinition influxReporterDefinition = ((InfluxReporterDefinition) reporterDefinition).getReporterDefinitionWithDefaults();
+			LOGGER.info(MARKER, "adding InfluxReporterDefinition: {}", influxReporterDefinition);
+			InfluxReporter influxReporter = influxReporterDefinition.buildReporter(this.partition, this.creatingExchange, this);
+			scheduleReporter(influxReporterDefinition, influxReporter, influxReporterDefinition.buildFilter(this.creatingExchange, this));
+		} else if (reporterDefinition instanceof OtlpReporterDefinition) {
+			OtlpReporterDefinition otlpReporterDefinition = ((OtlpReporterDefinition) reporterDefinition).getReporterDefinitionWithDefaults();
+			LOGGER.info(MARKER, "adding OtlpReporterDefinition: {}", otlpReporterDefinition);
+			OtlpReporter otlpReporter = otlpReporterDefinition.buildReporter(this.partition, this.creatingExchange, this);
+			scheduleReporter(otlpReporterDefinition, otlpReporter, otlpReporterDefinition.buildFilter(this.creatingExchange, this));
 		} else {
 			LOGGER.warn(MARKER, "Custom ReporterDefinition: {}: {}", reporterDefinition.getClass(), reporterDefinition);
-            Reporter reporter = reporterDefinition.buildReporter(this.metricRegistry, this.creatingExchange, this);
-
-            if(reporter instanceof ScheduledReporter) {
-                ScheduledReporter scheduledReporter = (ScheduledReporter) reporter;
-                LOGGER.info(MARKER, "Trying to start reporter: {}", reporter);
-                this.scheduledReporters.add(scheduledReporter);
-                scheduledReporter.start(reporterDefinition.getPeriodDuration(), reporterDefinition.getPeriodDurationUnit());
-            }
+			Reporter reporter = reporterDefinition.buildReporter(this.partition, this.creatingExchange, this);
+			if (reporter instanceof ScheduledReporter) {
+				MetricFilter filter = null;
+				if (reporterDefinition instanceof AbstractReporterDefinition) {
+					filter = ((AbstractReporterDefinition) reporterDefinition).buildFilter(this.creatingExchange, this);
+				}
+				scheduleReporter(reporterDefinition, (ScheduledReporter) reporter, filter);
+			}
 		}
 	}
 
+	/**
+	 * Hands the reporter to the component, which reports for all metric groups of the same reporter definition with one
+	 * thread.
+	 * 
+	 * @param reporterDefinition
+	 * @param reporter
+	 * @param filter
+	 * @throws Exception
+	 */
+	private void scheduleReporter(final ReporterDefinition reporterDefinition, final ScheduledReporter reporter, final MetricFilter filter) throws Exception {
+		LOGGER.info(MARKER, "scheduling reporter: {}", reporter);
+		this.metricsEndpoint.getMetricComponent().scheduleReporter(reporterDefinition, this, reporter, filter);
+	}
+
 	/**
 	 *
 	 */
-	private void startReporters() {
+	private void startReporters() throws Exception {
 		boolean oneReporterHasBeenStarted = false;
 		Map<String, ReporterDefinition> leftoverReporterDefinitions = new HashMap<String, ReporterDefinition>();
 		leftoverReporterDefinitions.putAll(this.componentReporterDefinitions);
@@ -619,36 +826,40 @@ public class MetricGroup extends ServiceSupport {
 			jmxReporter.stop();
 		}
 		this.jmxReporters.clear();
-		for (ConsoleReporter consoleReporter : this.consoleReporters) {
-			consoleReporter.stop();
-		}
-		this.consoleReporters.clear();
-		for (GraphiteReporter graphiteReporter : this.graphiteReporters) {
-			graphiteReporter.stop();
+		for (GroupMBean groupMBean : this.groupMBeans) {
+			groupMBean.stop(this.metricsEndpoint.getMetricComponent().getJmxRegistrar());
 		}
-		this.graphiteReporters.clear();
-		for (Slf4jReporter slf4jReporter : this.slf4jReporters) {
-			slf4jReporter.stop();
+		this.groupMBeans.clear();
+		for (PrometheusReporter prometheusReporter : this.prometheusReporters) {
+			prometheusReporter.stop();
 		}
-		this.slf4jReporters.clear();
-		for (CsvReporter csvReporter : this.csvReporters) {
-			csvReporter.stop();
+		this.prometheusReporters.clear();
+		this.metricsEndpoint.getMetricComponent().unscheduleReporters(this);
+	}
+
+	/**
+	 * Makes a metric registered in the shared registry part of this group: reporters of this group include it, it is
+	 * added to the partition of this group and it is removed from the shared registry on eviction.
+	 * 
+	 * @param name
+	 * @param metric
+	 */
+	private void track(final String name, final Metric metric) {
+		this.metricNames.add(name);
+		includeMetric(metric);
+		try {
+			this.partition.register(name, metric);
+		} catch (IllegalArgumentException e) {
+			LOGGER.debug(MARKER, "metric already in the partition of {}: {}", this.fullName, name);
 		}
-		this.csvReporters.clear();
-        for (ScheduledReporter scheduledReporter : this.scheduledReporters) {
-            scheduledReporter.stop();
-        }
-        this.scheduledReporters.clear();
 	}
 
 	/**
 	 * @param deltaInNanos
 	 */
 	private void updateAllIntervals(final long deltaInNanos) {
-		for (Entry<TimeUnit, Histogram> entry : this.intervals.entrySet()) {
-			Histogram interval = entry.getValue();
-			long delta = entry.getKey().convert(deltaInNanos, TimeUnit.NANOSECONDS);
-			interval.update(delta);
+		if (this.intervalNanos != null) {
+			this.intervalNanos.update(deltaInNanos);
 		}
 	}
 
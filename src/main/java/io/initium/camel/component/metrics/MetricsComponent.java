@@ -15,28 +15,43 @@
 // @formatter:on
 package io.initium.camel.component.metrics;
 
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.camel.Endpoint;
 import org.apache.camel.RuntimeCamelException;
 import org.apache.camel.impl.UriEndpointComponent;
+import org.apache.camel.util.ServiceHelper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.Marker;
 import org.slf4j.MarkerFactory;
 
+import com.codahale.metrics.MetricFilter;
 import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.ScheduledReporter;
 
+import io.initium.camel.component.metrics.definition.reporter.AbstractReporterDefinition;
 import io.initium.camel.component.metrics.definition.reporter.ReporterDefinition;
 import io.initium.camel.component.metrics.listener.LoggingMetricRegistryListener;
 
 /**
  * @author Steve Fosdal, <steve@initium.io>
  * @author Hector Veiga Ortiz, <hector@initium.io>
- * @version 1.0
+ * @version 1.4
  * @since 2014-02-19
  */
 @SuppressWarnings("rawtypes")
@@ -51,13 +66,34 @@ public class MetricsComponent extends UriEndpointComponent {
 	// constants
 	public static final Marker						MARKER				= MarkerFactory.getMarker("metrics");
 	public static final String						DEFAULT_JMX_DOMAIN	= "metrics";
+	public static final String						TIMING_SLOTS_NAME	= DEFAULT_JMX_DOMAIN + ".TimingSlots";
+	/**
+	 * @deprecated timer start times are no longer kept in a map of Timer.Context, this exchange property is not set any
+	 *             more; they are kept in the long[] under {@link #TIMING_SLOTS_NAME}
+	 */
+	@Deprecated
 	public static final String						TIMING_MAP_NAME		= DEFAULT_JMX_DOMAIN + ".TimingMap";
+	private static final long						STOP_TIMEOUT_MILLIS	= 10000;
 
 	// fields
-	private final Map<String, ReporterDefinition>	reporterDefinitions	= new HashMap<String, ReporterDefinition>();
-	private final Set<String>						metricNames			= new HashSet<String>();
-	private final MetricRegistry					metricRegistry;
-	private final Map<String, MetricGroup>			metricGroups		= new HashMap<String, MetricGroup>();
+	private final Map<String, ReporterDefinition>					reporterDefinitions		= new HashMap<String, ReporterDefinition>();
+	private final Set<String>										metricNames				= Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+	private final MetricRegistry									metricRegistry;
+	private final ConcurrentMap<String, MetricGroup>				metricGroups			= new ConcurrentHashMap<String, MetricGroup>();
+	private final ConcurrentMap<String, FutureTask<MetricGroup>>	pendingMetricGroups		= new ConcurrentHashMap<String, FutureTask<MetricGroup>>();
+	private final ConcurrentMap<String, Integer>					timerSlots				= new ConcurrentHashMap<String, Integer>();
+	private final AtomicInteger										timerSlotCount			= new AtomicInteger();
+	private final Deque<Integer>									freeTimerSlots			= new ArrayDeque<Integer>();
+	private final ConcurrentMap<String, ReporterPipeline>			reporterPipelines		= new ConcurrentHashMap<String, ReporterPipeline>();
+	private final Map<String, BufferedGraphiteSender.Connection>	graphiteConnections		= new HashMap<String, BufferedGraphiteSender.Connection>();
+	private final Map<String, InfluxSender>							influxSenders			= new HashMap<String, InfluxSender>();
+	private final Map<String, MappedMetricsFile>					mappedMetricsFiles		= new HashMap<String, MappedMetricsFile>();
+	private final Map<String, OtlpExporter>							otlpExporters			= new HashMap<String, OtlpExporter>();
+	private final Map<String, PrometheusExporter>					prometheusExporters		= new HashMap<String, PrometheusExporter>();
+	private final Map<String, StatsdSender.Channel>					statsdChannels			= new HashMap<String, StatsdSender.Channel>();
+	private final Map<String, RotatingCsvFile>						csvFiles				= new HashMap<String, RotatingCsvFile>();
+	private ExecutorService											jmxRegistrar;
+	private ExecutorService											csvCompressor;
 
 	/**
 	 * 
@@ -85,14 +121,129 @@ public class MetricsComponent extends UriEndpointComponent {
 		}
 	}
 
+	/**
+	 * @return the graphite connections of the reporters, keyed by destination and settings, guarded by the map itself
+	 */
+	Map<String, BufferedGraphiteSender.Connection> getGraphiteConnections() {
+		return this.graphiteConnections;
+	}
+
+	/**
+	 * @return the influx senders of the reporters, keyed by url and settings, guarded by the map itself
+	 */
+	Map<String, InfluxSender> getInfluxSenders() {
+		return this.influxSenders;
+	}
+
+	/**
+	 * @return the mapped metrics files of the reporters, keyed by canonical path, guarded by the map itself
+	 */
+	Map<String, MappedMetricsFile> getMappedMetricsFiles() {
+		return this.mappedMetricsFiles;
+	}
+
+	/**
+	 * @return the metricGroups, keyed by full metric group name
+	 */
 	public Map<String, MetricGroup> getMetricGroups() {
 		return this.metricGroups;
 	}
 
+	/**
+	 * Looks up the MetricGroup registered under fullMetricGroupName, creating it with the factory if it does not exist
+	 * yet. Lookups of existing groups never lock. When a group is missing, exactly one caller runs the factory while
+	 * any other caller asking for the same name waits for that result; callers asking for other names are not
+	 * affected.
+	 * 
+	 * @param fullMetricGroupName
+	 * @param factory
+	 * @return
+	 * @throws Exception
+	 */
+	public MetricGroup getOrCreateMetricGroup(final String fullMetricGroupName, final Callable<MetricGroup> factory) throws Exception {
+		MetricGroup metricGroup = this.metricGroups.get(fullMetricGroupName);
+		if (metricGroup != null) {
+			return metricGroup;
+		}
+		FutureTask<MetricGroup> creation = new FutureTask<MetricGroup>(factory);
+		FutureTask<MetricGroup> pendingCreation = this.pendingMetricGroups.putIfAbsent(fullMetricGroupName, creation);
+		if (pendingCreation != null) {
+			return awaitMetricGroup(pendingCreation);
+		}
+		try {
+			// another caller may have finished creating it between the lookup and the putIfAbsent
+			metricGroup = this.metricGroups.get(fullMetricGroupName);
+			if (metricGroup != null) {
+				return metricGroup;
+			}
+			creation.run();
+			metricGroup = awaitMetricGroup(creation);
+			this.metricGroups.put(fullMetricGroupName, metricGroup);
+			return metricGroup;
+		} finally {
+			this.pendingMetricGroups.remove(fullMetricGroupName, creation);
+		}
+	}
+
+	/**
+	 * The thread registering and unregistering the MBeans of the metric groups, so that exchanges creating a group do
+	 * not wait on the MBeanServer. Once the component is stopped it rejects all tasks, which callers then run
+	 * themselves.
+	 *
+	 * @return
+	 */
+	public synchronized Executor getJmxRegistrar() {
+		if (this.jmxRegistrar == null) {
+			this.jmxRegistrar = getCamelContext().getExecutorServiceManager().newSingleThreadExecutor(this, "MetricsJmxRegistrar");
+		}
+		return this.jmxRegistrar;
+	}
+
+	/**
+	 * The thread gzipping the rotated segments of csv files, so that the reporter rotating a file does not compress
+	 * it. Once the component is stopped it rejects all tasks, which callers then run themselves.
+	 *
+	 * @return
+	 */
+	public synchronized Executor getCsvCompressor() {
+		if (this.csvCompressor == null) {
+			this.csvCompressor = getCamelContext().getExecutorServiceManager().newSingleThreadExecutor(this, "MetricsCsvCompressor");
+		}
+		return this.csvCompressor;
+	}
+
+	/**
+	 * @return the wide csv files of the reporters, keyed by canonical path, guarded by the map itself
+	 */
+	Map<String, RotatingCsvFile> getCsvFiles() {
+		return this.csvFiles;
+	}
+
 	public MetricRegistry getMetricRegistry() {
 		return this.metricRegistry;
 	}
 
+	/**
+	 * @return the otlp exporters of the reporters, keyed by url and service name, guarded by the map itself
+	 */
+	Map<String, OtlpExporter> getOtlpExporters() {
+		return this.otlpExporters;
+	}
+
+	/**
+	 * @return the prometheus exporters of the reporters, keyed by host and port, guarded by the map itself
+	 */
+	Map<String, PrometheusExporter> getPrometheusExporters() {
+		return this.prometheusExporters;
+	}
+
+	/**
+	 * @return the statsd channels of the reporters, keyed by resolved address and port, guarded by the map itself
+	 */
+	Map<String, StatsdSender.Channel> getStatsdChannels() {
+		return this.statsdChannels;
+	}
+
 	/**
 	 * @return the reporterDefinitions
 	 */
@@ -100,14 +251,126 @@ public class MetricsComponent extends UriEndpointComponent {
 		return this.reporterDefinitions;
 	}
 
+	/**
+	 * @return the reporter pipelines, keyed by reporter definition name and period
+	 */
+	Map<String, ReporterPipeline> getReporterPipelines() {
+		return this.reporterPipelines;
+	}
+
+	/**
+	 * Gets the slot assigned to the timer with the given full name, assigning the next free slot on first use. Start
+	 * and stop endpoints of the same timer share its slot.
+	 * 
+	 * @param fullTimerName
+	 * @return
+	 */
+	public int getTimerSlot(final String fullTimerName) {
+		Integer timerSlot = this.timerSlots.get(fullTimerName);
+		if (timerSlot != null) {
+			return timerSlot;
+		}
+		synchronized (this.timerSlots) {
+			timerSlot = this.timerSlots.get(fullTimerName);
+			if (timerSlot == null) {
+				timerSlot = this.freeTimerSlots.poll();
+				if (timerSlot == null) {
+					timerSlot = this.timerSlotCount.getAndIncrement();
+				}
+				this.timerSlots.put(fullTimerName, timerSlot);
+			}
+			return timerSlot;
+		}
+	}
+
+	/**
+	 * @return the number of timer slots assigned so far
+	 */
+	public int getTimerSlotCount() {
+		return this.timerSlotCount.get();
+	}
+
 	/**
 	 * @param name
 	 */
-	public synchronized void registerName(final String name) {
-		if (this.metricNames.contains(name)) {
+	public void registerName(final String name) {
+		if (!this.metricNames.add(name)) {
 			throw new RuntimeCamelException("duplicate metric name found: " + name);
 		}
-		this.metricNames.add(name);
+	}
+
+	/**
+	 * Frees the slot of a timer whose metric group was evicted, so that the next new timer reuses it rather than
+	 * growing the slot array of every exchange.
+	 * 
+	 * @param fullTimerName
+	 */
+	public void releaseTimerSlot(final String fullTimerName) {
+		synchronized (this.timerSlots) {
+			Integer timerSlot = this.timerSlots.remove(fullTimerName);
+			if (timerSlot != null) {
+				this.freeTimerSlots.push(timerSlot);
+			}
+		}
+	}
+
+	/**
+	 * Removes a metric group from the registry of metric groups, if it is still the one registered under its name.
+	 * 
+	 * @param metricGroup
+	 * @return
+	 */
+	public boolean removeMetricGroup(final MetricGroup metricGroup) {
+		return this.metricGroups.remove(metricGroup.getFullName(), metricGroup);
+	}
+
+	/**
+	 * Hands a scheduled reporter of a metric group to the pipeline of its reporter definition, creating and starting
+	 * the pipeline on first use. All groups reporting with the same definition and period share the pipeline's single
+	 * thread.
+	 * 
+	 * @param reporterDefinition
+	 * @param metricGroup
+	 * @param reporter
+	 *            the reporter, never started
+	 * @param filter
+	 *            the filter of the reporter, null to let the reporter walk the registry itself
+	 * @throws Exception
+	 */
+	public void scheduleReporter(final ReporterDefinition reporterDefinition, final MetricGroup metricGroup, final ScheduledReporter reporter, final MetricFilter filter) throws Exception {
+		long period = reporterDefinition.getPeriodDuration();
+		TimeUnit periodUnit = reporterDefinition.getPeriodDurationUnit();
+		String pipelineName = reporterDefinition.getName() + "," + period + " " + periodUnit;
+		ReporterPipeline reporterPipeline;
+		synchronized (this.reporterPipelines) {
+			reporterPipeline = this.reporterPipelines.get(pipelineName);
+			if (reporterPipeline == null) {
+				LOGGER.info(MARKER, "starting reporter pipeline: {}", pipelineName);
+				reporterPipeline = new ReporterPipeline(getCamelContext(), pipelineName, period, periodUnit);
+				ServiceHelper.startService(reporterPipeline);
+				this.reporterPipelines.put(pipelineName, reporterPipeline);
+			}
+		}
+		ChangeTracker changeTracker = null;
+		if (reporterDefinition instanceof AbstractReporterDefinition) {
+			AbstractReporterDefinition abstractReporterDefinition = (AbstractReporterDefinition) reporterDefinition;
+			if (Boolean.TRUE.equals(abstractReporterDefinition.getOnlyChanged())) {
+				Integer refreshPeriods = abstractReporterDefinition.getRefreshPeriods();
+				changeTracker = new ChangeTracker(refreshPeriods == null ? AbstractReporterDefinition.DEFAULT_REFRESH_PERIODS : refreshPeriods);
+			}
+		}
+		reporterPipeline.add(metricGroup, reporter, filter, changeTracker);
+	}
+
+	/**
+	 * Removes and stops the scheduled reporters of a metric group from every pipeline.
+	 * 
+	 * @param metricGroup
+	 */
+	public void unscheduleReporters(final MetricGroup metricGroup) {
+		for (ReporterPipeline reporterPipeline : this.reporterPipelines.values()) {
+			reporterPipeline.remove(metricGroup);
+		}
 	}
 
 	@Override
@@ -134,12 +397,41 @@ public class MetricsComponent extends UriEndpointComponent {
 	protected void doStart() throws Exception {
 		super.doStart();
 		LOGGER.info(MARKER, "doStart()");
+		synchronized (this) {
+			if (this.jmxRegistrar != null && this.jmxRegistrar.isShutdown()) {
+				this.jmxRegistrar = null;
+			}
+			if (this.csvCompressor != null && this.csvCompressor.isShutdown()) {
+				this.csvCompressor = null;
+			}
+		}
 	}
 
 	@Override
 	protected void doStop() throws Exception {
 		super.doStop();
 		LOGGER.debug(MARKER, "doStop()");
+		synchronized (this.reporterPipelines) {
+			ServiceHelper.stopServices(this.reporterPipelines.values());
+			this.reporterPipelines.clear();
+		}
+		BufferedGraphiteSender.stopAll(this);
+		InfluxSender.stopAll(this);
+		MappedMetricsFile.stopAll(this);
+		OtlpExporter.stopAll(this);
+		PrometheusExporter.stopAll(this);
+		RotatingCsvFile.stopAll(this);
+		StatsdSender.stopAll(this);
+		synchronized (this) {
+			if (this.jmxRegistrar != null) {
+				// pending registrations still run, later tasks are rejected
+				getCamelContext().getExecutorServiceManager().shutdownGraceful(this.jmxRegistrar, STOP_TIMEOUT_MILLIS);
+			}
+			if (this.csvCompressor != null) {
+				// pending compressions still run
+				getCamelContext().getExecutorServiceManager().shutdownGraceful(this.csvCompressor, STOP_TIMEOUT_MILLIS);
+			}
+		}
 	}
 
 	@Override
@@ -148,4 +440,21 @@ public class MetricsComponent extends UriEndpointComponent {
 		LOGGER.debug(MARKER, "doSuspend()");
 	}
 
+	/**
+	 * @param creation
+	 * @return
+	 * @throws Exception
+	 */
+	private MetricGroup awaitMetricGroup(final FutureTask<MetricGroup> creation) throws Exception {
+		try {
+			return creation.get();
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof Exception) {
+				throw (Exception) cause;
+			}
+			throw new RuntimeCamelException(cause);
+		}
+	}
+
 }
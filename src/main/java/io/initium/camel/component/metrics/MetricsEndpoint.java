@@ -18,6 +18,7 @@ package io.initium.camel.component.metrics;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.camel.Consumer;
@@ -36,18 +37,25 @@ import org.slf4j.LoggerFactory;
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.Timer;
 
+import io.initium.camel.component.metrics.AsyncMetricRecorder.OverflowPolicy;
 import io.initium.camel.component.metrics.definition.metric.CachedGaugeDefinition;
 import io.initium.camel.component.metrics.definition.metric.CounterDefinition;
 import io.initium.camel.component.metrics.definition.metric.GaugeDefinition;
 import io.initium.camel.component.metrics.definition.metric.HistogramDefinition;
 import io.initium.camel.component.metrics.definition.metric.MeterDefinition;
+import io.initium.camel.component.metrics.definition.metric.ReservoirDefinition;
 import io.initium.camel.component.metrics.definition.metric.TimerDefinition;
 import io.initium.camel.component.metrics.definition.reporter.ConsoleReporterDefinition;
 import io.initium.camel.component.metrics.definition.reporter.CsvReporterDefinition;
 import io.initium.camel.component.metrics.definition.reporter.GraphiteReporterDefinition;
+import io.initium.camel.component.metrics.definition.reporter.InfluxReporterDefinition;
 import io.initium.camel.component.metrics.definition.reporter.JmxReporterDefinition;
+import io.initium.camel.component.metrics.definition.reporter.MmapReporterDefinition;
+import io.initium.camel.component.metrics.definition.reporter.OtlpReporterDefinition;
+import io.initium.camel.component.metrics.definition.reporter.PrometheusReporterDefinition;
 import io.initium.camel.component.metrics.definition.reporter.ReporterDefinition;
 import io.initium.camel.component.metrics.definition.reporter.Slf4jReporterDefinition;
+import io.initium.camel.component.metrics.definition.reporter.StatsdReporterDefinition;
 import io.initium.common.util.ExpressionUtils;
 import io.initium.common.util.MetricUtils;
 import io.initium.common.util.OptionHelper;
@@ -71,19 +79,30 @@ import static io.initium.common.util.GsonHelper.HISTOGRAM_DEFINITIONS_TYPE;
 import static io.initium.common.util.GsonHelper.HISTOGRAM_DEFINITION_TYPE;
 import static io.initium.common.util.GsonHelper.INFIXES_TYPE;
 import static io.initium.common.util.GsonHelper.INFIX_TYPE;
+import static io.initium.common.util.GsonHelper.INFLUX_REPORTERS_TYPE;
+import static io.initium.common.util.GsonHelper.INFLUX_REPORTER_TYPE;
 import static io.initium.common.util.GsonHelper.JMX_REPORTERS_TYPE;
 import static io.initium.common.util.GsonHelper.JMX_REPORTER_TYPE;
 import static io.initium.common.util.GsonHelper.METER_DEFINITIONS_TYPE;
 import static io.initium.common.util.GsonHelper.METER_DEFINITION_TYPE;
+import static io.initium.common.util.GsonHelper.MMAP_REPORTERS_TYPE;
+import static io.initium.common.util.GsonHelper.MMAP_REPORTER_TYPE;
+import static io.initium.common.util.GsonHelper.OTLP_REPORTERS_TYPE;
+import static io.initium.common.util.GsonHelper.OTLP_REPORTER_TYPE;
+import static io.initium.common.util.GsonHelper.PROMETHEUS_REPORTERS_TYPE;
+import static io.initium.common.util.GsonHelper.PROMETHEUS_REPORTER_TYPE;
+import static io.initium.common.util.GsonHelper.RESERVOIR_DEFINITION_TYPE;
 import static io.initium.common.util.GsonHelper.SLF4J_REPORTERS_TYPE;
 import static io.initium.common.util.GsonHelper.SLF4J_REPORTER_TYPE;
+import static io.initium.common.util.GsonHelper.STATSD_REPORTERS_TYPE;
+import static io.initium.common.util.GsonHelper.STATSD_REPORTER_TYPE;
 import static io.initium.common.util.GsonHelper.TIME_UNITS_TYPE;
 import static io.initium.common.util.GsonHelper.TIME_UNIT_TYPE;
 
 /**
  * @author Steve Fosdal, <steve@initium.io>
  * @author Hector Veiga Ortiz, <hector@initium.io>
- * @version 1.0
+ * @version 1.4
  * @since 2014-02-19
  */
 @SuppressWarnings({"rawtypes"})
@@ -106,15 +125,34 @@ public class MetricsEndpoint extends DefaultEndpoint implements MultipleConsumer
 	private static final Logger				LOGGER					= LoggerFactory.getLogger(SELF);
 
 	// basic fields
-	private final String					name;
-	private final MetricsComponent			metricsComponent;
-	private List<Expression>				infixExpressions;
+	private final String										name;
+	private final MetricsComponent								metricsComponent;
+	private List<Expression>									infixExpressions;
+
+	// resolved metric groups, cached per endpoint
+	private volatile ResolvedMetricGroup						resolvedMetricGroup;
+	private InfixMetricGroups									infixMetricGroups;
+
+	// for bounding the infix metric groups
+	private int								maxInfixGroups			= 0;
+	private long							infixIdleTtl			= 0;
+	private int								maxLiveInfixGroups		= 0;
+
+	// for asynchronous recording
+	private boolean							isAsync					= false;
+	private int								asyncBufferSize			= 8192;
+	private OverflowPolicy					asyncOverflowPolicy		= OverflowPolicy.DROP;
+	private int								asyncSampleEvery		= 10;
+	private AsyncMetricRecorder				asyncMetricRecorder;
+
+	// for sampling
+	private Long							sampleEvery;
+	private Double							sampleRate;
+	private Sampler							sampler;
 
 	// for internal timer
 	private boolean							isInternalTimerEnabled	= false;
-	private final Timer						internalTimerStart		= null;
-	private final Timer						internalTimerNoop		= null;
-	private final Timer						internalTimerStop		= null;
+	private InternalTimers					internalTimers;
 
 	// base metric names
 	private String							rateName				= "rate";
@@ -127,6 +165,11 @@ public class MetricsEndpoint extends DefaultEndpoint implements MultipleConsumer
 	private String							timingActionName		= null;
 
 	private TimingAction					timingAction			= TimingAction.NOOP;
+
+	// reservoirs, null for the defaults
+	private ReservoirDefinition				timingReservoir;
+	private ReservoirDefinition				intervalReservoir;
+
 	// for expression based metrics
 	private List<HistogramDefinition>		histogramDefinitions;
 	private List<CounterDefinition>			counterDefinitions;
@@ -153,14 +196,36 @@ public class MetricsEndpoint extends DefaultEndpoint implements MultipleConsumer
 		this.name = name;
 		warnIfTimingStopIsUsedWithOtherParameters(parameters);
 		EndpointHelper.setProperties(getCamelContext(), this, parameters);
+		if (this.isInternalTimerEnabled) {
+			this.internalTimers = new InternalTimers(this.timingAction);
+		}
+		this.infixMetricGroups = new InfixMetricGroups(this, this.maxInfixGroups, this.infixIdleTtl, this.maxLiveInfixGroups);
 		switch (this.timingAction) {
 			case STOP:
 				LOGGER.debug(MARKER, "skipping initialization, timingAction={}", this.timingAction);
 				break;
 			default:
-				initializeMetricGroup(this.name);
+				this.resolvedMetricGroup = new ResolvedMetricGroup(initializeMetricGroup(this.name), null, this.timingName, this.metricsComponent);
+				if (this.internalTimers != null) {
+					this.internalTimers.registerIn(this.resolvedMetricGroup.getMetricGroup());
+				}
+				this.infixMetricGroups.registerIn(this.resolvedMetricGroup.getMetricGroup());
 				break;
 		}
+		if (this.infixMetricGroups.isEvicting()) {
+			getCamelContext().addService(this.infixMetricGroups);
+		}
+		initializeSampler();
+		if (this.isAsync) {
+			if (this.resolvedMetricGroup == null) {
+				LOGGER.warn(MARKER, "ignoring async=true, timingAction={}", this.timingAction);
+			} else {
+				MetricGroup metricGroup = this.resolvedMetricGroup.getMetricGroup();
+				this.asyncMetricRecorder = new AsyncMetricRecorder(this, this.asyncBufferSize, this.asyncOverflowPolicy, this.asyncSampleEvery, metricGroup.getEvaluatedValueCount());
+				this.asyncMetricRecorder.registerMetrics(metricGroup);
+				getCamelContext().addService(this.asyncMetricRecorder);
+			}
+		}
 	}
 
 	@Override
@@ -187,22 +252,19 @@ public class MetricsEndpoint extends DefaultEndpoint implements MultipleConsumer
 	 * @return
 	 */
 	public Timer getInternalTimer() {
-		return getInternalTimer(TimingAction.NOOP);
+		return getInternalTimer(this.timingAction);
 	}
 
 	/**
 	 * @param timingAction
-	 * @return
+	 * @return the timer of the whole exchange, null unless enableInternalTimer=true and timingAction is the timing
+	 *         action of this endpoint
 	 */
 	public Timer getInternalTimer(final TimingAction timingAction) {
-		switch (timingAction) {
-			case START:
-				return this.internalTimerStart;
-			case STOP:
-				return this.internalTimerStop;
-			default:
-				return this.internalTimerNoop;
+		if (this.internalTimers == null || timingAction != this.timingAction) {
+			return null;
 		}
+		return this.internalTimers.getTimer(InternalTimers.Phase.TOTAL);
 	}
 
 	/**
@@ -212,6 +274,13 @@ public class MetricsEndpoint extends DefaultEndpoint implements MultipleConsumer
 		return this.intervalName;
 	}
 
+	/**
+	 * @return the intervalReservoir, null for the default
+	 */
+	public ReservoirDefinition getIntervalReservoir() {
+		return this.intervalReservoir;
+	}
+
 	/**
 	 * @return the intervalTimeUnits
 	 */
@@ -293,38 +362,29 @@ public class MetricsEndpoint extends DefaultEndpoint implements MultipleConsumer
 		return this.timingName;
 	}
 
+	/**
+	 * @return the timingReservoir, null for the default
+	 */
+	public ReservoirDefinition getTimingReservoir() {
+		return this.timingReservoir;
+	}
+
 	/**
 	 * @param baseName
 	 * @param infixName
 	 * @return
 	 * @throws Exception
 	 */
-	public synchronized MetricGroup initializeMetricGroup(final String baseName, final String infixName) throws Exception {
+	public MetricGroup initializeMetricGroup(final String baseName, final String infixName) throws Exception {
 		LOGGER.debug(MARKER, "initializeMetricGroup({},{})", baseName, infixName);
 		String fullMetricGroupName = MetricUtils.calculateFullMetricName(baseName, infixName);
-		MetricGroup metricGroup = this.metricsComponent.getMetricGroups().get(fullMetricGroupName);
-		if (metricGroup != null) {
-			return metricGroup;
-		}
-		this.metricsComponent.registerName(this.name);
-		metricGroup = new MetricGroup(this, baseName, infixName);
-		// timer
-		if (this.timingAction == TimingAction.START) {
-			TimerDefinition timerDefinition = new TimerDefinition();
-			timerDefinition.setName(this.timingName);
-			metricGroup.addTimerDefinition(timerDefinition);
-		}
-
-		// expression based histograms
-		metricGroup.addCounterDefinitions(this.counterDefinitions);
-		metricGroup.addMeterDefinitions(this.meterDefinitions);
-		metricGroup.addHistogramDefinitions(this.histogramDefinitions);
-		metricGroup.addGaugeDefinitions(this.gaugeDefinitions);
-		metricGroup.addCachedGaugeDefinitions(this.cachedGaugeDefinitions);
-
-		this.metricsComponent.getMetricGroups().put(fullMetricGroupName, metricGroup);
-		getCamelContext().addService(metricGroup);
-		return metricGroup;
+		return this.metricsComponent.getOrCreateMetricGroup(fullMetricGroupName, new Callable<MetricGroup>() {
+			@Override
+			public MetricGroup call() throws Exception {
+				MetricsEndpoint.this.metricsComponent.registerName(MetricsEndpoint.this.name);
+				return createMetricGroup(new MetricGroup(MetricsEndpoint.this, baseName, infixName));
+			}
+		});
 	}
 
 	/**
@@ -334,32 +394,22 @@ public class MetricsEndpoint extends DefaultEndpoint implements MultipleConsumer
 	 * @return
 	 * @throws Exception
 	 */
-	public synchronized MetricGroup initializeMetricGroup(final String baseName, final String infixName, final Exchange creatingExchange) throws Exception {
+	public MetricGroup initializeMetricGroup(final String baseName, final String infixName, final Exchange creatingExchange) throws Exception {
 		LOGGER.debug(MARKER, "initializeMetricGroup({},{})", baseName, infixName);
 		String fullMetricGroupName = MetricUtils.calculateFullMetricName(baseName, infixName);
-		MetricGroup metricGroup = this.metricsComponent.getMetricGroups().get(fullMetricGroupName);
-		if (metricGroup != null) {
-			return metricGroup;
-		}
-		metricGroup = new MetricGroup(this, baseName, infixName, creatingExchange);
-		// timer
-		if (this.timingAction == TimingAction.START) {
-			TimerDefinition timerDefinition = new TimerDefinition();
-			timerDefinition.setName(this.timingName);
-			metricGroup.addTimerDefinition(timerDefinition);
-		}
-
-		// expression based histograms
-		metricGroup.addCounterDefinitions(this.counterDefinitions);
-		metricGroup.addMeterDefinitions(this.meterDefinitions);
-		metricGroup.addHistogramDefinitions(this.histogramDefinitions);
-		metricGroup.addGaugeDefinitions(this.gaugeDefinitions);
-		metricGroup.addCachedGaugeDefinitions(this.cachedGaugeDefinitions);
+		return this.metricsComponent.getOrCreateMetricGroup(fullMetricGroupName, new Callable<MetricGroup>() {
+			@Override
+			public MetricGroup call() throws Exception {
+				return createMetricGroup(new MetricGroup(MetricsEndpoint.this, baseName, infixName, creatingExchange));
+			}
+		});
+	}
 
-		//
-		this.metricsComponent.getMetricGroups().put(fullMetricGroupName, metricGroup);
-		getCamelContext().addService(metricGroup);
-		return metricGroup;
+	/**
+	 * @return the isAsync
+	 */
+	public boolean isAsync() {
+		return this.isAsync;
 	}
 
 	/**
@@ -395,11 +445,6 @@ public class MetricsEndpoint extends DefaultEndpoint implements MultipleConsumer
 	 * @throws Exception
 	 */
 	public MetricGroup lookupMetricGroup(final String baseName, final String infixName) throws Exception {
-		String fullMetricGroupName = MetricUtils.calculateFullMetricName(baseName, infixName);
-		MetricGroup metricGroup = this.metricsComponent.getMetricGroups().get(fullMetricGroupName);
-		if (metricGroup != null) {
-			return metricGroup;
-		}
 		return initializeMetricGroup(baseName, infixName);
 	}
 
@@ -410,14 +455,133 @@ public class MetricsEndpoint extends DefaultEndpoint implements MultipleConsumer
 	 * @throws Exception
 	 */
 	public MetricGroup lookupMetricGroup(final String baseName, final String infixName, final Exchange exchange) throws Exception {
-		String fullMetricGroupName = MetricUtils.calculateFullMetricName(baseName, infixName);
-		MetricGroup metricGroup = this.metricsComponent.getMetricGroups().get(fullMetricGroupName);
-		if (metricGroup != null) {
-			return metricGroup;
-		}
 		return initializeMetricGroup(baseName, infixName, exchange);
 	}
 
+	/**
+	 * @return the asyncMetricRecorder, null unless async=true
+	 */
+	AsyncMetricRecorder getAsyncMetricRecorder() {
+		return this.asyncMetricRecorder;
+	}
+
+	/**
+	 * @return the infixMetricGroups
+	 */
+	InfixMetricGroups getInfixMetricGroups() {
+		return this.infixMetricGroups;
+	}
+
+	/**
+	 * @return the internalTimers, null unless enableInternalTimer=true
+	 */
+	InternalTimers getInternalTimers() {
+		return this.internalTimers;
+	}
+
+	/**
+	 * @return the sampler, null unless sampleEvery or sampleRate is set
+	 */
+	Sampler getSampler() {
+		return this.sampler;
+	}
+
+	/**
+	 * Marks the metric group with the exchange, either directly or through the AsyncMetricRecorder if async=true.
+	 * 
+	 * @param resolvedMetricGroup
+	 * @param exchange
+	 * @param weight
+	 *            the number of exchanges this one stands for, see {@link #getSampler()}
+	 */
+	void mark(final ResolvedMetricGroup resolvedMetricGroup, final Exchange exchange, final long weight) {
+		MetricGroup metricGroup = resolvedMetricGroup.getMetricGroup();
+		if (this.asyncMetricRecorder != null) {
+			if (this.internalTimers != null) {
+				long startTime = System.nanoTime();
+				this.asyncMetricRecorder.record(metricGroup, exchange, weight);
+				this.internalTimers.lap(InternalTimers.Phase.UPDATE, startTime);
+			} else {
+				this.asyncMetricRecorder.record(metricGroup, exchange, weight);
+			}
+		} else if (this.internalTimers != null) {
+			// evaluate and apply separately, so that both are measured
+			long[] values = this.internalTimers.getValueBuffer(metricGroup.getEvaluatedValueCount());
+			long startTime = System.nanoTime();
+			metricGroup.evaluate(exchange, values);
+			long evaluatedTime = this.internalTimers.lap(InternalTimers.Phase.EVALUATE, startTime);
+			metricGroup.apply(evaluatedTime, values, weight);
+			this.internalTimers.lap(InternalTimers.Phase.UPDATE, evaluatedTime);
+		} else {
+			metricGroup.mark(exchange, weight);
+		}
+	}
+
+	/**
+	 * Resolves the base metric group of this endpoint, caching the result.
+	 * 
+	 * @return
+	 * @throws Exception
+	 */
+	ResolvedMetricGroup resolveMetricGroup() throws Exception {
+		ResolvedMetricGroup resolved = this.resolvedMetricGroup;
+		if (resolved == null) {
+			resolved = new ResolvedMetricGroup(lookupMetricGroup(this.name), null, this.timingName, this.metricsComponent);
+			if (this.internalTimers != null) {
+				this.internalTimers.registerIn(resolved.getMetricGroup());
+			}
+			this.infixMetricGroups.registerIn(resolved.getMetricGroup());
+			this.resolvedMetricGroup = resolved;
+		}
+		return resolved;
+	}
+
+	/**
+	 * Resolves the runtime metric group for an evaluated infix value, see {@link InfixMetricGroups}.
+	 * 
+	 * @param infixValue
+	 *            a non-empty evaluated infix value
+	 * @param exchange
+	 *            the exchange used to create the metric group if it does not exist yet
+	 * @return
+	 * @throws Exception
+	 */
+	ResolvedMetricGroup resolveMetricGroup(final String infixValue, final Exchange exchange) throws Exception {
+		return this.infixMetricGroups.resolve(infixValue, exchange);
+	}
+
+	/**
+	 * @param async
+	 *            the async to set
+	 */
+	public void setAsync(final String async) {
+		this.isAsync = OptionHelper.parse(async, Boolean.class);
+	}
+
+	/**
+	 * @param asyncBufferSize
+	 *            the asyncBufferSize to set
+	 */
+	public void setAsyncBufferSize(final String asyncBufferSize) {
+		this.asyncBufferSize = Integer.parseInt(asyncBufferSize);
+	}
+
+	/**
+	 * @param asyncOverflowPolicyName
+	 *            the asyncOverflowPolicy to set
+	 */
+	public void setAsyncOverflowPolicy(final String asyncOverflowPolicyName) {
+		this.asyncOverflowPolicy = OverflowPolicy.valueOf(asyncOverflowPolicyName.toUpperCase());
+	}
+
+	/**
+	 * @param asyncSampleEvery
+	 *            the asyncSampleEvery to set
+	 */
+	public void setAsyncSampleEvery(final String asyncSampleEvery) {
+		this.asyncSampleEvery = Integer.parseInt(asyncSampleEvery);
+	}
+
 	/**
 	 * @param cachedGauges
 	 *            the cachedGauges to set
@@ -605,6 +769,10 @@ public class MetricsEndpoint extends DefaultEndpoint implements MultipleConsumer
 		}
 		for (HistogramDefinition histogramDefinition : histogramDefinitions) {
 			histogramDefinition.setExpression(createExpression(histogramDefinition.getValue(), getCamelContext()));
+			if (histogramDefinition.getReservoir() != null) {
+				// fail on an unknown type now rather than when the first metric group is created
+				histogramDefinition.getReservoir().getReservoirType();
+			}
 		}
 		this.histogramDefinitions = histogramDefinitions;
 	}
@@ -617,6 +785,14 @@ public class MetricsEndpoint extends DefaultEndpoint implements MultipleConsumer
 		setInfixes(infix);
 	}
 
+	/**
+	 * @param infixIdleTtl
+	 *            the infixIdleTtl to set, in milliseconds
+	 */
+	public void setInfixIdleTtl(final String infixIdleTtl) {
+		this.infixIdleTtl = Long.parseLong(infixIdleTtl);
+	}
+
 	/**
 	 * @param infixesJson
 	 *            the gauges to set
@@ -637,6 +813,31 @@ public class MetricsEndpoint extends DefaultEndpoint implements MultipleConsumer
 		}
 	}
 
+	/**
+	 * @param influxReporter
+	 */
+	public void setInfluxReporter(final String influxReporter) {
+		setInfluxReporters(influxReporter);
+	}
+
+	/**
+	 * @param influxReporters
+	 *            the influxReporters to set
+	 */
+	public void setInfluxReporters(final String influxReporters) {
+		List<InfluxReporterDefinition> influxReporterDefinitions;
+		try {
+			influxReporterDefinitions = GSON.fromJson(influxReporters, INFLUX_REPORTERS_TYPE);
+		} catch (Exception e) {
+			InfluxReporterDefinition influxReporterDefinition = GSON.fromJson(influxReporters, INFLUX_REPORTER_TYPE);
+			influxReporterDefinitions = new ArrayList<InfluxReporterDefinition>();
+			influxReporterDefinitions.add(influxReporterDefinition);
+		}
+		for (InfluxReporterDefinition influxReporterDefinition : influxReporterDefinitions) {
+			this.reporterDefinitions.add(influxReporterDefinition);
+		}
+	}
+
 	/**
 	 * @param intervalName
 	 *            the intervalName to set
@@ -645,6 +846,14 @@ public class MetricsEndpoint extends DefaultEndpoint implements MultipleConsumer
 		this.intervalName = intervalName;
 	}
 
+	/**
+	 * @param intervalReservoir
+	 *            the intervalReservoir to set, a reservoir type or a reservoir definition
+	 */
+	public void setIntervalReservoir(final String intervalReservoir) {
+		this.intervalReservoir = parseReservoirDefinition(intervalReservoir);
+	}
+
 	/**
 	 * @param intervalTimeUnitString
 	 *            the intervalTimeUnitString to set
@@ -695,6 +904,22 @@ public class MetricsEndpoint extends DefaultEndpoint implements MultipleConsumer
 		}
 	}
 
+	/**
+	 * @param maxInfixGroups
+	 *            the maxInfixGroups to set
+	 */
+	public void setMaxInfixGroups(final String maxInfixGroups) {
+		this.maxInfixGroups = Integer.parseInt(maxInfixGroups);
+	}
+
+	/**
+	 * @param maxLiveInfixGroups
+	 *            the maxLiveInfixGroups to set
+	 */
+	public void setMaxLiveInfixGroups(final String maxLiveInfixGroups) {
+		this.maxLiveInfixGroups = Integer.parseInt(maxLiveInfixGroups);
+	}
+
 	/**
 	 * @param meter
 	 *            the meter to set
@@ -703,26 +928,6 @@ public class MetricsEndpoint extends DefaultEndpoint implements MultipleConsumer
 		setMeters(meter);
 	}
 
-	// /**
-	// * @param timingReservoirName
-	// * the timingReservoir to set
-	// */
-	// public void setTimingReservoir(final String timingReservoirName) {
-	// if (timingReservoirName != null && timingReservoirName.length() > 0) {
-	// char firstChar = timingReservoirName.charAt(0);
-	// if (firstChar == '#') {
-	// String localName = timingReservoirName.substring(1);
-	// if (localName.length() > 0) {
-	// this.timingReservoir = CamelContextHelper.mandatoryLookup(getCamelContext(), timingReservoirName,
-	// Reservoir.class);
-	// }
-	// }
-	// if (this.timingReservoir == null) {
-	// throw new NoSuchBeanException(this.name);
-	// }
-	// }
-	// }
-
 	/**
 	 * @param meters
 	 *            the meters to set
@@ -742,6 +947,81 @@ public class MetricsEndpoint extends DefaultEndpoint implements MultipleConsumer
 		this.meterDefinitions = meterDefinitions;
 	}
 
+	/**
+	 * @param mmapReporter
+	 */
+	public void setMmapReporter(final String mmapReporter) {
+		setMmapReporters(mmapReporter);
+	}
+
+	/**
+	 * @param mmapReporters
+	 *            the mmapReporters to set
+	 */
+	public void setMmapReporters(final String mmapReporters) {
+		List<MmapReporterDefinition> mmapReporterDefinitions;
+		try {
+			mmapReporterDefinitions = GSON.fromJson(mmapReporters, MMAP_REPORTERS_TYPE);
+		} catch (Exception e) {
+			MmapReporterDefinition mmapReporterDefinition = GSON.fromJson(mmapReporters, MMAP_REPORTER_TYPE);
+			mmapReporterDefinitions = new ArrayList<MmapReporterDefinition>();
+			mmapReporterDefinitions.add(mmapReporterDefinition);
+		}
+		for (MmapReporterDefinition mmapReporterDefinition : mmapReporterDefinitions) {
+			this.reporterDefinitions.add(mmapReporterDefinition);
+		}
+	}
+
+	/**
+	 * @param otlpReporter
+	 */
+	public void setOtlpReporter(final String otlpReporter) {
+		setOtlpReporters(otlpReporter);
+	}
+
+	/**
+	 * @param otlpReporters
+	 *            the otlpReporters to set
+	 */
+	public void setOtlpReporters(final String otlpReporters) {
+		List<OtlpReporterDefinition> otlpReporterDefinitions;
+		try {
+			otlpReporterDefinitions = GSON.fromJson(otlpReporters, OTLP_REPORTERS_TYPE);
+		} catch (Exception e) {
+			OtlpReporterDefinition otlpReporterDefinition = GSON.fromJson(otlpReporters, OTLP_REPORTER_TYPE);
+			otlpReporterDefinitions = new ArrayList<OtlpReporterDefinition>();
+			otlpReporterDefinitions.add(otlpReporterDefinition);
+		}
+		for (OtlpReporterDefinition otlpReporterDefinition : otlpReporterDefinitions) {
+			this.reporterDefinitions.add(otlpReporterDefinition);
+		}
+	}
+
+	/**
+	 * @param prometheusReporter
+	 */
+	public void setPrometheusReporter(final String prometheusReporter) {
+		setPrometheusReporters(prometheusReporter);
+	}
+
+	/**
+	 * @param prometheusReporters
+	 *            the prometheusReporters to set
+	 */
+	public void setPrometheusReporters(final String prometheusReporters) {
+		List<PrometheusReporterDefinition> prometheusReporterDefinitions;
+		try {
+			prometheusReporterDefinitions = GSON.fromJson(prometheusReporters, PROMETHEUS_REPORTERS_TYPE);
+		} catch (Exception e) {
+			PrometheusReporterDefinition prometheusReporterDefinition = GSON.fromJson(prometheusReporters, PROMETHEUS_REPORTER_TYPE);
+			prometheusReporterDefinitions = new ArrayList<PrometheusReporterDefinition>();
+			prometheusReporterDefinitions.add(prometheusReporterDefinition);
+		}
+		for (PrometheusReporterDefinition prometheusReporterDefinition : prometheusReporterDefinitions) {
+			this.reporterDefinitions.add(prometheusReporterDefinition);
+		}
+	}
+
 	/**
 	 * @param rateName
 	 *            the rateName to set
@@ -750,6 +1030,22 @@ public class MetricsEndpoint extends DefaultEndpoint implements MultipleConsumer
 		this.rateName = rateName;
 	}
 
+	/**
+	 * @param sampleEvery
+	 *            the sampleEvery to set
+	 */
+	public void setSampleEvery(final String sampleEvery) {
+		this.sampleEvery = Long.parseLong(sampleEvery);
+	}
+
+	/**
+	 * @param sampleRate
+	 *            the sampleRate to set
+	 */
+	public void setSampleRate(final String sampleRate) {
+		this.sampleRate = Double.parseDouble(sampleRate);
+	}
+
 	/**
 	 * @param sinceName
 	 *            the sinceName to set
@@ -808,6 +1104,31 @@ public class MetricsEndpoint extends DefaultEndpoint implements MultipleConsumer
 		}
 	}
 
+	/**
+	 * @param statsdReporter
+	 */
+	public void setStatsdReporter(final String statsdReporter) {
+		setStatsdReporters(statsdReporter);
+	}
+
+	/**
+	 * @param statsdReporters
+	 *            the statsdReporters to set
+	 */
+	public void setStatsdReporters(final String statsdReporters) {
+		List<StatsdReporterDefinition> statsdReporterDefinitions;
+		try {
+			statsdReporterDefinitions = GSON.fromJson(statsdReporters, STATSD_REPORTERS_TYPE);
+		} catch (Exception e) {
+			StatsdReporterDefinition statsdReporterDefinition = GSON.fromJson(statsdReporters, STATSD_REPORTER_TYPE);
+			statsdReporterDefinitions = new ArrayList<StatsdReporterDefinition>();
+			statsdReporterDefinitions.add(statsdReporterDefinition);
+		}
+		for (StatsdReporterDefinition statsdReporterDefinition : statsdReporterDefinitions) {
+			this.reporterDefinitions.add(statsdReporterDefinition);
+		}
+	}
+
 	/**
 	 * @param timingActionName
 	 *            the timing to set
@@ -825,14 +1146,91 @@ public class MetricsEndpoint extends DefaultEndpoint implements MultipleConsumer
 		this.timingName = timingName;
 	}
 
+	/**
+	 * @param timingReservoir
+	 *            the timingReservoir to set, a reservoir type or a reservoir definition
+	 */
+	public void setTimingReservoir(final String timingReservoir) {
+		this.timingReservoir = parseReservoirDefinition(timingReservoir);
+	}
+
+	/**
+	 * Adds the endpoint's metric definitions to a newly constructed MetricGroup and registers it as a service.
+	 * 
+	 * @param metricGroup
+	 * @return
+	 * @throws Exception
+	 */
+	private MetricGroup createMetricGroup(final MetricGroup metricGroup) throws Exception {
+		// timer
+		if (this.timingAction == TimingAction.START) {
+			TimerDefinition timerDefinition = new TimerDefinition();
+			timerDefinition.setName(this.timingName);
+			timerDefinition.setReservoir(this.timingReservoir);
+			metricGroup.addTimerDefinition(timerDefinition);
+		}
+
+		// expression based histograms
+		metricGroup.addCounterDefinitions(this.counterDefinitions);
+		metricGroup.addMeterDefinitions(this.meterDefinitions);
+		metricGroup.addHistogramDefinitions(this.histogramDefinitions);
+		metricGroup.addGaugeDefinitions(this.gaugeDefinitions);
+		metricGroup.addCachedGaugeDefinitions(this.cachedGaugeDefinitions);
+
+		getCamelContext().addService(metricGroup);
+		return metricGroup;
+	}
+
 	/**
 	 * @param baseName
 	 * @throws Exception
 	 */
-	private synchronized MetricGroup initializeMetricGroup(final String baseName) throws Exception {
+	private MetricGroup initializeMetricGroup(final String baseName) throws Exception {
 		return initializeMetricGroup(this.name, null);
 	}
 
+	/**
+	 * Creates the sampler if sampleEvery or sampleRate is set. A timing=stop endpoint never samples, it stops whichever
+	 * timers the start endpoint sampled.
+	 */
+	private void initializeSampler() {
+		if (this.sampleEvery == null && this.sampleRate == null) {
+			return;
+		}
+		if (this.sampleEvery != null && this.sampleRate != null) {
+			throw new RuntimeCamelException("only one of sampleEvery and sampleRate may be set: " + getEndpointUri());
+		}
+		if (this.timingAction == TimingAction.STOP) {
+			LOGGER.warn(MARKER, "ignoring sampling, timingAction={}", this.timingAction);
+			return;
+		}
+		if (this.sampleEvery != null) {
+			this.sampler = Sampler.everyN(this.sampleEvery);
+		} else {
+			this.sampler = Sampler.withRate(this.sampleRate);
+		}
+	}
+
+	/**
+	 * @param reservoir
+	 *            a reservoir type, e.g. hdr, or a reservoir definition, e.g. {type=hdr,significantDigits=3}
+	 * @return
+	 */
+	private ReservoirDefinition parseReservoirDefinition(final String reservoir) {
+		ReservoirDefinition reservoirDefinition;
+		try {
+			reservoirDefinition = GSON.fromJson(reservoir, RESERVOIR_DEFINITION_TYPE);
+		} catch (Exception e) {
+			reservoirDefinition = null;
+		}
+		if (reservoirDefinition == null) {
+			reservoirDefinition = ReservoirDefinition.ofType(reservoir);
+		}
+		// fail on an unknown type now rather than when the first metric group is created
+		reservoirDefinition.getReservoirType();
+		return reservoirDefinition;
+	}
+
 	/**
 	 * @param parameters
 	 */
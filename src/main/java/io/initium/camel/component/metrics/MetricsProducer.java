@@ -15,9 +15,7 @@
 // @formatter:on
 package io.initium.camel.component.metrics;
 
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 import org.apache.camel.Exchange;
 import org.apache.camel.Expression;
@@ -25,17 +23,16 @@ import org.apache.camel.impl.DefaultProducer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.Timer;
-import com.codahale.metrics.Timer.Context;
+
+import io.initium.camel.component.metrics.InternalTimers.Phase;
 
 import static io.initium.camel.component.metrics.MetricsComponent.MARKER;
-import static io.initium.camel.component.metrics.MetricsComponent.TIMING_MAP_NAME;
 
 /**
  * @author Steve Fosdal, <steve@initium.io>
  * @author Hector Veiga Ortiz, <hector@initium.io>
- * @version 1.0
+ * @version 1.4
  * @since 2014-02-19
  */
 public class MetricsProducer extends DefaultProducer {
@@ -44,23 +41,9 @@ public class MetricsProducer extends DefaultProducer {
 	private static final String	SELF	= Thread.currentThread().getStackTrace()[1].getClassName();
 	private static final Logger	LOGGER	= LoggerFactory.getLogger(SELF);
 
-	/**
-	 * @param exchange
-	 * @return
-	 */
-	private static Map<String, Context> getTimerContextMap(final Exchange exchange) {
-		@SuppressWarnings("unchecked")
-		Map<String, Context> timerContextMap = exchange.getProperty(TIMING_MAP_NAME, Map.class);
-		if (timerContextMap != null) {
-			return timerContextMap;
-		}
-		timerContextMap = new HashMap<String, Context>();
-		exchange.setProperty(TIMING_MAP_NAME, timerContextMap);
-		return timerContextMap;
-	}
-
 	// fields
 	private final MetricsEndpoint	endpoint;
+	private final Sampler			sampler;
 
 	/**
 	 * @param endpoint
@@ -69,6 +52,7 @@ public class MetricsProducer extends DefaultProducer {
 		super(endpoint);
 		LOGGER.debug(MARKER, "MetricsProducer({})", endpoint);
 		this.endpoint = endpoint;
+		this.sampler = endpoint.getSampler();
 	}
 
 	@Override
@@ -78,116 +62,130 @@ public class MetricsProducer extends DefaultProducer {
 
 	@Override
 	public void process(final Exchange exchange) throws Exception {
-		LOGGER.debug(MARKER, "process({})", exchange);
-		Context internalTimerContext = null;
-		if (this.endpoint.isInternalTimerEnabled()) {
-			Timer internalTimer = this.endpoint.getInternalTimer(this.endpoint.getTimingAction());
-			if (internalTimer != null) {
-				internalTimerContext = internalTimer.time();
+		long weight = 1;
+		if (this.sampler != null) {
+			weight = this.sampler.sample();
+			if (weight == 0) {
+				return;
 			}
 		}
+		LOGGER.debug(MARKER, "process({})", exchange);
+		InternalTimers internalTimers = this.endpoint.getInternalTimers();
+		if (internalTimers == null) {
+			processMetricGroups(exchange, weight, null, 0);
+			return;
+		}
+		long startTime = System.nanoTime();
 		try {
-			MetricGroup standardMetricGroup = this.endpoint.lookupMetricGroup(this.endpoint.getName());
-			switch (this.endpoint.getTimingAction()) {
-				case START:
-					startTimer(standardMetricGroup, exchange);
-				case NOOP:
-					standardMetricGroup.mark(exchange);
-					break;
-				case STOP:
-					stopTimer(exchange);
-					break;
-			}
-
-			// determine runtime MetricGroups
-			List<Expression> infixExpressions = this.endpoint.getInfixExpressions();
-			if (infixExpressions != null) {
-				for (Expression infixExpression : infixExpressions) {
-					MetricGroup runtimeMetricGroup = null;
-					String infixEvaluated = infixExpression.evaluate(exchange, String.class);
-					String fullMetricGroupName = MetricRegistry.name(this.endpoint.getName(), infixEvaluated);
-					// don't use it if it's equal to the base metric
-					if (!fullMetricGroupName.equalsIgnoreCase(MetricRegistry.name(this.endpoint.getName()))) {
-						runtimeMetricGroup = this.endpoint.lookupMetricGroup(this.endpoint.getName(), infixEvaluated, exchange);
-					}
-					if (runtimeMetricGroup != null) {
-						switch (this.endpoint.getTimingAction()) {
-							case START:
-								startTimer(runtimeMetricGroup, infixEvaluated, exchange);
-							case NOOP:
-								runtimeMetricGroup.mark(exchange);
-								break;
-							case STOP:
-								stopTimer(infixEvaluated, exchange);
-								break;
-						}
-					}
-				}
-			}
+			processMetricGroups(exchange, weight, internalTimers, startTime);
 		} finally {
-			if (internalTimerContext != null) {
-				internalTimerContext.stop();
-			}
+			internalTimers.lap(Phase.TOTAL, startTime);
 		}
 	}
 
 	/**
-	 * @param metricGroup
-	 * @param exchange
+	 * @param internalTimers
+	 * @param phase
+	 * @param since
+	 * @return the time of this lap, 0 if internalTimers is null
 	 */
-	private void startTimer(final MetricGroup metricGroup, final Exchange exchange) {
-		startTimer(metricGroup, null, exchange);
+	private static long lap(final InternalTimers internalTimers, final Phase phase, final long since) {
+		if (internalTimers == null) {
+			return 0;
+		}
+		return internalTimers.lap(phase, since);
 	}
 
-	private void startTimer(final MetricGroup metricGroup, final String infixValue, final Exchange exchange) {
-		Map<String, Context> timerContextMap = getTimerContextMap(exchange);
-		if (timerContextMap != null) {
-			String fullTimerName;
-			if (infixValue != null) {
-				fullTimerName = MetricRegistry.name(this.endpoint.getName(), infixValue, this.endpoint.getTimingName());
-			} else {
-				fullTimerName = MetricRegistry.name(this.endpoint.getName(), this.endpoint.getTimingName());
-			}
-			// stop previous context if it exists
-			Context timerContext = timerContextMap.get(fullTimerName);
-			if (timerContext != null) {
-				timerContext.stop();
-			}
-			// start new context
-			timerContext = metricGroup.getTimer().time();
-			timerContextMap.put(fullTimerName, timerContext);
-		} else {
-			LOGGER.warn(MARKER, "timerContextMap is null, timing will not be recorded correctly");
+	/**
+	 * @param internalTimers
+	 * @return the current time, 0 if internalTimers is null
+	 */
+	private static long now(final InternalTimers internalTimers) {
+		if (internalTimers == null) {
+			return 0;
 		}
+		return System.nanoTime();
 	}
 
 	/**
+	 * Applies the timing action of the endpoint to one metric group.
+	 * 
+	 * @param resolvedMetricGroup
 	 * @param exchange
+	 * @param weight
+	 * @param internalTimers
+	 *            null unless enableInternalTimer=true
+	 * @param lapTime
+	 * @return the time of the last lap
 	 */
-	private void stopTimer(final Exchange exchange) {
-		stopTimer(null, exchange);
+	private long processMetricGroup(final ResolvedMetricGroup resolvedMetricGroup, final Exchange exchange, final long weight, final InternalTimers internalTimers, final long lapTime) {
+		long lclLapTime = lapTime;
+		switch (this.endpoint.getTimingAction()) {
+			case START:
+				startTimer(resolvedMetricGroup, exchange);
+				lclLapTime = lap(internalTimers, Phase.TIMING, lclLapTime);
+			case NOOP:
+				// the endpoint measures evaluation and update itself
+				this.endpoint.mark(resolvedMetricGroup, exchange, weight);
+				return now(internalTimers);
+			case STOP:
+				stopTimer(resolvedMetricGroup, exchange);
+				return lap(internalTimers, Phase.TIMING, lclLapTime);
+		}
+		return lclLapTime;
 	}
 
 	/**
-	 * @param infixValue
 	 * @param exchange
+	 * @param weight
+	 * @param internalTimers
+	 *            null unless enableInternalTimer=true
+	 * @param startTime
+	 * @throws Exception
 	 */
-	private void stopTimer(final String infixValue, final Exchange exchange) {
-		Map<String, Context> timerContextMap = getTimerContextMap(exchange);
-		if (timerContextMap != null) {
-			String fullTimerName;
-			if (infixValue != null) {
-				fullTimerName = MetricRegistry.name(this.endpoint.getName(), infixValue, this.endpoint.getTimingName());
-			} else {
-				fullTimerName = MetricRegistry.name(this.endpoint.getName(), this.endpoint.getTimingName());
-			}
-			// stop previous context if it exists
-			Context timerContext = timerContextMap.get(fullTimerName);
-			if (timerContext != null) {
-				timerContext.stop();
+	private void processMetricGroups(final Exchange exchange, final long weight, final InternalTimers internalTimers, final long startTime) throws Exception {
+		ResolvedMetricGroup standardMetricGroup = this.endpoint.resolveMetricGroup();
+		long lapTime = lap(internalTimers, Phase.LOOKUP, startTime);
+		lapTime = processMetricGroup(standardMetricGroup, exchange, weight, internalTimers, lapTime);
+
+		// determine runtime MetricGroups
+		List<Expression> infixExpressions = this.endpoint.getInfixExpressions();
+		if (infixExpressions != null) {
+			for (Expression infixExpression : infixExpressions) {
+				String infixEvaluated = infixExpression.evaluate(exchange, String.class);
+				lapTime = lap(internalTimers, Phase.EVALUATE, lapTime);
+				// don't use it if it's equal to the base metric
+				if (infixEvaluated == null || infixEvaluated.length() == 0) {
+					continue;
+				}
+				ResolvedMetricGroup runtimeMetricGroup = this.endpoint.resolveMetricGroup(infixEvaluated, exchange);
+				lapTime = lap(internalTimers, Phase.LOOKUP, lapTime);
+				lapTime = processMetricGroup(runtimeMetricGroup, exchange, weight, internalTimers, lapTime);
 			}
+		}
+	}
+
+	/**
+	 * @param resolvedMetricGroup
+	 * @param exchange
+	 */
+	private void startTimer(final ResolvedMetricGroup resolvedMetricGroup, final Exchange exchange) {
+		Timer timer = resolvedMetricGroup.getMetricGroup().getTimer();
+		if (timer != null) {
+			TimerSlots.start(exchange, resolvedMetricGroup.getTimerSlot(), timer);
 		} else {
-			LOGGER.warn(MARKER, "timerContextMap is null, timing will not be recorded correctly");
+			LOGGER.warn(MARKER, "no timer found for {}, timing will not be recorded", resolvedMetricGroup.getFullTimerName());
+		}
+	}
+
+	/**
+	 * @param resolvedMetricGroup
+	 * @param exchange
+	 */
+	private void stopTimer(final ResolvedMetricGroup resolvedMetricGroup, final Exchange exchange) {
+		Timer timer = resolvedMetricGroup.getMetricGroup().getTimer();
+		if (timer != null) {
+			TimerSlots.stop(exchange, resolvedMetricGroup.getTimerSlot(), timer);
 		}
 	}
 
@@ -0,0 +1,405 @@
+// @formatter:off
+/**
+ * Copyright 2014 Initium.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+// @formatter:on
+package io.initium.camel.component.metrics;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.camel.spi.ExecutorServiceManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static io.initium.camel.component.metrics.MetricsComponent.MARKER;
+
+/**
+ * Gathers the data points the {@link OtlpReporter}s of every metric group report in a period, grouped by metric name,
+ * and encodes them as one OTLP/HTTP protobuf ExportMetricsServiceRequest when the period ends, which a sender thread
+ * then posts, so the reporters never wait for the collector. A request still waiting for the sender thread when the
+ * next is encoded is replaced by it. The buffers of the encoding are kept from one period to the next, except those
+ * of metrics that reported nothing in a period. Reporters of every metric group of a MetricsComponent exporting to the
+ * same URL with the same service name share one instance. The sender threads come from the ExecutorServiceManager of
+ * the CamelContext, and the exporters still open when the component stops are stopped with it.
+ *
+ * @author Steve Fosdal, <steve@initium.io>
+ * @author Hector Veiga Ortiz, <hector@initium.io>
+ * @version 1.4
+ * @since 2026-10-18
+ */
+public final class OtlpExporter implements Runnable {
+
+	/**
+	 * The data points of one metric gathered in the period.
+	 */
+	private static final class MetricBuffer {
+
+		// fields
+		private final String			name;
+		private final String			unit;
+		private final int				type;
+		private final boolean			isMonotonic;
+		private final ProtobufWriter	dataPoints	= new ProtobufWriter();
+
+		/**
+		 * @param name
+		 * @param unit
+		 * @param type
+		 * @param isMonotonic
+		 */
+		private MetricBuffer(final String name, final String unit, final int type, final boolean isMonotonic) {
+			this.name = name;
+			this.unit = unit;
+			this.type = type;
+			this.isMonotonic = isMonotonic;
+		}
+	}
+
+	// logging
+	private static final String						SELF						= Thread.currentThread().getStackTrace()[1].getClassName();
+	private static final Logger						LOGGER						= LoggerFactory.getLogger(SELF);
+
+	// constants, the numbers of the fields of a Metric holding each type of data
+	public static final int							GAUGE						= 5;
+	public static final int							SUM							= 7;
+	public static final int							SUMMARY						= 11;
+	public static final String						CONTENT_TYPE				= "application/x-protobuf";
+	// the aggregation temporality of sums reporting the total since the start
+	private static final int						CUMULATIVE					= 2;
+	private static final int						TIMEOUT_MILLIS				= 5000;
+	private static final String						SCOPE_NAME					= "io.initium.camel.metrics";
+
+	/**
+	 * @param metricsComponent
+	 *            the component owning the exporter
+	 * @param url
+	 *            the metrics endpoint of the collector, e.g. http://localhost:4318/v1/metrics
+	 * @param serviceName
+	 *            the service.name attribute of the resource
+	 * @return the exporter, to be closed once it is no longer used
+	 * @throws IOException
+	 *             if the url is malformed
+	 */
+	public static OtlpExporter open(final MetricsComponent metricsComponent, final String url, final String serviceName) throws IOException {
+		String key = url + " service.name=" + serviceName;
+		Map<String, OtlpExporter> otlpExporters = metricsComponent.getOtlpExporters();
+		synchronized (otlpExporters) {
+			OtlpExporter otlpExporter = otlpExporters.get(key);
+			if (otlpExporter == null) {
+				LOGGER.info(MARKER, "opening otlp exporter: {}", key);
+				otlpExporter = new OtlpExporter(key, new URL(url), serviceName, otlpExporters, metricsComponent.getCamelContext().getExecutorServiceManager());
+				otlpExporter.start(metricsComponent);
+				otlpExporters.put(key, otlpExporter);
+			}
+			otlpExporter.references++;
+			return otlpExporter;
+		}
+	}
+
+	/**
+	 * Stops the exporters of a component that are still open, dropping a request not yet posted.
+	 *
+	 * @param metricsComponent
+	 */
+	static void stopAll(final MetricsComponent metricsComponent) {
+		Map<String, OtlpExporter> otlpExporters = metricsComponent.getOtlpExporters();
+		List<OtlpExporter> openExporters;
+		synchronized (otlpExporters) {
+			openExporters = new ArrayList<OtlpExporter>(otlpExporters.values());
+			otlpExporters.clear();
+		}
+		for (OtlpExporter otlpExporter : openExporters) {
+			LOGGER.info(MARKER, "closing otlp exporter: {}", otlpExporter.key);
+			otlpExporter.stop();
+		}
+	}
+
+	// fields
+	private final String							key;
+	private final URL								url;
+	private final ProtobufWriter					resource					= new ProtobufWriter();
+	private final ProtobufWriter					scope						= new ProtobufWriter();
+	private final Map<String, MetricBuffer>			metricBuffers				= new TreeMap<String, MetricBuffer>();
+	private final ProtobufWriter					data						= new ProtobufWriter();
+	private final ProtobufWriter					metric						= new ProtobufWriter();
+	private final ProtobufWriter					scopeMetrics				= new ProtobufWriter(4096);
+	private final ProtobufWriter					resourceMetrics				= new ProtobufWriter(4096);
+	private final ProtobufWriter					request						= new ProtobufWriter(4096);
+	private final AtomicLong						requestCount				= new AtomicLong();
+	private final AtomicLong						replacedCount				= new AtomicLong();
+	private final AtomicInteger						failures					= new AtomicInteger();
+	// the encoded request waiting for the sender thread, if any
+	private final AtomicReference<byte[]>			pendingRequest				= new AtomicReference<byte[]>();
+	private final Map<String, OtlpExporter>			otlpExporters;
+	private final ExecutorServiceManager			executorServiceManager;
+	private ExecutorService							executorService;
+	private boolean									hasDataPoints;
+	private int										references;
+
+	/**
+	 * @param key
+	 * @param url
+	 * @param serviceName
+	 * @param otlpExporters
+	 *            the exporters of the component, by url and service name
+	 * @param executorServiceManager
+	 */
+	private OtlpExporter(final String key, final URL url, final String serviceName, final Map<String, OtlpExporter> otlpExporters, final ExecutorServiceManager executorServiceManager) {
+		this.key = key;
+		this.url = url;
+		this.otlpExporters = otlpExporters;
+		this.executorServiceManager = executorServiceManager;
+		// Resource { attributes: [ KeyValue { key: service.name, value: AnyValue { string_value } } ] }
+		ProtobufWriter anyValue = new ProtobufWriter();
+		anyValue.writeString(1, serviceName);
+		ProtobufWriter keyValue = new ProtobufWriter();
+		keyValue.writeString(1, "service.name");
+		keyValue.writeMessage(2, anyValue);
+		this.resource.writeMessage(1, keyValue);
+		// InstrumentationScope { name }
+		this.scope.writeString(1, SCOPE_NAME);
+	}
+
+	/**
+	 * Adds a data point to the metric of the name, unless the metric was added with another type.
+	 *
+	 * @param name
+	 * @param unit
+	 *            the unit of the metric, null for none
+	 * @param type
+	 *            {@link #GAUGE}, {@link #SUM} or {@link #SUMMARY}
+	 * @param isMonotonic
+	 *            for a sum, whether it only increases
+	 * @param dataPoint
+	 *            the encoded NumberDataPoint or SummaryDataPoint
+	 */
+	synchronized void add(final String name, final String unit, final int type, final boolean isMonotonic, final ProtobufWriter dataPoint) {
+		MetricBuffer metricBuffer = this.metricBuffers.get(name);
+		if (metricBuffer == null) {
+			metricBuffer = new MetricBuffer(name, unit, type, isMonotonic);
+			this.metricBuffers.put(name, metricBuffer);
+		} else if (metricBuffer.type != type) {
+			LOGGER.debug(MARKER, "skipping data point of metric {} of another type: {}", name, type);
+			return;
+		}
+		metricBuffer.dataPoints.writeMessage(1, dataPoint);
+		this.hasDataPoints = true;
+	}
+
+	/**
+	 * Releases the exporter; the last user stops the sender thread, dropping a request not yet posted.
+	 */
+	public void close() {
+		synchronized (this.otlpExporters) {
+			if (--this.references > 0 || this.otlpExporters.get(this.key) != this) {
+				// still in use, or already stopped with the component
+				return;
+			}
+			this.otlpExporters.remove(this.key);
+		}
+		LOGGER.info(MARKER, "closing otlp exporter: {}", this.key);
+		stop();
+	}
+
+	/**
+	 * Encodes the data points gathered since the last flush, if any, as one request and hands it to the sender thread.
+	 * A request that fails, or is replaced before it is posted, is not sent again: the sums and summaries are
+	 * cumulative, so the next period carries what it would have.
+	 */
+	public void flush() {
+		byte[] body = encode();
+		if (body == null) {
+			return;
+		}
+		if (this.pendingRequest.getAndSet(body) != null) {
+			// the sender thread has not taken the last one yet, and will take this one instead
+			this.replacedCount.incrementAndGet();
+			return;
+		}
+		try {
+			this.executorService.execute(this);
+		} catch (RejectedExecutionException e) {
+			LOGGER.debug(MARKER, "otlp exporter {} is stopped, dropping {} bytes of metrics", this.key, body.length);
+			this.pendingRequest.set(null);
+		}
+	}
+
+	/**
+	 * @return the number of requests that failed
+	 */
+	public int getFailures() {
+		return this.failures.get();
+	}
+
+	/**
+	 * @return the number of metrics whose encoding buffers are kept
+	 */
+	synchronized int getMetricBufferCount() {
+		return this.metricBuffers.size();
+	}
+
+	/**
+	 * @return the number of requests replaced by the next before the sender thread took them
+	 */
+	public long getReplacedCount() {
+		return this.replacedCount.get();
+	}
+
+	/**
+	 * @return the number of requests accepted by the collector
+	 */
+	public long getRequestCount() {
+		return this.requestCount.get();
+	}
+
+	/**
+	 * @return true once the sender thread has stopped
+	 */
+	boolean isStopped() {
+		return this.executorService.isTerminated();
+	}
+
+	/**
+	 * Posts the pending request, if any, on the sender thread.
+	 */
+	@Override
+	public void run() {
+		byte[] body = this.pendingRequest.getAndSet(null);
+		if (body == null) {
+			return;
+		}
+		try {
+			int status = post(body);
+			if (status / 100 == 2) {
+				this.requestCount.incrementAndGet();
+				return;
+			}
+			LOGGER.warn(MARKER, "otlp collector at {} answered {} bytes of metrics with HTTP status {}", this.url, body.length, status);
+		} catch (IOException e) {
+			LOGGER.warn(MARKER, "unable to export metrics to otlp collector at {}: {}", this.url, e.toString());
+		}
+		this.failures.incrementAndGet();
+	}
+
+	/**
+	 * @return the request holding the data points gathered since the last flush, null if there are none
+	 */
+	private synchronized byte[] encode() {
+		if (!this.hasDataPoints) {
+			return null;
+		}
+		this.hasDataPoints = false;
+		// ScopeMetrics { scope, metrics: [ Metric { name, unit, gauge | sum | summary } ] }
+		this.scopeMetrics.reset();
+		this.scopeMetrics.writeMessage(1, this.scope);
+		for (Iterator<MetricBuffer> iterator = this.metricBuffers.values().iterator(); iterator.hasNext();) {
+			MetricBuffer metricBuffer = iterator.next();
+			if (metricBuffer.dataPoints.size() == 0) {
+				// nothing reported it in the period, e.g. its metric group was evicted
+				iterator.remove();
+				continue;
+			}
+			this.data.reset();
+			this.data.writeRaw(metricBuffer.dataPoints);
+			if (metricBuffer.type == SUM) {
+				this.data.writeVarint(2, CUMULATIVE);
+				this.data.writeBool(3, metricBuffer.isMonotonic);
+			}
+			this.metric.reset();
+			this.metric.writeString(1, metricBuffer.name);
+			if (metricBuffer.unit != null) {
+				this.metric.writeString(3, metricBuffer.unit);
+			}
+			this.metric.writeMessage(metricBuffer.type, this.data);
+			this.scopeMetrics.writeMessage(2, this.metric);
+			metricBuffer.dataPoints.reset();
+		}
+		// ExportMetricsServiceRequest { resource_metrics: [ ResourceMetrics { resource, scope_metrics } ] }
+		this.resourceMetrics.reset();
+		this.resourceMetrics.writeMessage(1, this.resource);
+		this.resourceMetrics.writeMessage(2, this.scopeMetrics);
+		this.request.reset();
+		this.request.writeMessage(1, this.resourceMetrics);
+		return this.request.toByteArray();
+	}
+
+	/**
+	 * @param owner
+	 *            the source of the sender thread
+	 */
+	private void start(final Object owner) {
+		this.executorService = this.executorServiceManager.newSingleThreadExecutor(owner, "MetricsOtlpExporter[" + this.url + "]");
+	}
+
+	/**
+	 *
+	 */
+	private void stop() {
+		this.executorServiceManager.shutdownNow(this.executorService);
+		try {
+			this.executorService.awaitTermination(1, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * @param body
+	 * @return the status of the response
+	 * @throws IOException
+	 */
+	private int post(final byte[] body) throws IOException {
+		HttpURLConnection connection = (HttpURLConnection) this.url.openConnection();
+		try {
+			connection.setConnectTimeout(TIMEOUT_MILLIS);
+			connection.setReadTimeout(TIMEOUT_MILLIS);
+			connection.setRequestMethod("POST");
+			connection.setDoOutput(true);
+			connection.setFixedLengthStreamingMode(body.length);
+			connection.setRequestProperty("Content-Type", CONTENT_TYPE);
+			OutputStream outputStream = connection.getOutputStream();
+			outputStream.write(body);
+			outputStream.close();
+			int status = connection.getResponseCode();
+			// read the response so that the connection can be kept alive
+			InputStream inputStream = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+			if (inputStream != null) {
+				byte[] discarded = new byte[512];
+				while (inputStream.read(discarded) >= 0) {
+					// discard
+				}
+				inputStream.close();
+			}
+			return status;
+		} catch (IOException e) {
+			connection.disconnect();
+			throw e;
+		}
+	}
+
+}
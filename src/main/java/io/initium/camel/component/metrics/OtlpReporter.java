@@ -0,0 +1,266 @@
+// @formatter:off
+/**
+ * Copyright 2014 Initium.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+// @formatter:on
+package io.initium.camel.component.metrics;
+
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.SortedMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricFilter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.ScheduledReporter;
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.Timer;
+
+/**
+ * Reports the metrics of a metric group to an {@link OtlpExporter}, which sends what the reporters of every group
+ * reported in a period as one request. A metric is exported under the base name of its group followed by its own name,
+ * e.g. orders.rate, and the infix of the group, if any, is the value of an attribute, so that the metrics of every
+ * infix group are data points of the same metric. Counters are non-monotonic sums and meters monotonic sums of their
+ * count, both cumulative since the reporter was built; gauges with a number or boolean value are gauges; histograms
+ * and timers are summaries with the quantiles 0 (the minimum), 0.5, 0.75, 0.95, 0.98, 0.99, 0.999 and 1 (the maximum).
+ *
+ * @author Steve Fosdal, <steve@initium.io>
+ * @author Hector Veiga Ortiz, <hector@initium.io>
+ * @version 1.4
+ * @since 2026-10-18
+ */
+@SuppressWarnings("rawtypes")
+public final class OtlpReporter extends ScheduledReporter implements BatchingReporter {
+
+	// constants
+	private static final long			NANOS_PER_MILLISECOND	= TimeUnit.MILLISECONDS.toNanos(1);
+
+	/**
+	 * @param durationUnit
+	 * @return the UCUM symbol of the unit
+	 */
+	private static String getUnit(final TimeUnit durationUnit) {
+		switch (durationUnit) {
+			case NANOSECONDS:
+				return "ns";
+			case MICROSECONDS:
+				return "us";
+			case MILLISECONDS:
+				return "ms";
+			case SECONDS:
+				return "s";
+			case MINUTES:
+				return "min";
+			case HOURS:
+				return "h";
+			default:
+				return "d";
+		}
+	}
+
+	// fields
+	private final OtlpExporter			otlpExporter;
+	private final String				prefix;
+	private final String				baseName;
+	private final String				durationUnit;
+	private final long					startTimeNanos;
+	private final ProtobufWriter		attributes				= new ProtobufWriter();
+	private final ProtobufWriter		dataPoint				= new ProtobufWriter();
+	private final ProtobufWriter		valueAtQuantile			= new ProtobufWriter(32);
+	private final Map<String, String>	metricNames				= new ConcurrentHashMap<String, String>();
+	private long						timeNanos;
+
+	/**
+	 * @param metricRegistry
+	 * @param filter
+	 * @param rateUnit
+	 * @param durationUnit
+	 *            the unit of the values of timers
+	 * @param baseName
+	 *            the base name of the metric group
+	 * @param infixName
+	 *            the infix of the metric group, null if it has none
+	 * @param infixAttribute
+	 *            the key of the attribute holding the infix
+	 * @param otlpExporter
+	 *            the exporter, closed when the reporter is stopped
+	 */
+	public OtlpReporter(final MetricRegistry metricRegistry, final MetricFilter filter, final TimeUnit rateUnit, final TimeUnit durationUnit, final String baseName, final String infixName, final String infixAttribute, final OtlpExporter otlpExporter) {
+		super(metricRegistry, "otlp-reporter", filter, rateUnit, durationUnit);
+		this.otlpExporter = otlpExporter;
+		this.baseName = baseName;
+		this.prefix = (infixName == null ? baseName : MetricRegistry.name(baseName, infixName)) + ".";
+		this.durationUnit = getUnit(durationUnit);
+		this.startTimeNanos = System.currentTimeMillis() * NANOS_PER_MILLISECOND;
+		if (infixName != null) {
+			// KeyValue { key, value: AnyValue { string_value } }, the attributes field of every data point
+			ProtobufWriter anyValue = new ProtobufWriter();
+			anyValue.writeString(1, infixName);
+			ProtobufWriter keyValue = new ProtobufWriter();
+			keyValue.writeString(1, infixAttribute);
+			keyValue.writeMessage(2, anyValue);
+			this.attributes.writeMessage(7, keyValue);
+		}
+	}
+
+	@Override
+	public void endPeriod() {
+		this.otlpExporter.flush();
+	}
+
+	/**
+	 * @return the exporter
+	 */
+	public OtlpExporter getOtlpExporter() {
+		return this.otlpExporter;
+	}
+
+	@Override
+	public synchronized void report(final SortedMap<String, Gauge> gauges, final SortedMap<String, Counter> counters, final SortedMap<String, Histogram> histograms, final SortedMap<String, Meter> meters, final SortedMap<String, Timer> timers) {
+		this.timeNanos = System.currentTimeMillis() * NANOS_PER_MILLISECOND;
+		for (Entry<String, Gauge> entry : gauges.entrySet()) {
+			Object value = entry.getValue().getValue();
+			if (value instanceof Double || value instanceof Float) {
+				addNumber(entry.getKey(), OtlpExporter.GAUGE, false, ((Number) value).doubleValue());
+			} else if (value instanceof Number) {
+				addNumber(entry.getKey(), OtlpExporter.GAUGE, false, ((Number) value).longValue());
+			} else if (value instanceof Boolean) {
+				addNumber(entry.getKey(), OtlpExporter.GAUGE, false, ((Boolean) value) ? 1 : 0);
+			}
+		}
+		for (Entry<String, Counter> entry : counters.entrySet()) {
+			addNumber(entry.getKey(), OtlpExporter.SUM, false, entry.getValue().getCount());
+		}
+		for (Entry<String, Histogram> entry : histograms.entrySet()) {
+			Histogram histogram = entry.getValue();
+			addSummary(entry.getKey(), null, histogram.getCount(), histogram.getSnapshot(), 1);
+		}
+		for (Entry<String, Meter> entry : meters.entrySet()) {
+			addNumber(entry.getKey(), OtlpExporter.SUM, true, entry.getValue().getCount());
+		}
+		for (Entry<String, Timer> entry : timers.entrySet()) {
+			Timer timer = entry.getValue();
+			addSummary(entry.getKey(), this.durationUnit, timer.getCount(), timer.getSnapshot(), convertDuration(1));
+		}
+	}
+
+	@Override
+	public void stop() {
+		super.stop();
+		this.otlpExporter.close();
+	}
+
+	/**
+	 * Adds a NumberDataPoint with a double value.
+	 *
+	 * @param name
+	 * @param type
+	 * @param isMonotonic
+	 * @param value
+	 */
+	private void addNumber(final String name, final int type, final boolean isMonotonic, final double value) {
+		if (Double.isNaN(value) || Double.isInfinite(value)) {
+			return;
+		}
+		startDataPoint(type != OtlpExporter.GAUGE);
+		this.dataPoint.writeDouble(4, value);
+		this.otlpExporter.add(getMetricName(name), null, type, isMonotonic, this.dataPoint);
+	}
+
+	/**
+	 * Adds a NumberDataPoint with an integer value.
+	 *
+	 * @param name
+	 * @param type
+	 * @param isMonotonic
+	 * @param value
+	 */
+	private void addNumber(final String name, final int type, final boolean isMonotonic, final long value) {
+		startDataPoint(type != OtlpExporter.GAUGE);
+		this.dataPoint.writeFixed64(6, value);
+		this.otlpExporter.add(getMetricName(name), null, type, isMonotonic, this.dataPoint);
+	}
+
+	/**
+	 * Adds a SummaryDataPoint.
+	 *
+	 * @param name
+	 * @param unit
+	 * @param count
+	 * @param snapshot
+	 * @param factor
+	 *            the factor converting the values of the snapshot
+	 */
+	private void addSummary(final String name, final String unit, final long count, final Snapshot snapshot, final double factor) {
+		startDataPoint(true);
+		this.dataPoint.writeFixed64(4, count);
+		// the reservoir keeps a sample, so the sum is estimated from its mean
+		this.dataPoint.writeDouble(5, snapshot.getMean() * factor * count);
+		addQuantile(0, snapshot.getMin() * factor);
+		addQuantile(0.5, snapshot.getMedian() * factor);
+		addQuantile(0.75, snapshot.get75thPercentile() * factor);
+		addQuantile(0.95, snapshot.get95thPercentile() * factor);
+		addQuantile(0.98, snapshot.get98thPercentile() * factor);
+		addQuantile(0.99, snapshot.get99thPercentile() * factor);
+		addQuantile(0.999, snapshot.get999thPercentile() * factor);
+		addQuantile(1, snapshot.getMax() * factor);
+		this.otlpExporter.add(getMetricName(name), unit, OtlpExporter.SUMMARY, false, this.dataPoint);
+	}
+
+	/**
+	 * @param quantile
+	 * @param value
+	 */
+	private void addQuantile(final double quantile, final double value) {
+		this.valueAtQuantile.reset();
+		this.valueAtQuantile.writeDouble(1, quantile);
+		this.valueAtQuantile.writeDouble(2, value);
+		this.dataPoint.writeMessage(6, this.valueAtQuantile);
+	}
+
+	/**
+	 * @param name
+	 *            the name of a metric of the group
+	 * @return the name the metric is exported under
+	 */
+	private String getMetricName(final String name) {
+		String metricName = this.metricNames.get(name);
+		if (metricName == null) {
+			metricName = MetricRegistry.name(this.baseName, name.startsWith(this.prefix) ? name.substring(this.prefix.length()) : name);
+			this.metricNames.put(name, metricName);
+		}
+		return metricName;
+	}
+
+	/**
+	 * Starts a data point with the attributes and times, the fields numbered alike in NumberDataPoint and
+	 * SummaryDataPoint.
+	 *
+	 * @param isCumulative
+	 *            whether the data point has a start time
+	 */
+	private void startDataPoint(final boolean isCumulative) {
+		this.dataPoint.reset();
+		this.dataPoint.writeRaw(this.attributes);
+		if (isCumulative) {
+			this.dataPoint.writeFixed64(2, this.startTimeNanos);
+		}
+		this.dataPoint.writeFixed64(3, this.timeNanos);
+	}
+
+}
@@ -0,0 +1,566 @@
+// @formatter:off
+/**
+ * Copyright 2014 Initium.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+// @formatter:on
+package io.initium.camel.component.metrics;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.camel.spi.ExecutorServiceManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.Timer;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import static io.initium.camel.component.metrics.MetricsComponent.MARKER;
+
+/**
+ * Serves the metrics of the {@link PrometheusReporter}s added to it in the Prometheus text exposition format (version
+ * 0.0.4), from the HTTP server of the JDK. Reporters of every metric group of a MetricsComponent using the same host
+ * and port share one instance, and must use the same path and cache TTL. The server answers on a thread from the
+ * ExecutorServiceManager of the CamelContext, and the servers still open when the component stops are stopped with
+ * it. A rendering is kept for the cache TTL, so that concurrent
+ * scrapers take a single snapshot of each metric, and is encoded once into a reused buffer, written to each response
+ * with its exact length, one scraper at a time. A scrape whose rendering fails is answered with 500.
+ * <ul>
+ * <li>gauges with a number or boolean value, and counters, are gauges;</li>
+ * <li>meters are counters named with _total;</li>
+ * <li>histograms and timers are summaries with the quantiles 0.5, 0.75, 0.95, 0.98, 0.99 and 0.999, _count and _sum.
+ * The reservoirs do not keep the sum of the values, so _sum is approximated as the mean of the reservoir times the
+ * count: it is exact only while the reservoir holds every value, and with a decaying or windowed reservoir it follows
+ * the recent values instead of growing monotonically, which a rate() over it has to allow for.</li>
+ * </ul>
+ * A family has the type of the first metric rendered in it. Metrics of another type with the same family name, e.g. a
+ * counter named x_rate next to the meter of a group named x, are rendered in a family suffixed with _gauge, _meter or
+ * _summary, and the collision is logged once.
+ *
+ * @author Steve Fosdal, <steve@initium.io>
+ * @author Hector Veiga Ortiz, <hector@initium.io>
+ * @version 1.4
+ * @since 2026-10-18
+ */
+@SuppressWarnings("rawtypes")
+public final class PrometheusExporter implements HttpHandler {
+
+	/**
+	 * The types of family a metric is rendered in.
+	 */
+	private enum Kind {
+		GAUGE, METER, SUMMARY;
+
+		/**
+		 * @param metric
+		 * @return the kind of the metric, null if it is not rendered
+		 */
+		private static Kind of(final Metric metric) {
+			if (metric instanceof Gauge || metric instanceof Counter) {
+				return GAUGE;
+			} else if (metric instanceof Meter) {
+				return METER;
+			} else if (metric instanceof Timer || metric instanceof Histogram) {
+				return SUMMARY;
+			}
+			return null;
+		}
+
+		/**
+		 * @return the suffix of a family of this kind colliding with a family of another kind
+		 */
+		private String suffix() {
+			return "_" + name().toLowerCase();
+		}
+	}
+
+	/**
+	 * A metric of a reporter, as rendered in a family.
+	 */
+	private static final class Sample {
+
+		// fields
+		private final PrometheusReporter	reporter;
+		private final Metric				metric;
+
+		/**
+		 * @param reporter
+		 * @param metric
+		 */
+		private Sample(final PrometheusReporter reporter, final Metric metric) {
+			this.reporter = reporter;
+			this.metric = metric;
+		}
+	}
+
+	// logging
+	private static final String								SELF				= Thread.currentThread().getStackTrace()[1].getClassName();
+	private static final Logger								LOGGER				= LoggerFactory.getLogger(SELF);
+
+	// constants
+	public static final String								CONTENT_TYPE		= "text/plain; version=0.0.4; charset=utf-8";
+	private static final Charset							UTF_8				= Charset.forName("UTF-8");
+	private static final String[]							QUANTILES			= {"0.5", "0.75", "0.95", "0.98", "0.99", "0.999"};
+	private static final int								INITIAL_CAPACITY	= 16384;
+	private static final int								CHUNK_SIZE			= 8192;
+
+	/**
+	 * Starts a server for the host and port, or returns the exporter of the component already serving them.
+	 *
+	 * @param metricsComponent
+	 *            the component owning the server
+	 * @param host
+	 * @param port
+	 *            the port, 0 for any free port
+	 * @param path
+	 *            the path of the metrics
+	 * @param cacheTtlNanos
+	 *            how long a rendering is served again, 0 to render every scrape
+	 * @return the exporter, to be closed once it is no longer used
+	 * @throws IOException
+	 *             if the server cannot be started, or the host and port are already served with another path or cache
+	 *             TTL
+	 */
+	public static PrometheusExporter open(final MetricsComponent metricsComponent, final String host, final int port, final String path, final long cacheTtlNanos) throws IOException {
+		String key = host + ":" + port;
+		Map<String, PrometheusExporter> prometheusExporters = metricsComponent.getPrometheusExporters();
+		synchronized (prometheusExporters) {
+			PrometheusExporter prometheusExporter = prometheusExporters.get(key);
+			if (prometheusExporter == null) {
+				prometheusExporter = new PrometheusExporter(key, path, cacheTtlNanos, prometheusExporters, metricsComponent.getCamelContext().getExecutorServiceManager());
+				prometheusExporter.start(metricsComponent, host, port);
+				prometheusExporters.put(key, prometheusExporter);
+			} else if (!prometheusExporter.path.equals(path) || prometheusExporter.cacheTtlNanos != cacheTtlNanos) {
+				throw new IOException(key + " already serves " + prometheusExporter.path + " with a cache TTL of " + prometheusExporter.cacheTtlNanos + " ns, not " + path + " with " + cacheTtlNanos + " ns");
+			}
+			prometheusExporter.references++;
+			return prometheusExporter;
+		}
+	}
+
+	/**
+	 * Stops the servers of a component that are still open.
+	 *
+	 * @param metricsComponent
+	 */
+	static void stopAll(final MetricsComponent metricsComponent) {
+		Map<String, PrometheusExporter> prometheusExporters = metricsComponent.getPrometheusExporters();
+		List<PrometheusExporter> openExporters;
+		synchronized (prometheusExporters) {
+			openExporters = new ArrayList<PrometheusExporter>(prometheusExporters.values());
+			prometheusExporters.clear();
+		}
+		for (PrometheusExporter prometheusExporter : openExporters) {
+			LOGGER.info(MARKER, "stopping prometheus metrics server on {}", prometheusExporter.key);
+			prometheusExporter.stop();
+		}
+	}
+
+	// fields
+	private final String									key;
+	private final String									path;
+	private final long										cacheTtlNanos;
+	private final Map<String, PrometheusExporter>			prometheusExporters;
+	private final ExecutorServiceManager					executorServiceManager;
+	private ExecutorService									executorService;
+	private HttpServer										httpServer;
+	private final List<PrometheusReporter>					reporters			= new CopyOnWriteArrayList<PrometheusReporter>();
+	private final StringBuilder								rendering			= new StringBuilder(INITIAL_CAPACITY);
+	private final char[]									chunk				= new char[CHUNK_SIZE];
+	// the rendering in UTF-8
+	private ByteArrayOutputStream							encoding			= new ByteArrayOutputStream(INITIAL_CAPACITY);
+	private final Set<String>								collidingFamilies	= new HashSet<String>();
+	private boolean											isRendered;
+	private long											renderingTime;
+	private int												references;
+
+	/**
+	 * @param key
+	 * @param path
+	 * @param cacheTtlNanos
+	 * @param prometheusExporters
+	 *            the exporters of the component, by host and port
+	 * @param executorServiceManager
+	 */
+	private PrometheusExporter(final String key, final String path, final long cacheTtlNanos, final Map<String, PrometheusExporter> prometheusExporters, final ExecutorServiceManager executorServiceManager) {
+		this.key = key;
+		this.path = path;
+		this.cacheTtlNanos = cacheTtlNanos;
+		this.prometheusExporters = prometheusExporters;
+		this.executorServiceManager = executorServiceManager;
+	}
+
+	/**
+	 * @param name
+	 *            a metric name
+	 * @return the name with every character not allowed in a prometheus metric name replaced by _
+	 */
+	static String sanitize(final String name) {
+		StringBuilder sanitized = new StringBuilder(name.length() + 1);
+		for (int i = 0; i < name.length(); i++) {
+			char c = name.charAt(i);
+			if (c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c == '_' || c == ':' || c >= '0' && c <= '9' && i > 0) {
+				sanitized.append(c);
+			} else if (c >= '0' && c <= '9') {
+				sanitized.append('_').append(c);
+			} else {
+				sanitized.append('_');
+			}
+		}
+		return sanitized.toString();
+	}
+
+	/**
+	 * @param value
+	 * @return the value as a quoted prometheus label value
+	 */
+	static String quote(final String value) {
+		StringBuilder quoted = new StringBuilder(value.length() + 2).append('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '\\' || c == '"') {
+				quoted.append('\\').append(c);
+			} else if (c == '\n') {
+				quoted.append("\\n");
+			} else {
+				quoted.append(c);
+			}
+		}
+		return quoted.append('"').toString();
+	}
+
+	/**
+	 * @param text
+	 * @param value
+	 */
+	private static void appendValue(final StringBuilder text, final double value) {
+		if (Double.isNaN(value)) {
+			text.append("NaN");
+		} else if (Double.isInfinite(value)) {
+			text.append(value > 0 ? "+Inf" : "-Inf");
+		} else {
+			text.append(value);
+		}
+	}
+
+	/**
+	 * @param reporter
+	 *            a reporter whose metrics are served from now on
+	 */
+	public void add(final PrometheusReporter reporter) {
+		this.reporters.add(reporter);
+	}
+
+	/**
+	 * Releases the exporter; the last user stops the server.
+	 */
+	public void close() {
+		synchronized (this.prometheusExporters) {
+			if (--this.references > 0 || this.prometheusExporters.get(this.key) != this) {
+				// still in use, or already stopped with the component
+				return;
+			}
+			this.prometheusExporters.remove(this.key);
+		}
+		LOGGER.info(MARKER, "stopping prometheus metrics server on {}", this.key);
+		stop();
+	}
+
+	/**
+	 * @return the port the server listens on
+	 */
+	public int getPort() {
+		return this.httpServer.getAddress().getPort();
+	}
+
+	/**
+	 * @return true once the server has stopped
+	 */
+	boolean isStopped() {
+		return this.executorService.isTerminated();
+	}
+
+	@Override
+	public void handle(final HttpExchange httpExchange) throws IOException {
+		try {
+			if ("HEAD".equals(httpExchange.getRequestMethod())) {
+				httpExchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+				httpExchange.sendResponseHeaders(200, -1);
+				return;
+			}
+			synchronized (this) {
+				try {
+					refresh();
+				} catch (RuntimeException e) {
+					LOGGER.warn(MARKER, "unable to render prometheus metrics", e);
+					httpExchange.sendResponseHeaders(500, -1);
+					return;
+				}
+				httpExchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+				// -1 for no body, 0 would be chunked
+				httpExchange.sendResponseHeaders(200, this.encoding.size() == 0 ? -1 : this.encoding.size());
+				this.encoding.writeTo(httpExchange.getResponseBody());
+			}
+		} finally {
+			httpExchange.close();
+		}
+	}
+
+	/**
+	 * @param reporter
+	 *            a reporter whose metrics are no longer served
+	 */
+	public void remove(final PrometheusReporter reporter) {
+		this.reporters.remove(reporter);
+	}
+
+	/**
+	 * Writes the metrics in the text exposition format, rendered now or less than the cache TTL ago, in UTF-8 straight
+	 * from the encoded rendering.
+	 *
+	 * @param output
+	 *            the stream to write to, left open
+	 * @throws IOException
+	 */
+	public synchronized void scrape(final OutputStream output) throws IOException {
+		refresh();
+		this.encoding.writeTo(output);
+	}
+
+	/**
+	 * @param owner
+	 *            the source of the thread of the server
+	 * @param host
+	 * @param port
+	 * @throws IOException
+	 *             if the server cannot be started
+	 */
+	private void start(final Object owner, final String host, final int port) throws IOException {
+		this.httpServer = HttpServer.create(new InetSocketAddress(host, port), 0);
+		this.httpServer.createContext(this.path, this);
+		// scrapes are answered one at a time anyway
+		this.executorService = this.executorServiceManager.newSingleThreadExecutor(owner, "MetricsPrometheusExporter[" + this.key + "]");
+		this.httpServer.setExecutor(this.executorService);
+		this.httpServer.start();
+		LOGGER.info(MARKER, "serving prometheus metrics on {}{}", this.httpServer.getAddress(), this.path);
+	}
+
+	/**
+	 *
+	 */
+	private void stop() {
+		this.httpServer.stop(0);
+		this.executorServiceManager.shutdownNow(this.executorService);
+		try {
+			this.executorService.awaitTermination(1, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Renders and encodes the metrics, unless they were less than the cache TTL ago. A rendering that fails leaves the
+	 * previous encoding in place and is tried again on the next scrape.
+	 *
+	 * @throws IOException
+	 */
+	private void refresh() throws IOException {
+		long now = System.nanoTime();
+		if (this.isRendered && now - this.renderingTime < this.cacheTtlNanos) {
+			return;
+		}
+		render();
+		// do not keep more than the buffer of an unusually large encoding needs
+		if (this.encoding.size() > INITIAL_CAPACITY * 256) {
+			this.encoding = new ByteArrayOutputStream(INITIAL_CAPACITY);
+		}
+		this.encoding.reset();
+		Writer writer = new OutputStreamWriter(this.encoding, UTF_8);
+		for (int start = 0; start < this.rendering.length(); start += CHUNK_SIZE) {
+			int end = Math.min(start + CHUNK_SIZE, this.rendering.length());
+			this.rendering.getChars(start, end, this.chunk, 0);
+			writer.write(this.chunk, 0, end - start);
+		}
+		writer.flush();
+		this.isRendered = true;
+		this.renderingTime = now;
+	}
+
+	/**
+	 * Renders the metrics into the rendering.
+	 */
+	private void render() {
+		// the series of a family must be together, whichever metric groups they come from
+		Map<String, Map<Kind, List<Sample>>> families = new TreeMap<String, Map<Kind, List<Sample>>>();
+		for (PrometheusReporter reporter : this.reporters) {
+			for (Entry<String, Metric> entry : reporter.getMetrics().entrySet()) {
+				Kind kind = Kind.of(entry.getValue());
+				if (kind == null) {
+					continue;
+				}
+				String family = reporter.getFamilyName(entry.getKey());
+				Map<Kind, List<Sample>> kinds = families.get(family);
+				if (kinds == null) {
+					kinds = new LinkedHashMap<Kind, List<Sample>>();
+					families.put(family, kinds);
+				}
+				List<Sample> samples = kinds.get(kind);
+				if (samples == null) {
+					samples = new ArrayList<Sample>();
+					kinds.put(kind, samples);
+				}
+				samples.add(new Sample(reporter, entry.getValue()));
+			}
+		}
+		StringBuilder text = this.rendering;
+		text.setLength(0);
+		for (Entry<String, Map<Kind, List<Sample>>> entry : families.entrySet()) {
+			String family = entry.getKey();
+			// a family has the kind of its first metric, metrics of other kinds get a family of their own
+			boolean isFirst = true;
+			for (Entry<Kind, List<Sample>> kindEntry : entry.getValue().entrySet()) {
+				Kind kind = kindEntry.getKey();
+				String kindFamily = family;
+				if (!isFirst) {
+					kindFamily = family + kind.suffix();
+					if (this.collidingFamilies.add(family)) {
+						LOGGER.warn(MARKER, "metrics of different types share the prometheus family {}, rendering the {} metrics as {}", family, kind.name().toLowerCase(), kindFamily);
+					}
+				}
+				isFirst = false;
+				switch (kind) {
+					case GAUGE:
+						renderGauges(text, kindFamily, kindEntry.getValue());
+						break;
+					case METER:
+						renderMeters(text, kindFamily, kindEntry.getValue());
+						break;
+					default:
+						renderSummaries(text, kindFamily, kindEntry.getValue());
+				}
+			}
+		}
+		// do not keep more than the buffer of an unusually large rendering needs
+		if (text.capacity() > INITIAL_CAPACITY * 256) {
+			text.trimToSize();
+		}
+	}
+
+	/**
+	 * @param text
+	 * @param family
+	 * @param samples
+	 */
+	private void renderGauges(final StringBuilder text, final String family, final List<Sample> samples) {
+		text.append("# TYPE ").append(family).append(" gauge\n");
+		for (Sample sample : samples) {
+			double value;
+			if (sample.metric instanceof Counter) {
+				value = ((Counter) sample.metric).getCount();
+			} else if (sample.metric instanceof Gauge) {
+				Object gaugeValue = ((Gauge) sample.metric).getValue();
+				if (gaugeValue instanceof Number) {
+					value = ((Number) gaugeValue).doubleValue();
+				} else if (gaugeValue instanceof Boolean) {
+					value = ((Boolean) gaugeValue) ? 1 : 0;
+				} else {
+					continue;
+				}
+			} else {
+				continue;
+			}
+			text.append(family).append(sample.reporter.getLabels()).append(' ');
+			appendValue(text, value);
+			text.append('\n');
+		}
+	}
+
+	/**
+	 * @param text
+	 * @param family
+	 * @param samples
+	 */
+	private void renderMeters(final StringBuilder text, final String family, final List<Sample> samples) {
+		text.append("# TYPE ").append(family).append("_total counter\n");
+		for (Sample sample : samples) {
+			if (sample.metric instanceof Meter) {
+				text.append(family).append("_total").append(sample.reporter.getLabels()).append(' ').append(((Meter) sample.metric).getCount()).append('\n');
+			}
+		}
+	}
+
+	/**
+	 * @param text
+	 * @param family
+	 * @param samples
+	 */
+	private void renderSummaries(final StringBuilder text, final String family, final List<Sample> samples) {
+		text.append("# TYPE ").append(family).append(" summary\n");
+		for (Sample sample : samples) {
+			long count;
+			Snapshot snapshot;
+			double factor;
+			if (sample.metric instanceof Timer) {
+				Timer timer = (Timer) sample.metric;
+				count = timer.getCount();
+				snapshot = timer.getSnapshot();
+				factor = sample.reporter.getDurationFactor();
+			} else if (sample.metric instanceof Histogram) {
+				Histogram histogram = (Histogram) sample.metric;
+				count = histogram.getCount();
+				snapshot = histogram.getSnapshot();
+				factor = 1;
+			} else {
+				continue;
+			}
+			String labels = sample.reporter.getLabels();
+			String quantilePrefix = labels.isEmpty() ? "{quantile=\"" : labels.substring(0, labels.length() - 1) + ",quantile=\"";
+			double[] values = {snapshot.getMedian(), snapshot.get75thPercentile(), snapshot.get95thPercentile(), snapshot.get98thPercentile(), snapshot.get99thPercentile(), snapshot.get999thPercentile()};
+			for (int i = 0; i < QUANTILES.length; i++) {
+				text.append(family).append(quantilePrefix).append(QUANTILES[i]).append("\"} ");
+				appendValue(text, values[i] * factor);
+				text.append('\n');
+			}
+			// approximated, see the class comment
+			text.append(family).append("_sum").append(labels).append(' ');
+			appendValue(text, snapshot.getMean() * factor * count);
+			text.append('\n');
+			text.append(family).append("_count").append(labels).append(' ').append(count).append('\n');
+		}
+	}
+
+}
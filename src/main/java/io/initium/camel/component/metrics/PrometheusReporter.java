@@ -0,0 +1,138 @@
+// @formatter:off
+/**
+ * Copyright 2014 Initium.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+// @formatter:on
+package io.initium.camel.component.metrics;
+
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricFilter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Reporter;
+
+/**
+ * Makes the metrics of a metric group available to a {@link PrometheusExporter}. A metric is served under the base
+ * name of the group followed by its own name, e.g. orders_rate, and the infix of the group, if any, is the value of a
+ * label, e.g. orders_rate_total{infix="eu"}, so that the metrics of every infix group are one family.
+ *
+ * @author Steve Fosdal, <steve@initium.io>
+ * @author Hector Veiga Ortiz, <hector@initium.io>
+ * @version 1.4
+ * @since 2026-10-18
+ */
+public final class PrometheusReporter implements Reporter {
+
+	// fields
+	private final MetricRegistry		metricRegistry;
+	private final MetricFilter			filter;
+	private final String				prefix;
+	private final String				baseName;
+	private final String				labels;
+	private final double				durationFactor;
+	private final PrometheusExporter	prometheusExporter;
+	private final Map<String, String>	familyNames	= new ConcurrentHashMap<String, String>();
+
+	/**
+	 * @param metricRegistry
+	 * @param filter
+	 * @param baseName
+	 * @param infixName
+	 *            the infix of the metric group, null if it has none
+	 * @param infixLabel
+	 *            the name of the label holding the infix
+	 * @param durationUnit
+	 *            the unit of the values of timers
+	 * @param prometheusExporter
+	 *            the exporter serving the metrics, closed when the reporter is stopped
+	 */
+	public PrometheusReporter(final MetricRegistry metricRegistry, final MetricFilter filter, final String baseName, final String infixName, final String infixLabel, final TimeUnit durationUnit, final PrometheusExporter prometheusExporter) {
+		this.metricRegistry = metricRegistry;
+		this.filter = filter;
+		this.baseName = baseName;
+		this.prefix = (infixName == null ? baseName : MetricRegistry.name(baseName, infixName)) + ".";
+		this.labels = infixName == null ? "" : "{" + PrometheusExporter.sanitize(infixLabel) + "=" + PrometheusExporter.quote(infixName) + "}";
+		this.durationFactor = 1.0 / durationUnit.toNanos(1);
+		this.prometheusExporter = prometheusExporter;
+	}
+
+	/**
+	 * @return the exporter
+	 */
+	public PrometheusExporter getPrometheusExporter() {
+		return this.prometheusExporter;
+	}
+
+	/**
+	 * Starts serving the metrics.
+	 */
+	public void start() {
+		this.prometheusExporter.add(this);
+	}
+
+	/**
+	 * Stops serving the metrics and releases the exporter.
+	 */
+	public void stop() {
+		this.prometheusExporter.remove(this);
+		this.prometheusExporter.close();
+	}
+
+	/**
+	 * @return the factor converting the values of timers
+	 */
+	double getDurationFactor() {
+		return this.durationFactor;
+	}
+
+	/**
+	 * @param name
+	 *            the name of a metric of the group
+	 * @return the name of the family of the metric
+	 */
+	String getFamilyName(final String name) {
+		String familyName = this.familyNames.get(name);
+		if (familyName == null) {
+			String metricName = name.startsWith(this.prefix) ? name.substring(this.prefix.length()) : name;
+			familyName = PrometheusExporter.sanitize(MetricRegistry.name(this.baseName, metricName));
+			this.familyNames.put(name, familyName);
+		}
+		return familyName;
+	}
+
+	/**
+	 * @return the labels of every series of the group, e.g. {infix="eu"}, or an empty string
+	 */
+	String getLabels() {
+		return this.labels;
+	}
+
+	/**
+	 * @return the metrics to serve, by name
+	 */
+	Map<String, Metric> getMetrics() {
+		Map<String, Metric> metrics = new TreeMap<String, Metric>();
+		for (Entry<String, Metric> entry : this.metricRegistry.getMetrics().entrySet()) {
+			if (this.filter.matches(entry.getKey(), entry.getValue())) {
+				metrics.put(entry.getKey(), entry.getValue());
+			}
+		}
+		return metrics;
+	}
+
+}
@@ -0,0 +1,194 @@
+// @formatter:off
+/**
+ * Copyright 2014 Initium.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+// @formatter:on
+package io.initium.camel.component.metrics;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Encodes the fields of one protocol buffers message into a growable array, which is kept when the writer is reset so
+ * that a message of the same size is encoded again without allocating. A nested message is encoded into a writer of
+ * its own and added with {@link #writeMessage(int, ProtobufWriter)}.
+ *
+ * @author Steve Fosdal, <steve@initium.io>
+ * @author Hector Veiga Ortiz, <hector@initium.io>
+ * @version 1.4
+ * @since 2026-10-18
+ */
+final class ProtobufWriter {
+
+	// constants
+	private static final Charset	UTF_8				= Charset.forName("UTF-8");
+	private static final int		VARINT				= 0;
+	private static final int		FIXED64				= 1;
+	private static final int		LENGTH_DELIMITED	= 2;
+
+	// fields
+	private byte[]					buffer;
+	private int						size;
+
+	/**
+	 *
+	 */
+	ProtobufWriter() {
+		this(256);
+	}
+
+	/**
+	 * @param initialCapacity
+	 */
+	ProtobufWriter(final int initialCapacity) {
+		this.buffer = new byte[initialCapacity];
+	}
+
+	/**
+	 * Forgets the encoded fields, keeping the array.
+	 */
+	void reset() {
+		this.size = 0;
+	}
+
+	/**
+	 * @return the number of bytes encoded
+	 */
+	int size() {
+		return this.size;
+	}
+
+	/**
+	 * @return a copy of the encoded bytes
+	 */
+	byte[] toByteArray() {
+		return Arrays.copyOf(this.buffer, this.size);
+	}
+
+	/**
+	 * @param field
+	 * @param value
+	 */
+	void writeBool(final int field, final boolean value) {
+		writeVarint(field, value ? 1 : 0);
+	}
+
+	/**
+	 * @param field
+	 * @param value
+	 */
+	void writeDouble(final int field, final double value) {
+		writeFixed64(field, Double.doubleToRawLongBits(value));
+	}
+
+	/**
+	 * Writes a fixed64 or sfixed64 field.
+	 *
+	 * @param field
+	 * @param value
+	 */
+	void writeFixed64(final int field, final long value) {
+		writeTag(field, FIXED64);
+		ensureCapacity(8);
+		for (int i = 0; i < 8; i++) {
+			this.buffer[this.size++] = (byte) (value >>> (8 * i));
+		}
+	}
+
+	/**
+	 * @param field
+	 * @param message
+	 *            the encoded fields of the nested message
+	 */
+	void writeMessage(final int field, final ProtobufWriter message) {
+		writeTag(field, LENGTH_DELIMITED);
+		writeVarint(message.size);
+		writeRaw(message);
+	}
+
+	/**
+	 * Appends fields encoded by another writer, e.g. the elements of a repeated field.
+	 *
+	 * @param fields
+	 */
+	void writeRaw(final ProtobufWriter fields) {
+		ensureCapacity(fields.size);
+		System.arraycopy(fields.buffer, 0, this.buffer, this.size, fields.size);
+		this.size += fields.size;
+	}
+
+	/**
+	 * @param field
+	 * @param value
+	 */
+	void writeString(final int field, final String value) {
+		byte[] bytes = value.getBytes(UTF_8);
+		writeTag(field, LENGTH_DELIMITED);
+		writeVarint(bytes.length);
+		ensureCapacity(bytes.length);
+		System.arraycopy(bytes, 0, this.buffer, this.size, bytes.length);
+		this.size += bytes.length;
+	}
+
+	/**
+	 * @param outputStream
+	 * @throws IOException
+	 */
+	void writeTo(final OutputStream outputStream) throws IOException {
+		outputStream.write(this.buffer, 0, this.size);
+	}
+
+	/**
+	 * Writes an int32, int64, uint32, uint64, bool or enum field.
+	 *
+	 * @param field
+	 * @param value
+	 */
+	void writeVarint(final int field, final long value) {
+		writeTag(field, VARINT);
+		writeVarint(value);
+	}
+
+	/**
+	 * @param additionalSize
+	 */
+	private void ensureCapacity(final int additionalSize) {
+		if (this.size + additionalSize > this.buffer.length) {
+			this.buffer = Arrays.copyOf(this.buffer, Math.max(this.buffer.length * 2, this.size + additionalSize));
+		}
+	}
+
+	/**
+	 * @param field
+	 * @param wireType
+	 */
+	private void writeTag(final int field, final int wireType) {
+		writeVarint((field << 3) | wireType);
+	}
+
+	/**
+	 * @param value
+	 */
+	private void writeVarint(final long value) {
+		ensureCapacity(10);
+		long remaining = value;
+		while ((remaining & ~0x7FL) != 0) {
+			this.buffer[this.size++] = (byte) ((remaining & 0x7F) | 0x80);
+			remaining >>>= 7;
+		}
+		this.buffer[this.size++] = (byte) remaining;
+	}
+
+}
@@ -0,0 +1,333 @@
+// @formatter:off
+/**
+ * Copyright 2014 Initium.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+// @formatter:on
+package io.initium.camel.component.metrics;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.Sampling;
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.Timer;
+
+/**
+ * Keeps the snapshots of the histograms and timers and the values of the gauges of a metric group as last read by one
+ * of its reporters, so that the other reporters reading them in the same period reuse them instead of copying and
+ * sorting the reservoir, or evaluating the gauge, again. Each reporter reads through a {@link Reader}, which tells from
+ * when on a value counts as read in the current period. The views of an interval histogram in every unit share one
+ * snapshot of its histogram of nanoseconds, and each view keeps its conversion of that snapshot for as long as the
+ * snapshot itself is reused.
+ *
+ * @author Steve Fosdal, <steve@initium.io>
+ * @author Hector Veiga Ortiz, <hector@initium.io>
+ * @version 1.4
+ * @since 2026-10-18
+ */
+@SuppressWarnings("rawtypes")
+final class ReportCache {
+
+	/**
+	 * The last value read from a metric.
+	 */
+	private static final class Entry {
+
+		// fields
+		private Object	value;
+		private long	readNanos;
+		private boolean	hasValue;
+	}
+
+	/**
+	 * Reads a gauge through the cache.
+	 */
+	private static final class GaugeView implements Gauge<Object> {
+
+		// fields
+		private final Reader	reader;
+		private final Gauge		gauge;
+
+		/**
+		 * @param reader
+		 * @param gauge
+		 */
+		private GaugeView(final Reader reader, final Gauge gauge) {
+			this.reader = reader;
+			this.gauge = gauge;
+		}
+
+		@Override
+		public Object getValue() {
+			return this.reader.read(this.gauge);
+		}
+	}
+
+	/**
+	 * Reads the snapshot of a histogram through the cache.
+	 */
+	private static final class HistogramView extends Histogram {
+
+		// fields
+		private final Reader	reader;
+		private final Histogram	histogram;
+
+		/**
+		 * @param reader
+		 * @param histogram
+		 */
+		private HistogramView(final Reader reader, final Histogram histogram) {
+			super(null);
+			this.reader = reader;
+			this.histogram = histogram;
+		}
+
+		@Override
+		public long getCount() {
+			return this.histogram.getCount();
+		}
+
+		@Override
+		public Snapshot getSnapshot() {
+			return (Snapshot) this.reader.read(this.histogram);
+		}
+
+		@Override
+		public void update(final int value) {
+			this.histogram.update(value);
+		}
+
+		@Override
+		public void update(final long value) {
+			this.histogram.update(value);
+		}
+	}
+
+	/**
+	 * The views of the metrics one reporter reads, kept from one period to the next.
+	 */
+	static final class Reader {
+
+		// fields
+		private final ReportCache		reportCache;
+		private Map<Metric, Metric>		views			= new HashMap<Metric, Metric>();
+		private Map<Metric, Metric>		previousViews	= new HashMap<Metric, Metric>();
+		private long					freshFromNanos;
+
+		/**
+		 * @param reportCache
+		 */
+		private Reader(final ReportCache reportCache) {
+			this.reportCache = reportCache;
+		}
+
+		/**
+		 * Starts the next period, forgetting the views of metrics not read in the previous one.
+		 *
+		 * @param freshFromNanos
+		 *            the {@link System#nanoTime()} from which on a value read by any reporter is reused
+		 */
+		void beginPeriod(final long freshFromNanos) {
+			this.freshFromNanos = freshFromNanos;
+			Map<Metric, Metric> previousViews = this.previousViews;
+			this.previousViews = this.views;
+			this.views = previousViews;
+			this.views.clear();
+		}
+
+		/**
+		 * @param metric
+		 * @return a view reading the snapshot or value of the metric through the cache, the metric itself if it has
+		 *         neither
+		 */
+		Metric view(final Metric metric) {
+			Metric view = this.views.get(metric);
+			if (view != null) {
+				return view;
+			}
+			view = this.previousViews.get(metric);
+			if (view == null) {
+				if (metric instanceof Gauge) {
+					view = new GaugeView(this, (Gauge) metric);
+				} else if (metric instanceof Histogram) {
+					view = new HistogramView(this, (Histogram) metric);
+				} else if (metric instanceof Timer) {
+					view = new TimerView(this, (Timer) metric);
+				} else {
+					return metric;
+				}
+			}
+			this.views.put(metric, view);
+			return view;
+		}
+
+		/**
+		 * @param metric
+		 * @return
+		 */
+		private Object read(final Metric metric) {
+			return this.reportCache.read(metric, this.freshFromNanos);
+		}
+	}
+
+	/**
+	 * Reads the snapshot of a timer through the cache.
+	 */
+	private static final class TimerView extends Timer {
+
+		// fields
+		private final Reader	reader;
+		private final Timer		timer;
+
+		/**
+		 * @param reader
+		 * @param timer
+		 */
+		private TimerView(final Reader reader, final Timer timer) {
+			super(null);
+			this.reader = reader;
+			this.timer = timer;
+		}
+
+		@Override
+		public long getCount() {
+			return this.timer.getCount();
+		}
+
+		@Override
+		public double getFifteenMinuteRate() {
+			return this.timer.getFifteenMinuteRate();
+		}
+
+		@Override
+		public double getFiveMinuteRate() {
+			return this.timer.getFiveMinuteRate();
+		}
+
+		@Override
+		public double getMeanRate() {
+			return this.timer.getMeanRate();
+		}
+
+		@Override
+		public double getOneMinuteRate() {
+			return this.timer.getOneMinuteRate();
+		}
+
+		@Override
+		public Snapshot getSnapshot() {
+			return (Snapshot) this.reader.read(this.timer);
+		}
+
+		@Override
+		public <T> T time(final Callable<T> event) throws Exception {
+			return this.timer.time(event);
+		}
+
+		@Override
+		public void update(final long duration, final TimeUnit unit) {
+			this.timer.update(duration, unit);
+		}
+	}
+
+	// fields
+	private final ConcurrentMap<Metric, Entry>	entries	= new ConcurrentHashMap<Metric, Entry>();
+
+	/**
+	 * Forgets every value, e.g. once the metrics of the group are removed.
+	 */
+	void clear() {
+		this.entries.clear();
+	}
+
+	/**
+	 * @return a reader for one reporter, to be used by one thread at a time
+	 */
+	Reader newReader() {
+		return new Reader(this);
+	}
+
+	/**
+	 * @return the number of metrics whose value is kept
+	 */
+	int size() {
+		return this.entries.size();
+	}
+
+	/**
+	 * @param metric
+	 *            a gauge, or a histogram or timer
+	 * @param freshFromNanos
+	 * @return the value or snapshot of the metric, read again unless it was last read at or after freshFromNanos
+	 */
+	private Object read(final Metric metric, final long freshFromNanos) {
+		Entry entry = getEntry(metric);
+		synchronized (entry) {
+			refresh(entry, metric, freshFromNanos);
+			return entry.value;
+		}
+	}
+
+	/**
+	 * @param metric
+	 * @return the entry of the metric, created if it has none
+	 */
+	private Entry getEntry(final Metric metric) {
+		Entry entry = this.entries.get(metric);
+		if (entry == null) {
+			Entry newEntry = new Entry();
+			entry = this.entries.putIfAbsent(metric, newEntry);
+			if (entry == null) {
+				entry = newEntry;
+			}
+		}
+		return entry;
+	}
+
+	/**
+	 * Reads the metric again into its entry, whose lock is held, unless it was last read at or after freshFromNanos.
+	 *
+	 * @param entry
+	 * @param metric
+	 * @param freshFromNanos
+	 */
+	private void refresh(final Entry entry, final Metric metric, final long freshFromNanos) {
+		if (entry.hasValue && entry.readNanos - freshFromNanos >= 0) {
+			return;
+		}
+		if (metric instanceof TimeUnitHistogram) {
+			TimeUnitHistogram timeUnitHistogram = (TimeUnitHistogram) metric;
+			Entry nanosEntry = getEntry(timeUnitHistogram.getNanosHistogram());
+			// always locked after the entry of a view, never before
+			synchronized (nanosEntry) {
+				refresh(nanosEntry, timeUnitHistogram.getNanosHistogram(), freshFromNanos);
+				entry.value = timeUnitHistogram.getSnapshot((Snapshot) nanosEntry.value);
+				// converted again only once the snapshot of nanoseconds is read again
+				entry.readNanos = nanosEntry.readNanos;
+			}
+		} else {
+			long readNanos = System.nanoTime();
+			entry.value = metric instanceof Gauge ? ((Gauge) metric).getValue() : ((Sampling) metric).getSnapshot();
+			entry.readNanos = readNanos;
+		}
+		entry.hasValue = true;
+	}
+
+}
@@ -0,0 +1,256 @@
+// @formatter:off
+/**
+ * Copyright 2014 Initium.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+// @formatter:on
+package io.initium.camel.component.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.camel.CamelContext;
+import org.apache.camel.support.ServiceSupport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricFilter;
+import com.codahale.metrics.ScheduledReporter;
+import com.codahale.metrics.Timer;
+
+import static io.initium.camel.component.metrics.MetricsComponent.MARKER;
+
+/**
+ * Drives the scheduled reporters of every metric group built from the same reporter definition with one thread. Each
+ * period the reporter of each group is handed the metrics of that group's partition that pass its filter, so the cost
+ * of a report is proportional to the size of the group, not to the size of the shared registry. The reporters
+ * themselves are never started, so they do not hold a thread of their own. Once every group has reported, each
+ * {@link BatchingReporter} is told that the period ended.
+ * <p>
+ * Reporters read snapshots and gauge values through the {@link ReportCache} of their group, so a value read by any
+ * reporter of the group in the current period, by this pipeline or another, is reused. Pipelines run at multiples of
+ * their period since the epoch, so that pipelines of the same or a multiple period run at the same time and share
+ * their reads.
+ *
+ * @author Steve Fosdal, <steve@initium.io>
+ * @author Hector Veiga Ortiz, <hector@initium.io>
+ * @version 1.4
+ * @since 2026-10-18
+ */
+@SuppressWarnings("rawtypes")
+final class ReporterPipeline extends ServiceSupport implements Runnable {
+
+	/**
+	 * The reporter of one metric group.
+	 */
+	private static final class Sink {
+
+		// fields
+		private final MetricGroup			metricGroup;
+		private final ScheduledReporter		reporter;
+		private final MetricFilter			filter;
+		private final ChangeTracker			changeTracker;
+		private final ReportCache.Reader	reader;
+
+		/**
+		 * @param metricGroup
+		 * @param reporter
+		 * @param filter
+		 *            null if the reporter walks the registry itself
+		 * @param changeTracker
+		 *            null to report unchanged metrics too
+		 */
+		private Sink(final MetricGroup metricGroup, final ScheduledReporter reporter, final MetricFilter filter, final ChangeTracker changeTracker) {
+			this.metricGroup = metricGroup;
+			this.reporter = reporter;
+			this.filter = filter;
+			this.changeTracker = changeTracker;
+			this.reader = metricGroup.getReportCache().newReader();
+		}
+
+		/**
+		 * Reports the metrics of the group's partition, walking it once.
+		 *
+		 * @param freshFromNanos
+		 *            the {@link System#nanoTime()} from which on a snapshot or gauge value already read is reused
+		 */
+		private void report(final long freshFromNanos) {
+			if (this.filter == null) {
+				this.reporter.report();
+				return;
+			}
+			SortedMap<String, Gauge> gauges = new TreeMap<String, Gauge>();
+			SortedMap<String, Counter> counters = new TreeMap<String, Counter>();
+			SortedMap<String, Histogram> histograms = new TreeMap<String, Histogram>();
+			SortedMap<String, Meter> meters = new TreeMap<String, Meter>();
+			SortedMap<String, Timer> timers = new TreeMap<String, Timer>();
+			this.reader.beginPeriod(freshFromNanos);
+			if (this.changeTracker != null) {
+				this.changeTracker.beginPeriod();
+			}
+			for (Entry<String, Metric> entry : this.metricGroup.getPartition().getMetrics().entrySet()) {
+				String name = entry.getKey();
+				Metric metric = entry.getValue();
+				if (!this.filter.matches(name, metric)) {
+					continue;
+				}
+				metric = this.reader.view(metric);
+				if (this.changeTracker != null && !this.changeTracker.hasChanged(name, metric)) {
+					continue;
+				}
+				if (metric instanceof Gauge) {
+					gauges.put(name, (Gauge) metric);
+				} else if (metric instanceof Counter) {
+					counters.put(name, (Counter) metric);
+				} else if (metric instanceof Histogram) {
+					histograms.put(name, (Histogram) metric);
+				} else if (metric instanceof Meter) {
+					meters.put(name, (Meter) metric);
+				} else if (metric instanceof Timer) {
+					timers.put(name, (Timer) metric);
+				}
+			}
+			this.reporter.report(gauges, counters, histograms, meters, timers);
+		}
+	}
+
+	// logging
+	private static final String			SELF	= Thread.currentThread().getStackTrace()[1].getClassName();
+	private static final Logger			LOGGER	= LoggerFactory.getLogger(SELF);
+
+	// constants, values read by another pipeline at most this long, or half the period, before a run are reused
+	private static final long			SHARING_WINDOW_NANOS	= TimeUnit.SECONDS.toNanos(1);
+
+	// fields
+	private final CamelContext			camelContext;
+	private final String				name;
+	private final long					period;
+	private final TimeUnit				periodUnit;
+	private final List<Sink>			sinks	= new CopyOnWriteArrayList<Sink>();
+	private final long					sharingWindowNanos;
+	private ScheduledExecutorService	executorService;
+	private long						lastRunNanos;
+
+	/**
+	 * @param camelContext
+	 * @param name
+	 * @param period
+	 * @param periodUnit
+	 */
+	ReporterPipeline(final CamelContext camelContext, final String name, final long period, final TimeUnit periodUnit) {
+		this.camelContext = camelContext;
+		this.name = name;
+		this.period = period;
+		this.periodUnit = periodUnit;
+		this.sharingWindowNanos = Math.min(SHARING_WINDOW_NANOS, periodUnit.toNanos(period) / 2);
+		this.lastRunNanos = System.nanoTime();
+	}
+
+	/**
+	 * @param metricGroup
+	 * @param reporter
+	 * @param filter
+	 *            the filter of the reporter, null to let the reporter walk the registry itself
+	 * @param changeTracker
+	 *            the values last reported, to skip unchanged metrics, or null; ignored without a filter
+	 */
+	void add(final MetricGroup metricGroup, final ScheduledReporter reporter, final MetricFilter filter, final ChangeTracker changeTracker) {
+		this.sinks.add(new Sink(metricGroup, reporter, filter, changeTracker));
+	}
+
+	/**
+	 * Removes and stops the reporters of the metric group.
+	 *
+	 * @param metricGroup
+	 */
+	void remove(final MetricGroup metricGroup) {
+		List<Sink> removedSinks = new ArrayList<Sink>();
+		for (Sink sink : this.sinks) {
+			if (sink.metricGroup == metricGroup) {
+				removedSinks.add(sink);
+			}
+		}
+		this.sinks.removeAll(removedSinks);
+		for (Sink sink : removedSinks) {
+			sink.reporter.stop();
+		}
+	}
+
+	@Override
+	public synchronized void run() {
+		long freshFromNanos = System.nanoTime() - this.sharingWindowNanos;
+		// never reuse what this pipeline read in its previous run
+		if (this.lastRunNanos - freshFromNanos > 0) {
+			freshFromNanos = this.lastRunNanos;
+		}
+		for (Sink sink : this.sinks) {
+			try {
+				sink.report(freshFromNanos);
+			} catch (RuntimeException e) {
+				LOGGER.error(MARKER, "reporter of metric group " + sink.metricGroup.getFullName() + " failed", e);
+			}
+		}
+		// batching reporters send what every group reported in the period
+		for (Sink sink : this.sinks) {
+			if (sink.reporter instanceof BatchingReporter) {
+				try {
+					((BatchingReporter) sink.reporter).endPeriod();
+				} catch (RuntimeException e) {
+					LOGGER.error(MARKER, "reporter of metric group " + sink.metricGroup.getFullName() + " failed to end the period", e);
+				}
+			}
+		}
+		this.lastRunNanos = System.nanoTime();
+	}
+
+	/**
+	 * @return the number of reporters driven by this pipeline
+	 */
+	int size() {
+		return this.sinks.size();
+	}
+
+	@Override
+	protected void doStart() throws Exception {
+		LOGGER.debug(MARKER, "doStart()");
+		this.executorService = this.camelContext.getExecutorServiceManager().newSingleThreadScheduledExecutor(this, "MetricsReporter[" + this.name + "]");
+		// start at the next multiple of the period, like every other pipeline of the same period
+		long periodMillis = Math.max(1, this.periodUnit.toMillis(this.period));
+		long initialDelayMillis = periodMillis - System.currentTimeMillis() % periodMillis;
+		this.executorService.scheduleAtFixedRate(this, initialDelayMillis, periodMillis, TimeUnit.MILLISECONDS);
+	}
+
+	@Override
+	protected void doStop() throws Exception {
+		LOGGER.debug(MARKER, "doStop()");
+		if (this.executorService != null) {
+			this.camelContext.getExecutorServiceManager().shutdownNow(this.executorService);
+			this.executorService = null;
+		}
+		for (Sink sink : this.sinks) {
+			sink.reporter.stop();
+		}
+		this.sinks.clear();
+	}
+
+}
@@ -0,0 +1,106 @@
+// @formatter:off
+/**
+ * Copyright 2014 Initium.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+// @formatter:on
+package io.initium.camel.component.metrics;
+
+import io.initium.common.util.MetricUtils;
+
+/**
+ * A MetricGroup as resolved by one MetricsEndpoint for one infix value, together with the names and the timer slot the
+ * producer needs for it. Instances are cached per endpoint so that a repeated infix value does not rebuild any names.
+ *
+ * @author Steve Fosdal, <steve@initium.io>
+ * @author Hector Veiga Ortiz, <hector@initium.io>
+ * @version 1.4
+ * @since 2026-10-18
+ */
+final class ResolvedMetricGroup {
+
+	// fields
+	private final MetricGroup	metricGroup;
+	private final String		infixValue;
+	private final String		fullName;
+	private final String		fullTimerName;
+	private final int			timerSlot;
+	private volatile long		lastAccessTime;
+
+	/**
+	 * @param metricGroup
+	 * @param infixValue
+	 * @param timingName
+	 * @param metricsComponent
+	 *            used to assign the timer slot
+	 */
+	ResolvedMetricGroup(final MetricGroup metricGroup, final String infixValue, final String timingName, final MetricsComponent metricsComponent) {
+		this.metricGroup = metricGroup;
+		this.infixValue = infixValue;
+		this.fullName = metricGroup.getFullName();
+		this.fullTimerName = MetricUtils.calculateFullMetricName(this.fullName, timingName);
+		this.timerSlot = metricsComponent.getTimerSlot(this.fullTimerName);
+		this.lastAccessTime = System.nanoTime();
+	}
+
+	/**
+	 * @return the fullName
+	 */
+	String getFullName() {
+		return this.fullName;
+	}
+
+	/**
+	 * @return the fullTimerName
+	 */
+	String getFullTimerName() {
+		return this.fullTimerName;
+	}
+
+	/**
+	 * @return the timerSlot
+	 */
+	int getTimerSlot() {
+		return this.timerSlot;
+	}
+
+	/**
+	 * @return the infixValue, null for the base metric group
+	 */
+	String getInfixValue() {
+		return this.infixValue;
+	}
+
+	/**
+	 * @return the System.nanoTime() of the last {@link #touch(long)}, or of the creation
+	 */
+	long getLastAccessTime() {
+		return this.lastAccessTime;
+	}
+
+	/**
+	 * @return the metricGroup
+	 */
+	MetricGroup getMetricGroup() {
+		return this.metricGroup;
+	}
+
+	/**
+	 * Records an access, used to find idle and least recently used metric groups.
+	 * 
+	 * @param nanoTime
+	 */
+	void touch(final long nanoTime) {
+		this.lastAccessTime = nanoTime;
+	}
+
+}
@@ -0,0 +1,317 @@
+// @formatter:off
+/**
+ * Copyright 2014 Initium.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+// @formatter:on
+package io.initium.camel.component.metrics;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.zip.GZIPOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static io.initium.camel.component.metrics.MetricsComponent.MARKER;
+
+/**
+ * A CSV file written in blocks through one open FileChannel. The file is rotated once it would grow past a maximum size
+ * or once it is older than the rotation period: it is renamed with the time of the rotation, e.g.
+ * metrics-20261018T101500.000.csv, and a new file with the header is started. A rotated segment is optionally gzipped
+ * by the compressor, so that the writing thread only renames it; until then it is left uncompressed. Reporters of a
+ * component writing to the same path share one instance, and must agree on its rotation and compression settings.
+ *
+ * @author Steve Fosdal, <steve@initium.io>
+ * @author Hector Veiga Ortiz, <hector@initium.io>
+ * @version 1.4
+ * @since 2026-10-18
+ */
+public final class RotatingCsvFile {
+
+	// logging
+	private static final String							SELF			= Thread.currentThread().getStackTrace()[1].getClassName();
+	private static final Logger							LOGGER			= LoggerFactory.getLogger(SELF);
+
+	// constants
+	private static final Charset						UTF_8			= Charset.forName("UTF-8");
+	private static final String							GZIP_SUFFIX		= ".gz";
+	private static final int							COPY_BUFFER		= 64 * 1024;
+
+	/**
+	 * Opens the file, or returns the instance the component already has open for the path.
+	 *
+	 * @param metricsComponent
+	 *            the component sharing the file, null for a file of its own
+	 * @param file
+	 * @param header
+	 *            the first line of every segment, without line separator
+	 * @param maxFileSize
+	 *            the size in bytes past which the file is rotated, 0 for no limit
+	 * @param rotationMillis
+	 *            the age past which the file is rotated, 0 for no limit
+	 * @param compress
+	 *            true to gzip rotated segments
+	 * @param compressor
+	 *            the executor gzipping rotated segments, null to gzip them on the writing thread
+	 * @return the file, to be closed once it is no longer used
+	 * @throws IOException
+	 *             if the file cannot be opened, or is already open with other rotation or compression settings
+	 */
+	public static RotatingCsvFile open(final MetricsComponent metricsComponent, final File file, final String header, final long maxFileSize, final long rotationMillis, final boolean compress, final Executor compressor) throws IOException {
+		String key = file.getCanonicalPath();
+		Map<String, RotatingCsvFile> csvFiles = metricsComponent == null ? new HashMap<String, RotatingCsvFile>() : metricsComponent.getCsvFiles();
+		synchronized (csvFiles) {
+			RotatingCsvFile rotatingCsvFile = csvFiles.get(key);
+			if (rotatingCsvFile == null) {
+				LOGGER.info(MARKER, "opening csv file: {}", key);
+				rotatingCsvFile = new RotatingCsvFile(key, new File(key), header, maxFileSize, rotationMillis, compress, compressor, csvFiles);
+				csvFiles.put(key, rotatingCsvFile);
+			} else if (rotatingCsvFile.maxFileSize != maxFileSize || rotatingCsvFile.rotationMillis != rotationMillis || rotatingCsvFile.compress != compress || rotatingCsvFile.compressor != compressor) {
+				throw new IOException(key + " is already open with a maxFileSize of " + rotatingCsvFile.maxFileSize + ", a rotation period of " + rotatingCsvFile.rotationMillis + " ms and compress " + rotatingCsvFile.compress + ", not " + maxFileSize + ", " + rotationMillis + " ms and " + compress + ", or with another compressor");
+			}
+			rotatingCsvFile.references++;
+			return rotatingCsvFile;
+		}
+	}
+
+	/**
+	 * Closes the files of a component that are still open.
+	 *
+	 * @param metricsComponent
+	 */
+	static void stopAll(final MetricsComponent metricsComponent) {
+		Map<String, RotatingCsvFile> csvFiles = metricsComponent.getCsvFiles();
+		List<RotatingCsvFile> openFiles;
+		synchronized (csvFiles) {
+			openFiles = new ArrayList<RotatingCsvFile>(csvFiles.values());
+			csvFiles.clear();
+		}
+		for (RotatingCsvFile rotatingCsvFile : openFiles) {
+			LOGGER.info(MARKER, "closing csv file: {}", rotatingCsvFile.key);
+			rotatingCsvFile.stop();
+		}
+	}
+
+	/**
+	 * @param file
+	 * @throws IOException
+	 */
+	private static void gzip(final File file) throws IOException {
+		File gzipFile = new File(file.getPath() + GZIP_SUFFIX);
+		InputStream inputStream = new FileInputStream(file);
+		try {
+			OutputStream outputStream = new GZIPOutputStream(new FileOutputStream(gzipFile), COPY_BUFFER);
+			try {
+				byte[] buffer = new byte[COPY_BUFFER];
+				int length;
+				while ((length = inputStream.read(buffer)) >= 0) {
+					outputStream.write(buffer, 0, length);
+				}
+			} finally {
+				outputStream.close();
+			}
+		} finally {
+			inputStream.close();
+		}
+		if (!file.delete()) {
+			LOGGER.warn(MARKER, "unable to delete {} after compressing it", file);
+		}
+	}
+
+	// fields
+	private final String							key;
+	private final File								file;
+	private final byte[]							header;
+	private final long								maxFileSize;
+	private final long								rotationMillis;
+	private final boolean							compress;
+	private final Executor							compressor;
+	private final Map<String, RotatingCsvFile>		csvFiles;
+	// guarded by csvFiles
+	private int										references;
+	private FileChannel								fileChannel;
+	private long									size;
+	private long									openedMillis;
+
+	/**
+	 * @param key
+	 * @param file
+	 * @param header
+	 * @param maxFileSize
+	 * @param rotationMillis
+	 * @param compress
+	 * @param compressor
+	 * @param csvFiles
+	 *            the open files of the component, this one is removed from when closed
+	 * @throws IOException
+	 */
+	private RotatingCsvFile(final String key, final File file, final String header, final long maxFileSize, final long rotationMillis, final boolean compress, final Executor compressor, final Map<String, RotatingCsvFile> csvFiles) throws IOException {
+		this.key = key;
+		this.csvFiles = csvFiles;
+		this.file = file;
+		this.header = (header + "\n").getBytes(UTF_8);
+		this.maxFileSize = maxFileSize;
+		this.rotationMillis = rotationMillis;
+		this.compress = compress;
+		this.compressor = compressor;
+		File parent = file.getParentFile();
+		if (parent != null && !parent.exists() && !parent.mkdirs()) {
+			throw new IOException("unable to create directory: " + parent);
+		}
+		openSegment();
+	}
+
+	/**
+	 * Releases the file; the last user closes it.
+	 *
+	 * @throws IOException
+	 */
+	public void close() throws IOException {
+		synchronized (this.csvFiles) {
+			if (--this.references > 0 || this.csvFiles.get(this.key) != this) {
+				// still in use, or already closed with the component
+				return;
+			}
+			this.csvFiles.remove(this.key);
+		}
+		LOGGER.info(MARKER, "closing csv file: {}", this.key);
+		synchronized (this) {
+			this.fileChannel.close();
+		}
+	}
+
+	/**
+	 * Closes the channel, logging a failure.
+	 */
+	private synchronized void stop() {
+		try {
+			this.fileChannel.close();
+		} catch (IOException e) {
+			LOGGER.debug(MARKER, "unable to close csv file " + this.key, e);
+		}
+	}
+
+	/**
+	 * @return the file currently written
+	 */
+	public File getFile() {
+		return this.file;
+	}
+
+	/**
+	 * Appends a block of lines, rotating the file first if needed.
+	 *
+	 * @param block
+	 *            whole lines, each ending with a line separator
+	 * @throws IOException
+	 */
+	public synchronized void write(final String block) throws IOException {
+		byte[] bytes = block.getBytes(UTF_8);
+		long now = System.currentTimeMillis();
+		boolean isTooBig = this.maxFileSize > 0 && this.size > this.header.length && this.size + bytes.length > this.maxFileSize;
+		boolean isTooOld = this.rotationMillis > 0 && now - this.openedMillis >= this.rotationMillis;
+		if (isTooBig || isTooOld) {
+			rotate(now);
+		}
+		ByteBuffer byteBuffer = ByteBuffer.wrap(bytes);
+		while (byteBuffer.hasRemaining()) {
+			this.size += this.fileChannel.write(byteBuffer);
+		}
+	}
+
+	/**
+	 * Gzips a rotated segment with the compressor, or on this thread if there is none or it no longer takes tasks.
+	 *
+	 * @param rotatedFile
+	 * @throws IOException
+	 */
+	private void compress(final File rotatedFile) throws IOException {
+		if (this.compressor != null) {
+			try {
+				this.compressor.execute(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							gzip(rotatedFile);
+						} catch (IOException e) {
+							LOGGER.warn(MARKER, "unable to compress " + rotatedFile + ", leaving it uncompressed", e);
+						}
+					}
+				});
+				return;
+			} catch (RejectedExecutionException e) {
+				LOGGER.debug(MARKER, "compressor stopped, compressing {} on the writing thread", rotatedFile);
+			}
+		}
+		gzip(rotatedFile);
+	}
+
+	/**
+	 * Opens the file for appending, writing the header if it is empty.
+	 *
+	 * @throws IOException
+	 */
+	private void openSegment() throws IOException {
+		this.fileChannel = new FileOutputStream(this.file, true).getChannel();
+		this.size = this.fileChannel.size();
+		this.openedMillis = System.currentTimeMillis();
+		if (this.size == 0) {
+			ByteBuffer byteBuffer = ByteBuffer.wrap(this.header);
+			while (byteBuffer.hasRemaining()) {
+				this.size += this.fileChannel.write(byteBuffer);
+			}
+		}
+	}
+
+	/**
+	 * @param now
+	 * @throws IOException
+	 */
+	private void rotate(final long now) throws IOException {
+		this.fileChannel.close();
+		String name = this.file.getName();
+		int extensionIndex = name.lastIndexOf('.');
+		String baseName = extensionIndex > 0 ? name.substring(0, extensionIndex) : name;
+		String extension = extensionIndex > 0 ? name.substring(extensionIndex) : "";
+		String timestamp = new SimpleDateFormat("yyyyMMdd'T'HHmmss.SSS").format(new Date(now));
+		File rotatedFile = new File(this.file.getParentFile(), baseName + "-" + timestamp + extension);
+		for (int i = 1; rotatedFile.exists() || new File(rotatedFile.getPath() + GZIP_SUFFIX).exists(); i++) {
+			rotatedFile = new File(this.file.getParentFile(), baseName + "-" + timestamp + "-" + i + extension);
+		}
+		if (this.file.renameTo(rotatedFile)) {
+			LOGGER.debug(MARKER, "rotated {} to {}", this.file, rotatedFile);
+			if (this.compress) {
+				compress(rotatedFile);
+			}
+		} else {
+			LOGGER.warn(MARKER, "unable to rotate {} to {}, appending", this.file, rotatedFile);
+		}
+		openSegment();
+	}
+
+}
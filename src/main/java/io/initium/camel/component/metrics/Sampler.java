@@ -0,0 +1,150 @@
+// @formatter:off
+/**
+ * Copyright 2014 Initium.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+// @formatter:on
+package io.initium.camel.component.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.camel.RuntimeCamelException;
+
+/**
+ * Decides which exchanges of a sampled MetricsEndpoint are recorded, either fixed 1-in-N or with a probability. Every
+ * decision returns a weight: 0 for an exchange that is skipped, otherwise the number of exchanges the recorded one
+ * stands for, so that counters and meters scaled by it stay unbiased. The state lives in a thread local, so a decision
+ * takes no lock and allocates nothing once the thread has made its first one.
+ *
+ * @author Steve Fosdal, <steve@initium.io>
+ * @author Hector Veiga Ortiz, <hector@initium.io>
+ * @version 1.4
+ * @since 2026-10-18
+ */
+final class Sampler {
+
+	/**
+	 * The per thread state of a Sampler.
+	 */
+	private static final class SamplerState {
+		private long	seed;
+		private long	countdown;
+
+		/**
+		 * @return a uniformly distributed double in [0, 1)
+		 */
+		private double nextDouble() {
+			return (nextLong() >>> 11) * 0x1.0p-53;
+		}
+
+		/**
+		 * xorshift64*
+		 *
+		 * @return
+		 */
+		private long nextLong() {
+			this.seed ^= this.seed >>> 12;
+			this.seed ^= this.seed << 25;
+			this.seed ^= this.seed >>> 27;
+			return this.seed * 0x2545F4914F6CDD1DL;
+		}
+	}
+
+	// constants
+	private static final AtomicLong			SEED_UNIQUIFIER	= new AtomicLong(0x9E3779B97F4A7C15L);
+
+	// fields
+	private final long						sampleEvery;
+	private final double					sampleRate;
+	private final long						baseWeight;
+	private final double					fractionalWeight;
+	private final ThreadLocal<SamplerState>	states;
+
+	/**
+	 * @param sampleEvery
+	 *            0 for probabilistic sampling
+	 * @param sampleRate
+	 */
+	private Sampler(final long sampleEvery, final double sampleRate) {
+		this.sampleEvery = sampleEvery;
+		this.sampleRate = sampleRate;
+		double weight = 1 / sampleRate;
+		this.baseWeight = (long) weight;
+		this.fractionalWeight = weight - this.baseWeight;
+		this.states = new ThreadLocal<SamplerState>() {
+			@Override
+			protected SamplerState initialValue() {
+				SamplerState state = new SamplerState();
+				state.seed = (SEED_UNIQUIFIER.addAndGet(0x9E3779B97F4A7C15L) ^ System.nanoTime()) | 1;
+				if (Sampler.this.sampleEvery > 0) {
+					// start every thread at a different point of its cycle
+					state.countdown = 1 + (state.nextLong() >>> 1) % Sampler.this.sampleEvery;
+				}
+				return state;
+			}
+		};
+	}
+
+	/**
+	 * @param sampleEvery
+	 * @return a Sampler recording one in every sampleEvery exchanges
+	 */
+	static Sampler everyN(final long sampleEvery) {
+		if (sampleEvery < 1) {
+			throw new RuntimeCamelException("sampleEvery must be at least 1: " + sampleEvery);
+		}
+		return new Sampler(sampleEvery, 1d / sampleEvery);
+	}
+
+	/**
+	 * @param sampleRate
+	 * @return a Sampler recording each exchange with probability sampleRate
+	 */
+	static Sampler withRate(final double sampleRate) {
+		if (!(sampleRate > 0 && sampleRate <= 1)) {
+			throw new RuntimeCamelException("sampleRate must be in (0, 1]: " + sampleRate);
+		}
+		return new Sampler(0, sampleRate);
+	}
+
+	/**
+	 * @return the fraction of exchanges recorded
+	 */
+	double getSampleRate() {
+		return this.sampleRate;
+	}
+
+	/**
+	 * Decides whether the current exchange is recorded. With probabilistic sampling the weight is 1 / sampleRate rounded
+	 * up or down at random, so that its expected value is exact.
+	 *
+	 * @return the weight of the exchange, 0 if it is not recorded
+	 */
+	long sample() {
+		SamplerState state = this.states.get();
+		if (this.sampleEvery > 0) {
+			if (--state.countdown > 0) {
+				return 0;
+			}
+			state.countdown = this.sampleEvery;
+			return this.sampleEvery;
+		}
+		if (state.nextDouble() >= this.sampleRate) {
+			return 0;
+		}
+		if (this.fractionalWeight > 0 && state.nextDouble() < this.fractionalWeight) {
+			return this.baseWeight + 1;
+		}
+		return this.baseWeight;
+	}
+
+}
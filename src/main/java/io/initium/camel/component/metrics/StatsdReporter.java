@@ -0,0 +1,234 @@
+// @formatter:off
+/**
+ * Copyright 2014 Initium.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+// @formatter:on
+package io.initium.camel.component.metrics;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.SortedMap;
+import java.util.concurrent.TimeUnit;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Counting;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricFilter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.ScheduledReporter;
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.Timer;
+
+/**
+ * Reports to a StatsD server, or a DogStatsD agent when tags are given, the values aggregated by the metrics since the
+ * previous report rather than each update: counters and meters as counters of their increase, the counts of
+ * histograms and timers as the counters name.count, gauges as gauges, and the snapshots of histograms and timers as the
+ * gauges name.min, .max, .mean, .stddev, .p50, .p75, .p95, .p99 and .p999. As many lines as fit in the MTU are sent in
+ * one datagram.
+ *
+ * @author Steve Fosdal, <steve@initium.io>
+ * @author Hector Veiga Ortiz, <hector@initium.io>
+ * @version 1.4
+ * @since 2026-10-18
+ */
+@SuppressWarnings("rawtypes")
+public final class StatsdReporter extends ScheduledReporter {
+
+	// constants
+	private static final Charset		UTF_8			= Charset.forName("UTF-8");
+	private static final int			PRUNE_PERIODS	= 64;
+
+	// fields
+	private final MetricRegistry		metricRegistry;
+	private final StatsdSender			statsdSender;
+	private final String				prefix;
+	private final String				tags;
+	private final ByteBuffer			datagram;
+	private final StringBuilder			line			= new StringBuilder();
+	// the counts last reported, by name
+	private final Map<String, Long>		counts			= new HashMap<String, Long>();
+	private int							reports;
+
+	/**
+	 * @param metricRegistry
+	 * @param filter
+	 * @param rateUnit
+	 * @param durationUnit
+	 * @param prefix
+	 *            the prefix of every name, null for none
+	 * @param tags
+	 *            DogStatsD tags added to every line, e.g. env:prod,region:eu, null for none
+	 * @param mtu
+	 *            the most bytes sent in one datagram
+	 * @param statsdSender
+	 *            the sender, closed when the reporter is stopped
+	 */
+	public StatsdReporter(final MetricRegistry metricRegistry, final MetricFilter filter, final TimeUnit rateUnit, final TimeUnit durationUnit, final String prefix, final String tags, final int mtu, final StatsdSender statsdSender) {
+		super(metricRegistry, "statsd-reporter", filter, rateUnit, durationUnit);
+		this.metricRegistry = metricRegistry;
+		this.statsdSender = statsdSender;
+		this.prefix = prefix == null || prefix.isEmpty() ? "" : sanitize(prefix) + ".";
+		this.tags = tags == null || tags.isEmpty() ? "" : "|#" + tags;
+		this.datagram = ByteBuffer.allocate(mtu);
+	}
+
+	/**
+	 * @param name
+	 * @return the name with the characters StatsD uses as separators replaced by _
+	 */
+	private static String sanitize(final String name) {
+		StringBuilder sanitized = new StringBuilder(name.length());
+		for (int i = 0; i < name.length(); i++) {
+			char c = name.charAt(i);
+			sanitized.append(c == ':' || c == '|' || c == '@' || c == '#' || c == ',' || c == '\n' || c == ' ' ? '_' : c);
+		}
+		return sanitized.toString();
+	}
+
+	@Override
+	public synchronized void report(final SortedMap<String, Gauge> gauges, final SortedMap<String, Counter> counters, final SortedMap<String, Histogram> histograms, final SortedMap<String, Meter> meters, final SortedMap<String, Timer> timers) {
+		this.datagram.clear();
+		for (Entry<String, Gauge> entry : gauges.entrySet()) {
+			Object value = entry.getValue().getValue();
+			if (value instanceof Number) {
+				appendLine(entry.getKey(), null, ((Number) value).doubleValue(), 'g');
+			} else if (value instanceof Boolean) {
+				appendLine(entry.getKey(), null, ((Boolean) value) ? 1 : 0, 'g');
+			}
+		}
+		for (Entry<String, Counter> entry : counters.entrySet()) {
+			appendCount(entry.getKey(), null, entry.getValue());
+		}
+		for (Entry<String, Histogram> entry : histograms.entrySet()) {
+			Histogram histogram = entry.getValue();
+			appendCount(entry.getKey(), "count", histogram);
+			appendSnapshot(entry.getKey(), histogram.getSnapshot(), 1);
+		}
+		for (Entry<String, Meter> entry : meters.entrySet()) {
+			appendCount(entry.getKey(), null, entry.getValue());
+		}
+		for (Entry<String, Timer> entry : timers.entrySet()) {
+			Timer timer = entry.getValue();
+			appendCount(entry.getKey(), "count", timer);
+			appendSnapshot(entry.getKey(), timer.getSnapshot(), convertDuration(1));
+		}
+		flush();
+		// forget the counts of removed metrics from time to time
+		if (++this.reports % PRUNE_PERIODS == 0) {
+			this.counts.keySet().retainAll(this.metricRegistry.getNames());
+		}
+	}
+
+	@Override
+	public void stop() {
+		super.stop();
+		this.statsdSender.close();
+	}
+
+	/**
+	 * Appends the increase of the count since the last report, if any, as a counter.
+	 *
+	 * @param name
+	 * @param suffix
+	 * @param counting
+	 */
+	private void appendCount(final String name, final String suffix, final Counting counting) {
+		long count = counting.getCount();
+		Long lastCount = this.counts.put(name, count);
+		long delta = lastCount == null ? count : count - lastCount;
+		if (delta != 0) {
+			appendLine(name, suffix, delta, 'c');
+		}
+	}
+
+	/**
+	 * @param name
+	 * @param suffix
+	 *            added to the name after a dot, null for none
+	 * @param value
+	 * @param type
+	 *            c for a counter, g for a gauge
+	 */
+	private void appendLine(final String name, final String suffix, final double value, final char type) {
+		if (Double.isNaN(value) || Double.isInfinite(value)) {
+			return;
+		}
+		if (type == 'g' && value < 0) {
+			// a signed gauge value is a change of the gauge
+			appendLine(name, suffix, 0, type);
+		}
+		StringBuilder text = this.line;
+		text.setLength(0);
+		text.append(this.prefix).append(sanitize(name));
+		if (suffix != null) {
+			text.append('.').append(suffix);
+		}
+		text.append(':');
+		if (value == (long) value) {
+			text.append((long) value);
+		} else {
+			text.append(value);
+		}
+		text.append('|').append(type).append(this.tags);
+		byte[] bytes = text.toString().getBytes(UTF_8);
+		int separator = this.datagram.position() > 0 ? 1 : 0;
+		if (this.datagram.position() + separator + bytes.length > this.datagram.capacity()) {
+			flush();
+			separator = 0;
+		}
+		if (bytes.length > this.datagram.capacity()) {
+			// too long for any datagram
+			this.statsdSender.send(ByteBuffer.wrap(bytes));
+			return;
+		}
+		if (separator > 0) {
+			this.datagram.put((byte) '\n');
+		}
+		this.datagram.put(bytes);
+	}
+
+	/**
+	 * @param name
+	 * @param snapshot
+	 * @param factor
+	 *            the factor converting the values of the snapshot
+	 */
+	private void appendSnapshot(final String name, final Snapshot snapshot, final double factor) {
+		appendLine(name, "min", snapshot.getMin() * factor, 'g');
+		appendLine(name, "max", snapshot.getMax() * factor, 'g');
+		appendLine(name, "mean", snapshot.getMean() * factor, 'g');
+		appendLine(name, "stddev", snapshot.getStdDev() * factor, 'g');
+		appendLine(name, "p50", snapshot.getMedian() * factor, 'g');
+		appendLine(name, "p75", snapshot.get75thPercentile() * factor, 'g');
+		appendLine(name, "p95", snapshot.get95thPercentile() * factor, 'g');
+		appendLine(name, "p99", snapshot.get99thPercentile() * factor, 'g');
+		appendLine(name, "p999", snapshot.get999thPercentile() * factor, 'g');
+	}
+
+	/**
+	 * Sends the lines appended since the last datagram.
+	 */
+	private void flush() {
+		if (this.datagram.position() > 0) {
+			this.datagram.flip();
+			this.statsdSender.send(this.datagram);
+			this.datagram.clear();
+		}
+	}
+
+}
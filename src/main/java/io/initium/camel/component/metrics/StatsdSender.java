@@ -0,0 +1,217 @@
+// @formatter:off
+/**
+ * Copyright 2014 Initium.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+// @formatter:on
+package io.initium.camel.component.metrics;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static io.initium.camel.component.metrics.MetricsComponent.MARKER;
+
+/**
+ * Sends datagrams to a StatsD server through a non-blocking {@link DatagramChannel}, never waiting: a datagram the
+ * channel cannot take at once, or fails to send, is dropped and counted. The destination is the whole configuration of
+ * a channel, so the senders of reporters of every metric group of a component sending to the same address and port
+ * share one; the mtu and tags are settings of each {@link StatsdReporter}, which packs its own datagrams, and are never
+ * shared.
+ *
+ * @author Steve Fosdal, <steve@initium.io>
+ * @author Hector Veiga Ortiz, <hector@initium.io>
+ * @version 1.4
+ * @since 2026-10-18
+ */
+public final class StatsdSender {
+
+	/**
+	 * The channel and counts shared by the senders to one destination.
+	 */
+	static final class Channel {
+
+		// fields
+		private final String			key;
+		private final InetSocketAddress	address;
+		private final DatagramChannel	datagramChannel;
+		private final AtomicLong		sentCount		= new AtomicLong();
+		private final AtomicLong		droppedCount	= new AtomicLong();
+		private int						references;
+
+		/**
+		 * @param key
+		 * @param address
+		 * @throws IOException
+		 */
+		private Channel(final String key, final InetSocketAddress address) throws IOException {
+			this.key = key;
+			this.address = address;
+			this.datagramChannel = DatagramChannel.open();
+			this.datagramChannel.configureBlocking(false);
+		}
+
+		/**
+		 * @return true once the channel is closed
+		 */
+		boolean isStopped() {
+			return !this.datagramChannel.isOpen();
+		}
+
+		/**
+		 * Closes the channel.
+		 */
+		private void stop() {
+			try {
+				this.datagramChannel.close();
+			} catch (IOException e) {
+				LOGGER.debug(MARKER, "unable to close statsd channel", e);
+			}
+		}
+	}
+
+	// logging
+	private static final String		SELF	= Thread.currentThread().getStackTrace()[1].getClassName();
+	private static final Logger		LOGGER	= LoggerFactory.getLogger(SELF);
+
+	/**
+	 * Opens a channel to the host and port, or shares the channel the component already sends there through.
+	 *
+	 * @param metricsComponent
+	 * @param host
+	 * @param port
+	 * @return a sender to the destination, to be closed once it is no longer used
+	 * @throws IOException
+	 *             if the host cannot be resolved or the channel opened
+	 */
+	public static StatsdSender open(final MetricsComponent metricsComponent, final String host, final int port) throws IOException {
+		InetSocketAddress address = new InetSocketAddress(host, port);
+		if (address.isUnresolved()) {
+			throw new IOException("unable to resolve statsd host: " + host);
+		}
+		// a host name and its address are the same destination
+		String key = address.getAddress().getHostAddress() + ":" + port;
+		Map<String, Channel> channels = metricsComponent.getStatsdChannels();
+		synchronized (channels) {
+			Channel channel = channels.get(key);
+			if (channel == null) {
+				LOGGER.info(MARKER, "opening statsd channel to: {}", address);
+				channel = new Channel(key, address);
+				channels.put(key, channel);
+			}
+			channel.references++;
+			return new StatsdSender(channel, channels);
+		}
+	}
+
+	/**
+	 * Closes the channels of a component that are still open.
+	 *
+	 * @param metricsComponent
+	 */
+	static void stopAll(final MetricsComponent metricsComponent) {
+		Map<String, Channel> channels = metricsComponent.getStatsdChannels();
+		List<Channel> openChannels;
+		synchronized (channels) {
+			openChannels = new ArrayList<Channel>(channels.values());
+			channels.clear();
+		}
+		for (Channel channel : openChannels) {
+			LOGGER.info(MARKER, "closing statsd channel to: {}", channel.address);
+			channel.stop();
+		}
+	}
+
+	// fields
+	private final Channel				channel;
+	private final Map<String, Channel>	channels;
+	private final AtomicBoolean			isClosed	= new AtomicBoolean(false);
+
+	/**
+	 * @param channel
+	 * @param channels
+	 *            the channels of the component, by destination
+	 */
+	private StatsdSender(final Channel channel, final Map<String, Channel> channels) {
+		this.channel = channel;
+		this.channels = channels;
+	}
+
+	/**
+	 * Releases the shared channel; the last sender to close closes it.
+	 */
+	public void close() {
+		if (!this.isClosed.compareAndSet(false, true)) {
+			return;
+		}
+		synchronized (this.channels) {
+			if (--this.channel.references > 0 || this.channels.get(this.channel.key) != this.channel) {
+				// still in use, or already closed with the component
+				return;
+			}
+			this.channels.remove(this.channel.key);
+		}
+		LOGGER.info(MARKER, "closing statsd channel to: {}", this.channel.address);
+		this.channel.stop();
+	}
+
+	/**
+	 * @return the number of datagrams dropped
+	 */
+	public long getDroppedCount() {
+		return this.channel.droppedCount.get();
+	}
+
+	/**
+	 * @return the number of datagrams sent
+	 */
+	public long getSentCount() {
+		return this.channel.sentCount.get();
+	}
+
+	/**
+	 * Sends the remaining bytes of the buffer as one datagram, unless the sender is closed.
+	 *
+	 * @param datagram
+	 */
+	public void send(final ByteBuffer datagram) {
+		if (this.isClosed.get()) {
+			return;
+		}
+		try {
+			if (this.channel.datagramChannel.send(datagram, this.channel.address) > 0) {
+				this.channel.sentCount.incrementAndGet();
+				return;
+			}
+		} catch (IOException e) {
+			LOGGER.debug(MARKER, "unable to send statsd datagram to " + this.channel.address, e);
+		}
+		this.channel.droppedCount.incrementAndGet();
+	}
+
+	/**
+	 * @return the shared channel, for monitoring
+	 */
+	Channel getChannel() {
+		return this.channel;
+	}
+
+}
@@ -0,0 +1,192 @@
+// @formatter:off
+/**
+ * Copyright 2014 Initium.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+// @formatter:on
+package io.initium.camel.component.metrics;
+
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.UniformReservoir;
+
+/**
+ * A view of a histogram of nanoseconds in another TimeUnit. The view holds no samples of its own: its snapshot converts
+ * a snapshot of the nanosecond histogram, and a value recorded through it is converted to nanoseconds and recorded in
+ * that histogram. Quantiles, minimum, maximum and values are converted per value, truncating like TimeUnit.convert;
+ * truncating never changes the order of values, so they are read from the nanosecond snapshot without copying or
+ * sorting its values again. Mean and standard deviation are divided exactly, so they keep the fraction of a unit that the histograms of
+ * truncated values kept per unit before 1.4 lost: intervals of 1.9 and 0.5 seconds had a mean of 0.5 seconds then and
+ * have a mean of 1.2 seconds now.
+ * <p>
+ * Every view of the same nanosecond histogram can convert one snapshot of it, see {@link #getSnapshot(Snapshot)}, so
+ * that a report copies and sorts the shared reservoir once rather than once per unit.
+ *
+ * @author Steve Fosdal, <steve@initium.io>
+ * @author Hector Veiga Ortiz, <hector@initium.io>
+ * @version 1.4
+ * @since 2026-10-18
+ */
+final class TimeUnitHistogram extends Histogram {
+
+	/**
+	 * A snapshot of nanoseconds converted to another TimeUnit.
+	 */
+	private static final class TimeUnitSnapshot extends Snapshot {
+
+		// constants
+		private static final Charset	UTF_8	= Charset.forName("UTF-8");
+
+		// fields
+		private final Snapshot			nanosSnapshot;
+		private final TimeUnit			timeUnit;
+		private final double			nanosPerUnit;
+
+		/**
+		 * @param nanosSnapshot
+		 * @param timeUnit
+		 */
+		private TimeUnitSnapshot(final Snapshot nanosSnapshot, final TimeUnit timeUnit) {
+			this.nanosSnapshot = nanosSnapshot;
+			this.timeUnit = timeUnit;
+			this.nanosPerUnit = timeUnit.toNanos(1);
+		}
+
+		@Override
+		public void dump(final OutputStream output) {
+			PrintWriter out = new PrintWriter(new OutputStreamWriter(output, UTF_8));
+			try {
+				for (long value : getValues()) {
+					out.printf("%d%n", value);
+				}
+			} finally {
+				out.close();
+			}
+		}
+
+		@Override
+		public long getMax() {
+			return convert(this.nanosSnapshot.getMax());
+		}
+
+		@Override
+		public double getMean() {
+			return this.nanosSnapshot.getMean() / this.nanosPerUnit;
+		}
+
+		@Override
+		public long getMin() {
+			return convert(this.nanosSnapshot.getMin());
+		}
+
+		@Override
+		public double getStdDev() {
+			return this.nanosSnapshot.getStdDev() / this.nanosPerUnit;
+		}
+
+		@Override
+		public double getValue(final double quantile) {
+			return convert((long) this.nanosSnapshot.getValue(quantile));
+		}
+
+		@Override
+		public long[] getValues() {
+			long[] values = this.nanosSnapshot.getValues();
+			for (int i = 0; i < values.length; i++) {
+				values[i] = convert(values[i]);
+			}
+			return values;
+		}
+
+		@Override
+		public int size() {
+			return this.nanosSnapshot.size();
+		}
+
+		/**
+		 * @param nanos
+		 * @return
+		 */
+		private long convert(final long nanos) {
+			return this.timeUnit.convert(nanos, TimeUnit.NANOSECONDS);
+		}
+	}
+
+	// fields
+	private final Histogram	nanosHistogram;
+	private final TimeUnit	timeUnit;
+
+	/**
+	 * @param nanosHistogram
+	 *            the histogram of nanoseconds this is a view of
+	 * @param timeUnit
+	 */
+	TimeUnitHistogram(final Histogram nanosHistogram, final TimeUnit timeUnit) {
+		// the reservoir of a view is never used
+		super(new UniformReservoir(1));
+		this.nanosHistogram = nanosHistogram;
+		this.timeUnit = timeUnit;
+	}
+
+	@Override
+	public long getCount() {
+		return this.nanosHistogram.getCount();
+	}
+
+	/**
+	 * @return the histogram of nanoseconds this is a view of
+	 */
+	Histogram getNanosHistogram() {
+		return this.nanosHistogram;
+	}
+
+	@Override
+	public Snapshot getSnapshot() {
+		return getSnapshot(this.nanosHistogram.getSnapshot());
+	}
+
+	/**
+	 * @param nanosSnapshot
+	 *            a snapshot of the histogram of nanoseconds, e.g. one shared by every view in a report
+	 * @return the snapshot converted to the unit of this view
+	 */
+	Snapshot getSnapshot(final Snapshot nanosSnapshot) {
+		return new TimeUnitSnapshot(nanosSnapshot, this.timeUnit);
+	}
+
+	/**
+	 * Records a value in the unit of this view in the histogram of nanoseconds.
+	 *
+	 * @param value
+	 */
+	@Override
+	public void update(final int value) {
+		update((long) value);
+	}
+
+	/**
+	 * Records a value in the unit of this view in the histogram of nanoseconds.
+	 *
+	 * @param value
+	 */
+	@Override
+	public void update(final long value) {
+		this.nanosHistogram.update(this.timeUnit.toNanos(value));
+	}
+
+}
@@ -0,0 +1,132 @@
+// @formatter:off
+/**
+ * Copyright 2014 Initium.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+// @formatter:on
+package io.initium.camel.component.metrics;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.camel.Exchange;
+
+import com.codahale.metrics.Timer;
+
+import static io.initium.camel.component.metrics.MetricsComponent.TIMING_SLOTS_NAME;
+
+/**
+ * Records timer start times on an exchange. Every timer is given a small integer slot by the MetricsComponent, and the
+ * start times of one exchange live in a single long[] stored as an exchange property, holding a pair of a slot and its
+ * start time for each timer the exchange runs through. The array is sized to the timers the exchange actually uses,
+ * not to the number of timers in the component, so starting and stopping a timer builds no names and allocates only
+ * that small array once per exchange.
+ *
+ * @author Steve Fosdal, <steve@initium.io>
+ * @author Hector Veiga Ortiz, <hector@initium.io>
+ * @version 1.4
+ * @since 2026-10-18
+ */
+final class TimerSlots {
+
+	// logging
+	private static final String	SELF			= Thread.currentThread().getStackTrace()[1].getClassName();
+
+	// constants
+	private static final long	FREE			= -1;
+	private static final int	INITIAL_PAIRS	= 2;
+
+	/**
+	 * Starts the timer in the given slot. If the slot was already started, the previous start is recorded first.
+	 *
+	 * @param exchange
+	 * @param slot
+	 * @param timer
+	 */
+	static void start(final Exchange exchange, final int slot, final Timer timer) {
+		long now = System.nanoTime();
+		long[] startTimes = getStartTimes(exchange);
+		int index = indexOf(startTimes, slot);
+		if (index >= 0) {
+			timer.update(now - startTimes[index + 1], TimeUnit.NANOSECONDS);
+			startTimes[index + 1] = now;
+			return;
+		}
+		index = indexOf(startTimes, FREE);
+		if (index < 0) {
+			index = startTimes.length;
+			startTimes = Arrays.copyOf(startTimes, startTimes.length * 2);
+			Arrays.fill(startTimes, index, startTimes.length, FREE);
+			exchange.setProperty(TIMING_SLOTS_NAME, startTimes);
+		}
+		startTimes[index] = slot;
+		startTimes[index + 1] = now;
+	}
+
+	/**
+	 * Stops the timer in the given slot, recording the elapsed time if it was started.
+	 *
+	 * @param exchange
+	 * @param slot
+	 * @param timer
+	 */
+	static void stop(final Exchange exchange, final int slot, final Timer timer) {
+		Object value = exchange.getProperty(TIMING_SLOTS_NAME);
+		if (!(value instanceof long[])) {
+			return;
+		}
+		long[] startTimes = (long[]) value;
+		int index = indexOf(startTimes, slot);
+		if (index >= 0) {
+			startTimes[index] = FREE;
+			timer.update(System.nanoTime() - startTimes[index + 1], TimeUnit.NANOSECONDS);
+		}
+	}
+
+	/**
+	 * @param exchange
+	 * @return the start times of the exchange, created if it has none yet
+	 */
+	private static long[] getStartTimes(final Exchange exchange) {
+		Object value = exchange.getProperty(TIMING_SLOTS_NAME);
+		if (value instanceof long[]) {
+			return (long[]) value;
+		}
+		long[] startTimes = new long[INITIAL_PAIRS * 2];
+		Arrays.fill(startTimes, FREE);
+		exchange.setProperty(TIMING_SLOTS_NAME, startTimes);
+		return startTimes;
+	}
+
+	/**
+	 * @param startTimes
+	 * @param slot
+	 *            a slot, or {@link #FREE}
+	 * @return the index of the pair of the slot, -1 if there is none
+	 */
+	private static int indexOf(final long[] startTimes, final long slot) {
+		for (int i = 0; i < startTimes.length; i += 2) {
+			if (startTimes[i] == slot) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * This class is not intended to ever be instantiated.
+	 */
+	private TimerSlots() {
+		throw new AbstractMethodError("this class [" + SELF + "] is not intended to ever be instantiated");
+	}
+
+}
@@ -0,0 +1,206 @@
+// @formatter:off
+/**
+ * Copyright 2014 Initium.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+// @formatter:on
+package io.initium.camel.component.metrics;
+
+import java.io.IOException;
+import java.util.Map.Entry;
+import java.util.SortedMap;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Metered;
+import com.codahale.metrics.MetricFilter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.ScheduledReporter;
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.Timer;
+
+import static io.initium.camel.component.metrics.MetricsComponent.MARKER;
+
+/**
+ * Reports every metric as one row of a single CSV file with a fixed set of columns, writing the rows of a report as one
+ * block. Columns that do not apply to a type of metric are left empty; histogram values are not converted, timer values
+ * are in the duration unit.
+ *
+ * @author Steve Fosdal, <steve@initium.io>
+ * @author Hector Veiga Ortiz, <hector@initium.io>
+ * @version 1.4
+ * @since 2026-10-18
+ */
+@SuppressWarnings("rawtypes")
+public final class WideCsvReporter extends ScheduledReporter {
+
+	// logging
+	private static final String	SELF	= Thread.currentThread().getStackTrace()[1].getClassName();
+	private static final Logger	LOGGER	= LoggerFactory.getLogger(SELF);
+
+	// constants
+	public static final String	HEADER	= "t,name,type,count,value,max,mean,min,stddev,p50,p75,p95,p98,p99,p999,mean_rate,m1_rate,m5_rate,m15_rate,rate_unit,duration_unit";
+
+	/**
+	 * @param value
+	 * @return the value as a CSV field
+	 */
+	private static String escape(final Object value) {
+		if (value == null) {
+			return "";
+		}
+		String string = value.toString();
+		if (string.indexOf(',') < 0 && string.indexOf('"') < 0 && string.indexOf('\n') < 0 && string.indexOf('\r') < 0) {
+			return string;
+		}
+		return "\"" + string.replace("\"", "\"\"") + "\"";
+	}
+
+	// fields
+	private final RotatingCsvFile	rotatingCsvFile;
+	private final String			rateUnitColumn;
+	private final String			durationUnitColumn;
+
+	/**
+	 * @param metricRegistry
+	 * @param filter
+	 * @param rateUnit
+	 * @param durationUnit
+	 * @param rotatingCsvFile
+	 *            the file to write to, closed when the reporter is stopped
+	 */
+	public WideCsvReporter(final MetricRegistry metricRegistry, final MetricFilter filter, final TimeUnit rateUnit, final TimeUnit durationUnit, final RotatingCsvFile rotatingCsvFile) {
+		super(metricRegistry, "wide-csv-reporter", filter, rateUnit, durationUnit);
+		this.rotatingCsvFile = rotatingCsvFile;
+		this.rateUnitColumn = "events/" + getRateUnit();
+		this.durationUnitColumn = getDurationUnit();
+	}
+
+	@Override
+	public void report(final SortedMap<String, Gauge> gauges, final SortedMap<String, Counter> counters, final SortedMap<String, Histogram> histograms, final SortedMap<String, Meter> meters, final SortedMap<String, Timer> timers) {
+		int rows = gauges.size() + counters.size() + histograms.size() + meters.size() + timers.size();
+		if (rows == 0) {
+			return;
+		}
+		String timestamp = Long.toString(TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()));
+		StringBuilder block = new StringBuilder(rows * 128);
+		for (Entry<String, Gauge> entry : gauges.entrySet()) {
+			begin(block, timestamp, entry.getKey(), "gauge");
+			block.append(",,").append(escape(entry.getValue().getValue()));
+			block.append(",,,,,,,,,,,,,,,,\n");
+		}
+		for (Entry<String, Counter> entry : counters.entrySet()) {
+			begin(block, timestamp, entry.getKey(), "counter");
+			block.append(',').append(entry.getValue().getCount());
+			block.append(",,,,,,,,,,,,,,,,,\n");
+		}
+		for (Entry<String, Histogram> entry : histograms.entrySet()) {
+			Histogram histogram = entry.getValue();
+			begin(block, timestamp, entry.getKey(), "histogram");
+			block.append(',').append(histogram.getCount()).append(',');
+			appendSnapshot(block, histogram.getSnapshot(), false);
+			block.append(",,,,,\n");
+		}
+		for (Entry<String, Meter> entry : meters.entrySet()) {
+			Meter meter = entry.getValue();
+			begin(block, timestamp, entry.getKey(), "meter");
+			block.append(',').append(meter.getCount()).append(",,,,,,,,,,,,");
+			appendRates(block, meter);
+			block.append(',').append(this.rateUnitColumn).append(",\n");
+		}
+		for (Entry<String, Timer> entry : timers.entrySet()) {
+			Timer timer = entry.getValue();
+			begin(block, timestamp, entry.getKey(), "timer");
+			block.append(',').append(timer.getCount()).append(',');
+			appendSnapshot(block, timer.getSnapshot(), true);
+			appendRates(block, timer);
+			block.append(',').append(this.rateUnitColumn).append(',').append(this.durationUnitColumn).append('\n');
+		}
+		try {
+			this.rotatingCsvFile.write(block.toString());
+		} catch (IOException e) {
+			LOGGER.warn(MARKER, "unable to write to " + this.rotatingCsvFile.getFile(), e);
+		}
+	}
+
+	@Override
+	public void stop() {
+		super.stop();
+		try {
+			this.rotatingCsvFile.close();
+		} catch (IOException e) {
+			LOGGER.warn(MARKER, "unable to close " + this.rotatingCsvFile.getFile(), e);
+		}
+	}
+
+	/**
+	 * Appends the mean, 1, 5 and 15 minute rates, without leading comma.
+	 *
+	 * @param block
+	 * @param metered
+	 */
+	private void appendRates(final StringBuilder block, final Metered metered) {
+		block.append(convertRate(metered.getMeanRate())).append(',');
+		block.append(convertRate(metered.getOneMinuteRate())).append(',');
+		block.append(convertRate(metered.getFiveMinuteRate())).append(',');
+		block.append(convertRate(metered.getFifteenMinuteRate()));
+	}
+
+	/**
+	 * Appends the empty value column and the max to p999 columns, each followed by a comma.
+	 *
+	 * @param block
+	 * @param snapshot
+	 * @param isDuration
+	 */
+	private void appendSnapshot(final StringBuilder block, final Snapshot snapshot, final boolean isDuration) {
+		block.append(',');
+		block.append(value(snapshot.getMax(), isDuration)).append(',');
+		block.append(value(snapshot.getMean(), isDuration)).append(',');
+		block.append(value(snapshot.getMin(), isDuration)).append(',');
+		block.append(value(snapshot.getStdDev(), isDuration)).append(',');
+		block.append(value(snapshot.getMedian(), isDuration)).append(',');
+		block.append(value(snapshot.get75thPercentile(), isDuration)).append(',');
+		block.append(value(snapshot.get95thPercentile(), isDuration)).append(',');
+		block.append(value(snapshot.get98thPercentile(), isDuration)).append(',');
+		block.append(value(snapshot.get99thPercentile(), isDuration)).append(',');
+		block.append(value(snapshot.get999thPercentile(), isDuration)).append(',');
+	}
+
+	/**
+	 * Appends the time, name and type columns.
+	 *
+	 * @param block
+	 * @param timestamp
+	 * @param name
+	 * @param type
+	 */
+	private void begin(final StringBuilder block, final String timestamp, final String name, final String type) {
+		block.append(timestamp).append(',').append(escape(name)).append(',').append(type);
+	}
+
+	/**
+	 * @param value
+	 * @param isDuration
+	 * @return
+	 */
+	private double value(final double value, final boolean isDuration) {
+		return isDuration ? convertDuration(value) : value;
+	}
+
+}
@@ -19,7 +19,7 @@ package io.initium.camel.component.metrics.definition.metric;
 /**
  * @author Steve Fosdal, <steve@initium.io>
  * @author Hector Veiga Ortiz, <hector@initium.io>
- * @version 1.2
+ * @version 1.4
  * @since 2014-04-17
  */
 public class HistogramDefinition extends ExpressionMetricDefinition {
@@ -38,7 +38,15 @@ public class HistogramDefinition extends ExpressionMetricDefinition {
 	}
 
 	// fields
-	private String	value	= DEFAULT_VALUE;
+	private String				value	= DEFAULT_VALUE;
+	private ReservoirDefinition	reservoir;
+
+	/**
+	 * @return the reservoir, null for the default of the metric registry
+	 */
+	public ReservoirDefinition getReservoir() {
+		return this.reservoir;
+	}
 
 	/**
 	 * @return the value
@@ -47,6 +55,14 @@ public class HistogramDefinition extends ExpressionMetricDefinition {
 		return this.value;
 	}
 
+	/**
+	 * @param reservoir
+	 *            the reservoir to set
+	 */
+	public void setReservoir(final ReservoirDefinition reservoir) {
+		this.reservoir = reservoir;
+	}
+
 	/**
 	 * @param value
 	 *            the value to set
@@ -60,6 +76,8 @@ public class HistogramDefinition extends ExpressionMetricDefinition {
 		StringBuilder builder = new StringBuilder();
 		builder.append("HistogramDefinition [value=");
 		builder.append(this.value);
+		builder.append(", reservoir=");
+		builder.append(this.reservoir);
 		builder.append(", getName()=");
 		builder.append(getName());
 		builder.append("]");
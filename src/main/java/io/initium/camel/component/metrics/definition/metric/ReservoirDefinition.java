@@ -0,0 +1,246 @@
+// @formatter:off
+/**
+ * Copyright 2014 Initium.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+// @formatter:on
+package io.initium.camel.component.metrics.definition.metric;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.camel.RuntimeCamelException;
+
+import com.codahale.metrics.ExponentiallyDecayingReservoir;
+import com.codahale.metrics.Reservoir;
+import com.codahale.metrics.SlidingTimeWindowReservoir;
+import com.codahale.metrics.SlidingWindowReservoir;
+import com.codahale.metrics.UniformReservoir;
+
+import io.initium.camel.component.metrics.HdrHistogramReservoir;
+
+/**
+ * Describes the Reservoir of a timer or histogram. Every timer or histogram built from a definition gets a Reservoir of
+ * its own.
+ *
+ * @author Steve Fosdal, <steve@initium.io>
+ * @author Hector Veiga Ortiz, <hector@initium.io>
+ * @version 1.4
+ * @since 2026-10-18
+ */
+public class ReservoirDefinition {
+
+	/**
+	 *
+	 */
+	public enum ReservoirType {
+		EXPONENTIALLY_DECAYING, // biased towards the last 5 minutes, the default of the metrics library
+		SLIDING_TIME_WINDOW, // every value of the last window
+		SLIDING_WINDOW, // the last size values
+		UNIFORM, // a uniform sample of size values
+		HDR; // every value of the last window, within significantDigits, see HdrHistogramReservoir
+
+		/**
+		 * @param name
+		 *            the name of the type in any case, with or without underscores, e.g. slidingTimeWindow
+		 * @return
+		 */
+		public static ReservoirType parse(final String name) {
+			String normalizedName = name.replace("_", "").replace("-", "");
+			for (ReservoirType reservoirType : values()) {
+				if (reservoirType.name().replace("_", "").equalsIgnoreCase(normalizedName)) {
+					return reservoirType;
+				}
+			}
+			throw new RuntimeCamelException("unknown reservoir type: " + name);
+		}
+	}
+
+	// constants
+	private static final String		DEFAULT_TYPE					= "exponentiallyDecaying";
+	private static final int		DEFAULT_SIZE					= 1028;
+	private static final double		DEFAULT_ALPHA					= 0.015;
+	private static final long		DEFAULT_WINDOW					= 1;
+	private static final TimeUnit	DEFAULT_WINDOW_UNIT				= TimeUnit.MINUTES;
+	private static final int		DEFAULT_SIGNIFICANT_DIGITS		= 2;
+	private static final long		DEFAULT_HIGHEST_TRACKABLE_VALUE	= TimeUnit.HOURS.toNanos(1);
+
+	/**
+	 * @param type
+	 * @return a definition of the type with default settings
+	 */
+	public static ReservoirDefinition ofType(final String type) {
+		ReservoirDefinition reservoirDefinition = new ReservoirDefinition();
+		reservoirDefinition.setType(type);
+		return reservoirDefinition;
+	}
+
+	// fields
+	private String		type					= DEFAULT_TYPE;
+	private int			size					= DEFAULT_SIZE;
+	private double		alpha					= DEFAULT_ALPHA;
+	private long		window					= DEFAULT_WINDOW;
+	private TimeUnit	windowUnit				= DEFAULT_WINDOW_UNIT;
+	private int			significantDigits		= DEFAULT_SIGNIFICANT_DIGITS;
+	private long		highestTrackableValue	= DEFAULT_HIGHEST_TRACKABLE_VALUE;
+
+	/**
+	 * @return a new Reservoir
+	 */
+	public Reservoir buildReservoir() {
+		switch (getReservoirType()) {
+			case SLIDING_TIME_WINDOW:
+				return new SlidingTimeWindowReservoir(this.window, this.windowUnit);
+			case SLIDING_WINDOW:
+				return new SlidingWindowReservoir(this.size);
+			case UNIFORM:
+				return new UniformReservoir(this.size);
+			case HDR:
+				return new HdrHistogramReservoir(this.highestTrackableValue, this.significantDigits, this.window, this.windowUnit);
+			default:
+				return new ExponentiallyDecayingReservoir(this.size, this.alpha);
+		}
+	}
+
+	/**
+	 * @return the alpha
+	 */
+	public double getAlpha() {
+		return this.alpha;
+	}
+
+	/**
+	 * @return the highestTrackableValue
+	 */
+	public long getHighestTrackableValue() {
+		return this.highestTrackableValue;
+	}
+
+	/**
+	 * @return the reservoirType
+	 */
+	public ReservoirType getReservoirType() {
+		return ReservoirType.parse(this.type);
+	}
+
+	/**
+	 * @return the significantDigits
+	 */
+	public int getSignificantDigits() {
+		return this.significantDigits;
+	}
+
+	/**
+	 * @return the size
+	 */
+	public int getSize() {
+		return this.size;
+	}
+
+	/**
+	 * @return the type
+	 */
+	public String getType() {
+		return this.type;
+	}
+
+	/**
+	 * @return the window
+	 */
+	public long getWindow() {
+		return this.window;
+	}
+
+	/**
+	 * @return the windowUnit
+	 */
+	public TimeUnit getWindowUnit() {
+		return this.windowUnit;
+	}
+
+	/**
+	 * @param alpha
+	 *            the alpha to set
+	 */
+	public void setAlpha(final double alpha) {
+		this.alpha = alpha;
+	}
+
+	/**
+	 * @param highestTrackableValue
+	 *            the highestTrackableValue to set
+	 */
+	public void setHighestTrackableValue(final long highestTrackableValue) {
+		this.highestTrackableValue = highestTrackableValue;
+	}
+
+	/**
+	 * @param significantDigits
+	 *            the significantDigits to set
+	 */
+	public void setSignificantDigits(final int significantDigits) {
+		this.significantDigits = significantDigits;
+	}
+
+	/**
+	 * @param size
+	 *            the size to set
+	 */
+	public void setSize(final int size) {
+		this.size = size;
+	}
+
+	/**
+	 * @param type
+	 *            the type to set
+	 */
+	public void setType(final String type) {
+		this.type = type;
+	}
+
+	/**
+	 * @param window
+	 *            the window to set
+	 */
+	public void setWindow(final long window) {
+		this.window = window;
+	}
+
+	/**
+	 * @param windowUnit
+	 *            the windowUnit to set
+	 */
+	public void setWindowUnit(final TimeUnit windowUnit) {
+		this.windowUnit = windowUnit;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		builder.append("ReservoirDefinition [type=");
+		builder.append(this.type);
+		builder.append(", size=");
+		builder.append(this.size);
+		builder.append(", alpha=");
+		builder.append(this.alpha);
+		builder.append(", window=");
+		builder.append(this.window);
+		builder.append(", windowUnit=");
+		builder.append(this.windowUnit);
+		builder.append(", significantDigits=");
+		builder.append(this.significantDigits);
+		builder.append(", highestTrackableValue=");
+		builder.append(this.highestTrackableValue);
+		builder.append("]");
+		return builder.toString();
+	}
+
+}
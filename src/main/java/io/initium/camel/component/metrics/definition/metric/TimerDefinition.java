@@ -18,9 +18,27 @@ package io.initium.camel.component.metrics.definition.metric;
 /**
  * @author Steve Fosdal, <steve@initium.io>
  * @author Hector Veiga Ortiz, <hector@initium.io>
- * @version 1.2
+ * @version 1.4
  * @since 2014-02-19
  */
 public class TimerDefinition extends MetricDefinition {
 
+	// fields
+	private ReservoirDefinition	reservoir;
+
+	/**
+	 * @return the reservoir, null for the default of the metric registry
+	 */
+	public ReservoirDefinition getReservoir() {
+		return this.reservoir;
+	}
+
+	/**
+	 * @param reservoir
+	 *            the reservoir to set
+	 */
+	public void setReservoir(final ReservoirDefinition reservoir) {
+		this.reservoir = reservoir;
+	}
+
 }
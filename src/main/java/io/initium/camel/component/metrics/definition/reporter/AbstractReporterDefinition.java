@@ -17,12 +17,17 @@ package io.initium.camel.component.metrics.definition.reporter;
 
 import org.apache.camel.Exchange;
 
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricFilter;
+
+import io.initium.camel.component.metrics.MetricGroup;
 import io.initium.common.util.ExpressionUtils;
+import io.initium.common.util.NameMatcher;
 
 /**
  * @author Steve Fosdal, <steve@initium.io>
  * @author Hector Veiga Ortiz, <hector@initium.io>
- * @version 1.2
+ * @version 1.4
  * @since 2014-04-17
  */
 public abstract class AbstractReporterDefinition<T extends ReporterDefinition<T>> implements ReporterDefinition<T> {
@@ -31,6 +36,8 @@ public abstract class AbstractReporterDefinition<T extends ReporterDefinition<T>
 	public static final String	DEFAULT_FILTER					= null;
 	public static final String	DEFAULT_RUNTIME_FILTER			= null;
 	public static final String	DEFAULT_RUNTIME_SIMPLE_FILTER	= null;
+	public static final Boolean	DEFAULT_ONLY_CHANGED			= false;
+	public static final Integer	DEFAULT_REFRESH_PERIODS			= 10;
 
 	/**
 	 * @param value
@@ -57,6 +64,34 @@ public abstract class AbstractReporterDefinition<T extends ReporterDefinition<T>
 	private String	filter;
 	private String	runtimeFilter;
 	private String	runtimeSimpleFilter;
+	private Boolean	onlyChanged;
+	private Integer	refreshPeriods;
+
+	/**
+	 * Builds the filter of a reporter of the metric group: a metric passes if it belongs to the group and its name
+	 * matches the evaluated filter, if any. The filter is compiled once and shared by every reporter using it, see
+	 * {@link NameMatcher}.
+	 * 
+	 * @param creatingExchange
+	 * @param metricGroup
+	 * @return
+	 */
+	public MetricFilter buildFilter(final Exchange creatingExchange, final MetricGroup metricGroup) {
+		final String filterValue = evaluateValue(getFilter(), getRuntimeFilter(), getRuntimeSimpleFilter(), creatingExchange);
+		final NameMatcher nameMatcher = NameMatcher.compile(filterValue);
+		return new MetricFilter() {
+			@Override
+			public boolean matches(final String name, final Metric metric) {
+				if (!metricGroup.contains(metric)) {
+					return false;
+				}
+				if (name == null) {
+					return true;
+				}
+				return nameMatcher.matches(name);
+			}
+		};
+	}
 
 	/**
 	 * @return the filter
@@ -65,6 +100,20 @@ public abstract class AbstractReporterDefinition<T extends ReporterDefinition<T>
 		return this.filter;
 	}
 
+	/**
+	 * @return the onlyChanged
+	 */
+	public Boolean getOnlyChanged() {
+		return this.onlyChanged;
+	}
+
+	/**
+	 * @return the refreshPeriods
+	 */
+	public Integer getRefreshPeriods() {
+		return this.refreshPeriods;
+	}
+
 	/**
 	 * @return the runtimeFilter
 	 */
@@ -97,6 +146,42 @@ public abstract class AbstractReporterDefinition<T extends ReporterDefinition<T>
 		}
 	}
 
+	/**
+	 * @param onlyChanged
+	 *            true to report only the metrics whose value changed since they were last reported
+	 */
+	public void setOnlyChanged(final Boolean onlyChanged) {
+		this.onlyChanged = onlyChanged;
+	}
+
+	/**
+	 * @param onlyChanged
+	 *            the onlyChanged to set
+	 */
+	public void setOnlyChangedIfNotNull(final Boolean onlyChanged) {
+		if (onlyChanged != null) {
+			setOnlyChanged(onlyChanged);
+		}
+	}
+
+	/**
+	 * @param refreshPeriods
+	 *            with onlyChanged, every metric is reported every refreshPeriods periods, 0 for never
+	 */
+	public void setRefreshPeriods(final Integer refreshPeriods) {
+		this.refreshPeriods = refreshPeriods;
+	}
+
+	/**
+	 * @param refreshPeriods
+	 *            the refreshPeriods to set
+	 */
+	public void setRefreshPeriodsIfNotNull(final Integer refreshPeriods) {
+		if (refreshPeriods != null) {
+			setRefreshPeriods(refreshPeriods);
+		}
+	}
+
 	/**
 	 * @param runtimeFilter
 	 *            the runtimeFilter to set
@@ -20,8 +20,6 @@ import java.util.concurrent.TimeUnit;
 import org.apache.camel.Exchange;
 
 import com.codahale.metrics.ConsoleReporter;
-import com.codahale.metrics.Metric;
-import com.codahale.metrics.MetricFilter;
 import com.codahale.metrics.MetricRegistry;
 
 import io.initium.camel.component.metrics.MetricGroup;
@@ -29,7 +27,7 @@ import io.initium.camel.component.metrics.MetricGroup;
 /**
  * @author Steve Fosdal, <steve@initium.io>
  * @author Hector Veiga Ortiz, <hector@initium.io>
- * @version 1.1
+ * @version 1.4
  * @since 2014-02-19
  */
 public class ConsoleReporterDefinition extends AbstractReporterDefinition<ConsoleReporterDefinition> {
@@ -54,6 +52,8 @@ public class ConsoleReporterDefinition extends AbstractReporterDefinition<Consol
 		defaultDefinition.setFilter(DEFAULT_FILTER);
 		defaultDefinition.setRuntimeFilter(DEFAULT_RUNTIME_FILTER);
 		defaultDefinition.setRuntimeSimpleFilter(DEFAULT_RUNTIME_SIMPLE_FILTER);
+		defaultDefinition.setOnlyChanged(DEFAULT_ONLY_CHANGED);
+		defaultDefinition.setRefreshPeriods(DEFAULT_REFRESH_PERIODS);
 		return defaultDefinition;
 	}
 
@@ -76,6 +76,8 @@ public class ConsoleReporterDefinition extends AbstractReporterDefinition<Consol
 		combinedDefinition.setFilter(getFilter());
 		combinedDefinition.setRuntimeFilter(getRuntimeFilter());
 		combinedDefinition.setRuntimeSimpleFilter(getRuntimeSimpleFilter());
+		combinedDefinition.setOnlyChanged(getOnlyChanged());
+		combinedDefinition.setRefreshPeriods(getRefreshPeriods());
 		// apply new values
 		combinedDefinition.setNameIfNotNull(override.getName());
 		combinedDefinition.setDurationUnitIfNotNull(override.getDurationUnit());
@@ -85,6 +87,8 @@ public class ConsoleReporterDefinition extends AbstractReporterDefinition<Consol
 		combinedDefinition.setFilterIfNotNull(override.getFilter());
 		combinedDefinition.setRuntimeFilterIfNotNull(override.getRuntimeFilter());
 		combinedDefinition.setRuntimeSimpleFilterIfNotNull(override.getRuntimeSimpleFilter());
+		combinedDefinition.setOnlyChangedIfNotNull(override.getOnlyChanged());
+		combinedDefinition.setRefreshPeriodsIfNotNull(override.getRefreshPeriods());
 		return combinedDefinition;
 	}
 
@@ -95,26 +99,12 @@ public class ConsoleReporterDefinition extends AbstractReporterDefinition<Consol
 	public ConsoleReporter buildReporter(final MetricRegistry metricRegistry, final Exchange creatingExchange, final MetricGroup metricGroup) {
 		ConsoleReporterDefinition definitionWithDefaults = getReporterDefinitionWithDefaults();
 
-		final String filterValue = evaluateValue(definitionWithDefaults.getFilter(), definitionWithDefaults.getRuntimeFilter(), definitionWithDefaults.getRuntimeSimpleFilter(), creatingExchange);
-
 		// @formatter:off
 		ConsoleReporter consoleReporter = ConsoleReporter
 				.forRegistry(metricRegistry)
 				.convertDurationsTo(definitionWithDefaults.getDurationUnit())
 				.convertRatesTo(definitionWithDefaults.getRateUnit())
-				.filter(new MetricFilter(){
-					@Override
-					public boolean matches(final String name, final Metric metric) {
-						if(!metricGroup.contains(metric)){
-							return false;
-						}
-						if(name==null || filterValue==null){
-							return true;
-						}
-						boolean result = name.matches(filterValue);
-						return result;
-					}
-				})
+				.filter(definitionWithDefaults.buildFilter(creatingExchange, metricGroup))
 				.build();
 		// @formatter:on
 		return consoleReporter;
@@ -216,6 +206,10 @@ public class ConsoleReporterDefinition extends AbstractReporterDefinition<Consol
 		builder.append(getRuntimeFilter());
 		builder.append(", getRuntimeSimpleFilter()=");
 		builder.append(getRuntimeSimpleFilter());
+		builder.append(", getOnlyChanged()=");
+		builder.append(getOnlyChanged());
+		builder.append(", getRefreshPeriods()=");
+		builder.append(getRefreshPeriods());
 		builder.append("]");
 		return builder.toString();
 	}
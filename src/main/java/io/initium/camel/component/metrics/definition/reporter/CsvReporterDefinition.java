@@ -16,25 +16,53 @@
 package io.initium.camel.component.metrics.definition.reporter;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.camel.Exchange;
+import org.apache.camel.RuntimeCamelException;
 
 import com.codahale.metrics.CsvReporter;
-import com.codahale.metrics.Metric;
-import com.codahale.metrics.MetricFilter;
 import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.ScheduledReporter;
 
 import io.initium.camel.component.metrics.MetricGroup;
+import io.initium.camel.component.metrics.MetricsComponent;
+import io.initium.camel.component.metrics.RotatingCsvFile;
+import io.initium.camel.component.metrics.WideCsvReporter;
 
 /**
  * @author Steve Fosdal, <steve@initium.io>
  * @author Hector Veiga Ortiz, <hector@initium.io>
- * @version 1.1
+ * @version 1.4
  * @since 2014-02-19
  */
 public class CsvReporterDefinition extends AbstractReporterDefinition<CsvReporterDefinition> {
 
+	/**
+	 *
+	 */
+	public enum CsvLayout {
+		PER_METRIC, // one file per metric, appended to and closed every period
+		WIDE; // one row per metric in a single file with fixed columns, see WideCsvReporter
+
+		/**
+		 * @param name
+		 *            the name of the layout in any case, with or without underscores, e.g. perMetric
+		 * @return
+		 */
+		public static CsvLayout parse(final String name) {
+			String normalizedName = name.replace("_", "").replace("-", "");
+			for (CsvLayout csvLayout : values()) {
+				if (csvLayout.name().replace("_", "").equalsIgnoreCase(normalizedName)) {
+					return csvLayout;
+				}
+			}
+			throw new RuntimeCamelException("unknown csv layout: " + name);
+		}
+	}
+
 	// fields
 	private static final String		DEFAULT_NAME						= CsvReporterDefinition.class.getSimpleName();
 	private static final TimeUnit	DEFAULT_DURATION_UNIT				= TimeUnit.MILLISECONDS;
@@ -44,6 +72,12 @@ public class CsvReporterDefinition extends AbstractReporterDefinition<CsvReporte
 	private static final String		DEFAULT_DIRECTORY					= ".";
 	private static final String		DEFAULT_RUNTIME_DIRECTORY			= null;
 	private static final String		DEFAULT_RUNTIME_SIMPLE_DIRECTORY	= null;
+	private static final String		DEFAULT_LAYOUT						= "perMetric";
+	private static final String		DEFAULT_FILE_NAME					= "metrics.csv";
+	private static final long		DEFAULT_MAX_FILE_SIZE				= 64L * 1024 * 1024;
+	private static final long		DEFAULT_ROTATION_PERIOD				= 1;
+	private static final TimeUnit	DEFAULT_ROTATION_PERIOD_UNIT		= TimeUnit.DAYS;
+	private static final boolean	DEFAULT_COMPRESS					= false;
 
 	/**
 	 * @return
@@ -58,9 +92,17 @@ public class CsvReporterDefinition extends AbstractReporterDefinition<CsvReporte
 		defaultDefinition.setDirectory(DEFAULT_DIRECTORY);
 		defaultDefinition.setRuntimeDirectory(DEFAULT_RUNTIME_DIRECTORY);
 		defaultDefinition.setRuntimeSimpleDirectory(DEFAULT_RUNTIME_SIMPLE_DIRECTORY);
+		defaultDefinition.setLayout(DEFAULT_LAYOUT);
+		defaultDefinition.setFileName(DEFAULT_FILE_NAME);
+		defaultDefinition.setMaxFileSize(DEFAULT_MAX_FILE_SIZE);
+		defaultDefinition.setRotationPeriod(DEFAULT_ROTATION_PERIOD);
+		defaultDefinition.setRotationPeriodUnit(DEFAULT_ROTATION_PERIOD_UNIT);
+		defaultDefinition.setCompress(DEFAULT_COMPRESS);
 		defaultDefinition.setFilter(DEFAULT_FILTER);
 		defaultDefinition.setRuntimeFilter(DEFAULT_RUNTIME_FILTER);
 		defaultDefinition.setRuntimeSimpleFilter(DEFAULT_RUNTIME_SIMPLE_FILTER);
+		defaultDefinition.setOnlyChanged(DEFAULT_ONLY_CHANGED);
+		defaultDefinition.setRefreshPeriods(DEFAULT_REFRESH_PERIODS);
 		return defaultDefinition;
 	}
 
@@ -73,6 +115,12 @@ public class CsvReporterDefinition extends AbstractReporterDefinition<CsvReporte
 	private String		directory;
 	private String		runtimeDirectory;
 	private String		runtimeSimpleDirectory;
+	private String		layout;
+	private String		fileName;
+	private Long		maxFileSize;
+	private Long		rotationPeriod;
+	private TimeUnit	rotationPeriodUnit;
+	private Boolean		compress;
 
 	@Override
 	public CsvReporterDefinition applyAsOverride(final CsvReporterDefinition override) {
@@ -86,9 +134,17 @@ public class CsvReporterDefinition extends AbstractReporterDefinition<CsvReporte
 		combinedDefinition.setDirectory(getDirectory());
 		combinedDefinition.setRuntimeDirectory(getRuntimeDirectory());
 		combinedDefinition.setRuntimeSimpleDirectory(getRuntimeSimpleDirectory());
+		combinedDefinition.setLayout(getLayout());
+		combinedDefinition.setFileName(getFileName());
+		combinedDefinition.setMaxFileSize(getMaxFileSize());
+		combinedDefinition.setRotationPeriod(getRotationPeriod());
+		combinedDefinition.setRotationPeriodUnit(getRotationPeriodUnit());
+		combinedDefinition.setCompress(getCompress());
 		combinedDefinition.setFilter(getFilter());
 		combinedDefinition.setRuntimeFilter(getRuntimeFilter());
 		combinedDefinition.setRuntimeSimpleFilter(getRuntimeSimpleFilter());
+		combinedDefinition.setOnlyChanged(getOnlyChanged());
+		combinedDefinition.setRefreshPeriods(getRefreshPeriods());
 		// apply new values
 		combinedDefinition.setNameIfNotNull(override.getName());
 		combinedDefinition.setDurationUnitIfNotNull(override.getDurationUnit());
@@ -98,43 +154,67 @@ public class CsvReporterDefinition extends AbstractReporterDefinition<CsvReporte
 		combinedDefinition.setDirectoryIfNotNull(override.getDirectory());
 		combinedDefinition.setRuntimeDirectoryIfNotNull(override.getRuntimeDirectory());
 		combinedDefinition.setRuntimeSimpleDirectoryIfNotNull(override.getRuntimeSimpleDirectory());
+		combinedDefinition.setLayoutIfNotNull(override.getLayout());
+		combinedDefinition.setFileNameIfNotNull(override.getFileName());
+		combinedDefinition.setMaxFileSizeIfNotNull(override.getMaxFileSize());
+		combinedDefinition.setRotationPeriodIfNotNull(override.getRotationPeriod());
+		combinedDefinition.setRotationPeriodUnitIfNotNull(override.getRotationPeriodUnit());
+		combinedDefinition.setCompressIfNotNull(override.getCompress());
 		combinedDefinition.setFilterIfNotNull(override.getFilter());
 		combinedDefinition.setRuntimeFilterIfNotNull(override.getRuntimeFilter());
 		combinedDefinition.setRuntimeSimpleFilterIfNotNull(override.getRuntimeSimpleFilter());
+		combinedDefinition.setOnlyChangedIfNotNull(override.getOnlyChanged());
+		combinedDefinition.setRefreshPeriodsIfNotNull(override.getRefreshPeriods());
 		return combinedDefinition;
 	}
 
 	/**
+	 * Builds the reporter of the classic layout, one file per metric, whatever the configured layout.
+	 *
 	 * @param metricRegistry
 	 * @return
+	 * @deprecated use {@link #buildScheduledReporter(MetricRegistry, Exchange, MetricGroup)}, which honours the layout
 	 */
+	@Deprecated
 	public CsvReporter buildReporter(final MetricRegistry metricRegistry, final Exchange creatingExchange, final MetricGroup metricGroup) {
 		CsvReporterDefinition definitionWithDefaults = getReporterDefinitionWithDefaults();
+		final String directoryValue = evaluateValue(definitionWithDefaults.getDirectory(), definitionWithDefaults.getRuntimeDirectory(), definitionWithDefaults.getRuntimeSimpleDirectory(), creatingExchange);
+		return buildCsvReporter(definitionWithDefaults, directoryValue, metricRegistry, creatingExchange, metricGroup);
+	}
+
+	/**
+	 * Builds the reporter of the configured layout, a CsvReporter or a WideCsvReporter.
+	 *
+	 * @param metricRegistry
+	 * @return
+	 */
+	public ScheduledReporter buildScheduledReporter(final MetricRegistry metricRegistry, final Exchange creatingExchange, final MetricGroup metricGroup) {
+		CsvReporterDefinition definitionWithDefaults = getReporterDefinitionWithDefaults();
 
-		final String filterValue = evaluateValue(definitionWithDefaults.getFilter(), definitionWithDefaults.getRuntimeFilter(), definitionWithDefaults.getRuntimeSimpleFilter(), creatingExchange);
 		final String directoryValue = evaluateValue(definitionWithDefaults.getDirectory(), definitionWithDefaults.getRuntimeDirectory(), definitionWithDefaults.getRuntimeSimpleDirectory(), creatingExchange);
 
-		// @formatter:off
-		CsvReporter csvReporter = CsvReporter
-				.forRegistry(metricRegistry)
-				.convertDurationsTo(definitionWithDefaults.getDurationUnit())
-				.convertRatesTo(definitionWithDefaults.getRateUnit())
-				.filter(new MetricFilter(){
-					@Override
-					public boolean matches(final String name, final Metric metric) {
-						if(!metricGroup.contains(metric)){
-							return false;
-						}
-						if(name==null || filterValue==null){
-							return true;
-						}
-						boolean result = name.matches(filterValue);
-						return result;
-					}
-				})
-				.build(new File(directoryValue));
-		// @formatter:on
-		return csvReporter;
+		if (CsvLayout.parse(definitionWithDefaults.getLayout()) == CsvLayout.WIDE) {
+			final File file = new File(directoryValue, definitionWithDefaults.getFileName());
+			final long rotationMillis = definitionWithDefaults.getRotationPeriodUnit().toMillis(definitionWithDefaults.getRotationPeriod());
+			final RotatingCsvFile rotatingCsvFile;
+			try {
+				// without a metric group there is no component to share the file or compress in the background
+				MetricsComponent metricsComponent = metricGroup == null ? null : metricGroup.getMetricComponent();
+				Executor compressor = metricsComponent == null ? null : metricsComponent.getCsvCompressor();
+				rotatingCsvFile = RotatingCsvFile.open(metricsComponent, file, WideCsvReporter.HEADER, definitionWithDefaults.getMaxFileSize(), rotationMillis, definitionWithDefaults.getCompress(), compressor);
+			} catch (IOException e) {
+				throw new RuntimeCamelException("unable to open csv file: " + file, e);
+			}
+			return new WideCsvReporter(metricRegistry, definitionWithDefaults.buildFilter(creatingExchange, metricGroup), definitionWithDefaults.getRateUnit(), definitionWithDefaults.getDurationUnit(), rotatingCsvFile);
+		}
+		return buildCsvReporter(definitionWithDefaults, directoryValue, metricRegistry, creatingExchange, metricGroup);
+	}
+
+	/**
+	 * @return the compress
+	 */
+	public Boolean getCompress() {
+		return this.compress;
 	}
 
 	/**
@@ -151,6 +231,27 @@ public class CsvReporterDefinition extends AbstractReporterDefinition<CsvReporte
 		return this.durationUnit;
 	}
 
+	/**
+	 * @return the fileName
+	 */
+	public String getFileName() {
+		return this.fileName;
+	}
+
+	/**
+	 * @return the layout
+	 */
+	public String getLayout() {
+		return this.layout;
+	}
+
+	/**
+	 * @return the maxFileSize
+	 */
+	public Long getMaxFileSize() {
+		return this.maxFileSize;
+	}
+
 	@Override
 	public String getName() {
 		return this.name;
@@ -182,6 +283,20 @@ public class CsvReporterDefinition extends AbstractReporterDefinition<CsvReporte
 		return getDefaultReporter().applyAsOverride(this);
 	}
 
+	/**
+	 * @return the rotationPeriod
+	 */
+	public Long getRotationPeriod() {
+		return this.rotationPeriod;
+	}
+
+	/**
+	 * @return the rotationPeriodUnit
+	 */
+	public TimeUnit getRotationPeriodUnit() {
+		return this.rotationPeriodUnit;
+	}
+
 	/**
 	 * @return the runtimeDirectory
 	 */
@@ -196,6 +311,14 @@ public class CsvReporterDefinition extends AbstractReporterDefinition<CsvReporte
 		return this.runtimeSimpleDirectory;
 	}
 
+	/**
+	 * @param compress
+	 *            true to gzip rotated files of the wide layout
+	 */
+	public void setCompress(final Boolean compress) {
+		this.compress = compress;
+	}
+
 	/**
 	 * @param directory
 	 *            the directory to set
@@ -209,6 +332,30 @@ public class CsvReporterDefinition extends AbstractReporterDefinition<CsvReporte
 		this.durationUnit = durationUnit;
 	}
 
+	/**
+	 * @param fileName
+	 *            the name of the file of the wide layout
+	 */
+	public void setFileName(final String fileName) {
+		this.fileName = fileName;
+	}
+
+	/**
+	 * @param layout
+	 *            perMetric or wide
+	 */
+	public void setLayout(final String layout) {
+		this.layout = layout;
+	}
+
+	/**
+	 * @param maxFileSize
+	 *            the size in bytes past which the file of the wide layout is rotated, 0 for no limit
+	 */
+	public void setMaxFileSize(final Long maxFileSize) {
+		this.maxFileSize = maxFileSize;
+	}
+
 	@Override
 	public void setName(final String name) {
 		this.name = name;
@@ -243,6 +390,22 @@ public class CsvReporterDefinition extends AbstractReporterDefinition<CsvReporte
 		this.rateUnit = rateUnit;
 	}
 
+	/**
+	 * @param rotationPeriod
+	 *            the age past which the file of the wide layout is rotated, 0 for no limit
+	 */
+	public void setRotationPeriod(final Long rotationPeriod) {
+		this.rotationPeriod = rotationPeriod;
+	}
+
+	/**
+	 * @param rotationPeriodUnit
+	 *            the rotationPeriodUnit to set
+	 */
+	public void setRotationPeriodUnit(final TimeUnit rotationPeriodUnit) {
+		this.rotationPeriodUnit = rotationPeriodUnit;
+	}
+
 	/**
 	 * @param runtimeDirectory
 	 *            the runtimeDirectory to set
@@ -298,16 +461,58 @@ public class CsvReporterDefinition extends AbstractReporterDefinition<CsvReporte
 		builder.append(this.runtimeDirectory);
 		builder.append(", runtimeSimpleDirectory=");
 		builder.append(this.runtimeSimpleDirectory);
+		builder.append(", layout=");
+		builder.append(this.layout);
+		builder.append(", fileName=");
+		builder.append(this.fileName);
+		builder.append(", maxFileSize=");
+		builder.append(this.maxFileSize);
+		builder.append(", rotationPeriod=");
+		builder.append(this.rotationPeriod);
+		builder.append(", rotationPeriodUnit=");
+		builder.append(this.rotationPeriodUnit);
+		builder.append(", compress=");
+		builder.append(this.compress);
 		builder.append(", getFilter()=");
 		builder.append(getFilter());
 		builder.append(", getRuntimeFilter()=");
 		builder.append(getRuntimeFilter());
 		builder.append(", getRuntimeSimpleFilter()=");
 		builder.append(getRuntimeSimpleFilter());
+		builder.append(", getOnlyChanged()=");
+		builder.append(getOnlyChanged());
+		builder.append(", getRefreshPeriods()=");
+		builder.append(getRefreshPeriods());
 		builder.append("]");
 		return builder.toString();
 	}
 
+	/**
+	 * @param definitionWithDefaults
+	 * @param directoryValue
+	 * @param metricRegistry
+	 * @param creatingExchange
+	 * @param metricGroup
+	 * @return
+	 */
+	private static CsvReporter buildCsvReporter(final CsvReporterDefinition definitionWithDefaults, final String directoryValue, final MetricRegistry metricRegistry, final Exchange creatingExchange, final MetricGroup metricGroup) {
+		// @formatter:off
+		CsvReporter csvReporter = CsvReporter
+				.forRegistry(metricRegistry)
+				.convertDurationsTo(definitionWithDefaults.getDurationUnit())
+				.convertRatesTo(definitionWithDefaults.getRateUnit())
+				.filter(definitionWithDefaults.buildFilter(creatingExchange, metricGroup))
+				.build(new File(directoryValue));
+		// @formatter:on
+		return csvReporter;
+	}
+
+	private void setCompressIfNotNull(final Boolean compress) {
+		if (compress != null) {
+			setCompress(compress);
+		}
+	}
+
 	/**
 	 * @param directory
 	 */
@@ -326,6 +531,24 @@ public class CsvReporterDefinition extends AbstractReporterDefinition<CsvReporte
 		}
 	}
 
+	private void setFileNameIfNotNull(final String fileName) {
+		if (fileName != null) {
+			setFileName(fileName);
+		}
+	}
+
+	private void setLayoutIfNotNull(final String layout) {
+		if (layout != null) {
+			setLayout(layout);
+		}
+	}
+
+	private void setMaxFileSizeIfNotNull(final Long maxFileSize) {
+		if (maxFileSize != null) {
+			setMaxFileSize(maxFileSize);
+		}
+	}
+
 	/**
 	 * @param name
 	 */
@@ -359,4 +582,15 @@ public class CsvReporterDefinition extends AbstractReporterDefinition<CsvReporte
 		}
 	}
 
+	private void setRotationPeriodIfNotNull(final Long rotationPeriod) {
+		if (rotationPeriod != null) {
+			setRotationPeriod(rotationPeriod);
+		}
+	}
+
+	private void setRotationPeriodUnitIfNotNull(final TimeUnit rotationPeriodUnit) {
+		if (rotationPeriodUnit != null) {
+			setRotationPeriodUnit(rotationPeriodUnit);
+		}
+	}
 }
@@ -15,27 +15,49 @@
 // @formatter:on
 package io.initium.camel.component.metrics.definition.reporter;
 
-import java.net.InetSocketAddress;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.camel.Exchange;
+import org.apache.camel.RuntimeCamelException;
 
-import com.codahale.metrics.Metric;
-import com.codahale.metrics.MetricFilter;
 import com.codahale.metrics.MetricRegistry;
-import com.codahale.metrics.graphite.Graphite;
 import com.codahale.metrics.graphite.GraphiteReporter;
 
+import io.initium.camel.component.metrics.BufferedGraphiteSender;
 import io.initium.camel.component.metrics.MetricGroup;
 
 /**
  * @author Steve Fosdal, <steve@initium.io>
  * @author Hector Veiga Ortiz, <hector@initium.io>
- * @version 1.1
+ * @version 1.4
  * @since 2014-02-19
  */
 public class GraphiteReporterDefinition extends AbstractReporterDefinition<GraphiteReporterDefinition> {
 
+	/**
+	 *
+	 */
+	public enum GraphiteProtocol {
+		PLAINTEXT, // one line per value over TCP
+		PICKLE, // batches of values as pickled lists over TCP
+		UDP; // batches of plaintext lines, one datagram per batch
+
+		/**
+		 * @param name
+		 *            the name of the protocol in any case
+		 * @return
+		 */
+		public static GraphiteProtocol parse(final String name) {
+			String normalizedName = name.replace("_", "").replace("-", "");
+			for (GraphiteProtocol graphiteProtocol : values()) {
+				if (graphiteProtocol.name().equalsIgnoreCase(normalizedName)) {
+					return graphiteProtocol;
+				}
+			}
+			throw new RuntimeCamelException("unknown graphite protocol: " + name);
+		}
+	}
+
 	// fields
 	private static final String		DEFAULT_NAME					= GraphiteReporterDefinition.class.getSimpleName();
 	private static final TimeUnit	DEFAULT_DURATION_UNIT			= TimeUnit.MILLISECONDS;
@@ -47,6 +69,9 @@ public class GraphiteReporterDefinition extends AbstractReporterDefinition<Graph
 	private static final String		DEFAULT_PREFIX					= "metrics";
 	private static final String		DEFAULT_RUNTIME_PREFIX			= null;
 	private static final String		DEFAULT_RUNTIME_SIMPLE_PREFIX	= null;
+	private static final String		DEFAULT_PROTOCOL				= "plaintext";
+	private static final int		DEFAULT_BATCH_SIZE				= BufferedGraphiteSender.DEFAULT_BATCH_SIZE;
+	private static final int		DEFAULT_BUFFER_SIZE				= BufferedGraphiteSender.DEFAULT_BUFFER_SIZE;
 
 	/**
 	 * @return
@@ -63,9 +88,14 @@ public class GraphiteReporterDefinition extends AbstractReporterDefinition<Graph
 		defaultDefinition.setPrefix(DEFAULT_PREFIX);
 		defaultDefinition.setRuntimePrefix(DEFAULT_RUNTIME_PREFIX);
 		defaultDefinition.setRuntimeSimplePrefix(DEFAULT_RUNTIME_SIMPLE_PREFIX);
+		defaultDefinition.setProtocol(DEFAULT_PROTOCOL);
+		defaultDefinition.setBatchSize(DEFAULT_BATCH_SIZE);
+		defaultDefinition.setBufferSize(DEFAULT_BUFFER_SIZE);
 		defaultDefinition.setFilter(DEFAULT_FILTER);
 		defaultDefinition.setRuntimeFilter(DEFAULT_RUNTIME_FILTER);
 		defaultDefinition.setRuntimeSimpleFilter(DEFAULT_RUNTIME_SIMPLE_FILTER);
+		defaultDefinition.setOnlyChanged(DEFAULT_ONLY_CHANGED);
+		defaultDefinition.setRefreshPeriods(DEFAULT_REFRESH_PERIODS);
 		return defaultDefinition;
 	}
 
@@ -80,6 +110,9 @@ public class GraphiteReporterDefinition extends AbstractReporterDefinition<Graph
 	private String		prefix;
 	private String		runtimePrefix;
 	private String		runtimeSimplePrefix;
+	private String		protocol;
+	private Integer		batchSize;
+	private Integer		bufferSize;
 
 	@Override
 	public GraphiteReporterDefinition applyAsOverride(final GraphiteReporterDefinition override) {
@@ -95,9 +128,14 @@ public class GraphiteReporterDefinition extends AbstractReporterDefinition<Graph
 		combinedDefinition.setPrefix(getPrefix());
 		combinedDefinition.setRuntimePrefix(getRuntimePrefix());
 		combinedDefinition.setRuntimeSimplePrefix(getRuntimeSimplePrefix());
+		combinedDefinition.setProtocol(getProtocol());
+		combinedDefinition.setBatchSize(getBatchSize());
+		combinedDefinition.setBufferSize(getBufferSize());
 		combinedDefinition.setFilter(getFilter());
 		combinedDefinition.setRuntimeFilter(getRuntimeFilter());
 		combinedDefinition.setRuntimeSimpleFilter(getRuntimeSimpleFilter());
+		combinedDefinition.setOnlyChanged(getOnlyChanged());
+		combinedDefinition.setRefreshPeriods(getRefreshPeriods());
 		// apply new values
 		combinedDefinition.setNameIfNotNull(override.getName());
 		combinedDefinition.setDurationUnitIfNotNull(override.getDurationUnit());
@@ -109,9 +147,14 @@ public class GraphiteReporterDefinition extends AbstractReporterDefinition<Graph
 		combinedDefinition.setPrefixIfNotNull(override.getPrefix());
 		combinedDefinition.setRuntimePrefixIfNotNull(override.getRuntimePrefix());
 		combinedDefinition.setRuntimeSimplePrefixIfNotNull(override.getRuntimeSimplePrefix());
+		combinedDefinition.setProtocolIfNotNull(override.getProtocol());
+		combinedDefinition.setBatchSizeIfNotNull(override.getBatchSize());
+		combinedDefinition.setBufferSizeIfNotNull(override.getBufferSize());
 		combinedDefinition.setFilterIfNotNull(override.getFilter());
 		combinedDefinition.setRuntimeFilterIfNotNull(override.getRuntimeFilter());
 		combinedDefinition.setRuntimeSimpleFilterIfNotNull(override.getRuntimeSimpleFilter());
+		combinedDefinition.setOnlyChangedIfNotNull(override.getOnlyChanged());
+		combinedDefinition.setRefreshPeriodsIfNotNull(override.getRefreshPeriods());
 		return combinedDefinition;
 	}
 
@@ -122,10 +165,10 @@ public class GraphiteReporterDefinition extends AbstractReporterDefinition<Graph
 	public GraphiteReporter buildReporter(final MetricRegistry metricRegistry, final Exchange creatingExchange, final MetricGroup metricGroup) {
 		GraphiteReporterDefinition definitionWithDefaults = getReporterDefinitionWithDefaults();
 
-		final String filterValue = evaluateValue(definitionWithDefaults.getFilter(), definitionWithDefaults.getRuntimeFilter(), definitionWithDefaults.getRuntimeSimpleFilter(), creatingExchange);
 		final String prefixValue = evaluateValue(definitionWithDefaults.getPrefix(), definitionWithDefaults.getRuntimePrefix(), definitionWithDefaults.getRuntimeSimplePrefix(), creatingExchange);
 
-		final Graphite graphite = new Graphite(new InetSocketAddress(definitionWithDefaults.getHost(), definitionWithDefaults.getPort()));
+		final GraphiteProtocol graphiteProtocol = GraphiteProtocol.parse(definitionWithDefaults.getProtocol());
+		final BufferedGraphiteSender graphite = BufferedGraphiteSender.open(metricGroup.getMetricComponent(), graphiteProtocol, definitionWithDefaults.getHost(), definitionWithDefaults.getPort(), definitionWithDefaults.getBatchSize(), definitionWithDefaults.getBufferSize());
 
 		// @formatter:off
 		GraphiteReporter graphiteReporter = GraphiteReporter
@@ -133,24 +176,26 @@ public class GraphiteReporterDefinition extends AbstractReporterDefinition<Graph
 				.prefixedWith(prefixValue)
 				.convertDurationsTo(definitionWithDefaults.getDurationUnit())
 				.convertRatesTo(definitionWithDefaults.getRateUnit())
-				.filter(new MetricFilter(){
-					@Override
-					public boolean matches(final String name, final Metric metric) {
-						if(!metricGroup.contains(metric)){
-							return false;
-						}
-						if(name==null || filterValue==null){
-							return true;
-						}
-						boolean result = name.matches(filterValue);
-						return result;
-					}
-				})
+				.filter(definitionWithDefaults.buildFilter(creatingExchange, metricGroup))
 				.build(graphite);
 		// @formatter:on
 		return graphiteReporter;
 	}
 
+	/**
+	 * @return the batchSize
+	 */
+	public Integer getBatchSize() {
+		return this.batchSize;
+	}
+
+	/**
+	 * @return the bufferSize
+	 */
+	public Integer getBufferSize() {
+		return this.bufferSize;
+	}
+
 	/**
 	 * @return the durationUnit
 	 */
@@ -195,6 +240,13 @@ public class GraphiteReporterDefinition extends AbstractReporterDefinition<Graph
 		return this.prefix;
 	}
 
+	/**
+	 * @return the protocol
+	 */
+	public String getProtocol() {
+		return this.protocol;
+	}
+
 	/**
 	 * @return the rateUnit
 	 */
@@ -221,6 +273,22 @@ public class GraphiteReporterDefinition extends AbstractReporterDefinition<Graph
 		return this.runtimeSimplePrefix;
 	}
 
+	/**
+	 * @param batchSize
+	 *            the batchSize to set
+	 */
+	public void setBatchSize(final Integer batchSize) {
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * @param bufferSize
+	 *            the bufferSize to set
+	 */
+	public void setBufferSize(final Integer bufferSize) {
+		this.bufferSize = bufferSize;
+	}
+
 	@Override
 	public void setDurationUnit(final TimeUnit durationUnit) {
 		this.durationUnit = durationUnit;
@@ -281,6 +349,14 @@ public class GraphiteReporterDefinition extends AbstractReporterDefinition<Graph
 		}
 	}
 
+	/**
+	 * @param protocol
+	 *            the protocol to set, one of plaintext, pickle or udp
+	 */
+	public void setProtocol(final String protocol) {
+		this.protocol = protocol;
+	}
+
 	@Override
 	public void setRateUnit(final TimeUnit rateUnit) {
 		this.rateUnit = rateUnit;
@@ -345,16 +421,44 @@ public class GraphiteReporterDefinition extends AbstractReporterDefinition<Graph
 		builder.append(this.runtimePrefix);
 		builder.append(", runtimeSimplePrefix=");
 		builder.append(this.runtimeSimplePrefix);
+		builder.append(", protocol=");
+		builder.append(this.protocol);
+		builder.append(", batchSize=");
+		builder.append(this.batchSize);
+		builder.append(", bufferSize=");
+		builder.append(this.bufferSize);
 		builder.append(", getFilter()=");
 		builder.append(getFilter());
 		builder.append(", getRuntimeFilter()=");
 		builder.append(getRuntimeFilter());
 		builder.append(", getRuntimeSimpleFilter()=");
 		builder.append(getRuntimeSimpleFilter());
+		builder.append(", getOnlyChanged()=");
+		builder.append(getOnlyChanged());
+		builder.append(", getRefreshPeriods()=");
+		builder.append(getRefreshPeriods());
 		builder.append("]");
 		return builder.toString();
 	}
 
+	/**
+	 * @param batchSize
+	 */
+	private void setBatchSizeIfNotNull(final Integer batchSize) {
+		if (batchSize != null) {
+			setBatchSize(batchSize);
+		}
+	}
+
+	/**
+	 * @param bufferSize
+	 */
+	private void setBufferSizeIfNotNull(final Integer bufferSize) {
+		if (bufferSize != null) {
+			setBufferSize(bufferSize);
+		}
+	}
+
 	/**
 	 * @param durationUnit
 	 */
@@ -397,6 +501,15 @@ public class GraphiteReporterDefinition extends AbstractReporterDefinition<Graph
 		}
 	}
 
+	/**
+	 * @param protocol
+	 */
+	private void setProtocolIfNotNull(final String protocol) {
+		if (protocol != null) {
+			setProtocol(protocol);
+		}
+	}
+
 	/**
 	 * @param rateUnit
 	 */
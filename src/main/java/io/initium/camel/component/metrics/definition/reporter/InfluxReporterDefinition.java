@@ -0,0 +1,427 @@
+// @formatter:off
+/**
+ * Copyright 2014 Initium.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+// @formatter:on
+package io.initium.camel.component.metrics.definition.reporter;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.RuntimeCamelException;
+
+import com.codahale.metrics.MetricRegistry;
+
+import io.initium.camel.component.metrics.MetricGroup;
+import io.initium.camel.component.metrics.InfluxReporter;
+import io.initium.camel.component.metrics.InfluxSender;
+
+/**
+ * @author Steve Fosdal, <steve@initium.io>
+ * @author Hector Veiga Ortiz, <hector@initium.io>
+ * @version 1.4
+ * @since 2026-10-18
+ */
+public class InfluxReporterDefinition extends AbstractReporterDefinition<InfluxReporterDefinition> {
+
+	// fields
+	private static final String		DEFAULT_NAME					= InfluxReporterDefinition.class.getSimpleName();
+	private static final TimeUnit	DEFAULT_DURATION_UNIT			= TimeUnit.MILLISECONDS;
+	private static final TimeUnit	DEFAULT_RATE_UNIT				= TimeUnit.SECONDS;
+	private static final long		DEFAULT_PERIOD_DURATION			= 10;
+	private static final TimeUnit	DEFAULT_PERIOD_DURATION_UNIT	= TimeUnit.SECONDS;
+	private static final String		DEFAULT_URL						= "http://localhost:8086/write?db=metrics";
+	private static final int		DEFAULT_BATCH_SIZE				= 1048576;
+	private static final int		DEFAULT_BUFFER_SIZE				= 1000;
+	private static final boolean	DEFAULT_GZIP					= true;
+	private static final String		DEFAULT_GROUP_TAG				= "group";
+	private static final String		DEFAULT_INFIX_TAG				= "infix";
+
+	/**
+	 * @return
+	 */
+	public static InfluxReporterDefinition getDefaultReporter() {
+		InfluxReporterDefinition defaultDefinition = new InfluxReporterDefinition();
+		defaultDefinition.setName(DEFAULT_NAME);
+		defaultDefinition.setDurationUnit(DEFAULT_DURATION_UNIT);
+		defaultDefinition.setRateUnit(DEFAULT_RATE_UNIT);
+		defaultDefinition.setPeriodDuration(DEFAULT_PERIOD_DURATION);
+		defaultDefinition.setPeriodDurationUnit(DEFAULT_PERIOD_DURATION_UNIT);
+		defaultDefinition.setUrl(DEFAULT_URL);
+		defaultDefinition.setBatchSize(DEFAULT_BATCH_SIZE);
+		defaultDefinition.setBufferSize(DEFAULT_BUFFER_SIZE);
+		defaultDefinition.setGzip(DEFAULT_GZIP);
+		defaultDefinition.setGroupTag(DEFAULT_GROUP_TAG);
+		defaultDefinition.setInfixTag(DEFAULT_INFIX_TAG);
+		defaultDefinition.setFilter(DEFAULT_FILTER);
+		defaultDefinition.setRuntimeFilter(DEFAULT_RUNTIME_FILTER);
+		defaultDefinition.setRuntimeSimpleFilter(DEFAULT_RUNTIME_SIMPLE_FILTER);
+		defaultDefinition.setOnlyChanged(DEFAULT_ONLY_CHANGED);
+		defaultDefinition.setRefreshPeriods(DEFAULT_REFRESH_PERIODS);
+		return defaultDefinition;
+	}
+
+	// fields
+	private String		name	= DEFAULT_NAME;
+	private TimeUnit	durationUnit;
+	private TimeUnit	rateUnit;
+	private Long		periodDuration;
+	private TimeUnit	periodDurationUnit;
+	private String		url;
+	private Integer		batchSize;
+	private Integer		bufferSize;
+	private Boolean		gzip;
+	private String		groupTag;
+	private String		infixTag;
+
+	@Override
+	public InfluxReporterDefinition applyAsOverride(final InfluxReporterDefinition override) {
+		InfluxReporterDefinition combinedDefinition = new InfluxReporterDefinition();
+		// get current values
+		combinedDefinition.setName(getName());
+		combinedDefinition.setDurationUnit(getDurationUnit());
+		combinedDefinition.setRateUnit(getRateUnit());
+		combinedDefinition.setPeriodDuration(getPeriodDuration());
+		combinedDefinition.setPeriodDurationUnit(getPeriodDurationUnit());
+		combinedDefinition.setUrl(getUrl());
+		combinedDefinition.setBatchSize(getBatchSize());
+		combinedDefinition.setBufferSize(getBufferSize());
+		combinedDefinition.setGzip(getGzip());
+		combinedDefinition.setGroupTag(getGroupTag());
+		combinedDefinition.setInfixTag(getInfixTag());
+		combinedDefinition.setFilter(getFilter());
+		combinedDefinition.setRuntimeFilter(getRuntimeFilter());
+		combinedDefinition.setRuntimeSimpleFilter(getRuntimeSimpleFilter());
+		combinedDefinition.setOnlyChanged(getOnlyChanged());
+		combinedDefinition.setRefreshPeriods(getRefreshPeriods());
+		// apply new values
+		combinedDefinition.setNameIfNotNull(override.getName());
+		combinedDefinition.setDurationUnitIfNotNull(override.getDurationUnit());
+		combinedDefinition.setRateUnitIfNotNull(override.getRateUnit());
+		combinedDefinition.setPeriodDurationIfNotNull(override.getPeriodDuration());
+		combinedDefinition.setPeriodDurationUnitIfNotNull(override.getPeriodDurationUnit());
+		combinedDefinition.setUrlIfNotNull(override.getUrl());
+		combinedDefinition.setBatchSizeIfNotNull(override.getBatchSize());
+		combinedDefinition.setBufferSizeIfNotNull(override.getBufferSize());
+		combinedDefinition.setGzipIfNotNull(override.getGzip());
+		combinedDefinition.setGroupTagIfNotNull(override.getGroupTag());
+		combinedDefinition.setInfixTagIfNotNull(override.getInfixTag());
+		combinedDefinition.setFilterIfNotNull(override.getFilter());
+		combinedDefinition.setRuntimeFilterIfNotNull(override.getRuntimeFilter());
+		combinedDefinition.setRuntimeSimpleFilterIfNotNull(override.getRuntimeSimpleFilter());
+		combinedDefinition.setOnlyChangedIfNotNull(override.getOnlyChanged());
+		combinedDefinition.setRefreshPeriodsIfNotNull(override.getRefreshPeriods());
+		return combinedDefinition;
+	}
+
+	/**
+	 * @param metricRegistry
+	 * @param creatingExchange
+	 * @param metricGroup
+	 * @return
+	 */
+	public InfluxReporter buildReporter(final MetricRegistry metricRegistry, final Exchange creatingExchange, final MetricGroup metricGroup) {
+		InfluxReporterDefinition definitionWithDefaults = getReporterDefinitionWithDefaults();
+
+		final InfluxSender influxSender;
+		try {
+			influxSender = InfluxSender.open(metricGroup.getMetricComponent(), definitionWithDefaults.getUrl(), definitionWithDefaults.getBatchSize(), definitionWithDefaults.getBufferSize(), definitionWithDefaults.getGzip());
+		} catch (IOException e) {
+			throw new RuntimeCamelException("unable to write influx lines to: " + definitionWithDefaults.getUrl(), e);
+		}
+		return new InfluxReporter(metricRegistry, definitionWithDefaults.buildFilter(creatingExchange, metricGroup), definitionWithDefaults.getRateUnit(), definitionWithDefaults.getDurationUnit(), metricGroup.getBaseName(), metricGroup.getInfixName(), definitionWithDefaults.getGroupTag(), definitionWithDefaults.getInfixTag(), influxSender);
+	}
+
+	/**
+	 * @return the batchSize
+	 */
+	public Integer getBatchSize() {
+		return this.batchSize;
+	}
+
+	/**
+	 * @return the bufferSize
+	 */
+	public Integer getBufferSize() {
+		return this.bufferSize;
+	}
+
+	/**
+	 * @return the durationUnit
+	 */
+	public TimeUnit getDurationUnit() {
+		return this.durationUnit;
+	}
+
+	/**
+	 * @return the groupTag
+	 */
+	public String getGroupTag() {
+		return this.groupTag;
+	}
+
+	/**
+	 * @return the gzip
+	 */
+	public Boolean getGzip() {
+		return this.gzip;
+	}
+
+	/**
+	 * @return the infixTag
+	 */
+	public String getInfixTag() {
+		return this.infixTag;
+	}
+
+	@Override
+	public String getName() {
+		return this.name;
+	}
+
+	/**
+	 * @return the periodDuration
+	 */
+	public Long getPeriodDuration() {
+		return this.periodDuration;
+	}
+
+	/**
+	 * @return the periodDurationUnit
+	 */
+	public TimeUnit getPeriodDurationUnit() {
+		return this.periodDurationUnit;
+	}
+
+	/**
+	 * @return the rateUnit
+	 */
+	public TimeUnit getRateUnit() {
+		return this.rateUnit;
+	}
+
+	@Override
+	public InfluxReporterDefinition getReporterDefinitionWithDefaults() {
+		return getDefaultReporter().applyAsOverride(this);
+	}
+
+	/**
+	 * @return the url
+	 */
+	public String getUrl() {
+		return this.url;
+	}
+
+	/**
+	 * @param batchSize
+	 *            the most bytes of lines posted in one request, before compression
+	 */
+	public void setBatchSize(final Integer batchSize) {
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * @param bufferSize
+	 *            the most blocks of lines kept while the endpoint cannot be reached, the oldest are dropped first
+	 */
+	public void setBufferSize(final Integer bufferSize) {
+		this.bufferSize = bufferSize;
+	}
+
+	@Override
+	public void setDurationUnit(final TimeUnit durationUnit) {
+		this.durationUnit = durationUnit;
+	}
+
+	/**
+	 * @param groupTag
+	 *            the name of the tag holding the base name of a metric group
+	 */
+	public void setGroupTag(final String groupTag) {
+		this.groupTag = groupTag;
+	}
+
+	/**
+	 * @param gzip
+	 *            whether request bodies are gzipped
+	 */
+	public void setGzip(final Boolean gzip) {
+		this.gzip = gzip;
+	}
+
+	/**
+	 * @param infixTag
+	 *            the name of the tag holding the infix of a metric group
+	 */
+	public void setInfixTag(final String infixTag) {
+		this.infixTag = infixTag;
+	}
+
+	@Override
+	public void setName(final String name) {
+		this.name = name;
+	}
+
+	/**
+	 * @param periodDurationInt
+	 *            the periodDuration to set
+	 */
+	public void setPeriodDuration(final Integer periodDurationInt) {
+		this.periodDuration = periodDurationInt.longValue();
+	}
+
+	/**
+	 * @param periodDuration
+	 *            the periodDuration to set
+	 */
+	public void setPeriodDuration(final Long periodDuration) {
+		this.periodDuration = periodDuration;
+	}
+
+	/**
+	 * @param periodDurationUnit
+	 *            the periodDurationUnit to set
+	 */
+	public void setPeriodDurationUnit(final TimeUnit periodDurationUnit) {
+		this.periodDurationUnit = periodDurationUnit;
+	}
+
+	@Override
+	public void setRateUnit(final TimeUnit rateUnit) {
+		this.rateUnit = rateUnit;
+	}
+
+	/**
+	 * @param url
+	 *            the write endpoint, with the database and any other parameters
+	 */
+	public void setUrl(final String url) {
+		this.url = url;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		builder.append("InfluxReporterDefinition [name=");
+		builder.append(this.name);
+		builder.append(", durationUnit=");
+		builder.append(this.durationUnit);
+		builder.append(", rateUnit=");
+		builder.append(this.rateUnit);
+		builder.append(", periodDuration=");
+		builder.append(this.periodDuration);
+		builder.append(", periodDurationUnit=");
+		builder.append(this.periodDurationUnit);
+		builder.append(", url=");
+		builder.append(this.url);
+		builder.append(", batchSize=");
+		builder.append(this.batchSize);
+		builder.append(", bufferSize=");
+		builder.append(this.bufferSize);
+		builder.append(", gzip=");
+		builder.append(this.gzip);
+		builder.append(", groupTag=");
+		builder.append(this.groupTag);
+		builder.append(", infixTag=");
+		builder.append(this.infixTag);
+		builder.append(", getFilter()=");
+		builder.append(getFilter());
+		builder.append(", getRuntimeFilter()=");
+		builder.append(getRuntimeFilter());
+		builder.append(", getRuntimeSimpleFilter()=");
+		builder.append(getRuntimeSimpleFilter());
+		builder.append(", getOnlyChanged()=");
+		builder.append(getOnlyChanged());
+		builder.append(", getRefreshPeriods()=");
+		builder.append(getRefreshPeriods());
+		builder.append("]");
+		return builder.toString();
+	}
+
+	private void setBatchSizeIfNotNull(final Integer batchSize) {
+		if (batchSize != null) {
+			setBatchSize(batchSize);
+		}
+	}
+
+	private void setBufferSizeIfNotNull(final Integer bufferSize) {
+		if (bufferSize != null) {
+			setBufferSize(bufferSize);
+		}
+	}
+
+	/**
+	 * @param durationUnit
+	 */
+	private void setDurationUnitIfNotNull(final TimeUnit durationUnit) {
+		if (durationUnit != null) {
+			setDurationUnit(durationUnit);
+		}
+	}
+
+	private void setGroupTagIfNotNull(final String groupTag) {
+		if (groupTag != null) {
+			setGroupTag(groupTag);
+		}
+	}
+
+	private void setGzipIfNotNull(final Boolean gzip) {
+		if (gzip != null) {
+			setGzip(gzip);
+		}
+	}
+
+	private void setInfixTagIfNotNull(final String infixTag) {
+		if (infixTag != null) {
+			setInfixTag(infixTag);
+		}
+	}
+
+	/**
+	 * @param name
+	 */
+	private void setNameIfNotNull(final String name) {
+		if (name != null) {
+			setName(name);
+		}
+	}
+
+	private void setPeriodDurationIfNotNull(final Long periodDuration) {
+		if (periodDuration != null) {
+			setPeriodDuration(periodDuration);
+		}
+	}
+
+	private void setPeriodDurationUnitIfNotNull(final TimeUnit periodDurationUnit) {
+		if (periodDurationUnit != null) {
+			setPeriodDurationUnit(periodDurationUnit);
+		}
+	}
+
+	/**
+	 * @param rateUnit
+	 */
+	private void setRateUnitIfNotNull(final TimeUnit rateUnit) {
+		if (rateUnit != null) {
+			setRateUnit(rateUnit);
+		}
+	}
+
+	private void setUrlIfNotNull(final String url) {
+		if (url != null) {
+			setUrl(url);
+		}
+	}
+
+}
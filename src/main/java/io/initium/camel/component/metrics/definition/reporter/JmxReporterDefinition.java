@@ -18,22 +18,45 @@ package io.initium.camel.component.metrics.definition.reporter;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.camel.Exchange;
+import org.apache.camel.RuntimeCamelException;
 
 import com.codahale.metrics.JmxReporter;
-import com.codahale.metrics.Metric;
-import com.codahale.metrics.MetricFilter;
 import com.codahale.metrics.MetricRegistry;
 
+import io.initium.camel.component.metrics.GroupMBean;
 import io.initium.camel.component.metrics.MetricGroup;
 
 /**
  * @author Steve Fosdal, <steve@initium.io>
  * @author Hector Veiga Ortiz, <hector@initium.io>
- * @version 1.1
+ * @version 1.4
  * @since 2014-02-19
  */
 public class JmxReporterDefinition extends AbstractReporterDefinition<JmxReporterDefinition> {
 
+	/**
+	 *
+	 */
+	public enum JmxMode {
+		PER_METRIC, // one MBean per metric, see JmxReporter
+		COMPACT; // one MBean per metric group, see GroupMBean
+
+		/**
+		 * @param name
+		 *            the name of the mode in any case, with or without underscores, e.g. perMetric
+		 * @return
+		 */
+		public static JmxMode parse(final String name) {
+			String normalizedName = name.replace("_", "").replace("-", "");
+			for (JmxMode jmxMode : values()) {
+				if (jmxMode.name().replace("_", "").equalsIgnoreCase(normalizedName)) {
+					return jmxMode;
+				}
+			}
+			throw new RuntimeCamelException("unknown jmx mode: " + name);
+		}
+	}
+
 	// fields
 	private static final String		DEFAULT_NAME					= JmxReporterDefinition.class.getSimpleName();
 	private static final TimeUnit	DEFAULT_DURATION_UNIT			= TimeUnit.MILLISECONDS;
@@ -41,6 +64,7 @@ public class JmxReporterDefinition extends AbstractReporterDefinition<JmxReporte
 	private static final String		DEFAULT_DOMAIN					= "metrics";
 	private static final String		DEFAULT_RUNTIME_DOMAIN			= null;
 	private static final String		DEFAULT_RUNTIME_SIMPLE_DOMAIN	= null;
+	private static final String		DEFAULT_MODE					= "perMetric";
 
 	/**
 	 * @return
@@ -53,6 +77,7 @@ public class JmxReporterDefinition extends AbstractReporterDefinition<JmxReporte
 		defaultDefinition.setDomain(DEFAULT_DOMAIN);
 		defaultDefinition.setRuntimeDomain(DEFAULT_RUNTIME_DOMAIN);
 		defaultDefinition.setRuntimeSimpleDomain(DEFAULT_RUNTIME_SIMPLE_DOMAIN);
+		defaultDefinition.setMode(DEFAULT_MODE);
 		defaultDefinition.setFilter(DEFAULT_FILTER);
 		defaultDefinition.setRuntimeFilter(DEFAULT_RUNTIME_FILTER);
 		defaultDefinition.setRuntimeSimpleFilter(DEFAULT_RUNTIME_SIMPLE_FILTER);
@@ -66,6 +91,7 @@ public class JmxReporterDefinition extends AbstractReporterDefinition<JmxReporte
 	private String		domain;
 	private String		runtimeDomain;
 	private String		runtimeSimpleDomain;
+	private String		mode;
 
 	@Override
 	public JmxReporterDefinition applyAsOverride(final JmxReporterDefinition override) {
@@ -77,6 +103,7 @@ public class JmxReporterDefinition extends AbstractReporterDefinition<JmxReporte
 		combinedDefinition.setDomain(getDomain());
 		combinedDefinition.setRuntimeDomain(getRuntimeDomain());
 		combinedDefinition.setRuntimeSimpleDomain(getRuntimeSimpleDomain());
+		combinedDefinition.setMode(getMode());
 		combinedDefinition.setFilter(getFilter());
 		combinedDefinition.setRuntimeFilter(getRuntimeFilter());
 		combinedDefinition.setRuntimeSimpleFilter(getRuntimeSimpleFilter());
@@ -87,12 +114,27 @@ public class JmxReporterDefinition extends AbstractReporterDefinition<JmxReporte
 		combinedDefinition.setDomainIfNotNull(override.getDomain());
 		combinedDefinition.setRuntimeDomainIfNotNull(override.getRuntimeDomain());
 		combinedDefinition.setRuntimeSimpleDomainIfNotNull(override.getRuntimeSimpleDomain());
+		combinedDefinition.setModeIfNotNull(override.getMode());
 		combinedDefinition.setFilterIfNotNull(override.getFilter());
 		combinedDefinition.setRuntimeFilterIfNotNull(override.getRuntimeFilter());
 		combinedDefinition.setRuntimeSimpleFilterIfNotNull(override.getRuntimeSimpleFilter());
 		return combinedDefinition;
 	}
 
+	/**
+	 * @param metricRegistry
+	 * @param creatingExchange
+	 * @param metricGroup
+	 * @return the MBean exposing the metrics of the group, not registered yet
+	 */
+	public GroupMBean buildGroupMBean(final MetricRegistry metricRegistry, final Exchange creatingExchange, final MetricGroup metricGroup) {
+		JmxReporterDefinition definitionWithDefaults = getReporterDefinitionWithDefaults();
+
+		final String domainValue = evaluateValue(definitionWithDefaults.getDomain(), definitionWithDefaults.getRuntimeDomain(), definitionWithDefaults.getRuntimeSimpleDomain(), creatingExchange);
+
+		return new GroupMBean(metricRegistry, definitionWithDefaults.buildFilter(creatingExchange, metricGroup), domainValue, metricGroup.getFullName(), definitionWithDefaults.getRateUnit(), definitionWithDefaults.getDurationUnit());
+	}
+
 	/**
 	 * @param metricRegistry
 	 * @param creatingExchange
@@ -101,7 +143,6 @@ public class JmxReporterDefinition extends AbstractReporterDefinition<JmxReporte
 	public JmxReporter buildReporter(final MetricRegistry metricRegistry, final Exchange creatingExchange, final MetricGroup metricGroup) {
 		JmxReporterDefinition definitionWithDefaults = getReporterDefinitionWithDefaults();
 
-		final String filterValue = evaluateValue(definitionWithDefaults.getFilter(), definitionWithDefaults.getRuntimeFilter(), definitionWithDefaults.getRuntimeSimpleFilter(), creatingExchange);
 		final String domainValue = evaluateValue(definitionWithDefaults.getDomain(), definitionWithDefaults.getRuntimeDomain(), definitionWithDefaults.getRuntimeSimpleDomain(), creatingExchange);
 
 		// @formatter:off
@@ -110,19 +151,7 @@ public class JmxReporterDefinition extends AbstractReporterDefinition<JmxReporte
 				.inDomain(domainValue)
 				.convertDurationsTo(definitionWithDefaults.getDurationUnit())
 				.convertRatesTo(definitionWithDefaults.getRateUnit())
-				.filter(new MetricFilter(){
-					@Override
-					public boolean matches(final String name, final Metric metric) {
-						if(!metricGroup.contains(metric)){
-							return false;
-						}
-						if(name==null || filterValue==null){
-							return true;
-						}
-						boolean result = name.matches(filterValue);
-						return result;
-					}
-				})
+				.filter(definitionWithDefaults.buildFilter(creatingExchange, metricGroup))
 				.build();
 		// @formatter:on
 		return jmxReporter;
@@ -142,6 +171,13 @@ public class JmxReporterDefinition extends AbstractReporterDefinition<JmxReporte
 		return this.durationUnit;
 	}
 
+	/**
+	 * @return the mode
+	 */
+	public String getMode() {
+		return this.mode;
+	}
+
 	@Override
 	public String getName() {
 		return this.name;
@@ -185,6 +221,14 @@ public class JmxReporterDefinition extends AbstractReporterDefinition<JmxReporte
 		this.durationUnit = durationUnit;
 	}
 
+	/**
+	 * @param mode
+	 *            perMetric or compact
+	 */
+	public void setMode(final String mode) {
+		this.mode = mode;
+	}
+
 	@Override
 	public void setName(final String name) {
 		this.name = name;
@@ -260,6 +304,8 @@ public class JmxReporterDefinition extends AbstractReporterDefinition<JmxReporte
 		builder.append(this.runtimeDomain);
 		builder.append(", runtimeSimpleDomain=");
 		builder.append(this.runtimeSimpleDomain);
+		builder.append(", mode=");
+		builder.append(this.mode);
 		builder.append(", getFilter()=");
 		builder.append(getFilter());
 		builder.append(", getRuntimeFilter()=");
@@ -288,6 +334,15 @@ public class JmxReporterDefinition extends AbstractReporterDefinition<JmxReporte
 		}
 	}
 
+	/**
+	 * @param mode
+	 */
+	private void setModeIfNotNull(final String mode) {
+		if (mode != null) {
+			setMode(mode);
+		}
+	}
+
 	/**
 	 * @param name
 	 */
@@ -0,0 +1,343 @@
+// @formatter:off
+/**
+ * Copyright 2014 Initium.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+// @formatter:on
+package io.initium.camel.component.metrics.definition.reporter;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.RuntimeCamelException;
+
+import com.codahale.metrics.MetricRegistry;
+
+import io.initium.camel.component.metrics.MetricGroup;
+import io.initium.camel.component.metrics.OtlpReporter;
+import io.initium.camel.component.metrics.OtlpExporter;
+
+/**
+ * @author Steve Fosdal, <steve@initium.io>
+ * @author Hector Veiga Ortiz, <hector@initium.io>
+ * @version 1.4
+ * @since 2026-10-18
+ */
+public class OtlpReporterDefinition extends AbstractReporterDefinition<OtlpReporterDefinition> {
+
+	// fields
+	private static final String		DEFAULT_NAME					= OtlpReporterDefinition.class.getSimpleName();
+	private static final TimeUnit	DEFAULT_DURATION_UNIT			= TimeUnit.MILLISECONDS;
+	private static final TimeUnit	DEFAULT_RATE_UNIT				= TimeUnit.SECONDS;
+	private static final long		DEFAULT_PERIOD_DURATION			= 1;
+	private static final TimeUnit	DEFAULT_PERIOD_DURATION_UNIT	= TimeUnit.MINUTES;
+	private static final String		DEFAULT_URL						= "http://localhost:4318/v1/metrics";
+	private static final String		DEFAULT_SERVICE_NAME			= "camel";
+	private static final String		DEFAULT_INFIX_ATTRIBUTE			= "infix";
+
+	/**
+	 * @return
+	 */
+	public static OtlpReporterDefinition getDefaultReporter() {
+		OtlpReporterDefinition defaultDefinition = new OtlpReporterDefinition();
+		defaultDefinition.setName(DEFAULT_NAME);
+		defaultDefinition.setDurationUnit(DEFAULT_DURATION_UNIT);
+		defaultDefinition.setRateUnit(DEFAULT_RATE_UNIT);
+		defaultDefinition.setPeriodDuration(DEFAULT_PERIOD_DURATION);
+		defaultDefinition.setPeriodDurationUnit(DEFAULT_PERIOD_DURATION_UNIT);
+		defaultDefinition.setUrl(DEFAULT_URL);
+		defaultDefinition.setServiceName(DEFAULT_SERVICE_NAME);
+		defaultDefinition.setInfixAttribute(DEFAULT_INFIX_ATTRIBUTE);
+		defaultDefinition.setFilter(DEFAULT_FILTER);
+		defaultDefinition.setRuntimeFilter(DEFAULT_RUNTIME_FILTER);
+		defaultDefinition.setRuntimeSimpleFilter(DEFAULT_RUNTIME_SIMPLE_FILTER);
+		defaultDefinition.setOnlyChanged(DEFAULT_ONLY_CHANGED);
+		defaultDefinition.setRefreshPeriods(DEFAULT_REFRESH_PERIODS);
+		return defaultDefinition;
+	}
+
+	// fields
+	private String		name	= DEFAULT_NAME;
+	private TimeUnit	durationUnit;
+	private TimeUnit	rateUnit;
+	private Long		periodDuration;
+	private TimeUnit	periodDurationUnit;
+	private String		url;
+	private String		serviceName;
+	private String		infixAttribute;
+
+	@Override
+	public OtlpReporterDefinition applyAsOverride(final OtlpReporterDefinition override) {
+		OtlpReporterDefinition combinedDefinition = new OtlpReporterDefinition();
+		// get current values
+		combinedDefinition.setName(getName());
+		combinedDefinition.setDurationUnit(getDurationUnit());
+		combinedDefinition.setRateUnit(getRateUnit());
+		combinedDefinition.setPeriodDuration(getPeriodDuration());
+		combinedDefinition.setPeriodDurationUnit(getPeriodDurationUnit());
+		combinedDefinition.setUrl(getUrl());
+		combinedDefinition.setServiceName(getServiceName());
+		combinedDefinition.setInfixAttribute(getInfixAttribute());
+		combinedDefinition.setFilter(getFilter());
+		combinedDefinition.setRuntimeFilter(getRuntimeFilter());
+		combinedDefinition.setRuntimeSimpleFilter(getRuntimeSimpleFilter());
+		combinedDefinition.setOnlyChanged(getOnlyChanged());
+		combinedDefinition.setRefreshPeriods(getRefreshPeriods());
+		// apply new values
+		combinedDefinition.setNameIfNotNull(override.getName());
+		combinedDefinition.setDurationUnitIfNotNull(override.getDurationUnit());
+		combinedDefinition.setRateUnitIfNotNull(override.getRateUnit());
+		combinedDefinition.setPeriodDurationIfNotNull(override.getPeriodDuration());
+		combinedDefinition.setPeriodDurationUnitIfNotNull(override.getPeriodDurationUnit());
+		combinedDefinition.setUrlIfNotNull(override.getUrl());
+		combinedDefinition.setServiceNameIfNotNull(override.getServiceName());
+		combinedDefinition.setInfixAttributeIfNotNull(override.getInfixAttribute());
+		combinedDefinition.setFilterIfNotNull(override.getFilter());
+		combinedDefinition.setRuntimeFilterIfNotNull(override.getRuntimeFilter());
+		combinedDefinition.setRuntimeSimpleFilterIfNotNull(override.getRuntimeSimpleFilter());
+		combinedDefinition.setOnlyChangedIfNotNull(override.getOnlyChanged());
+		combinedDefinition.setRefreshPeriodsIfNotNull(override.getRefreshPeriods());
+		return combinedDefinition;
+	}
+
+	/**
+	 * @param metricRegistry
+	 * @param creatingExchange
+	 * @param metricGroup
+	 * @return
+	 */
+	public OtlpReporter buildReporter(final MetricRegistry metricRegistry, final Exchange creatingExchange, final MetricGroup metricGroup) {
+		OtlpReporterDefinition definitionWithDefaults = getReporterDefinitionWithDefaults();
+
+		final OtlpExporter otlpExporter;
+		try {
+			otlpExporter = OtlpExporter.open(metricGroup.getMetricComponent(), definitionWithDefaults.getUrl(), definitionWithDefaults.getServiceName());
+		} catch (IOException e) {
+			throw new RuntimeCamelException("unable to export metrics to: " + definitionWithDefaults.getUrl(), e);
+		}
+		return new OtlpReporter(metricRegistry, definitionWithDefaults.buildFilter(creatingExchange, metricGroup), definitionWithDefaults.getRateUnit(), definitionWithDefaults.getDurationUnit(), metricGroup.getBaseName(), metricGroup.getInfixName(), definitionWithDefaults.getInfixAttribute(), otlpExporter);
+	}
+
+	/**
+	 * @return the durationUnit
+	 */
+	public TimeUnit getDurationUnit() {
+		return this.durationUnit;
+	}
+
+	/**
+	 * @return the infixAttribute
+	 */
+	public String getInfixAttribute() {
+		return this.infixAttribute;
+	}
+
+	@Override
+	public String getName() {
+		return this.name;
+	}
+
+	/**
+	 * @return the periodDuration
+	 */
+	public Long getPeriodDuration() {
+		return this.periodDuration;
+	}
+
+	/**
+	 * @return the periodDurationUnit
+	 */
+	public TimeUnit getPeriodDurationUnit() {
+		return this.periodDurationUnit;
+	}
+
+	/**
+	 * @return the rateUnit
+	 */
+	public TimeUnit getRateUnit() {
+		return this.rateUnit;
+	}
+
+	@Override
+	public OtlpReporterDefinition getReporterDefinitionWithDefaults() {
+		return getDefaultReporter().applyAsOverride(this);
+	}
+
+	/**
+	 * @return the serviceName
+	 */
+	public String getServiceName() {
+		return this.serviceName;
+	}
+
+	/**
+	 * @return the url
+	 */
+	public String getUrl() {
+		return this.url;
+	}
+
+	@Override
+	public void setDurationUnit(final TimeUnit durationUnit) {
+		this.durationUnit = durationUnit;
+	}
+
+	/**
+	 * @param infixAttribute
+	 *            the key of the attribute holding the infix of a metric group
+	 */
+	public void setInfixAttribute(final String infixAttribute) {
+		this.infixAttribute = infixAttribute;
+	}
+
+	@Override
+	public void setName(final String name) {
+		this.name = name;
+	}
+
+	/**
+	 * @param periodDurationInt
+	 *            the periodDuration to set
+	 */
+	public void setPeriodDuration(final Integer periodDurationInt) {
+		this.periodDuration = periodDurationInt.longValue();
+	}
+
+	/**
+	 * @param periodDuration
+	 *            the periodDuration to set
+	 */
+	public void setPeriodDuration(final Long periodDuration) {
+		this.periodDuration = periodDuration;
+	}
+
+	/**
+	 * @param periodDurationUnit
+	 *            the periodDurationUnit to set
+	 */
+	public void setPeriodDurationUnit(final TimeUnit periodDurationUnit) {
+		this.periodDurationUnit = periodDurationUnit;
+	}
+
+	@Override
+	public void setRateUnit(final TimeUnit rateUnit) {
+		this.rateUnit = rateUnit;
+	}
+
+	/**
+	 * @param serviceName
+	 *            the service.name attribute of the resource
+	 */
+	public void setServiceName(final String serviceName) {
+		this.serviceName = serviceName;
+	}
+
+	/**
+	 * @param url
+	 *            the metrics endpoint of the collector
+	 */
+	public void setUrl(final String url) {
+		this.url = url;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		builder.append("OtlpReporterDefinition [name=");
+		builder.append(this.name);
+		builder.append(", durationUnit=");
+		builder.append(this.durationUnit);
+		builder.append(", rateUnit=");
+		builder.append(this.rateUnit);
+		builder.append(", periodDuration=");
+		builder.append(this.periodDuration);
+		builder.append(", periodDurationUnit=");
+		builder.append(this.periodDurationUnit);
+		builder.append(", url=");
+		builder.append(this.url);
+		builder.append(", serviceName=");
+		builder.append(this.serviceName);
+		builder.append(", infixAttribute=");
+		builder.append(this.infixAttribute);
+		builder.append(", getFilter()=");
+		builder.append(getFilter());
+		builder.append(", getRuntimeFilter()=");
+		builder.append(getRuntimeFilter());
+		builder.append(", getRuntimeSimpleFilter()=");
+		builder.append(getRuntimeSimpleFilter());
+		builder.append(", getOnlyChanged()=");
+		builder.append(getOnlyChanged());
+		builder.append(", getRefreshPeriods()=");
+		builder.append(getRefreshPeriods());
+		builder.append("]");
+		return builder.toString();
+	}
+
+	/**
+	 * @param durationUnit
+	 */
+	private void setDurationUnitIfNotNull(final TimeUnit durationUnit) {
+		if (durationUnit != null) {
+			setDurationUnit(durationUnit);
+		}
+	}
+
+	private void setInfixAttributeIfNotNull(final String infixAttribute) {
+		if (infixAttribute != null) {
+			setInfixAttribute(infixAttribute);
+		}
+	}
+
+	/**
+	 * @param name
+	 */
+	private void setNameIfNotNull(final String name) {
+		if (name != null) {
+			setName(name);
+		}
+	}
+
+	private void setPeriodDurationIfNotNull(final Long periodDuration) {
+		if (periodDuration != null) {
+			setPeriodDuration(periodDuration);
+		}
+	}
+
+	private void setPeriodDurationUnitIfNotNull(final TimeUnit periodDurationUnit) {
+		if (periodDurationUnit != null) {
+			setPeriodDurationUnit(periodDurationUnit);
+		}
+	}
+
+	/**
+	 * @param rateUnit
+	 */
+	private void setRateUnitIfNotNull(final TimeUnit rateUnit) {
+		if (rateUnit != null) {
+			setRateUnit(rateUnit);
+		}
+	}
+
+	private void setServiceNameIfNotNull(final String serviceName) {
+		if (serviceName != null) {
+			setServiceName(serviceName);
+		}
+	}
+
+	private void setUrlIfNotNull(final String url) {
+		if (url != null) {
+			setUrl(url);
+		}
+	}
+
+}
@@ -0,0 +1,382 @@
+// @formatter:off
+/**
+ * Copyright 2014 Initium.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+// @formatter:on
+package io.initium.camel.component.metrics.definition.reporter;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.RuntimeCamelException;
+
+import com.codahale.metrics.MetricRegistry;
+
+import io.initium.camel.component.metrics.MetricGroup;
+import io.initium.camel.component.metrics.PrometheusExporter;
+import io.initium.camel.component.metrics.PrometheusReporter;
+
+/**
+ * @author Steve Fosdal, <steve@initium.io>
+ * @author Hector Veiga Ortiz, <hector@initium.io>
+ * @version 1.4
+ * @since 2026-10-18
+ */
+public class PrometheusReporterDefinition extends AbstractReporterDefinition<PrometheusReporterDefinition> {
+
+	// fields
+	private static final String		DEFAULT_NAME			= PrometheusReporterDefinition.class.getSimpleName();
+	private static final TimeUnit	DEFAULT_DURATION_UNIT	= TimeUnit.SECONDS;
+	private static final TimeUnit	DEFAULT_RATE_UNIT		= TimeUnit.SECONDS;
+	private static final String		DEFAULT_HOST			= "0.0.0.0";
+	private static final int		DEFAULT_PORT			= 9464;
+	private static final String		DEFAULT_PATH			= "/metrics";
+	private static final long		DEFAULT_CACHE_TTL		= 1;
+	private static final TimeUnit	DEFAULT_CACHE_TTL_UNIT	= TimeUnit.SECONDS;
+	private static final String		DEFAULT_INFIX_LABEL		= "infix";
+
+	/**
+	 * @return
+	 */
+	public static PrometheusReporterDefinition getDefaultReporter() {
+		PrometheusReporterDefinition defaultDefinition = new PrometheusReporterDefinition();
+		defaultDefinition.setName(DEFAULT_NAME);
+		defaultDefinition.setDurationUnit(DEFAULT_DURATION_UNIT);
+		defaultDefinition.setRateUnit(DEFAULT_RATE_UNIT);
+		defaultDefinition.setHost(DEFAULT_HOST);
+		defaultDefinition.setPort(DEFAULT_PORT);
+		defaultDefinition.setPath(DEFAULT_PATH);
+		defaultDefinition.setCacheTtl(DEFAULT_CACHE_TTL);
+		defaultDefinition.setCacheTtlUnit(DEFAULT_CACHE_TTL_UNIT);
+		defaultDefinition.setInfixLabel(DEFAULT_INFIX_LABEL);
+		defaultDefinition.setFilter(DEFAULT_FILTER);
+		defaultDefinition.setRuntimeFilter(DEFAULT_RUNTIME_FILTER);
+		defaultDefinition.setRuntimeSimpleFilter(DEFAULT_RUNTIME_SIMPLE_FILTER);
+		return defaultDefinition;
+	}
+
+	// fields
+	private String		name	= DEFAULT_NAME;
+	private TimeUnit	durationUnit;
+	private TimeUnit	rateUnit;
+	private String		host;
+	private Integer		port;
+	private String		path;
+	private Long		cacheTtl;
+	private TimeUnit	cacheTtlUnit;
+	private String		infixLabel;
+
+	@Override
+	public PrometheusReporterDefinition applyAsOverride(final PrometheusReporterDefinition override) {
+		PrometheusReporterDefinition combinedDefinition = new PrometheusReporterDefinition();
+		// get current values
+		combinedDefinition.setName(getName());
+		combinedDefinition.setDurationUnit(getDurationUnit());
+		combinedDefinition.setRateUnit(getRateUnit());
+		combinedDefinition.setHost(getHost());
+		combinedDefinition.setPort(getPort());
+		combinedDefinition.setPath(getPath());
+		combinedDefinition.setCacheTtl(getCacheTtl());
+		combinedDefinition.setCacheTtlUnit(getCacheTtlUnit());
+		combinedDefinition.setInfixLabel(getInfixLabel());
+		combinedDefinition.setFilter(getFilter());
+		combinedDefinition.setRuntimeFilter(getRuntimeFilter());
+		combinedDefinition.setRuntimeSimpleFilter(getRuntimeSimpleFilter());
+		// apply new values
+		combinedDefinition.setNameIfNotNull(override.getName());
+		combinedDefinition.setDurationUnitIfNotNull(override.getDurationUnit());
+		combinedDefinition.setRateUnitIfNotNull(override.getRateUnit());
+		combinedDefinition.setHostIfNotNull(override.getHost());
+		combinedDefinition.setPortIfNotNull(override.getPort());
+		combinedDefinition.setPathIfNotNull(override.getPath());
+		combinedDefinition.setCacheTtlIfNotNull(override.getCacheTtl());
+		combinedDefinition.setCacheTtlUnitIfNotNull(override.getCacheTtlUnit());
+		combinedDefinition.setInfixLabelIfNotNull(override.getInfixLabel());
+		combinedDefinition.setFilterIfNotNull(override.getFilter());
+		combinedDefinition.setRuntimeFilterIfNotNull(override.getRuntimeFilter());
+		combinedDefinition.setRuntimeSimpleFilterIfNotNull(override.getRuntimeSimpleFilter());
+		return combinedDefinition;
+	}
+
+	/**
+	 * @param metricRegistry
+	 * @param creatingExchange
+	 * @param metricGroup
+	 * @return the reporter, not serving the metrics until started
+	 */
+	public PrometheusReporter buildReporter(final MetricRegistry metricRegistry, final Exchange creatingExchange, final MetricGroup metricGroup) {
+		PrometheusReporterDefinition definitionWithDefaults = getReporterDefinitionWithDefaults();
+
+		final String address = definitionWithDefaults.getHost() + ":" + definitionWithDefaults.getPort() + definitionWithDefaults.getPath();
+		final PrometheusExporter prometheusExporter;
+		try {
+			prometheusExporter = PrometheusExporter.open(metricGroup.getMetricComponent(), definitionWithDefaults.getHost(), definitionWithDefaults.getPort(), definitionWithDefaults.getPath(), definitionWithDefaults.getCacheTtlUnit().toNanos(definitionWithDefaults.getCacheTtl()));
+		} catch (IOException e) {
+			throw new RuntimeCamelException("unable to serve prometheus metrics on: " + address, e);
+		}
+		return new PrometheusReporter(metricRegistry, definitionWithDefaults.buildFilter(creatingExchange, metricGroup), metricGroup.getBaseName(), metricGroup.getInfixName(), definitionWithDefaults.getInfixLabel(), definitionWithDefaults.getDurationUnit(), prometheusExporter);
+	}
+
+	/**
+	 * @return the cacheTtl
+	 */
+	public Long getCacheTtl() {
+		return this.cacheTtl;
+	}
+
+	/**
+	 * @return the cacheTtlUnit
+	 */
+	public TimeUnit getCacheTtlUnit() {
+		return this.cacheTtlUnit;
+	}
+
+	/**
+	 * @return the durationUnit
+	 */
+	public TimeUnit getDurationUnit() {
+		return this.durationUnit;
+	}
+
+	/**
+	 * @return the host
+	 */
+	public String getHost() {
+		return this.host;
+	}
+
+	/**
+	 * @return the infixLabel
+	 */
+	public String getInfixLabel() {
+		return this.infixLabel;
+	}
+
+	@Override
+	public String getName() {
+		return this.name;
+	}
+
+	/**
+	 * @return the path
+	 */
+	public String getPath() {
+		return this.path;
+	}
+
+	@Override
+	public Long getPeriodDuration() {
+		return null;
+	}
+
+	@Override
+	public TimeUnit getPeriodDurationUnit() {
+		return null;
+	}
+
+	/**
+	 * @return the port
+	 */
+	public Integer getPort() {
+		return this.port;
+	}
+
+	/**
+	 * @return the rateUnit
+	 */
+	public TimeUnit getRateUnit() {
+		return this.rateUnit;
+	}
+
+	@Override
+	public PrometheusReporterDefinition getReporterDefinitionWithDefaults() {
+		return getDefaultReporter().applyAsOverride(this);
+	}
+
+	/**
+	 * @param cacheTtl
+	 *            how long a rendering is served to scrapers, 0 to render every scrape
+	 */
+	public void setCacheTtl(final Long cacheTtl) {
+		this.cacheTtl = cacheTtl;
+	}
+
+	/**
+	 * @param cacheTtlUnit
+	 *            the cacheTtlUnit to set
+	 */
+	public void setCacheTtlUnit(final TimeUnit cacheTtlUnit) {
+		this.cacheTtlUnit = cacheTtlUnit;
+	}
+
+	@Override
+	public void setDurationUnit(final TimeUnit durationUnit) {
+		this.durationUnit = durationUnit;
+	}
+
+	/**
+	 * @param host
+	 *            the address the server listens on
+	 */
+	public void setHost(final String host) {
+		this.host = host;
+	}
+
+	/**
+	 * @param infixLabel
+	 *            the name of the label holding the infix of a metric group
+	 */
+	public void setInfixLabel(final String infixLabel) {
+		this.infixLabel = infixLabel;
+	}
+
+	@Override
+	public void setName(final String name) {
+		this.name = name;
+	}
+
+	/**
+	 * @param path
+	 *            the path of the metrics
+	 */
+	public void setPath(final String path) {
+		this.path = path;
+	}
+
+	/**
+	 * @param port
+	 *            the port the server listens on, 0 for any free port
+	 */
+	public void setPort(final Integer port) {
+		this.port = port;
+	}
+
+	@Override
+	public void setRateUnit(final TimeUnit rateUnit) {
+		this.rateUnit = rateUnit;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		builder.append("PrometheusReporterDefinition [name=");
+		builder.append(this.name);
+		builder.append(", durationUnit=");
+		builder.append(this.durationUnit);
+		builder.append(", rateUnit=");
+		builder.append(this.rateUnit);
+		builder.append(", host=");
+		builder.append(this.host);
+		builder.append(", port=");
+		builder.append(this.port);
+		builder.append(", path=");
+		builder.append(this.path);
+		builder.append(", cacheTtl=");
+		builder.append(this.cacheTtl);
+		builder.append(", cacheTtlUnit=");
+		builder.append(this.cacheTtlUnit);
+		builder.append(", infixLabel=");
+		builder.append(this.infixLabel);
+		builder.append(", getFilter()=");
+		builder.append(getFilter());
+		builder.append(", getRuntimeFilter()=");
+		builder.append(getRuntimeFilter());
+		builder.append(", getRuntimeSimpleFilter()=");
+		builder.append(getRuntimeSimpleFilter());
+		builder.append("]");
+		return builder.toString();
+	}
+
+	/**
+	 * @param cacheTtl
+	 */
+	private void setCacheTtlIfNotNull(final Long cacheTtl) {
+		if (cacheTtl != null) {
+			setCacheTtl(cacheTtl);
+		}
+	}
+
+	/**
+	 * @param cacheTtlUnit
+	 */
+	private void setCacheTtlUnitIfNotNull(final TimeUnit cacheTtlUnit) {
+		if (cacheTtlUnit != null) {
+			setCacheTtlUnit(cacheTtlUnit);
+		}
+	}
+
+	/**
+	 * @param durationUnit
+	 */
+	private void setDurationUnitIfNotNull(final TimeUnit durationUnit) {
+		if (durationUnit != null) {
+			setDurationUnit(durationUnit);
+		}
+	}
+
+	/**
+	 * @param host
+	 */
+	private void setHostIfNotNull(final String host) {
+		if (host != null) {
+			setHost(host);
+		}
+	}
+
+	/**
+	 * @param infixLabel
+	 */
+	private void setInfixLabelIfNotNull(final String infixLabel) {
+		if (infixLabel != null) {
+			setInfixLabel(infixLabel);
+		}
+	}
+
+	/**
+	 * @param name
+	 */
+	private void setNameIfNotNull(final String name) {
+		if (name != null) {
+			setName(name);
+		}
+	}
+
+	/**
+	 * @param path
+	 */
+	private void setPathIfNotNull(final String path) {
+		if (path != null) {
+			setPath(path);
+		}
+	}
+
+	/**
+	 * @param port
+	 */
+	private void setPortIfNotNull(final Integer port) {
+		if (port != null) {
+			setPort(port);
+		}
+	}
+
+	/**
+	 * @param rateUnit
+	 */
+	private void setRateUnitIfNotNull(final TimeUnit rateUnit) {
+		if (rateUnit != null) {
+			setRateUnit(rateUnit);
+		}
+	}
+
+}
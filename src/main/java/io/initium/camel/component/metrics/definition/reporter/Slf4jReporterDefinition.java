@@ -18,24 +18,50 @@ package io.initium.camel.component.metrics.definition.reporter;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.camel.Exchange;
+import org.apache.camel.RuntimeCamelException;
 import org.slf4j.LoggerFactory;
 import org.slf4j.MarkerFactory;
 
-import com.codahale.metrics.Metric;
+import com.codahale.metrics.Clock;
 import com.codahale.metrics.MetricFilter;
 import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.ScheduledReporter;
 import com.codahale.metrics.Slf4jReporter;
 
+import io.initium.camel.component.metrics.JsonBatchSlf4jReporter;
 import io.initium.camel.component.metrics.MetricGroup;
 
 /**
  * @author Steve Fosdal, <steve@initium.io>
  * @author Hector Veiga Ortiz, <hector@initium.io>
- * @version 1.1
+ * @version 1.4
  * @since 2014-02-19
  */
 public class Slf4jReporterDefinition extends AbstractReporterDefinition<Slf4jReporterDefinition> {
 
+	/**
+	 *
+	 */
+	public enum Slf4jFormat {
+		TEXT, // one log event per metric, see Slf4jReporter
+		JSON_BATCH; // one log event per report, see JsonBatchSlf4jReporter
+
+		/**
+		 * @param name
+		 *            the name of the format in any case, with or without underscores or dashes, e.g. json-batch
+		 * @return
+		 */
+		public static Slf4jFormat parse(final String name) {
+			String normalizedName = name.replace("_", "").replace("-", "");
+			for (Slf4jFormat slf4jFormat : values()) {
+				if (slf4jFormat.name().replace("_", "").equalsIgnoreCase(normalizedName)) {
+					return slf4jFormat;
+				}
+			}
+			throw new RuntimeCamelException("unknown slf4j format: " + name);
+		}
+	}
+
 	// fields
 	private static final String		DEFAULT_NAME						= Slf4jReporterDefinition.class.getSimpleName();
 	private static final TimeUnit	DEFAULT_DURATION_UNIT				= TimeUnit.MILLISECONDS;
@@ -48,6 +74,7 @@ public class Slf4jReporterDefinition extends AbstractReporterDefinition<Slf4jRep
 	private static final String		DEFAULT_MARKER_NAME					= "metrics";
 	private static final String		DEFAULT_RUNTIME_MARKER_NAME			= null;
 	private static final String		DEFAULT_RUNTIME_SIMPLE_MARKER_NAME	= null;
+	private static final String		DEFAULT_FORMAT						= "text";
 
 	/**
 	 * @return
@@ -65,9 +92,12 @@ public class Slf4jReporterDefinition extends AbstractReporterDefinition<Slf4jRep
 		defaultDefinition.setMarkerName(DEFAULT_MARKER_NAME);
 		defaultDefinition.setRuntimeMarkerName(DEFAULT_RUNTIME_MARKER_NAME);
 		defaultDefinition.setRuntimeSimpleMarkerName(DEFAULT_RUNTIME_SIMPLE_MARKER_NAME);
+		defaultDefinition.setFormat(DEFAULT_FORMAT);
 		defaultDefinition.setFilter(DEFAULT_FILTER);
 		defaultDefinition.setRuntimeFilter(DEFAULT_RUNTIME_FILTER);
 		defaultDefinition.setRuntimeSimpleFilter(DEFAULT_RUNTIME_SIMPLE_FILTER);
+		defaultDefinition.setOnlyChanged(DEFAULT_ONLY_CHANGED);
+		defaultDefinition.setRefreshPeriods(DEFAULT_REFRESH_PERIODS);
 		return defaultDefinition;
 	}
 
@@ -83,6 +113,7 @@ public class Slf4jReporterDefinition extends AbstractReporterDefinition<Slf4jRep
 	private String		markerName;
 	private String		runtimeMarkerName;
 	private String		runtimeSimpleMarkerName;
+	private String		format;
 
 	@Override
 	public Slf4jReporterDefinition applyAsOverride(final Slf4jReporterDefinition override) {
@@ -99,9 +130,12 @@ public class Slf4jReporterDefinition extends AbstractReporterDefinition<Slf4jRep
 		combinedDefinition.setMarkerName(getMarkerName());
 		combinedDefinition.setRuntimeMarkerName(getRuntimeMarkerName());
 		combinedDefinition.setRuntimeSimpleMarkerName(getRuntimeSimpleMarkerName());
+		combinedDefinition.setFormat(getFormat());
 		combinedDefinition.setFilter(getFilter());
 		combinedDefinition.setRuntimeFilter(getRuntimeFilter());
 		combinedDefinition.setRuntimeSimpleFilter(getRuntimeSimpleFilter());
+		combinedDefinition.setOnlyChanged(getOnlyChanged());
+		combinedDefinition.setRefreshPeriods(getRefreshPeriods());
 		// apply new values
 		combinedDefinition.setNameIfNotNull(override.getName());
 		combinedDefinition.setDurationUnitIfNotNull(override.getDurationUnit());
@@ -114,46 +148,47 @@ public class Slf4jReporterDefinition extends AbstractReporterDefinition<Slf4jRep
 		combinedDefinition.setMarkerNameIfNotNull(override.getMarkerName());
 		combinedDefinition.setRuntimeMarkerNameIfNotNull(override.getRuntimeMarkerName());
 		combinedDefinition.setRuntimeSimpleMarkerNameIfNotNull(override.getRuntimeSimpleMarkerName());
+		combinedDefinition.setFormatIfNotNull(override.getFormat());
 		combinedDefinition.setFilterIfNotNull(override.getFilter());
 		combinedDefinition.setRuntimeFilterIfNotNull(override.getRuntimeFilter());
 		combinedDefinition.setRuntimeSimpleFilterIfNotNull(override.getRuntimeSimpleFilter());
+		combinedDefinition.setOnlyChangedIfNotNull(override.getOnlyChanged());
+		combinedDefinition.setRefreshPeriodsIfNotNull(override.getRefreshPeriods());
 		return combinedDefinition;
 	}
 
 	/**
+	 * Builds the reporter of the text format, one log line per metric, whatever the configured format.
+	 *
 	 * @param metricRegistry
 	 * @return
+	 * @deprecated use {@link #buildScheduledReporter(MetricRegistry, Exchange, MetricGroup)}, which honours the format
 	 */
+	@Deprecated
 	public Slf4jReporter buildReporter(final MetricRegistry metricRegistry, final Exchange creatingExchange, final MetricGroup metricGroup) {
 		Slf4jReporterDefinition definitionWithDefaults = getReporterDefinitionWithDefaults();
+		final String loggerNameValue = evaluateValue(definitionWithDefaults.getLoggerName(), definitionWithDefaults.getRuntimeLoggerName(), definitionWithDefaults.getRuntimeSimpleLoggerName(), creatingExchange);
+		final String markerNameValue = evaluateValue(definitionWithDefaults.getMarkerName(), definitionWithDefaults.getRuntimeMarkerName(), definitionWithDefaults.getRuntimeSimpleMarkerName(), creatingExchange);
+		return buildSlf4jReporter(definitionWithDefaults, loggerNameValue, markerNameValue, metricRegistry, definitionWithDefaults.buildFilter(creatingExchange, metricGroup));
+	}
+
+	/**
+	 * Builds the reporter of the configured format, a Slf4jReporter or a JsonBatchSlf4jReporter.
+	 *
+	 * @param metricRegistry
+	 * @return
+	 */
+	public ScheduledReporter buildScheduledReporter(final MetricRegistry metricRegistry, final Exchange creatingExchange, final MetricGroup metricGroup) {
+		Slf4jReporterDefinition definitionWithDefaults = getReporterDefinitionWithDefaults();
 
-		final String filterValue = evaluateValue(definitionWithDefaults.getFilter(), definitionWithDefaults.getRuntimeFilter(), definitionWithDefaults.getRuntimeSimpleFilter(), creatingExchange);
 		final String loggerNameValue = evaluateValue(definitionWithDefaults.getLoggerName(), definitionWithDefaults.getRuntimeLoggerName(), definitionWithDefaults.getRuntimeSimpleLoggerName(), creatingExchange);
 		final String markerNameValue = evaluateValue(definitionWithDefaults.getMarkerName(), definitionWithDefaults.getRuntimeMarkerName(), definitionWithDefaults.getRuntimeSimpleMarkerName(), creatingExchange);
+		final MetricFilter filter = definitionWithDefaults.buildFilter(creatingExchange, metricGroup);
 
-		// @formatter:off
-		Slf4jReporter slf4jReporter = Slf4jReporter
-				.forRegistry(metricRegistry)
-				.convertDurationsTo(definitionWithDefaults.getDurationUnit())
-				.convertRatesTo(definitionWithDefaults.getRateUnit())
-				.filter(new MetricFilter(){
-					@Override
-					public boolean matches(final String name, final Metric metric) {
-						if(!metricGroup.contains(metric)){
-							return false;
-						}
-						if(name==null || filterValue==null){
-							return true;
-						}
-						boolean result = name.matches(filterValue);
-						return result;
-					}
-						})
-				.outputTo(LoggerFactory.getLogger(loggerNameValue))
-				.markWith(MarkerFactory.getMarker(markerNameValue))
-				.build();
-		// @formatter:on
-		return slf4jReporter;
+		if (Slf4jFormat.parse(definitionWithDefaults.getFormat()) == Slf4jFormat.JSON_BATCH) {
+			return new JsonBatchSlf4jReporter(metricRegistry, filter, definitionWithDefaults.getRateUnit(), definitionWithDefaults.getDurationUnit(), LoggerFactory.getLogger(loggerNameValue), MarkerFactory.getMarker(markerNameValue), Clock.defaultClock());
+		}
+		return buildSlf4jReporter(definitionWithDefaults, loggerNameValue, markerNameValue, metricRegistry, filter);
 	}
 
 	/**
@@ -163,6 +198,13 @@ public class Slf4jReporterDefinition extends AbstractReporterDefinition<Slf4jRep
 		return this.durationUnit;
 	}
 
+	/**
+	 * @return the format
+	 */
+	public String getFormat() {
+		return this.format;
+	}
+
 	/**
 	 * @return the loggerName
 	 */
@@ -252,6 +294,14 @@ public class Slf4jReporterDefinition extends AbstractReporterDefinition<Slf4jRep
 		}
 	}
 
+	/**
+	 * @param format
+	 *            text or json-batch
+	 */
+	public void setFormat(final String format) {
+		this.format = format;
+	}
+
 	/**
 	 * @param loggerName
 	 *            the loggerName to set
@@ -359,12 +409,18 @@ public class Slf4jReporterDefinition extends AbstractReporterDefinition<Slf4jRep
 		builder.append(this.runtimeMarkerName);
 		builder.append(", runtimeSimpleMarkerName=");
 		builder.append(this.runtimeSimpleMarkerName);
+		builder.append(", format=");
+		builder.append(this.format);
 		builder.append(", getFilter()=");
 		builder.append(getFilter());
 		builder.append(", getRuntimeFilter()=");
 		builder.append(getRuntimeFilter());
 		builder.append(", getRuntimeSimpleFilter()=");
 		builder.append(getRuntimeSimpleFilter());
+		builder.append(", getOnlyChanged()=");
+		builder.append(getOnlyChanged());
+		builder.append(", getRefreshPeriods()=");
+		builder.append(getRefreshPeriods());
 		builder.append("]");
 		return builder.toString();
 	}
@@ -372,12 +428,43 @@ public class Slf4jReporterDefinition extends AbstractReporterDefinition<Slf4jRep
 	/**
 	 * @param durationUnit
 	 */
+	/**
+	 * @param definitionWithDefaults
+	 * @param loggerNameValue
+	 * @param markerNameValue
+	 * @param metricRegistry
+	 * @param filter
+	 * @return
+	 */
+	private static Slf4jReporter buildSlf4jReporter(final Slf4jReporterDefinition definitionWithDefaults, final String loggerNameValue, final String markerNameValue, final MetricRegistry metricRegistry, final MetricFilter filter) {
+		// @formatter:off
+		Slf4jReporter slf4jReporter = Slf4jReporter
+				.forRegistry(metricRegistry)
+				.convertDurationsTo(definitionWithDefaults.getDurationUnit())
+				.convertRatesTo(definitionWithDefaults.getRateUnit())
+				.filter(filter)
+				.outputTo(LoggerFactory.getLogger(loggerNameValue))
+				.markWith(MarkerFactory.getMarker(markerNameValue))
+				.build();
+		// @formatter:on
+		return slf4jReporter;
+	}
+
 	private void setDurationUnitIfNotNull(final TimeUnit durationUnit) {
 		if (durationUnit != null) {
 			setDurationUnit(durationUnit);
 		}
 	}
 
+	/**
+	 * @param format
+	 */
+	private void setFormatIfNotNull(final String format) {
+		if (format != null) {
+			setFormat(format);
+		}
+	}
+
 	/**
 	 * @param loggerName
 	 */
@@ -23,7 +23,7 @@ import org.apache.camel.spi.Language;
 /**
  * @author Steve Fosdal, <steve@initium.io>
  * @author Hector Veiga Ortiz, <hector@initium.io>
- * @version 1.2
+ * @version 1.4
  * @since 2014-04-21
  */
 public class ExpressionUtils {
@@ -68,6 +68,21 @@ public class ExpressionUtils {
 		return expression.evaluate(exchange, type);
 	}
 
+	/**
+	 * @param value
+	 * @return the Long value if createExpression would create a constant expression of a Long, otherwise null
+	 */
+	public static Long parseConstantLong(final String value) {
+		if (value == null || value.contains("$")) {
+			return null;
+		}
+		try {
+			return Long.valueOf(value.trim());
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
 	/**
 	 * This class is not intended to ever be instantiated.
 	 */
@@ -28,16 +28,22 @@ import io.initium.camel.component.metrics.definition.metric.CounterDefinition;
 import io.initium.camel.component.metrics.definition.metric.GaugeDefinition;
 import io.initium.camel.component.metrics.definition.metric.HistogramDefinition;
 import io.initium.camel.component.metrics.definition.metric.MeterDefinition;
+import io.initium.camel.component.metrics.definition.metric.ReservoirDefinition;
 import io.initium.camel.component.metrics.definition.reporter.ConsoleReporterDefinition;
 import io.initium.camel.component.metrics.definition.reporter.CsvReporterDefinition;
 import io.initium.camel.component.metrics.definition.reporter.GraphiteReporterDefinition;
+import io.initium.camel.component.metrics.definition.reporter.InfluxReporterDefinition;
 import io.initium.camel.component.metrics.definition.reporter.JmxReporterDefinition;
+import io.initium.camel.component.metrics.definition.reporter.MmapReporterDefinition;
+import io.initium.camel.component.metrics.definition.reporter.OtlpReporterDefinition;
+import io.initium.camel.component.metrics.definition.reporter.PrometheusReporterDefinition;
 import io.initium.camel.component.metrics.definition.reporter.Slf4jReporterDefinition;
+import io.initium.camel.component.metrics.definition.reporter.StatsdReporterDefinition;
 
 /**
  * @author Steve Fosdal, <steve@initium.io>
  * @author Hector Veiga Ortiz, <hector@initium.io>
- * @version 1.2
+ * @version 1.4
  * @since 2014-04-17
  */
 public final class GsonHelper {
@@ -66,12 +72,29 @@ public final class GsonHelper {
 	public static final Type	CSV_REPORTERS_TYPE				= new TypeToken<Collection<CsvReporterDefinition>>() {}.getType();
 	public static final Type	CSV_REPORTER_TYPE				= new TypeToken<CsvReporterDefinition>() {}.getType();
 
+	public static final Type	MMAP_REPORTERS_TYPE				= new TypeToken<Collection<MmapReporterDefinition>>() {}.getType();
+	public static final Type	MMAP_REPORTER_TYPE				= new TypeToken<MmapReporterDefinition>() {}.getType();
+
+	public static final Type	PROMETHEUS_REPORTERS_TYPE		= new TypeToken<Collection<PrometheusReporterDefinition>>() {}.getType();
+	public static final Type	PROMETHEUS_REPORTER_TYPE		= new TypeToken<PrometheusReporterDefinition>() {}.getType();
+
+	public static final Type	STATSD_REPORTERS_TYPE			= new TypeToken<Collection<StatsdReporterDefinition>>() {}.getType();
+	public static final Type	STATSD_REPORTER_TYPE			= new TypeToken<StatsdReporterDefinition>() {}.getType();
+
+	public static final Type	INFLUX_REPORTERS_TYPE			= new TypeToken<Collection<InfluxReporterDefinition>>() {}.getType();
+	public static final Type	INFLUX_REPORTER_TYPE			= new TypeToken<InfluxReporterDefinition>() {}.getType();
+
+	public static final Type	OTLP_REPORTERS_TYPE				= new TypeToken<Collection<OtlpReporterDefinition>>() {}.getType();
+	public static final Type	OTLP_REPORTER_TYPE				= new TypeToken<OtlpReporterDefinition>() {}.getType();
+
 	public static final Type	TIME_UNITS_TYPE					= new TypeToken<Collection<TimeUnit>>() {}.getType();
 	public static final Type	TIME_UNIT_TYPE					= new TypeToken<TimeUnit>() {}.getType();
 
 	public static final Type	HISTOGRAM_DEFINITIONS_TYPE		= new TypeToken<Collection<HistogramDefinition>>() {}.getType();
 	public static final Type	HISTOGRAM_DEFINITION_TYPE		= new TypeToken<HistogramDefinition>() {}.getType();
 
+	public static final Type	RESERVOIR_DEFINITION_TYPE		= new TypeToken<ReservoirDefinition>() {}.getType();
+
 	public static final Type	COUNTER_DEFINITIONS_TYPE		= new TypeToken<Collection<CounterDefinition>>() {}.getType();
 	public static final Type	COUNTER_DEFINITION_TYPE			= new TypeToken<CounterDefinition>() {}.getType();
 
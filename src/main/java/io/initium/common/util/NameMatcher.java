@@ -0,0 +1,293 @@
+// @formatter:off
+/**
+ * Copyright 2014 Initium.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+// @formatter:on
+package io.initium.common.util;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Pattern;
+
+/**
+ * A compiled metric name filter. A filter is a regular expression matched against the whole name, as with
+ * String.matches, or a glob when prefixed with "glob:", where * matches any run of characters and ? any one character.
+ * Filters that are a literal name, a literal prefix followed by .* or an alternation of literal names are matched
+ * without a regular expression; the decisions of the remaining regular expressions are memoized per name. Compiled
+ * filters are cached, so every reporter using the same filter shares one matcher.
+ *
+ * @author Steve Fosdal, <steve@initium.io>
+ * @author Hector Veiga Ortiz, <hector@initium.io>
+ * @version 1.4
+ * @since 2026-10-18
+ */
+public abstract class NameMatcher {
+
+	/**
+	 * Matches every name.
+	 */
+	private static final class AllMatcher extends NameMatcher {
+		@Override
+		public boolean matches(final String name) {
+			return true;
+		}
+
+		@Override
+		public String toString() {
+			return "all";
+		}
+	}
+
+	/**
+	 * Matches glob patterns, backtracking to the last * only.
+	 */
+	private static final class GlobMatcher extends NameMatcher {
+		private final String	glob;
+
+		private GlobMatcher(final String glob) {
+			this.glob = glob;
+		}
+
+		@Override
+		public boolean matches(final String name) {
+			int nameIndex = 0;
+			int globIndex = 0;
+			int starGlobIndex = -1;
+			int starNameIndex = 0;
+			while (nameIndex < name.length()) {
+				if (globIndex < this.glob.length() && (this.glob.charAt(globIndex) == '?' || this.glob.charAt(globIndex) == name.charAt(nameIndex))) {
+					nameIndex++;
+					globIndex++;
+				} else if (globIndex < this.glob.length() && this.glob.charAt(globIndex) == '*') {
+					starGlobIndex = globIndex++;
+					starNameIndex = nameIndex;
+				} else if (starGlobIndex >= 0) {
+					globIndex = starGlobIndex + 1;
+					nameIndex = ++starNameIndex;
+				} else {
+					return false;
+				}
+			}
+			while (globIndex < this.glob.length() && this.glob.charAt(globIndex) == '*') {
+				globIndex++;
+			}
+			return globIndex == this.glob.length();
+		}
+
+		@Override
+		public String toString() {
+			return "glob[" + this.glob + "]";
+		}
+	}
+
+	/**
+	 * Matches one or more literal names.
+	 */
+	private static final class LiteralMatcher extends NameMatcher {
+		private final Set<String>	literals;
+
+		private LiteralMatcher(final Set<String> literals) {
+			this.literals = literals;
+		}
+
+		@Override
+		public boolean matches(final String name) {
+			return this.literals.contains(name);
+		}
+
+		@Override
+		public String toString() {
+			return "literal" + this.literals;
+		}
+	}
+
+	/**
+	 * Matches names starting with a literal prefix.
+	 */
+	private static final class PrefixMatcher extends NameMatcher {
+		private final String	prefix;
+
+		private PrefixMatcher(final String prefix) {
+			this.prefix = prefix;
+		}
+
+		@Override
+		public boolean matches(final String name) {
+			return name.startsWith(this.prefix);
+		}
+
+		@Override
+		public String toString() {
+			return "prefix[" + this.prefix + "]";
+		}
+	}
+
+	/**
+	 * Matches a compiled regular expression, remembering the decision for each name.
+	 */
+	private static final class RegexMatcher extends NameMatcher {
+		private final Pattern							pattern;
+		private final ConcurrentMap<String, Boolean>	decisions	= new ConcurrentHashMap<String, Boolean>();
+
+		private RegexMatcher(final Pattern pattern) {
+			this.pattern = pattern;
+		}
+
+		@Override
+		public boolean matches(final String name) {
+			Boolean decision = this.decisions.get(name);
+			if (decision == null) {
+				decision = this.pattern.matcher(name).matches();
+				if (this.decisions.size() >= MAX_MEMOIZED_NAMES) {
+					// names of evicted metric groups would otherwise pile up
+					this.decisions.clear();
+				}
+				this.decisions.put(name, decision);
+			}
+			return decision;
+		}
+
+		@Override
+		public String toString() {
+			return "regex[" + this.pattern + "]";
+		}
+	}
+
+	// constants
+	public static final NameMatcher							ALL						= new AllMatcher();
+	public static final String								GLOB_PREFIX				= "glob:";
+	private static final int								MAX_CACHED_MATCHERS		= 1024;
+	private static final int								MAX_MEMOIZED_NAMES		= 1 << 17;
+	private static final String								REGEX_METACHARACTERS	= "\\^$.|?*+()[]{}";
+
+	// fields
+	private static final ConcurrentMap<String, NameMatcher>	MATCHERS				= new ConcurrentHashMap<String, NameMatcher>();
+
+	/**
+	 * @param filter
+	 *            a regular expression, a glob prefixed with "glob:", or null to match every name
+	 * @return the compiled filter, shared by every caller with the same filter
+	 */
+	public static NameMatcher compile(final String filter) {
+		if (filter == null) {
+			return ALL;
+		}
+		NameMatcher nameMatcher = MATCHERS.get(filter);
+		if (nameMatcher == null) {
+			nameMatcher = doCompile(filter);
+			if (MATCHERS.size() < MAX_CACHED_MATCHERS) {
+				NameMatcher existingNameMatcher = MATCHERS.putIfAbsent(filter, nameMatcher);
+				if (existingNameMatcher != null) {
+					nameMatcher = existingNameMatcher;
+				}
+			}
+		}
+		return nameMatcher;
+	}
+
+	/**
+	 * @param filter
+	 * @return
+	 */
+	private static NameMatcher doCompile(final String filter) {
+		if (filter.startsWith(GLOB_PREFIX)) {
+			String glob = filter.substring(GLOB_PREFIX.length());
+			int firstWildcard = indexOfWildcard(glob);
+			if (firstWildcard < 0) {
+				return new LiteralMatcher(new HashSet<String>(Arrays.asList(glob)));
+			} else if (firstWildcard == glob.length() - 1 && glob.charAt(firstWildcard) == '*') {
+				return new PrefixMatcher(glob.substring(0, firstWildcard));
+			}
+			return new GlobMatcher(glob);
+		}
+		String body = filter;
+		if (body.startsWith("^")) {
+			body = body.substring(1);
+		}
+		if (body.endsWith("$") && !body.endsWith("\\$")) {
+			body = body.substring(0, body.length() - 1);
+		}
+		String literal = unescapeLiteral(body);
+		if (literal != null) {
+			return new LiteralMatcher(new HashSet<String>(Arrays.asList(literal)));
+		}
+		if (body.endsWith(".*") && !body.endsWith("\\.*")) {
+			String prefix = unescapeLiteral(body.substring(0, body.length() - 2));
+			if (prefix != null) {
+				return new PrefixMatcher(prefix);
+			}
+		}
+		if (body.startsWith("(") && body.endsWith(")") && !body.contains("\\|")) {
+			Set<String> literals = new HashSet<String>();
+			for (String alternative : body.substring(1, body.length() - 1).split("\\|", -1)) {
+				String alternativeLiteral = unescapeLiteral(alternative);
+				if (alternativeLiteral == null) {
+					literals = null;
+					break;
+				}
+				literals.add(alternativeLiteral);
+			}
+			if (literals != null) {
+				return new LiteralMatcher(literals);
+			}
+		}
+		return new RegexMatcher(Pattern.compile(filter));
+	}
+
+	/**
+	 * @param glob
+	 * @return
+	 */
+	private static int indexOfWildcard(final String glob) {
+		for (int i = 0; i < glob.length(); i++) {
+			char c = glob.charAt(i);
+			if (c == '*' || c == '?') {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @param regex
+	 * @return the string the regular expression matches if it only matches that one string, otherwise null
+	 */
+	private static String unescapeLiteral(final String regex) {
+		StringBuilder literal = new StringBuilder(regex.length());
+		for (int i = 0; i < regex.length(); i++) {
+			char c = regex.charAt(i);
+			if (c == '\\') {
+				if (i + 1 == regex.length() || REGEX_METACHARACTERS.indexOf(regex.charAt(i + 1)) < 0) {
+					// escapes such as \d are classes, not characters
+					return null;
+				}
+				literal.append(regex.charAt(++i));
+			} else if (REGEX_METACHARACTERS.indexOf(c) >= 0) {
+				return null;
+			} else {
+				literal.append(c);
+			}
+		}
+		return literal.toString();
+	}
+
+	/**
+	 * @param name
+	 * @return true if the name passes the filter
+	 */
+	public abstract boolean matches(String name);
+
+}
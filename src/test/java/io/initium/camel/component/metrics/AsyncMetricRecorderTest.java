@@ -0,0 +1,221 @@
+// @formatter:off
+/**
+ * Copyright 2014 Initium.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+// @formatter:on
+package io.initium.camel.component.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.camel.ProducerTemplate;
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.test.junit4.CamelTestSupport;
+import org.apache.camel.util.ServiceHelper;
+import org.junit.Test;
+
+import com.codahale.metrics.MetricRegistry;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+
+public class AsyncMetricRecorderTest extends CamelTestSupport {
+
+	// constants
+	private static final int	THREADS					= 4;
+	private static final int	EXCHANGES_PER_THREAD	= 2000;
+	private static final long	DRAIN_TIMEOUT_MILLIS	= 10000;
+
+	@Test
+	public void asyncRecordingAppliesAllExchanges() throws Exception {
+		int sent = sendConcurrently("direct:async");
+		AsyncMetricRecorder asyncMetricRecorder = awaitDrained("asyncTest");
+		MetricRegistry metricRegistry = getMetricRegistry();
+		assertThat(metricRegistry.meter("asyncTest.rate").getCount(), equalTo((long) sent));
+		assertThat(metricRegistry.counter("asyncTest.size").getCount(), equalTo(3L * sent));
+		assertThat(metricRegistry.histogram("asyncTest.sizes").getCount(), equalTo((long) sent));
+		assertThat(asyncMetricRecorder.getDropped(), equalTo(0L));
+	}
+
+	@Test
+	public void blockingPolicyNeverDrops() throws Exception {
+		int sent = sendConcurrently("direct:block");
+		AsyncMetricRecorder asyncMetricRecorder = awaitDrained("asyncBlock");
+		assertThat(getMetricRegistry().meter("asyncBlock.rate").getCount(), equalTo((long) sent));
+		assertThat(asyncMetricRecorder.getDropped(), equalTo(0L));
+	}
+
+	@Test
+	public void droppingPolicyCountsEveryExchange() throws Exception {
+		int sent = sendConcurrently("direct:drop");
+		AsyncMetricRecorder asyncMetricRecorder = awaitDrained("asyncDrop");
+		long applied = getMetricRegistry().meter("asyncDrop.rate").getCount();
+		assertThat(applied + asyncMetricRecorder.getDropped(), equalTo((long) sent));
+		assertThat(getMetricRegistry().counter("asyncDrop.async.dropped").getCount(), equalTo(asyncMetricRecorder.getDropped()));
+	}
+
+	@Test
+	public void stopUnderLoadLosesNothing() throws Exception {
+		AsyncMetricRecorder asyncMetricRecorder = getAsyncMetricRecorder("asyncStop");
+		final ProducerTemplate producerTemplate = this.context.createProducerTemplate();
+		ExecutorService executorService = Executors.newFixedThreadPool(THREADS);
+		try {
+			List<Future<Integer>> futures = startSending(executorService, producerTemplate, "direct:stop");
+			// stop while the producers are publishing
+			long deadline = System.currentTimeMillis() + DRAIN_TIMEOUT_MILLIS;
+			while (getMetricRegistry().meter("asyncStop.rate").getCount() < EXCHANGES_PER_THREAD && System.currentTimeMillis() < deadline) {
+				TimeUnit.MILLISECONDS.sleep(1);
+			}
+			ServiceHelper.stopService(asyncMetricRecorder);
+			int sent = 0;
+			for (Future<Integer> future : futures) {
+				sent += future.get();
+			}
+			assertThat(getMetricRegistry().meter("asyncStop.rate").getCount(), equalTo((long) sent));
+			assertThat(getMetricRegistry().counter("asyncStop.size").getCount(), equalTo(3L * sent));
+			assertThat(asyncMetricRecorder.getDropped(), equalTo(0L));
+			assertThat(asyncMetricRecorder.getDepth(), equalTo(0L));
+		} finally {
+			executorService.shutdownNow();
+			producerTemplate.stop();
+		}
+	}
+
+	@Test
+	public void idleApplierParksUntilWokenUp() throws Exception {
+		this.template.sendBodyAndHeader("direct:idle", "test", "size", 1);
+		awaitDrained("asyncIdle");
+		Thread applierThread = null;
+		for (Thread thread : Thread.getAllStackTraces().keySet()) {
+			if (thread.getName().contains("MetricsApplier[asyncIdle]")) {
+				applierThread = thread;
+			}
+		}
+		assertNotNull(applierThread);
+		// parked without a timeout, rather than waking up periodically
+		long deadline = System.currentTimeMillis() + DRAIN_TIMEOUT_MILLIS;
+		while (applierThread.getState() != Thread.State.WAITING && System.currentTimeMillis() < deadline) {
+			TimeUnit.MILLISECONDS.sleep(1);
+		}
+		assertThat(applierThread.getState(), equalTo(Thread.State.WAITING));
+
+		// and woken up by the next exchange
+		this.template.sendBodyAndHeader("direct:idle", "test", "size", 2);
+		deadline = System.currentTimeMillis() + DRAIN_TIMEOUT_MILLIS;
+		while (getMetricRegistry().meter("asyncIdle.rate").getCount() < 2 && System.currentTimeMillis() < deadline) {
+			TimeUnit.MILLISECONDS.sleep(1);
+		}
+		assertThat(getMetricRegistry().meter("asyncIdle.rate").getCount(), equalTo(2L));
+	}
+
+	@Override
+	protected RouteBuilder createRouteBuilder() {
+		return new RouteBuilder() {
+			@Override
+			public void configure() {
+				from("direct:async").to("metrics://asyncTest?async=true&jmxReporters=[{}]&counter={value=3,name=size}&histogram={value='${header.size}',name=sizes}");
+				from("direct:block").to("metrics://asyncBlock?async=true&asyncBufferSize=4&asyncOverflowPolicy=block&jmxReporters=[{}]");
+				from("direct:stop").to("metrics://asyncStop?async=true&asyncBufferSize=64&asyncOverflowPolicy=block&jmxReporters=[{}]&counter={value=3,name=size}");
+				from("direct:idle").to("metrics://asyncIdle?async=true&jmxReporters=[{}]");
+				from("direct:drop").to("metrics://asyncDrop?async=true&asyncBufferSize=2&asyncOverflowPolicy=drop&jmxReporters=[{}]");
+			}
+		};
+	}
+
+	/**
+	 * @param name
+	 * @return the recorder of the endpoint, once everything it was given has been applied
+	 * @throws Exception
+	 */
+	private AsyncMetricRecorder awaitDrained(final String name) throws Exception {
+		AsyncMetricRecorder asyncMetricRecorder = getAsyncMetricRecorder(name);
+		long deadline = System.currentTimeMillis() + DRAIN_TIMEOUT_MILLIS;
+		while (asyncMetricRecorder.getDepth() > 0 && System.currentTimeMillis() < deadline) {
+			TimeUnit.MILLISECONDS.sleep(1);
+		}
+		assertThat(asyncMetricRecorder.getDepth(), equalTo(0L));
+		return asyncMetricRecorder;
+	}
+
+	/**
+	 * @param name
+	 * @return the recorder of the endpoint
+	 */
+	private AsyncMetricRecorder getAsyncMetricRecorder(final String name) {
+		MetricsEndpoint endpoint = null;
+		for (Object candidate : this.context.getEndpoints()) {
+			if (candidate instanceof MetricsEndpoint && name.equals(((MetricsEndpoint) candidate).getName())) {
+				endpoint = (MetricsEndpoint) candidate;
+			}
+		}
+		assertNotNull(endpoint);
+		AsyncMetricRecorder asyncMetricRecorder = endpoint.getAsyncMetricRecorder();
+		assertNotNull(asyncMetricRecorder);
+		return asyncMetricRecorder;
+	}
+
+	/**
+	 * @return
+	 */
+	private MetricRegistry getMetricRegistry() {
+		return this.context.getComponent("metrics", MetricsComponent.class).getMetricRegistry();
+	}
+
+	/**
+	 * @param uri
+	 * @return the number of exchanges sent
+	 * @throws Exception
+	 */
+	private int sendConcurrently(final String uri) throws Exception {
+		ProducerTemplate producerTemplate = this.context.createProducerTemplate();
+		ExecutorService executorService = Executors.newFixedThreadPool(THREADS);
+		try {
+			List<Future<Integer>> futures = startSending(executorService, producerTemplate, uri);
+			int sent = 0;
+			for (Future<Integer> future : futures) {
+				sent += future.get();
+			}
+			return sent;
+		} finally {
+			executorService.shutdownNow();
+			producerTemplate.stop();
+		}
+	}
+
+	/**
+	 * @param executorService
+	 * @param producerTemplate
+	 * @param uri
+	 * @return the number of exchanges each thread sent, once it is done
+	 */
+	private List<Future<Integer>> startSending(final ExecutorService executorService, final ProducerTemplate producerTemplate, final String uri) {
+		List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+		for (int i = 0; i < THREADS; i++) {
+			futures.add(executorService.submit(new Callable<Integer>() {
+				@Override
+				public Integer call() throws Exception {
+					for (int j = 0; j < EXCHANGES_PER_THREAD; j++) {
+						producerTemplate.sendBodyAndHeader(uri, "test", "size", j);
+					}
+					return EXCHANGES_PER_THREAD;
+				}
+			}));
+		}
+		return futures;
+	}
+
+}
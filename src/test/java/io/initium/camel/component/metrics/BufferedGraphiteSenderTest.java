@@ -0,0 +1,277 @@
+// @formatter:off
+/**
+ * Copyright 2014 Initium.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+// @formatter:on
+package io.initium.camel.component.metrics;
+
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.camel.impl.DefaultCamelContext;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.initium.camel.component.metrics.BufferedGraphiteSender.Record;
+import io.initium.camel.component.metrics.definition.reporter.GraphiteReporterDefinition.GraphiteProtocol;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class BufferedGraphiteSenderTest {
+
+	// constants
+	private static final String		HOST			= "127.0.0.1";
+	private static final int		TIMEOUT_MILLIS	= 5000;
+	private static final Charset	UTF_8			= Charset.forName("UTF-8");
+	private static final Charset	ISO_8859_1		= Charset.forName("ISO-8859-1");
+
+	// fields
+	private DefaultCamelContext		camelContext;
+	private MetricsComponent		metricsComponent;
+
+	/**
+	 * @param value
+	 * @return the BINUNICODE opcode of the value, one char per byte
+	 */
+	private static String binaryUnicode(final String value) {
+		byte[] bytes = value.getBytes(UTF_8);
+		return "X" + (char) bytes.length + "\0\0\0" + new String(bytes, ISO_8859_1);
+	}
+
+	/**
+	 * @return a port nothing listens on
+	 * @throws IOException
+	 */
+	private static int freePort() throws IOException {
+		ServerSocket serverSocket = new ServerSocket(0);
+		int port = serverSocket.getLocalPort();
+		serverSocket.close();
+		return port;
+	}
+
+	@Before
+	public void setUp() throws Exception {
+		this.camelContext = new DefaultCamelContext();
+		this.metricsComponent = new MetricsComponent();
+		this.camelContext.addComponent("metrics", this.metricsComponent);
+		this.camelContext.start();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		this.camelContext.stop();
+	}
+
+	@Test
+	public void fullBufferDropsOldestWithoutBlocking() throws Exception {
+		BufferedGraphiteSender sender = BufferedGraphiteSender.open(this.metricsComponent, GraphiteProtocol.PLAINTEXT, HOST, freePort(), 10, 5, 60000, 60000);
+		try {
+			long start = System.nanoTime();
+			for (int i = 0; i < 1000; i++) {
+				sender.send("name", Integer.toString(i), i);
+			}
+			assertTrue("send blocked", System.nanoTime() - start < 1000000000L);
+			BufferedGraphiteSender.Connection connection = sender.getConnection();
+			assertTrue(connection.getBufferedCount() <= 5);
+			// at most one batch is held by the writer thread
+			assertTrue(connection.getDroppedCount() >= 1000 - 5 - 10);
+			assertThat(connection.getSentCount(), equalTo(0L));
+		} finally {
+			sender.close();
+		}
+	}
+
+	@Test
+	public void pickleFramesHoldBatches() throws Exception {
+		ServerSocket serverSocket = new ServerSocket(0);
+		serverSocket.setSoTimeout(TIMEOUT_MILLIS);
+		BufferedGraphiteSender sender = BufferedGraphiteSender.open(this.metricsComponent, GraphiteProtocol.PICKLE, HOST, serverSocket.getLocalPort(), 2, 100);
+		try {
+			sender.send("a.b", "1", 10);
+			sender.send("a c", "2", 20);
+			sender.send("a'd\\", "3", 30);
+			Socket socket = serverSocket.accept();
+			socket.setSoTimeout(TIMEOUT_MILLIS);
+			DataInputStream dataInputStream = new DataInputStream(socket.getInputStream());
+			StringBuilder tuples = new StringBuilder();
+			int tupleCount = 0;
+			while (tupleCount < 3) {
+				byte[] payload = new byte[dataInputStream.readInt()];
+				dataInputStream.readFully(payload);
+				String frame = new String(payload, ISO_8859_1);
+				assertTrue(frame, frame.startsWith("(l") && frame.endsWith("."));
+				String frameTuples = frame.substring(2, frame.length() - 1);
+				int frameTupleCount = frameTuples.split("tta", -1).length - 1;
+				assertTrue(frame, frameTupleCount >= 1 && frameTupleCount <= 2);
+				tupleCount += frameTupleCount;
+				tuples.append(frameTuples);
+			}
+			// quotes and backslashes are taken as they are
+			String expected = "(" + binaryUnicode("a.b") + "(L10L\n" + binaryUnicode("1") + "tta(" + binaryUnicode("a-c") + "(L20L\n" + binaryUnicode("2") + "tta(" + binaryUnicode("a'd\\") + "(L30L\n" + binaryUnicode("3") + "tta";
+			assertThat(tuples.toString(), equalTo(expected));
+			socket.close();
+		} finally {
+			sender.close();
+			serverSocket.close();
+		}
+	}
+
+	@Test
+	public void oversizedPickleFrameIsDiscarded() throws Exception {
+		ServerSocket serverSocket = new ServerSocket(0);
+		serverSocket.setSoTimeout(TIMEOUT_MILLIS);
+		BufferedGraphiteSender sender = BufferedGraphiteSender.open(this.metricsComponent, GraphiteProtocol.PICKLE, HOST, serverSocket.getLocalPort(), 1, 100);
+		try {
+			StringBuilder name = new StringBuilder(BufferedGraphiteSender.MAX_PICKLE_FRAME_SIZE);
+			while (name.length() <= BufferedGraphiteSender.MAX_PICKLE_FRAME_SIZE) {
+				name.append("abcdefgh");
+			}
+			sender.send(name.toString(), "1", 10);
+			sender.send("a.b", "2", 20);
+			Socket socket = serverSocket.accept();
+			socket.setSoTimeout(TIMEOUT_MILLIS);
+			DataInputStream dataInputStream = new DataInputStream(socket.getInputStream());
+			byte[] payload = new byte[dataInputStream.readInt()];
+			dataInputStream.readFully(payload);
+			// the next value is sent rather than the oversized one again
+			assertTrue(new String(payload, ISO_8859_1).contains(binaryUnicode("a.b")));
+			assertThat(sender.getConnection().getDiscardedCount(), equalTo(1L));
+			socket.close();
+		} finally {
+			sender.close();
+			serverSocket.close();
+		}
+	}
+
+	@Test
+	public void plaintextKeepsOneConnection() throws Exception {
+		ServerSocket serverSocket = new ServerSocket(0);
+		serverSocket.setSoTimeout(TIMEOUT_MILLIS);
+		BufferedGraphiteSender sender = BufferedGraphiteSender.open(this.metricsComponent, GraphiteProtocol.PLAINTEXT, HOST, serverSocket.getLocalPort(), 100, 100);
+		BufferedGraphiteSender otherSender = BufferedGraphiteSender.open(this.metricsComponent, GraphiteProtocol.PLAINTEXT, HOST, serverSocket.getLocalPort(), 100, 100);
+		try {
+			assertTrue(sender.getConnection() == otherSender.getConnection());
+			// other settings get their own connection
+			BufferedGraphiteSender otherSettingsSender = BufferedGraphiteSender.open(this.metricsComponent, GraphiteProtocol.PLAINTEXT, HOST, serverSocket.getLocalPort(), 10, 100);
+			assertTrue(sender.getConnection() != otherSettingsSender.getConnection());
+			otherSettingsSender.close();
+			sender.send("a.b", "1", 10);
+			Socket socket = serverSocket.accept();
+			socket.setSoTimeout(TIMEOUT_MILLIS);
+			BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), UTF_8));
+			assertThat(reader.readLine(), equalTo("a.b 1 10"));
+			otherSender.send("a.c", "2", 20);
+			assertThat(reader.readLine(), equalTo("a.c 2 20"));
+			socket.close();
+		} finally {
+			sender.close();
+			otherSender.close();
+			serverSocket.close();
+		}
+	}
+
+	@Test
+	public void stoppingTheComponentStopsItsConnections() throws Exception {
+		BufferedGraphiteSender sender = BufferedGraphiteSender.open(this.metricsComponent, GraphiteProtocol.PLAINTEXT, HOST, freePort(), 100, 100);
+		assertThat(this.metricsComponent.getGraphiteConnections().size(), equalTo(1));
+		this.metricsComponent.stop();
+		assertTrue(this.metricsComponent.getGraphiteConnections().isEmpty());
+		assertTrue(sender.getConnection().isStopped());
+		// closing a sender of a stopped connection is harmless
+		sender.close();
+	}
+
+	@Test
+	public void reconnectsOnceGraphiteIsUp() throws Exception {
+		int port = freePort();
+		BufferedGraphiteSender sender = BufferedGraphiteSender.open(this.metricsComponent, GraphiteProtocol.PLAINTEXT, HOST, port, 100, 100, 10, 100);
+		try {
+			sender.send("a.b", "1", 10);
+			long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+			while (sender.getFailures() == 0 && System.currentTimeMillis() < deadline) {
+				Thread.sleep(10);
+			}
+			assertTrue(sender.getFailures() > 0);
+			ServerSocket serverSocket = new ServerSocket();
+			serverSocket.setReuseAddress(true);
+			serverSocket.bind(new InetSocketAddress(HOST, port));
+			serverSocket.setSoTimeout(TIMEOUT_MILLIS);
+			try {
+				Socket socket = serverSocket.accept();
+				socket.setSoTimeout(TIMEOUT_MILLIS);
+				BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), UTF_8));
+				// the value buffered while graphite was down is not lost
+				assertThat(reader.readLine(), equalTo("a.b 1 10"));
+				socket.close();
+			} finally {
+				serverSocket.close();
+			}
+		} finally {
+			sender.close();
+		}
+	}
+
+	@Test
+	public void udpSendsBatchesAsDatagrams() throws Exception {
+		DatagramSocket datagramSocket = new DatagramSocket(new InetSocketAddress(HOST, 0));
+		datagramSocket.setSoTimeout(TIMEOUT_MILLIS);
+		BufferedGraphiteSender sender = BufferedGraphiteSender.open(this.metricsComponent, GraphiteProtocol.UDP, HOST, datagramSocket.getLocalPort(), 100, 100);
+		try {
+			sender.send("a.b", "1", 10);
+			DatagramPacket datagramPacket = new DatagramPacket(new byte[1024], 1024);
+			datagramSocket.receive(datagramPacket);
+			assertThat(new String(datagramPacket.getData(), 0, datagramPacket.getLength(), UTF_8), equalTo("a.b 1 10\n"));
+		} finally {
+			sender.close();
+			datagramSocket.close();
+		}
+	}
+
+	@Test
+	public void udpDatagramsHoldWholeLinesUpToTheMaximumSize() throws Exception {
+		List<Record> batch = new ArrayList<Record>();
+		StringBuilder longName = new StringBuilder();
+		while (longName.length() <= BufferedGraphiteSender.MAX_DATAGRAM_SIZE) {
+			longName.append("abcdefgh");
+		}
+		batch.add(BufferedGraphiteSender.record(longName.toString(), "0", 0));
+		for (int i = 0; i < 200; i++) {
+			batch.add(BufferedGraphiteSender.record("a.b" + i, Integer.toString(i), i));
+		}
+		List<byte[]> datagrams = BufferedGraphiteSender.datagrams(batch, BufferedGraphiteSender.MAX_DATAGRAM_SIZE);
+		assertTrue(datagrams.size() > 1);
+		StringBuilder lines = new StringBuilder();
+		for (byte[] datagram : datagrams) {
+			assertTrue(datagram.length <= BufferedGraphiteSender.MAX_DATAGRAM_SIZE);
+			String text = new String(datagram, UTF_8);
+			assertTrue(text.endsWith("\n"));
+			lines.append(text);
+		}
+		// the line too long for any datagram is left out
+		assertThat(lines.toString(), equalTo(new String(BufferedGraphiteSender.plaintext(batch.subList(1, batch.size())), UTF_8)));
+	}
+
+}
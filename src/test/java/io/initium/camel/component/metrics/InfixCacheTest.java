@@ -0,0 +1,125 @@
+// @formatter:off
+/**
+ * Copyright 2014 Initium.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+// @formatter:on
+package io.initium.camel.component.metrics;
+
+import java.lang.management.ManagementFactory;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.Produce;
+import org.apache.camel.ProducerTemplate;
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.impl.DefaultExchange;
+import org.apache.camel.test.junit4.CamelTestSupport;
+import org.junit.Assume;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.sameInstance;
+
+public class InfixCacheTest extends CamelTestSupport {
+
+	// logging
+	private static final String	SELF			= Thread.currentThread().getStackTrace()[1].getClassName();
+	private static final Logger	LOGGER			= LoggerFactory.getLogger(SELF);
+
+	// constants
+	private static final String	ENDPOINT_URI	= "metrics://cached?timing=start&infix='${header.infix}'&jmxReporters=[{}]";
+	private static final int	LOOKUPS			= 20000;
+
+	@Produce(uri = "direct:start")
+	protected ProducerTemplate	template;
+
+	@Test
+	public void repeatedInfixValueResolvesToTheSameGroup() throws Exception {
+		this.template.sendBodyAndHeader("test", "infix", "a");
+		MetricsEndpoint endpoint = this.context.getEndpoint(ENDPOINT_URI, MetricsEndpoint.class);
+		Exchange exchange = new DefaultExchange(this.context);
+		ResolvedMetricGroup first = endpoint.resolveMetricGroup("a", exchange);
+		int metricGroupCount = endpoint.getMetricComponent().getMetricGroups().size();
+
+		// a value equal to the cached one but not the same string
+		ResolvedMetricGroup second = endpoint.resolveMetricGroup(new String("a"), exchange);
+		assertThat(second, sameInstance(first));
+		// the names built when the group was resolved are the ones kept
+		assertThat(second.getFullName(), sameInstance(first.getFullName()));
+		assertThat(second.getFullTimerName(), sameInstance(first.getFullTimerName()));
+		assertThat(endpoint.getMetricComponent().getMetricGroups().size(), equalTo(metricGroupCount));
+		assertThat(endpoint.getInfixMetricGroups().size(), equalTo(1));
+
+		this.template.sendBodyAndHeader("test", "infix", "a");
+		assertThat(endpoint.resolveMetricGroup("a", exchange), sameInstance(first));
+	}
+
+	@Test
+	public void cacheHitAllocatesNothing() throws Exception {
+		com.sun.management.ThreadMXBean threadMXBean = getThreadMXBean();
+		Assume.assumeTrue(threadMXBean != null && threadMXBean.isThreadAllocatedMemorySupported());
+		threadMXBean.setThreadAllocatedMemoryEnabled(true);
+		long threadId = Thread.currentThread().getId();
+
+		this.template.sendBodyAndHeader("test", "infix", "a");
+		MetricsEndpoint endpoint = this.context.getEndpoint(ENDPOINT_URI, MetricsEndpoint.class);
+		Exchange exchange = new DefaultExchange(this.context);
+		String infixValue = "a";
+
+		// warm up
+		resolve(endpoint, infixValue, exchange);
+
+		long before = threadMXBean.getThreadAllocatedBytes(threadId);
+		resolve(endpoint, infixValue, exchange);
+		long allocated = threadMXBean.getThreadAllocatedBytes(threadId) - before;
+
+		LOGGER.info("allocated {} bytes for {} cached lookups", allocated, LOOKUPS);
+		// less than one byte per lookup, what is left is the measurement itself
+		assertThat("bytes allocated: " + allocated, allocated < LOOKUPS, equalTo(true));
+	}
+
+	/**
+	 * @return the HotSpot ThreadMXBean, or null if not available
+	 */
+	private com.sun.management.ThreadMXBean getThreadMXBean() {
+		java.lang.management.ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+		if (threadMXBean instanceof com.sun.management.ThreadMXBean) {
+			return (com.sun.management.ThreadMXBean) threadMXBean;
+		}
+		return null;
+	}
+
+	/**
+	 * @param endpoint
+	 * @param infixValue
+	 * @param exchange
+	 * @throws Exception
+	 */
+	private void resolve(final MetricsEndpoint endpoint, final String infixValue, final Exchange exchange) throws Exception {
+		for (int i = 0; i < LOOKUPS; i++) {
+			endpoint.resolveMetricGroup(infixValue, exchange);
+		}
+	}
+
+	@Override
+	protected RouteBuilder createRouteBuilder() {
+		return new RouteBuilder() {
+			@Override
+			public void configure() {
+				from("direct:start").to(ENDPOINT_URI);
+			}
+		};
+	}
+
+}
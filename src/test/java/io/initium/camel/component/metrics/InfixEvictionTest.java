@@ -0,0 +1,142 @@
+// @formatter:off
+/**
+ * Copyright 2014 Initium.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+// @formatter:on
+package io.initium.camel.component.metrics;
+
+import org.apache.camel.Produce;
+import org.apache.camel.ProducerTemplate;
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.test.junit4.CamelTestSupport;
+import org.junit.Test;
+
+import com.codahale.metrics.MetricRegistry;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+
+public class InfixEvictionTest extends CamelTestSupport {
+
+	// constants
+	private static final long		TIMEOUT_MILLIS	= 5000;
+
+	@Produce(uri = "direct:startOne")
+	protected ProducerTemplate		templateOne;
+
+	@Produce(uri = "direct:startTwo")
+	protected ProducerTemplate		templateTwo;
+
+	@Produce(uri = "direct:startThree")
+	protected ProducerTemplate		templateThree;
+
+	@Test
+	public void leastRecentlyUsedGroupIsEvicted() throws Exception {
+		this.templateOne.sendBodyAndHeader("test", "infix", "a");
+		this.templateOne.sendBodyAndHeader("test", "infix", "b");
+		this.templateOne.sendBodyAndHeader("test", "infix", "a");
+		this.templateOne.sendBodyAndHeader("test", "infix", "c");
+		// evicted on the eviction thread
+		awaitRemoval("bounded.b");
+		MetricRegistry metricRegistry = getMetricRegistry();
+		assertThat(metricRegistry.getMetrics().containsKey("bounded.b.rate"), equalTo(false));
+		assertThat(metricRegistry.getMetrics().containsKey("bounded.b.since.seconds"), equalTo(false));
+		assertThat(metricRegistry.getMetrics().containsKey("bounded.b.size"), equalTo(false));
+		assertThat(metricRegistry.meter("bounded.a.rate").getCount(), equalTo(2L));
+		assertThat(metricRegistry.meter("bounded.c.rate").getCount(), equalTo(1L));
+		assertThat(getMetricsComponent().getMetricGroups().containsKey("bounded.b"), equalTo(false));
+		assertThat(metricRegistry.counter("bounded.infix.evictions").getCount(), equalTo(1L));
+
+		// an evicted value starts over
+		this.templateOne.sendBodyAndHeader("test", "infix", "b");
+		awaitRemoval("bounded.a");
+		assertThat(metricRegistry.meter("bounded.b.rate").getCount(), equalTo(1L));
+		assertThat(metricRegistry.getMetrics().containsKey("bounded.a.rate"), equalTo(false));
+		assertThat(metricRegistry.counter("bounded.infix.evictions").getCount(), equalTo(2L));
+		assertThat(metricRegistry.meter("bounded.rate").getCount(), equalTo(5L));
+	}
+
+	@Test
+	public void idleGroupIsEvicted() throws Exception {
+		this.templateTwo.sendBodyAndHeader("test", "infix", "x");
+		MetricRegistry metricRegistry = getMetricRegistry();
+		long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+		// the eviction is counted once the group is stopped and removed
+		while ((metricRegistry.getMetrics().containsKey("idle.x.rate") || metricRegistry.counter("idle.infix.evictions").getCount() == 0) && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertThat(metricRegistry.getMetrics().containsKey("idle.x.rate"), equalTo(false));
+		assertThat(metricRegistry.counter("idle.infix.evictions").getCount(), equalTo(1L));
+		// the base group is never evicted
+		assertThat(metricRegistry.meter("idle.rate").getCount(), equalTo(1L));
+	}
+
+	@Test
+	public void timerSlotsOfEvictedGroupsAreReused() throws Exception {
+		int values = 50;
+		this.templateThree.sendBodyAndHeader("test", "infix", "value0");
+		this.templateThree.sendBodyAndHeader("test", "infix", "value1");
+		awaitRemoval("boundedTimer.value0");
+		// the live infix timer and the one being replaced
+		int timerSlotCount = getMetricsComponent().getTimerSlotCount();
+		for (int i = 2; i < values; i++) {
+			this.templateThree.sendBodyAndHeader("test", "infix", "value" + i);
+			awaitRemoval("boundedTimer.value" + (i - 1));
+		}
+		MetricRegistry metricRegistry = getMetricRegistry();
+		assertThat(metricRegistry.timer("boundedTimer.value" + (values - 1) + ".timing").getCount(), equalTo(1L));
+		assertThat(metricRegistry.getMetrics().containsKey("boundedTimer.value0.timing"), equalTo(false));
+		assertThat(getMetricsComponent().getTimerSlotCount(), equalTo(timerSlotCount));
+	}
+
+	/**
+	 * Waits for an evicted metric group to be torn down.
+	 *
+	 * @param fullName
+	 * @throws InterruptedException
+	 */
+	private void awaitRemoval(final String fullName) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+		while (getMetricsComponent().getMetricGroups().containsKey(fullName) && System.currentTimeMillis() < deadline) {
+			Thread.sleep(1);
+		}
+		assertThat(getMetricsComponent().getMetricGroups().containsKey(fullName), equalTo(false));
+	}
+
+	/**
+	 * @return
+	 */
+	private MetricsComponent getMetricsComponent() {
+		return this.context.getComponent("metrics", MetricsComponent.class);
+	}
+
+	/**
+	 * @return
+	 */
+	private MetricRegistry getMetricRegistry() {
+		return getMetricsComponent().getMetricRegistry();
+	}
+
+	@Override
+	protected RouteBuilder createRouteBuilder() {
+		return new RouteBuilder() {
+			@Override
+			public void configure() {
+				from("direct:startOne").to("metrics://bounded?infix='${header.infix}'&maxInfixGroups=2&jmxReporters=[{}]&counter={value=1,name=size}");
+				from("direct:startTwo").to("metrics://idle?infix='${header.infix}'&infixIdleTtl=50&jmxReporters=[{}]");
+				from("direct:startThree").to("metrics://boundedTimer?timing=start&infix='${header.infix}'&maxInfixGroups=1&jmxReporters=[{}]")
+						.to("metrics://boundedTimer?timing=stop&infix='${header.infix}'&maxInfixGroups=1");
+			}
+		};
+	}
+
+}
@@ -0,0 +1,139 @@
+// @formatter:off
+/**
+ * Copyright 2014 Initium.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+// @formatter:on
+package io.initium.camel.component.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.camel.Produce;
+import org.apache.camel.ProducerTemplate;
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.test.junit4.CamelTestSupport;
+import org.junit.Test;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+
+public class InfixOverflowTest extends CamelTestSupport {
+
+	// constants
+	private static final int		DISTINCT_VALUES	= 100000;
+	private static final int		THREADS			= 4;
+	private static final int		MAX_LIVE_GROUPS	= 5;
+
+	@Produce(uri = "direct:startOne")
+	protected ProducerTemplate		templateOne;
+
+	@Produce(uri = "direct:startTwo")
+	protected ProducerTemplate		templateTwo;
+
+	@Test
+	public void hyperLogLogEstimatesDistinctValues() {
+		HyperLogLog hyperLogLog = new HyperLogLog();
+		for (int i = 0; i < DISTINCT_VALUES; i++) {
+			hyperLogLog.offer("customer-" + i);
+			// repeated values are not counted again
+			hyperLogLog.offer("customer-" + i);
+		}
+		long estimate = hyperLogLog.estimate();
+		// about three standard errors
+		assertThat("estimate: " + estimate, Math.abs(estimate - DISTINCT_VALUES) < 0.1 * DISTINCT_VALUES, equalTo(true));
+		HyperLogLog small = new HyperLogLog();
+		for (int i = 0; i < 10; i++) {
+			small.offer("value-" + (i % 3));
+		}
+		assertThat(small.estimate(), equalTo(3L));
+	}
+
+	@Test
+	public void valuesPastTheLimitAreFoldedIntoOverflow() throws Exception {
+		this.templateOne.sendBodyAndHeader("test", "infix", "a");
+		this.templateOne.sendBodyAndHeader("test", "infix", "b");
+		this.templateOne.sendBodyAndHeader("test", "infix", "c");
+		this.templateOne.sendBodyAndHeader("test", "infix", "d");
+		this.templateOne.sendBodyAndHeader("test", "infix", "c");
+		this.templateOne.sendBodyAndHeader("test", "infix", "a");
+		MetricRegistry metricRegistry = getMetricRegistry();
+		assertThat(metricRegistry.meter("limited.a.rate").getCount(), equalTo(2L));
+		assertThat(metricRegistry.meter("limited.b.rate").getCount(), equalTo(1L));
+		assertThat(metricRegistry.getMetrics().containsKey("limited.c.rate"), equalTo(false));
+		assertThat(metricRegistry.getMetrics().containsKey("limited.d.rate"), equalTo(false));
+		assertThat(metricRegistry.meter("limited." + InfixMetricGroups.OVERFLOW_INFIX + ".rate").getCount(), equalTo(3L));
+		assertThat(metricRegistry.meter("limited.rate").getCount(), equalTo(6L));
+		Gauge<?> distinct = metricRegistry.getGauges().get("limited." + InfixMetricGroups.OVERFLOW_DISTINCT_NAME);
+		assertThat((Long) distinct.getValue(), equalTo(2L));
+	}
+
+	@Test
+	public void limitHoldsUnderConcurrentNewValues() throws Exception {
+		ExecutorService executorService = Executors.newFixedThreadPool(THREADS);
+		try {
+			List<Future<Void>> futures = new ArrayList<Future<Void>>();
+			for (int i = 0; i < THREADS; i++) {
+				final int thread = i;
+				futures.add(executorService.submit(new Callable<Void>() {
+					@Override
+					public Void call() throws Exception {
+						for (int j = 0; j < 100; j++) {
+							InfixOverflowTest.this.templateTwo.sendBodyAndHeader("test", "infix", "value" + thread + "-" + j);
+						}
+						return null;
+					}
+				}));
+			}
+			for (Future<Void> future : futures) {
+				future.get();
+			}
+		} finally {
+			executorService.shutdown();
+		}
+		MetricsComponent metricsComponent = this.context.getComponent("metrics", MetricsComponent.class);
+		int infixGroups = 0;
+		for (String metricGroupName : metricsComponent.getMetricGroups().keySet()) {
+			if (metricGroupName.startsWith("concurrent.value")) {
+				infixGroups++;
+			}
+		}
+		assertThat(infixGroups, equalTo(MAX_LIVE_GROUPS));
+		long overflowCount = getMetricRegistry().meter("concurrent." + InfixMetricGroups.OVERFLOW_INFIX + ".rate").getCount();
+		assertThat(overflowCount, equalTo((long) THREADS * 100 - MAX_LIVE_GROUPS));
+	}
+
+	/**
+	 * @return
+	 */
+	private MetricRegistry getMetricRegistry() {
+		return this.context.getComponent("metrics", MetricsComponent.class).getMetricRegistry();
+	}
+
+	@Override
+	protected RouteBuilder createRouteBuilder() {
+		return new RouteBuilder() {
+			@Override
+			public void configure() {
+				from("direct:startOne").to("metrics://limited?infix='${header.infix}'&maxLiveInfixGroups=2&jmxReporters=[{}]");
+				from("direct:startTwo").to("metrics://concurrent?infix='${header.infix}'&maxLiveInfixGroups=" + MAX_LIVE_GROUPS + "&jmxReporters=[{}]");
+			}
+		};
+	}
+
+}
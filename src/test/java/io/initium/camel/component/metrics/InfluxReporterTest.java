@@ -0,0 +1,214 @@
+// @formatter:off
+/**
+ * Copyright 2014 Initium.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+// @formatter:on
+package io.initium.camel.component.metrics;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.camel.impl.DefaultCamelContext;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.codahale.metrics.MetricFilter;
+import com.codahale.metrics.MetricRegistry;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class InfluxReporterTest {
+
+	// constants
+	private static final String				HOST			= "127.0.0.1";
+	private static final int				TIMEOUT_MILLIS	= 5000;
+
+	// fields
+	private final BlockingQueue<String>		bodies			= new LinkedBlockingQueue<String>();
+	private final BlockingQueue<Integer>	statuses		= new LinkedBlockingQueue<Integer>();
+	private volatile String					contentEncoding;
+	private DefaultCamelContext				camelContext;
+	private MetricsComponent				metricsComponent;
+	private HttpServer						httpServer;
+	private String							url;
+
+	/**
+	 * @param inputStream
+	 * @return
+	 * @throws IOException
+	 */
+	private static String read(final InputStream inputStream) throws IOException {
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		byte[] buffer = new byte[4096];
+		for (int read = inputStream.read(buffer); read >= 0; read = inputStream.read(buffer)) {
+			body.write(buffer, 0, read);
+		}
+		return body.toString("UTF-8");
+	}
+
+	@Test
+	public void failedRequestsAreRetried() throws Exception {
+		this.statuses.add(503);
+		InfluxSender influxSender = InfluxSender.open(this.metricsComponent, this.url, 1024, 10, true, 10, 10);
+		try {
+			influxSender.write("a,group=b count=1i 1\n".getBytes("UTF-8"));
+			assertThat(this.bodies.poll(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS), equalTo("a,group=b count=1i 1\n"));
+			// the same lines again once the endpoint recovers
+			assertThat(this.bodies.poll(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS), equalTo("a,group=b count=1i 1\n"));
+			long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+			while (influxSender.getRequestCount() == 0 && System.currentTimeMillis() < deadline) {
+				Thread.sleep(10);
+			}
+			assertThat(influxSender.getFailures(), equalTo(1));
+			assertThat(influxSender.getRequestCount(), equalTo(1L));
+		} finally {
+			influxSender.close();
+		}
+	}
+
+	@Test
+	public void fullBufferDropsOldestWithoutBlocking() throws Exception {
+		ServerSocket serverSocket = new ServerSocket(0);
+		int port = serverSocket.getLocalPort();
+		serverSocket.close();
+		InfluxSender influxSender = InfluxSender.open(this.metricsComponent, "http://" + HOST + ":" + port + "/write?db=metrics", 1, 2, true, 60000, 60000);
+		try {
+			for (int i = 0; i < 10; i++) {
+				influxSender.write(("a count=" + i + "i 1\n").getBytes("UTF-8"));
+			}
+			// at most one block is posted and one held back by the writer thread
+			assertTrue(Long.toString(influxSender.getDroppedCount()), influxSender.getDroppedCount() >= 10 - 2 - 2);
+		} finally {
+			influxSender.close();
+		}
+	}
+
+	@Test
+	public void groupsShareOneRequest() throws Exception {
+		MetricRegistry euRegistry = new MetricRegistry();
+		MetricRegistry usRegistry = new MetricRegistry();
+		InfluxReporter euReporter = new InfluxReporter(euRegistry, MetricFilter.ALL, TimeUnit.SECONDS, TimeUnit.MILLISECONDS, "orders", "eu", "group", "infix", InfluxSender.open(this.metricsComponent, this.url, 1024, 10, false));
+		InfluxReporter usReporter = new InfluxReporter(usRegistry, MetricFilter.ALL, TimeUnit.SECONDS, TimeUnit.MILLISECONDS, "orders", "us", "group", "infix", InfluxSender.open(this.metricsComponent, this.url, 1024, 10, false));
+		try {
+			euRegistry.counter("orders.eu.size").inc(2);
+			usRegistry.counter("orders.us.size").inc(3);
+			euReporter.report();
+			// nothing is posted before the period ends
+			assertThat(this.bodies.poll(200, TimeUnit.MILLISECONDS), nullValue());
+			usReporter.report();
+			euReporter.endPeriod();
+			usReporter.endPeriod();
+			String[] lines = this.bodies.poll(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS).split("\n");
+			assertThat(lines.length, equalTo(2));
+			assertTrue(lines[0], lines[0].matches("size,group=orders,infix=eu count=2i \\d+"));
+			assertTrue(lines[1], lines[1].matches("size,group=orders,infix=us count=3i \\d+"));
+			assertThat(this.bodies.poll(200, TimeUnit.MILLISECONDS), nullValue());
+		} finally {
+			euReporter.stop();
+			usReporter.stop();
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void onlyHttpIsWritten() throws Exception {
+		InfluxSender.open(this.metricsComponent, "ftp://" + HOST + "/write", 1024, 10, false);
+	}
+
+	@Test
+	public void sendersAreSharedOnlyWithTheSameSettings() throws Exception {
+		InfluxSender influxSender = InfluxSender.open(this.metricsComponent, this.url, 1024, 10, false);
+		InfluxSender sharedSender = InfluxSender.open(this.metricsComponent, this.url, 1024, 10, false);
+		InfluxSender gzipSender = InfluxSender.open(this.metricsComponent, this.url, 1024, 10, true);
+		assertThat(sharedSender, sameInstance(influxSender));
+		assertThat(gzipSender, not(sameInstance(influxSender)));
+		assertThat(this.metricsComponent.getInfluxSenders().size(), equalTo(2));
+		this.metricsComponent.stop();
+		assertTrue(this.metricsComponent.getInfluxSenders().isEmpty());
+		assertTrue(influxSender.isStopped());
+		assertTrue(gzipSender.isStopped());
+		// closing a sender stopped with the component is harmless
+		influxSender.close();
+		sharedSender.close();
+		gzipSender.close();
+	}
+
+	@Test
+	public void reportIsOneGzippedRequest() throws Exception {
+		MetricRegistry metricRegistry = new MetricRegistry();
+		InfluxReporter influxReporter = new InfluxReporter(metricRegistry, MetricFilter.ALL, TimeUnit.SECONDS, TimeUnit.MILLISECONDS, "orders", "eu west", "group", "infix", InfluxSender.open(this.metricsComponent, this.url, 1024, 10, true));
+		try {
+			metricRegistry.counter("orders.eu west.size").inc();
+			metricRegistry.histogram("orders.eu west.amount").update(5);
+			metricRegistry.meter("orders.eu west.rate").mark(2);
+			influxReporter.report();
+			influxReporter.endPeriod();
+			String[] lines = this.bodies.poll(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS).split("\n");
+			assertThat(this.contentEncoding, equalTo("gzip"));
+			assertThat(lines.length, equalTo(3));
+			assertTrue(lines[0], lines[0].matches("size,group=orders,infix=eu\\\\ west count=1i \\d+"));
+			assertTrue(lines[1], lines[1].startsWith("amount,group=orders,infix=eu\\ west count=1i,min=5.0,max=5.0,mean=5.0,stddev=0.0,p50=5.0,"));
+			assertTrue(lines[2], lines[2].startsWith("rate,group=orders,infix=eu\\ west count=2i,m1_rate="));
+			assertThat(this.bodies.poll(100, TimeUnit.MILLISECONDS), nullValue());
+		} finally {
+			influxReporter.stop();
+		}
+	}
+
+	@Before
+	public void startServer() throws Exception {
+		this.camelContext = new DefaultCamelContext();
+		this.metricsComponent = new MetricsComponent();
+		this.camelContext.addComponent("metrics", this.metricsComponent);
+		this.camelContext.start();
+		this.httpServer = HttpServer.create(new InetSocketAddress(HOST, 0), 0);
+		this.httpServer.createContext("/write", new HttpHandler() {
+			@Override
+			public void handle(final HttpExchange httpExchange) throws IOException {
+				InputStream inputStream = httpExchange.getRequestBody();
+				InfluxReporterTest.this.contentEncoding = httpExchange.getRequestHeaders().getFirst("Content-Encoding");
+				if ("gzip".equals(InfluxReporterTest.this.contentEncoding)) {
+					inputStream = new GZIPInputStream(inputStream);
+				}
+				InfluxReporterTest.this.bodies.add(read(inputStream));
+				Integer status = InfluxReporterTest.this.statuses.poll();
+				httpExchange.sendResponseHeaders(status == null ? 204 : status, -1);
+				httpExchange.close();
+			}
+		});
+		this.httpServer.start();
+		this.url = "http://" + HOST + ":" + this.httpServer.getAddress().getPort() + "/write?db=metrics";
+	}
+
+	@After
+	public void stopServer() throws Exception {
+		this.camelContext.stop();
+		this.httpServer.stop(0);
+	}
+
+}
@@ -0,0 +1,124 @@
+// @formatter:off
+/**
+ * Copyright 2014 Initium.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+// @formatter:on
+package io.initium.camel.component.metrics;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.MarkerFactory;
+
+import com.codahale.metrics.Clock;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricFilter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.ScheduledReporter;
+import com.codahale.metrics.Slf4jReporter;
+
+import io.initium.camel.component.metrics.definition.reporter.Slf4jReporterDefinition;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.junit.Assert.assertThat;
+
+public class JsonBatchSlf4jReporterTest {
+
+	// constants
+	private static final Clock	CLOCK	= new Clock() {
+											@Override
+											public long getTick() {
+												return 0;
+											}
+
+											@Override
+											public long getTime() {
+												return 1234;
+											}
+										};
+
+	/**
+	 * @param messages
+	 *            receives the messages logged at info
+	 * @return
+	 */
+	private static Logger capturingLogger(final List<String> messages) {
+		return (Logger) Proxy.newProxyInstance(Logger.class.getClassLoader(), new Class<?>[] {Logger.class}, new InvocationHandler() {
+			@Override
+			public Object invoke(final Object proxy, final Method method, final Object[] args) {
+				if (method.getName().equals("info")) {
+					messages.add((String) args[1]);
+				}
+				return method.getReturnType() == boolean.class ? Boolean.TRUE : null;
+			}
+		});
+	}
+
+	@Test
+	@SuppressWarnings("deprecation")
+	public void definitionBuildsTheJsonBatchReporter() {
+		Slf4jReporterDefinition slf4jReporterDefinition = new Slf4jReporterDefinition();
+		slf4jReporterDefinition.setFormat("json-batch");
+		ScheduledReporter reporter = slf4jReporterDefinition.buildScheduledReporter(new MetricRegistry(), null, null);
+		assertThat(reporter, instanceOf(JsonBatchSlf4jReporter.class));
+		// the original method keeps building the reporter of the text format
+		assertThat(slf4jReporterDefinition.buildReporter(new MetricRegistry(), null, null), instanceOf(Slf4jReporter.class));
+	}
+
+	@Test
+	public void emptyReportsAreNotLogged() {
+		List<String> messages = new ArrayList<String>();
+		JsonBatchSlf4jReporter reporter = new JsonBatchSlf4jReporter(new MetricRegistry(), MetricFilter.ALL, TimeUnit.SECONDS, TimeUnit.MILLISECONDS, capturingLogger(messages), MarkerFactory.getMarker("metrics"), CLOCK);
+		reporter.report();
+		assertThat(messages.isEmpty(), equalTo(true));
+	}
+
+	@Test
+	public void oneEventPerReport() {
+		List<String> messages = new ArrayList<String>();
+		MetricRegistry metricRegistry = new MetricRegistry();
+		metricRegistry.counter("a.count").inc(3);
+		metricRegistry.counter("b\"quoted").inc();
+		metricRegistry.register("a.gauge", new Gauge<Double>() {
+			@Override
+			public Double getValue() {
+				return Double.NaN;
+			}
+		});
+		metricRegistry.register("a.text", new Gauge<String>() {
+			@Override
+			public String getValue() {
+				return "line\n";
+			}
+		});
+		metricRegistry.histogram("a.size").update(5);
+		JsonBatchSlf4jReporter reporter = new JsonBatchSlf4jReporter(metricRegistry, MetricFilter.ALL, TimeUnit.SECONDS, TimeUnit.MILLISECONDS, capturingLogger(messages), MarkerFactory.getMarker("metrics"), CLOCK);
+		reporter.report();
+		reporter.report();
+		assertThat(messages.size(), equalTo(2));
+		String expected = "{\"t\":1234,\"rateUnit\":\"events/second\",\"durationUnit\":\"milliseconds\""
+				+ ",\"gauges\":{\"a.gauge\":null,\"a.text\":\"line\\u000a\"}"
+				+ ",\"counters\":{\"a.count\":3,\"b\\\"quoted\":1}"
+				+ ",\"histograms\":{\"a.size\":{\"count\":1,\"min\":5.0,\"max\":5.0,\"mean\":5.0,\"stddev\":0.0,\"p50\":5.0,\"p75\":5.0,\"p95\":5.0,\"p98\":5.0,\"p99\":5.0,\"p999\":5.0}}}";
+		assertThat(messages.get(0), equalTo(expected));
+		assertThat(messages.get(1), equalTo(expected));
+	}
+
+}
@@ -0,0 +1,269 @@
+// @formatter:off
+/**
+ * Copyright 2014 Initium.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+// @formatter:on
+package io.initium.camel.component.metrics;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.camel.Produce;
+import org.apache.camel.ProducerTemplate;
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.test.junit4.CamelTestSupport;
+import org.junit.Test;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricFilter;
+import com.codahale.metrics.MetricRegistry;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+
+public class MappedFileReporterTest extends CamelTestSupport {
+
+	// constants
+	private static final File	FILE	= new File("target/mapped-file-reporter-test/metrics.mmap");
+
+	@Produce(uri = "direct:start")
+	protected ProducerTemplate	template;
+
+	/**
+	 * Reads the file the way another process would.
+	 *
+	 * @param buffer
+	 * @return the slot of each metric by name
+	 * @throws Exception
+	 */
+	private static Map<String, Integer> readSlots(final MappedByteBuffer buffer) throws Exception {
+		assertThat(buffer.getInt(0), equalTo(MappedMetricsFile.MAGIC));
+		assertThat(buffer.getInt(4), equalTo(MappedMetricsFile.VERSION));
+		int nameSize = buffer.getInt(12);
+		int used = buffer.getInt(20);
+		Map<String, Integer> slots = new HashMap<String, Integer>();
+		for (int slot = 0; slot < used; slot++) {
+			int nameOffset = MappedMetricsFile.HEADER_SIZE + slot * nameSize;
+			if (buffer.get(nameOffset) != MappedMetricsFile.TYPE_FREE) {
+				byte[] name = new byte[buffer.getShort(nameOffset + 2)];
+				for (int i = 0; i < name.length; i++) {
+					name[i] = buffer.get(nameOffset + 4 + i);
+				}
+				slots.put(new String(name, "UTF-8"), slot);
+			}
+		}
+		return slots;
+	}
+
+	/**
+	 * @param file
+	 * @return the file, mapped read only
+	 * @throws Exception
+	 */
+	private static MappedByteBuffer map(final File file) throws Exception {
+		RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+		try {
+			return randomAccessFile.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, randomAccessFile.length());
+		} finally {
+			randomAccessFile.close();
+		}
+	}
+
+	/**
+	 * @param buffer
+	 * @param slot
+	 * @param offset
+	 * @return
+	 */
+	private static long readLong(final MappedByteBuffer buffer, final int slot, final int offset) {
+		int valueOffset = MappedMetricsFile.HEADER_SIZE + buffer.getInt(8) * buffer.getInt(12) + slot * MappedMetricsFile.VALUE_SIZE;
+		while (true) {
+			long sequence = buffer.getLong(valueOffset);
+			long value = buffer.getLong(valueOffset + offset);
+			if ((sequence & 1) == 0 && sequence == buffer.getLong(valueOffset)) {
+				return value;
+			}
+		}
+	}
+
+	/**
+	 * @param buffer
+	 * @param slot
+	 * @param offsets
+	 * @return the values at the offsets, written together
+	 */
+	private static long[] readLongs(final MappedByteBuffer buffer, final int slot, final int... offsets) {
+		int valueOffset = MappedMetricsFile.HEADER_SIZE + buffer.getInt(8) * buffer.getInt(12) + slot * MappedMetricsFile.VALUE_SIZE;
+		long[] values = new long[offsets.length];
+		while (true) {
+			long sequence = buffer.getLong(valueOffset);
+			for (int i = 0; i < offsets.length; i++) {
+				values[i] = buffer.getLong(valueOffset + offsets[i]);
+			}
+			if ((sequence & 1) == 0 && sequence == buffer.getLong(valueOffset)) {
+				return values;
+			}
+		}
+	}
+
+	/**
+	 * @return the component of the routes
+	 */
+	private MetricsComponent getMetricsComponent() {
+		return this.context.getComponent("metrics", MetricsComponent.class);
+	}
+
+	@Test
+	public void conflictingSettingsAreRejected() throws Exception {
+		File file = new File("target/mapped-file-reporter-test/settings.mmap");
+		MappedMetricsFile mappedMetricsFile = MappedMetricsFile.open(getMetricsComponent(), file, 2, 16);
+		try {
+			MappedMetricsFile.open(getMetricsComponent(), file, 4, 16);
+			fail("another capacity must not get the first layout");
+		} catch (IOException e) {
+			// expected
+		}
+		try {
+			MappedMetricsFile.open(getMetricsComponent(), file, 2, 32);
+			fail("another name size must not get the first layout");
+		} catch (IOException e) {
+			// expected
+		}
+		assertThat(MappedMetricsFile.open(getMetricsComponent(), file, 2, 16), sameInstance(mappedMetricsFile));
+		mappedMetricsFile.close();
+		mappedMetricsFile.close();
+		// closed by its last user
+		assertThat(MappedMetricsFile.open(getMetricsComponent(), file, 4, 16), not(sameInstance(mappedMetricsFile)));
+	}
+
+	@Test
+	public void concurrentWritersOfASlotAreSerialized() throws Exception {
+		final int writes = 10000;
+		final MappedMetricsFile mappedMetricsFile = MappedMetricsFile.open(getMetricsComponent(), new File("target/mapped-file-reporter-test/writers.mmap"), 1, 16);
+		final long lease = mappedMetricsFile.allocate("x", MappedMetricsFile.TYPE_HISTOGRAM);
+		final int slot = MappedMetricsFile.slot(lease);
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int i = 0; i < 4; i++) {
+			threads.add(new Thread() {
+				@Override
+				public void run() {
+					for (long j = 0; j < writes; j++) {
+						mappedMetricsFile.beginWrite(lease);
+						try {
+							mappedMetricsFile.putLong(slot, MappedMetricsFile.COUNT, j);
+							mappedMetricsFile.putLong(slot, MappedMetricsFile.VALUE, j);
+						} finally {
+							mappedMetricsFile.endWrite(lease);
+						}
+					}
+				}
+			});
+		}
+		for (Thread thread : threads) {
+			thread.start();
+		}
+		MappedByteBuffer buffer = map(mappedMetricsFile.getFile());
+		for (int i = 0; i < writes; i++) {
+			long[] values = readLongs(buffer, slot, MappedMetricsFile.COUNT, MappedMetricsFile.VALUE);
+			assertThat(values[0], equalTo(values[1]));
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		// allocating writes once, every increment of the sequence is kept
+		assertThat(readLong(buffer, slot, MappedMetricsFile.SEQUENCE), equalTo(2L + 2L * threads.size() * writes));
+		mappedMetricsFile.close();
+	}
+
+	@Test
+	public void freedLeasesNoLongerWrite() throws Exception {
+		MappedMetricsFile mappedMetricsFile = MappedMetricsFile.open(getMetricsComponent(), new File("target/mapped-file-reporter-test/leases.mmap"), 1, 16);
+		long leaseOfA = mappedMetricsFile.allocate("a", MappedMetricsFile.TYPE_COUNTER);
+		mappedMetricsFile.free(leaseOfA);
+		long leaseOfB = mappedMetricsFile.allocate("b", MappedMetricsFile.TYPE_COUNTER);
+		assertThat(MappedMetricsFile.slot(leaseOfB), equalTo(MappedMetricsFile.slot(leaseOfA)));
+		// a report that looked up the slot of a before it was removed
+		assertThat(mappedMetricsFile.beginWrite(leaseOfA), equalTo(false));
+		// nor does freeing a again free b
+		mappedMetricsFile.free(leaseOfA);
+		MappedByteBuffer buffer = map(mappedMetricsFile.getFile());
+		assertThat(readSlots(buffer).keySet().toString(), equalTo("[b]"));
+		assertThat(mappedMetricsFile.beginWrite(leaseOfB), equalTo(true));
+		mappedMetricsFile.endWrite(leaseOfB);
+		mappedMetricsFile.free(leaseOfB);
+		mappedMetricsFile.close();
+	}
+
+	@Test
+	public void removedMetricsFreeTheirSlots() throws Exception {
+		File file = new File("target/mapped-file-reporter-test/slots.mmap");
+		MetricRegistry metricRegistry = new MetricRegistry();
+		metricRegistry.counter("a");
+		MappedFileReporter reporter = new MappedFileReporter(metricRegistry, MetricFilter.ALL, TimeUnit.SECONDS, TimeUnit.MILLISECONDS, MappedMetricsFile.open(getMetricsComponent(), file, 2, 16));
+		metricRegistry.counter("b").inc(7);
+		// no slot left
+		metricRegistry.counter("c");
+		assertThat(reporter.getSlot("c"), equalTo(-1));
+		reporter.report();
+		MappedByteBuffer buffer = map(file);
+		assertThat(readLong(buffer, reporter.getSlot("b"), MappedMetricsFile.COUNT), equalTo(7L));
+		int slotOfA = reporter.getSlot("a");
+		metricRegistry.remove("a");
+		assertThat(readSlots(buffer).keySet().toString(), equalTo("[b]"));
+		metricRegistry.remove("c");
+		metricRegistry.counter("d");
+		assertThat(reporter.getSlot("d"), equalTo(slotOfA));
+		// a reused slot starts from zero
+		assertThat(readLong(buffer, slotOfA, MappedMetricsFile.COUNT), equalTo(0L));
+		reporter.stop();
+		assertThat(readSlots(buffer).isEmpty(), equalTo(true));
+	}
+
+	@Test
+	public void valuesAreReadableFromTheFile() throws Exception {
+		this.template.sendBody("test");
+		this.template.sendBody("test");
+		for (ReporterPipeline reporterPipeline : getMetricsComponent().getReporterPipelines().values()) {
+			reporterPipeline.run();
+		}
+		MappedByteBuffer buffer = map(FILE);
+		Map<String, Integer> slots = readSlots(buffer);
+		assertThat(slots.containsKey("mapped.size"), equalTo(true));
+		assertThat(slots.containsKey("mapped.rate"), equalTo(true));
+		assertThat(readLong(buffer, slots.get("mapped.size"), MappedMetricsFile.COUNT), equalTo(2L));
+		assertThat(readLong(buffer, slots.get("mapped.rate"), MappedMetricsFile.COUNT), equalTo(2L));
+		assertTrue(buffer.getLong(MappedMetricsFile.LAST_UPDATE_OFFSET) > 0);
+		Counter counter = getMetricsComponent().getMetricRegistry().counter("mapped.size");
+		assertThat(counter.getCount(), equalTo(2L));
+	}
+
+	@Override
+	protected RouteBuilder createRouteBuilder() {
+		return new RouteBuilder() {
+			@Override
+			public void configure() {
+				from("direct:start").to("metrics://mapped?mmapReporters=[{directory='target/mapped-file-reporter-test',periodDuration=1,periodDurationUnit=HOURS}]&counter={value=1,name=size}");
+			}
+		};
+	}
+
+}
@@ -0,0 +1,123 @@
+// @formatter:off
+/**
+ * Copyright 2014 Initium.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+// @formatter:on
+package io.initium.camel.component.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.camel.CamelContext;
+import org.apache.camel.Exchange;
+import org.apache.camel.Expression;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.impl.DefaultExchange;
+import org.junit.Test;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.UniformReservoir;
+
+import io.initium.camel.component.metrics.definition.metric.CounterDefinition;
+import io.initium.camel.component.metrics.definition.metric.HistogramDefinition;
+import io.initium.camel.component.metrics.definition.metric.MeterDefinition;
+import io.initium.common.util.ExpressionUtils;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class MarkPlanTest {
+
+	/**
+	 * An expression that must never be evaluated.
+	 */
+	private static final class FailingExpression implements Expression {
+		@Override
+		public <T> T evaluate(final Exchange exchange, final Class<T> type) {
+			throw new AssertionError("a constant value was evaluated");
+		}
+	}
+
+	// fields
+	private final CamelContext							camelContext	= new DefaultCamelContext();
+	private final Map<CounterDefinition, Counter>		counters		= new LinkedHashMap<CounterDefinition, Counter>();
+	private final Map<MeterDefinition, Meter>			meters			= new LinkedHashMap<MeterDefinition, Meter>();
+	private final Map<HistogramDefinition, Histogram>	histograms		= new LinkedHashMap<HistogramDefinition, Histogram>();
+
+	@Test
+	public void constantValuesAreNeverEvaluated() {
+		CounterDefinition counterDefinition = new CounterDefinition();
+		counterDefinition.setExpression(new FailingExpression());
+		Counter counter = new Counter();
+		this.counters.put(counterDefinition, counter);
+		MeterDefinition meterDefinition = new MeterDefinition();
+		meterDefinition.setValue("3");
+		meterDefinition.setExpression(new FailingExpression());
+		Meter meter = new Meter();
+		this.meters.put(meterDefinition, meter);
+
+		MarkPlan markPlan = MarkPlan.compile(this.counters, this.meters, this.histograms);
+		markPlan.mark(new DefaultExchange(this.camelContext), 1);
+		markPlan.mark(new DefaultExchange(this.camelContext), 10);
+		assertThat(counter.getCount(), equalTo(11L));
+		assertThat(meter.getCount(), equalTo(33L));
+	}
+
+	@Test
+	public void expressionValuesAreEvaluatedInOrder() {
+		CounterDefinition counterDefinition = new CounterDefinition();
+		counterDefinition.setValue("${header.size}");
+		counterDefinition.setExpression(ExpressionUtils.createExpression(counterDefinition.getValue(), this.camelContext));
+		Counter counter = new Counter();
+		this.counters.put(counterDefinition, counter);
+		HistogramDefinition histogramDefinition = new HistogramDefinition();
+		histogramDefinition.setValue("${header.latency}");
+		histogramDefinition.setExpression(ExpressionUtils.createExpression(histogramDefinition.getValue(), this.camelContext));
+		Histogram histogram = new Histogram(new UniformReservoir());
+		this.histograms.put(histogramDefinition, histogram);
+
+		MarkPlan markPlan = MarkPlan.compile(this.counters, this.meters, this.histograms);
+		assertThat(markPlan.size(), equalTo(2));
+		Exchange exchange = new DefaultExchange(this.camelContext);
+		exchange.getIn().setHeader("size", "7");
+		exchange.getIn().setHeader("latency", 42);
+		long[] values = new long[markPlan.size()];
+		markPlan.evaluate(exchange, values);
+		assertThat(values[0], equalTo(7L));
+		assertThat(values[1], equalTo(42L));
+		markPlan.apply(values, 2);
+		assertThat(counter.getCount(), equalTo(14L));
+		assertThat(histogram.getCount(), equalTo(1L));
+		assertThat(histogram.getSnapshot().getMax(), equalTo(42L));
+	}
+
+	@Test
+	public void missingValuesAreSkipped() {
+		CounterDefinition counterDefinition = new CounterDefinition();
+		counterDefinition.setValue("${header.missing}");
+		counterDefinition.setExpression(ExpressionUtils.createExpression(counterDefinition.getValue(), this.camelContext));
+		Counter counter = new Counter();
+		this.counters.put(counterDefinition, counter);
+
+		MarkPlan markPlan = MarkPlan.compile(this.counters, this.meters, this.histograms);
+		Exchange exchange = new DefaultExchange(this.camelContext);
+		long[] values = new long[markPlan.size()];
+		markPlan.evaluate(exchange, values);
+		assertThat(values[0], equalTo(MetricGroup.NO_VALUE));
+		markPlan.mark(exchange, 1);
+		assertThat(counter.getCount(), equalTo(0L));
+	}
+
+}
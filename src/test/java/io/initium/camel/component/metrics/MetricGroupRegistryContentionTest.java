@@ -0,0 +1,155 @@
+// @formatter:off
+/**
+ * Copyright 2014 Initium.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+// @formatter:on
+package io.initium.camel.component.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.camel.test.junit4.CamelTestSupport;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assume.assumeTrue;
+
+public class MetricGroupRegistryContentionTest extends CamelTestSupport {
+
+	// logging
+	private static final String	SELF				= Thread.currentThread().getStackTrace()[1].getClassName();
+	private static final Logger	LOGGER				= LoggerFactory.getLogger(SELF);
+
+	// constants
+	private static final int	INFIX_VALUES		= 16;
+	private static final int[]	THREAD_COUNTS		= {1, 2, 4, 8, 16, 32};
+	private static final long	MEASURE_MILLIS		= 200;
+	private static final int	CREATING_THREADS	= 32;
+	// the fraction of linear scaling a thread count up to the number of processors must reach
+	private static final double	MIN_SCALING			= 0.5;
+	// set by the benchmarks profile, the throughput measurement only runs there
+	private static final String	BENCHMARKS_PROPERTY	= "metrics.benchmarks";
+
+	@Override
+	public boolean isUseRouteBuilder() {
+		return false;
+	}
+
+	@Test
+	public void concurrentCreationOfSameGroupHappensOnce() throws Exception {
+		final MetricsEndpoint endpoint = this.context.getEndpoint("metrics://race?infix='${header.infix}'&jmxReporters=[{}]", MetricsEndpoint.class);
+		final CountDownLatch startLatch = new CountDownLatch(1);
+		ExecutorService executorService = Executors.newFixedThreadPool(CREATING_THREADS);
+		try {
+			List<Future<MetricGroup>> futures = new ArrayList<Future<MetricGroup>>();
+			for (int i = 0; i < CREATING_THREADS; i++) {
+				futures.add(executorService.submit(new Callable<MetricGroup>() {
+					@Override
+					public MetricGroup call() throws Exception {
+						startLatch.await();
+						return endpoint.lookupMetricGroup("race", "newValue", null);
+					}
+				}));
+			}
+			startLatch.countDown();
+			MetricGroup first = futures.get(0).get();
+			for (Future<MetricGroup> future : futures) {
+				assertThat(future.get(), sameInstance(first));
+			}
+			assertThat(endpoint.getMetricComponent().getMetricGroups().get("race.newValue"), sameInstance(first));
+		} finally {
+			executorService.shutdownNow();
+		}
+	}
+
+	@Test
+	public void lookupThroughputUnderContention() throws Exception {
+		assumeTrue(Boolean.getBoolean(BENCHMARKS_PROPERTY));
+		int processors = Runtime.getRuntime().availableProcessors();
+		final MetricsEndpoint endpoint = this.context.getEndpoint("metrics://contention?infix='${header.infix}'&jmxReporters=[{}]", MetricsEndpoint.class);
+		final String[] infixValues = new String[INFIX_VALUES];
+		for (int i = 0; i < INFIX_VALUES; i++) {
+			infixValues[i] = "value" + i;
+			endpoint.lookupMetricGroup("contention", infixValues[i], null);
+		}
+		// warm up
+		measureLookupThroughput(endpoint, infixValues, 1);
+		double singleThreadedThroughput = 0;
+		for (int threadCount : THREAD_COUNTS) {
+			double throughput = measureLookupThroughput(endpoint, infixValues, threadCount);
+			if (threadCount == 1) {
+				singleThreadedThroughput = throughput;
+			}
+			double scaling = throughput / singleThreadedThroughput;
+			LOGGER.info("threads={}, lookups/s={}, scaling={}", threadCount, (long) throughput, String.format("%.2f", scaling));
+			if (threadCount <= processors) {
+				assertThat("scaling of " + threadCount + " threads: " + scaling, scaling >= MIN_SCALING * threadCount, equalTo(true));
+			}
+		}
+		assertThat(endpoint.getMetricComponent().getMetricGroups().size(), equalTo(INFIX_VALUES + 1));
+	}
+
+	/**
+	 * @param endpoint
+	 * @param infixValues
+	 * @param threadCount
+	 * @return lookups per second across all threads
+	 * @throws Exception
+	 */
+	private double measureLookupThroughput(final MetricsEndpoint endpoint, final String[] infixValues, final int threadCount) throws Exception {
+		final CountDownLatch startLatch = new CountDownLatch(1);
+		final AtomicBoolean running = new AtomicBoolean(true);
+		ExecutorService executorService = Executors.newFixedThreadPool(threadCount);
+		try {
+			List<Future<Long>> futures = new ArrayList<Future<Long>>();
+			for (int i = 0; i < threadCount; i++) {
+				final int offset = i;
+				futures.add(executorService.submit(new Callable<Long>() {
+					@Override
+					public Long call() throws Exception {
+						startLatch.await();
+						long lookups = 0;
+						while (running.get()) {
+							endpoint.lookupMetricGroup("contention", infixValues[(int) ((lookups + offset) % infixValues.length)], null);
+							lookups++;
+						}
+						return lookups;
+					}
+				}));
+			}
+			long start = System.nanoTime();
+			startLatch.countDown();
+			TimeUnit.MILLISECONDS.sleep(MEASURE_MILLIS);
+			running.set(false);
+			long total = 0;
+			for (Future<Long> future : futures) {
+				total += future.get();
+			}
+			long elapsed = System.nanoTime() - start;
+			return total * (double) TimeUnit.SECONDS.toNanos(1) / elapsed;
+		} finally {
+			executorService.shutdownNow();
+		}
+	}
+
+}
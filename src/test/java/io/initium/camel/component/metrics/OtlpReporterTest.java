@@ -0,0 +1,321 @@
+// @formatter:off
+/**
+ * Copyright 2014 Initium.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+// @formatter:on
+package io.initium.camel.component.metrics;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.camel.impl.DefaultCamelContext;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.codahale.metrics.MetricFilter;
+import com.codahale.metrics.MetricRegistry;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class OtlpReporterTest {
+
+	// constants
+	private static final String			HOST			= "127.0.0.1";
+	private static final int			TIMEOUT_MILLIS	= 5000;
+
+	// fields
+	private final BlockingQueue<byte[]>	bodies			= new LinkedBlockingQueue<byte[]>();
+	private volatile String				contentType;
+	// when set, the collector answers once it is counted down
+	private volatile CountDownLatch		answer;
+	private DefaultCamelContext			camelContext;
+	private MetricsComponent			metricsComponent;
+	private HttpServer					httpServer;
+	private String						url;
+
+	/**
+	 * @param message
+	 * @return the fields of the message by number: byte[] for length-delimited fields, Long for the others
+	 */
+	private static Map<Integer, List<Object>> decode(final byte[] message) {
+		Map<Integer, List<Object>> fields = new HashMap<Integer, List<Object>>();
+		int[] position = {0};
+		while (position[0] < message.length) {
+			long tag = readVarint(message, position);
+			int field = (int) (tag >>> 3);
+			Object value;
+			switch ((int) (tag & 7)) {
+				case 0:
+					value = readVarint(message, position);
+					break;
+				case 1:
+					long fixed64 = 0;
+					for (int i = 0; i < 8; i++) {
+						fixed64 |= (message[position[0]++] & 0xFFL) << (8 * i);
+					}
+					value = fixed64;
+					break;
+				case 2:
+					int length = (int) readVarint(message, position);
+					byte[] bytes = new byte[length];
+					System.arraycopy(message, position[0], bytes, 0, length);
+					position[0] += length;
+					value = bytes;
+					break;
+				default:
+					throw new IllegalArgumentException("unexpected wire type: " + tag);
+			}
+			if (!fields.containsKey(field)) {
+				fields.put(field, new ArrayList<Object>());
+			}
+			fields.get(field).add(value);
+		}
+		return fields;
+	}
+
+	/**
+	 * @param message
+	 * @param field
+	 * @return the first value of the length-delimited field of the message, decoded
+	 */
+	private static Map<Integer, List<Object>> message(final Map<Integer, List<Object>> message, final int field) {
+		return decode((byte[]) message.get(field).get(0));
+	}
+
+	/**
+	 * @param inputStream
+	 * @return
+	 * @throws IOException
+	 */
+	private static byte[] read(final InputStream inputStream) throws IOException {
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		byte[] buffer = new byte[4096];
+		for (int read = inputStream.read(buffer); read >= 0; read = inputStream.read(buffer)) {
+			body.write(buffer, 0, read);
+		}
+		return body.toByteArray();
+	}
+
+	/**
+	 * @param message
+	 * @param position
+	 * @return
+	 */
+	private static long readVarint(final byte[] message, final int[] position) {
+		long value = 0;
+		for (int shift = 0;; shift += 7) {
+			byte b = message[position[0]++];
+			value |= (b & 0x7FL) << shift;
+			if (b >= 0) {
+				return value;
+			}
+		}
+	}
+
+	/**
+	 * @param message
+	 * @param field
+	 * @return the first value of the string field of the message
+	 * @throws Exception
+	 */
+	private static String string(final Map<Integer, List<Object>> message, final int field) throws Exception {
+		return new String((byte[]) message.get(field).get(0), "UTF-8");
+	}
+
+	@Test
+	public void groupsShareOneRequest() throws Exception {
+		MetricRegistry euRegistry = new MetricRegistry();
+		MetricRegistry usRegistry = new MetricRegistry();
+		OtlpReporter euReporter = new OtlpReporter(euRegistry, MetricFilter.ALL, TimeUnit.SECONDS, TimeUnit.MILLISECONDS, "orders", "eu", "infix", OtlpExporter.open(this.metricsComponent, this.url, "test"));
+		OtlpReporter usReporter = new OtlpReporter(usRegistry, MetricFilter.ALL, TimeUnit.SECONDS, TimeUnit.MILLISECONDS, "orders", "us", "infix", OtlpExporter.open(this.metricsComponent, this.url, "test"));
+		try {
+			euRegistry.counter("orders.eu.size").inc(2);
+			usRegistry.counter("orders.us.size").inc(3);
+			euRegistry.timer("orders.eu.timing").update(5, TimeUnit.MILLISECONDS);
+			euReporter.report();
+			usReporter.report();
+			euReporter.endPeriod();
+			usReporter.endPeriod();
+			byte[] body = this.bodies.poll(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+			assertThat(this.bodies.poll(100, TimeUnit.MILLISECONDS), nullValue());
+			assertThat(this.contentType, equalTo(OtlpExporter.CONTENT_TYPE));
+
+			Map<Integer, List<Object>> request = decode(body);
+			assertThat(request.get(1).size(), equalTo(1));
+			Map<Integer, List<Object>> resourceMetrics = message(request, 1);
+			Map<Integer, List<Object>> serviceName = message(message(resourceMetrics, 1), 1);
+			assertThat(string(serviceName, 1), equalTo("service.name"));
+			assertThat(string(message(serviceName, 2), 1), equalTo("test"));
+			Map<Integer, List<Object>> scopeMetrics = message(resourceMetrics, 2);
+			// sorted by name
+			List<Object> metrics = scopeMetrics.get(2);
+			assertThat(metrics.size(), equalTo(2));
+
+			Map<Integer, List<Object>> size = decode((byte[]) metrics.get(0));
+			assertThat(string(size, 1), equalTo("orders.size"));
+			Map<Integer, List<Object>> sum = message(size, OtlpExporter.SUM);
+			assertThat(sum.get(2).get(0), equalTo((Object) 2L));
+			assertThat(sum.get(3).get(0), equalTo((Object) 0L));
+			assertThat(sum.get(1).size(), equalTo(2));
+			Map<Integer, List<Object>> euPoint = decode((byte[]) sum.get(1).get(0));
+			Map<Integer, List<Object>> euAttribute = message(euPoint, 7);
+			assertThat(string(euAttribute, 1), equalTo("infix"));
+			assertThat(string(message(euAttribute, 2), 1), equalTo("eu"));
+			assertThat(euPoint.get(6).get(0), equalTo((Object) 2L));
+			Map<Integer, List<Object>> usPoint = decode((byte[]) sum.get(1).get(1));
+			assertThat(string(message(message(usPoint, 7), 2), 1), equalTo("us"));
+			assertThat(usPoint.get(6).get(0), equalTo((Object) 3L));
+
+			Map<Integer, List<Object>> timing = decode((byte[]) metrics.get(1));
+			assertThat(string(timing, 1), equalTo("orders.timing"));
+			assertThat(string(timing, 3), equalTo("ms"));
+			Map<Integer, List<Object>> summaryPoint = message(message(timing, OtlpExporter.SUMMARY), 1);
+			assertThat(summaryPoint.get(4).get(0), equalTo((Object) 1L));
+			assertThat(Double.longBitsToDouble((Long) summaryPoint.get(5).get(0)), equalTo(5.0));
+			Map<Integer, List<Object>> maximum = decode((byte[]) summaryPoint.get(6).get(7));
+			assertThat(Double.longBitsToDouble((Long) maximum.get(1).get(0)), equalTo(1.0));
+			assertThat(Double.longBitsToDouble((Long) maximum.get(2).get(0)), equalTo(5.0));
+		} finally {
+			euReporter.stop();
+			usReporter.stop();
+		}
+	}
+
+	@Test
+	public void metricsNoLongerReportedAreReleased() throws Exception {
+		OtlpExporter otlpExporter = OtlpExporter.open(this.metricsComponent, this.url, "test");
+		try {
+			ProtobufWriter dataPoint = new ProtobufWriter();
+			dataPoint.writeVarint(6, 1);
+			otlpExporter.add("orders.eu.size", null, OtlpExporter.SUM, false, dataPoint);
+			otlpExporter.add("orders.us.size", null, OtlpExporter.SUM, false, dataPoint);
+			otlpExporter.flush();
+			assertThat(otlpExporter.getMetricBufferCount(), equalTo(2));
+			// the eu group was evicted
+			otlpExporter.add("orders.us.size", null, OtlpExporter.SUM, false, dataPoint);
+			otlpExporter.flush();
+			assertThat(otlpExporter.getMetricBufferCount(), equalTo(1));
+		} finally {
+			otlpExporter.close();
+		}
+	}
+
+	@Test
+	public void flushDoesNotWaitForTheCollector() throws Exception {
+		this.answer = new CountDownLatch(1);
+		OtlpExporter otlpExporter = OtlpExporter.open(this.metricsComponent, this.url, "test");
+		try {
+			ProtobufWriter dataPoint = new ProtobufWriter();
+			dataPoint.writeVarint(6, 1);
+			otlpExporter.add("orders.size", null, OtlpExporter.SUM, false, dataPoint);
+			otlpExporter.flush();
+			// the collector holds the first request
+			assertTrue(this.bodies.poll(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS) != null);
+			long start = System.nanoTime();
+			for (int i = 0; i < 2; i++) {
+				otlpExporter.add("orders.size", null, OtlpExporter.SUM, false, dataPoint);
+				otlpExporter.flush();
+			}
+			assertTrue("flush blocked", System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(TIMEOUT_MILLIS / 2));
+			// the second request was replaced by the third before the sender thread was free
+			assertThat(otlpExporter.getReplacedCount(), equalTo(1L));
+			this.answer.countDown();
+			assertTrue(this.bodies.poll(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS) != null);
+			assertThat(this.bodies.poll(100, TimeUnit.MILLISECONDS), nullValue());
+		} finally {
+			this.answer.countDown();
+			otlpExporter.close();
+		}
+	}
+
+	@Test
+	public void stoppingTheComponentStopsItsExporters() throws Exception {
+		OtlpExporter otlpExporter = OtlpExporter.open(this.metricsComponent, this.url, "test");
+		OtlpExporter otherExporter = OtlpExporter.open(this.metricsComponent, this.url, "other");
+		assertTrue(otherExporter != otlpExporter);
+		assertThat(this.metricsComponent.getOtlpExporters().size(), equalTo(2));
+		this.metricsComponent.stop();
+		assertTrue(this.metricsComponent.getOtlpExporters().isEmpty());
+		assertTrue(otlpExporter.isStopped());
+		assertTrue(otherExporter.isStopped());
+		// closing an exporter stopped with the component is harmless
+		otlpExporter.close();
+		otherExporter.close();
+	}
+
+	@Test
+	public void protobufEncoding() {
+		ProtobufWriter protobufWriter = new ProtobufWriter(1);
+		protobufWriter.writeVarint(1, 300);
+		protobufWriter.writeFixed64(2, 1);
+		ProtobufWriter nested = new ProtobufWriter();
+		nested.writeString(1, "a");
+		protobufWriter.writeMessage(3, nested);
+		assertThat(protobufWriter.toByteArray(), equalTo(new byte[] {0x08, (byte) 0xAC, 0x02, 0x11, 1, 0, 0, 0, 0, 0, 0, 0, 0x1A, 3, 0x0A, 1, 'a'}));
+		protobufWriter.reset();
+		protobufWriter.writeBool(1, true);
+		assertThat(protobufWriter.toByteArray(), equalTo(new byte[] {0x08, 1}));
+	}
+
+	@Before
+	public void startServer() throws Exception {
+		this.camelContext = new DefaultCamelContext();
+		this.metricsComponent = new MetricsComponent();
+		this.camelContext.addComponent("metrics", this.metricsComponent);
+		this.camelContext.start();
+		this.httpServer = HttpServer.create(new InetSocketAddress(HOST, 0), 0);
+		this.httpServer.createContext("/v1/metrics", new HttpHandler() {
+			@Override
+			public void handle(final HttpExchange httpExchange) throws IOException {
+				OtlpReporterTest.this.contentType = httpExchange.getRequestHeaders().getFirst("Content-Type");
+				OtlpReporterTest.this.bodies.add(read(httpExchange.getRequestBody()));
+				CountDownLatch lclAnswer = OtlpReporterTest.this.answer;
+				if (lclAnswer != null) {
+					try {
+						lclAnswer.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+				httpExchange.sendResponseHeaders(200, -1);
+				httpExchange.close();
+			}
+		});
+		this.httpServer.start();
+		this.url = "http://" + HOST + ":" + this.httpServer.getAddress().getPort() + "/v1/metrics";
+	}
+
+	@After
+	public void stopServer() throws Exception {
+		this.camelContext.stop();
+		this.httpServer.stop(0);
+	}
+
+}
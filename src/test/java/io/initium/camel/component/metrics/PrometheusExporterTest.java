@@ -0,0 +1,214 @@
+// @formatter:off
+/**
+ * Copyright 2014 Initium.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+// @formatter:on
+package io.initium.camel.component.metrics;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ConnectException;
+import java.net.HttpURLConnection;
+import java.net.Socket;
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.camel.Produce;
+import org.apache.camel.ProducerTemplate;
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.test.junit4.CamelTestSupport;
+import org.junit.Test;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricFilter;
+import com.codahale.metrics.MetricRegistry;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+
+public class PrometheusExporterTest extends CamelTestSupport {
+
+	@Produce(uri = "direct:start")
+	protected ProducerTemplate	template;
+
+	@Produce(uri = "direct:cached")
+	protected ProducerTemplate	cachedTemplate;
+
+	@Produce(uri = "direct:mixed")
+	protected ProducerTemplate	mixedTemplate;
+
+	/**
+	 * @param host
+	 * @return the port of the exporter the routes opened on the host
+	 * @throws Exception
+	 */
+	private int getPort(final String host) throws Exception {
+		// the exporter of the routes, shared by host and port
+		PrometheusExporter prometheusExporter = PrometheusExporter.open(getMetricsComponent(), host, 0, "/metrics", 0);
+		try {
+			return prometheusExporter.getPort();
+		} finally {
+			prometheusExporter.close();
+		}
+	}
+
+	/**
+	 * @return the component of the routes
+	 */
+	private MetricsComponent getMetricsComponent() {
+		return this.context.getComponent("metrics", MetricsComponent.class);
+	}
+
+	/**
+	 * @param url
+	 * @return
+	 * @throws Exception
+	 */
+	private static String scrape(final String url) throws Exception {
+		HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+		try {
+			assertThat(connection.getResponseCode(), equalTo(200));
+			assertThat(connection.getContentType(), equalTo(PrometheusExporter.CONTENT_TYPE));
+			InputStream inputStream = connection.getInputStream();
+			ByteArrayOutputStream body = new ByteArrayOutputStream();
+			byte[] buffer = new byte[4096];
+			for (int read = inputStream.read(buffer); read >= 0; read = inputStream.read(buffer)) {
+				body.write(buffer, 0, read);
+			}
+			// sent with its length rather than chunked
+			assertThat(connection.getHeaderField("Transfer-Encoding"), nullValue());
+			assertThat(connection.getContentLength(), equalTo(body.size()));
+			return body.toString("UTF-8");
+		} finally {
+			connection.disconnect();
+		}
+	}
+
+	@Test
+	public void infixesAreLabels() throws Exception {
+		this.template.sendBodyAndHeader("test", "infix", "eu");
+		this.template.sendBodyAndHeader("test", "infix", "eu");
+		this.template.sendBodyAndHeader("test", "infix", "us");
+		String text = scrape("http://127.0.0.1:" + getPort("127.0.0.1") + "/metrics");
+		assertThat(text.indexOf("# TYPE orders_size gauge\n") >= 0, equalTo(true));
+		assertThat(text.indexOf("# TYPE orders_size gauge\n"), equalTo(text.lastIndexOf("# TYPE orders_size gauge\n")));
+		assertThat(text.indexOf("orders_size{infix=\"eu\"} 2.0\n") >= 0, equalTo(true));
+		assertThat(text.indexOf("orders_size{infix=\"us\"} 1.0\n") >= 0, equalTo(true));
+		assertThat(text.indexOf("# TYPE orders_rate_total counter\n") >= 0, equalTo(true));
+		assertThat(text.indexOf("orders_rate_total{infix=\"eu\"} 2\n") >= 0, equalTo(true));
+		assertThat(text.indexOf("orders_amount{infix=\"eu\",quantile=\"0.5\"} 5.0\n") >= 0, equalTo(true));
+		assertThat(text.indexOf("orders_amount_sum{infix=\"eu\"} 10.0\n") >= 0, equalTo(true));
+		assertThat(text.indexOf("orders_amount_count{infix=\"eu\"} 2\n") >= 0, equalTo(true));
+	}
+
+	@Test
+	public void collidingFamiliesAreSuffixed() throws Exception {
+		this.mixedTemplate.sendBody("test");
+		String text = scrape("http://127.0.0.3:" + getPort("127.0.0.3") + "/metrics");
+		// the meter of mixed.b and the counter b_rate of mixed share the family mixed_b_rate
+		assertThat(text.indexOf("# TYPE mixed_b_rate gauge\n") >= 0, equalTo(true));
+		assertThat(text.indexOf("mixed_b_rate 1.0\n") >= 0, equalTo(true));
+		assertThat(text.indexOf("# TYPE mixed_b_rate_meter_total counter\n") >= 0, equalTo(true));
+		assertThat(text.indexOf("mixed_b_rate_meter_total 1\n") >= 0, equalTo(true));
+	}
+
+	@Test
+	public void renderingIsCached() throws Exception {
+		this.cachedTemplate.sendBody("test");
+		PrometheusExporter prometheusExporter = PrometheusExporter.open(getMetricsComponent(), "127.0.0.2", 0, "/metrics", TimeUnit.HOURS.toNanos(1));
+		try {
+			ByteArrayOutputStream first = new ByteArrayOutputStream();
+			prometheusExporter.scrape(first);
+			this.cachedTemplate.sendBody("test");
+			ByteArrayOutputStream second = new ByteArrayOutputStream();
+			prometheusExporter.scrape(second);
+			assertThat(second.toString("UTF-8"), equalTo(first.toString("UTF-8")));
+			assertThat(first.toString("UTF-8").indexOf("cached_size 1.0\n") >= 0, equalTo(true));
+		} finally {
+			prometheusExporter.close();
+		}
+	}
+
+	@Test
+	public void failedRenderingIsAnsweredWith500() throws Exception {
+		MetricRegistry metricRegistry = new MetricRegistry();
+		metricRegistry.register("failing.size", new Gauge<Long>() {
+			@Override
+			public Long getValue() {
+				throw new IllegalStateException("unavailable");
+			}
+		});
+		PrometheusExporter prometheusExporter = PrometheusExporter.open(getMetricsComponent(), "127.0.0.4", 0, "/metrics", 0);
+		PrometheusReporter prometheusReporter = new PrometheusReporter(metricRegistry, MetricFilter.ALL, "failing", null, "infix", TimeUnit.MILLISECONDS, prometheusExporter);
+		prometheusReporter.start();
+		try {
+			HttpURLConnection connection = (HttpURLConnection) new URL("http://127.0.0.4:" + prometheusExporter.getPort() + "/metrics").openConnection();
+			try {
+				assertThat(connection.getResponseCode(), equalTo(500));
+			} finally {
+				connection.disconnect();
+			}
+		} finally {
+			prometheusReporter.stop();
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void conflictingSettingsAreRejected() throws Exception {
+		PrometheusExporter prometheusExporter = PrometheusExporter.open(getMetricsComponent(), "127.0.0.5", 0, "/metrics", 0);
+		try {
+			PrometheusExporter.open(getMetricsComponent(), "127.0.0.5", 0, "/prometheus", 0);
+		} finally {
+			prometheusExporter.close();
+		}
+	}
+
+	@Test
+	public void stoppingTheComponentStopsItsServers() throws Exception {
+		MetricsComponent metricsComponent = getMetricsComponent();
+		PrometheusExporter prometheusExporter = PrometheusExporter.open(metricsComponent, "127.0.0.6", 0, "/metrics", 0);
+		int port = prometheusExporter.getPort();
+		metricsComponent.stop();
+		assertThat(metricsComponent.getPrometheusExporters().isEmpty(), equalTo(true));
+		assertThat(prometheusExporter.isStopped(), equalTo(true));
+		try {
+			new Socket("127.0.0.6", port).close();
+			fail("the server still listens on " + port);
+		} catch (ConnectException e) {
+			// stopped
+		}
+		// closing an exporter stopped with the component is harmless
+		prometheusExporter.close();
+	}
+
+	@Test
+	public void sanitize() {
+		assertThat(PrometheusExporter.sanitize("orders.interval-ms"), equalTo("orders_interval_ms"));
+		assertThat(PrometheusExporter.sanitize("1st:name"), equalTo("_1st:name"));
+		assertThat(PrometheusExporter.quote("a\"b\\c\nd"), equalTo("\"a\\\"b\\\\c\\nd\""));
+	}
+
+	@Override
+	protected RouteBuilder createRouteBuilder() {
+		return new RouteBuilder() {
+			@Override
+			public void configure() {
+				from("direct:start").to("metrics://orders?infix='${header.infix}'&prometheusReporters=[{host='127.0.0.1',port=0,cacheTtl=0}]&counter={value=1,name=size}&histogram={value=5,name=amount}");
+				from("direct:mixed").to("metrics://mixed?prometheusReporters=[{host='127.0.0.3',port=0,cacheTtl=0}]&counter={value=1,name=b_rate}").to("metrics://mixed.b?prometheusReporters=[{host='127.0.0.3',port=0,cacheTtl=0}]");
+				from("direct:cached").to("metrics://cached?prometheusReporters=[{host='127.0.0.2',port=0,cacheTtl=1,cacheTtlUnit=HOURS}]&counter={value=1,name=size}");
+			}
+		};
+	}
+
+}
@@ -0,0 +1,297 @@
+// @formatter:off
+/**
+ * Copyright 2014 Initium.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+// @formatter:on
+package io.initium.camel.component.metrics;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.SortedMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+
+import org.apache.camel.Produce;
+import org.apache.camel.ProducerTemplate;
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.test.junit4.CamelTestSupport;
+import org.junit.Test;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricFilter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.ScheduledReporter;
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.Timer;
+import com.codahale.metrics.UniformReservoir;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+
+@SuppressWarnings("rawtypes")
+public class ReporterPipelineTest extends CamelTestSupport {
+
+	/**
+	 * Remembers the counters and meters of the last report.
+	 */
+	private static final class RecordingReporter extends ScheduledReporter {
+		private SortedMap<String, Counter>	counters;
+		private SortedMap<String, Meter>	meters;
+		private boolean						isStopped;
+
+		private RecordingReporter(final MetricRegistry metricRegistry) {
+			super(metricRegistry, "recording", MetricFilter.ALL, TimeUnit.SECONDS, TimeUnit.MILLISECONDS);
+		}
+
+		@Override
+		public void report(final SortedMap<String, Gauge> gauges, final SortedMap<String, Counter> counters, final SortedMap<String, Histogram> histograms, final SortedMap<String, Meter> meters, final SortedMap<String, Timer> timers) {
+			this.counters = counters;
+			this.meters = meters;
+		}
+
+		@Override
+		public void stop() {
+			super.stop();
+			this.isStopped = true;
+		}
+	}
+
+	/**
+	 * Reads the value of every gauge and the snapshot of every histogram, remembering those of the last report.
+	 */
+	private static final class ReadingReporter extends ScheduledReporter {
+		private final Map<String, Object>	values	= new HashMap<String, Object>();
+
+		private ReadingReporter() {
+			super(new MetricRegistry(), "reading", MetricFilter.ALL, TimeUnit.SECONDS, TimeUnit.MILLISECONDS);
+		}
+
+		@Override
+		public void report(final SortedMap<String, Gauge> gauges, final SortedMap<String, Counter> counters, final SortedMap<String, Histogram> histograms, final SortedMap<String, Meter> meters, final SortedMap<String, Timer> timers) {
+			for (Entry<String, Gauge> entry : gauges.entrySet()) {
+				this.values.put(entry.getKey(), entry.getValue().getValue());
+			}
+			for (Entry<String, Histogram> entry : histograms.entrySet()) {
+				this.values.put(entry.getKey(), entry.getValue().getSnapshot());
+			}
+		}
+	}
+
+	/**
+	 * Passes the metrics whose name starts with a prefix.
+	 */
+	private static final class PrefixFilter implements MetricFilter {
+		private final String	prefix;
+
+		private PrefixFilter(final String prefix) {
+			this.prefix = prefix;
+		}
+
+		@Override
+		public boolean matches(final String name, final Metric metric) {
+			return name.startsWith(this.prefix);
+		}
+	}
+
+	// constants
+	private static final int		INFIX_VALUES	= 20;
+
+	@Produce(uri = "direct:start")
+	protected ProducerTemplate		template;
+
+	@Test
+	public void infixGroupsShareOnePipeline() throws Exception {
+		for (int i = 0; i < INFIX_VALUES; i++) {
+			this.template.sendBodyAndHeader("test", "infix", "value" + i);
+		}
+		MetricsComponent metricsComponent = getMetricsComponent();
+		Map<String, ReporterPipeline> reporterPipelines = metricsComponent.getReporterPipelines();
+		assertThat(reporterPipelines.size(), equalTo(1));
+		// the base group and one group per infix value
+		assertThat(reporterPipelines.values().iterator().next().size(), equalTo(INFIX_VALUES + 1));
+		for (Thread thread : Thread.getAllStackTraces().keySet()) {
+			assertThat("unexpected reporter thread: " + thread.getName(), thread.getName().startsWith("slf4j-reporter"), equalTo(false));
+		}
+	}
+
+	@Test
+	public void eachGroupReportsItsPartition() throws Exception {
+		this.template.sendBodyAndHeader("test", "infix", "a");
+		this.template.sendBodyAndHeader("test", "infix", "b");
+		MetricGroup metricGroupA = getMetricsComponent().getMetricGroups().get("piped.a");
+		MetricGroup metricGroupB = getMetricsComponent().getMetricGroups().get("piped.b");
+		for (String name : metricGroupA.getPartition().getNames()) {
+			assertThat(name, name.startsWith("piped.a."), equalTo(true));
+			assertThat(getMetricsComponent().getMetricRegistry().getMetrics().get(name), sameInstance(metricGroupA.getPartition().getMetrics().get(name)));
+		}
+
+		MetricRegistry metricRegistry = new MetricRegistry();
+		RecordingReporter reporterA = new RecordingReporter(metricRegistry);
+		RecordingReporter reporterB = new RecordingReporter(metricRegistry);
+		ReporterPipeline reporterPipeline = new ReporterPipeline(this.context, "test", 1, TimeUnit.HOURS);
+		reporterPipeline.add(metricGroupA, reporterA, MetricFilter.ALL, null);
+		reporterPipeline.add(metricGroupB, reporterB, new PrefixFilter("piped.b.si"), null);
+
+		reporterPipeline.run();
+		assertThat(reporterA.counters.keySet().toString(), equalTo("[piped.a.size]"));
+		assertThat(reporterA.counters.get("piped.a.size").getCount(), equalTo(1L));
+		assertThat(reporterA.meters.keySet().toString(), equalTo("[piped.a.rate]"));
+		assertThat(reporterB.counters.keySet().toString(), equalTo("[piped.b.size]"));
+		assertThat(reporterB.meters.isEmpty(), equalTo(true));
+
+		reporterPipeline.remove(metricGroupA);
+		assertThat(reporterA.isStopped, equalTo(true));
+		assertThat(reporterB.isStopped, equalTo(false));
+		assertThat(reporterPipeline.size(), equalTo(1));
+
+		// an evicted group's partition is emptied
+		metricGroupA.evict();
+		assertThat(metricGroupA.getPartition().getMetrics().isEmpty(), equalTo(true));
+	}
+
+	@Test
+	public void onlyChangedSkipsUnchangedMetrics() throws Exception {
+		this.template.sendBodyAndHeader("test", "infix", "c");
+		MetricGroup metricGroup = getMetricsComponent().getMetricGroups().get("piped.c");
+		RecordingReporter reporter = new RecordingReporter(new MetricRegistry());
+		ReporterPipeline reporterPipeline = new ReporterPipeline(this.context, "test", 1, TimeUnit.HOURS);
+		reporterPipeline.add(metricGroup, reporter, new PrefixFilter("piped.c.size"), new ChangeTracker(3));
+
+		// the first report includes every metric
+		reporterPipeline.run();
+		assertThat(reporter.counters.keySet().toString(), equalTo("[piped.c.size]"));
+		reporterPipeline.run();
+		assertThat(reporter.counters.isEmpty(), equalTo(true));
+		this.template.sendBodyAndHeader("test", "infix", "c");
+		reporterPipeline.run();
+		assertThat(reporter.counters.get("piped.c.size").getCount(), equalTo(2L));
+		// every third report is a refresh
+		reporterPipeline.run();
+		assertThat(reporter.counters.keySet().toString(), equalTo("[piped.c.size]"));
+		reporterPipeline.run();
+		assertThat(reporter.counters.isEmpty(), equalTo(true));
+	}
+
+	@Test
+	public void pipelinesShareSnapshotsAndGaugeValues() throws Exception {
+		this.template.sendBodyAndHeader("test", "infix", "d");
+		MetricGroup metricGroup = getMetricsComponent().getMetricGroups().get("piped.d");
+		final AtomicInteger evaluations = new AtomicInteger();
+		final AtomicInteger snapshots = new AtomicInteger();
+		metricGroup.getPartition().register("piped.d.cached.gauge", new Gauge<Integer>() {
+			@Override
+			public Integer getValue() {
+				return evaluations.incrementAndGet();
+			}
+		});
+		metricGroup.getPartition().register("piped.d.cached.histogram", new Histogram(new UniformReservoir() {
+			@Override
+			public Snapshot getSnapshot() {
+				snapshots.incrementAndGet();
+				return super.getSnapshot();
+			}
+		}));
+		ReadingReporter reporterA = new ReadingReporter();
+		ReadingReporter reporterB = new ReadingReporter();
+		ReporterPipeline reporterPipelineA = new ReporterPipeline(this.context, "a", 1, TimeUnit.HOURS);
+		ReporterPipeline reporterPipelineB = new ReporterPipeline(this.context, "b", 1, TimeUnit.HOURS);
+		reporterPipelineA.add(metricGroup, reporterA, new PrefixFilter("piped.d.cached"), null);
+		reporterPipelineB.add(metricGroup, reporterB, new PrefixFilter("piped.d.cached"), new ChangeTracker(0));
+
+		// the second pipeline reuses what the first read
+		reporterPipelineA.run();
+		reporterPipelineB.run();
+		assertThat(evaluations.get(), equalTo(1));
+		assertThat(snapshots.get(), equalTo(1));
+		assertThat(reporterB.values.get("piped.d.cached.gauge"), equalTo((Object) 1));
+		// but a pipeline never reuses what it read in its previous run
+		reporterPipelineA.run();
+		assertThat(evaluations.get(), equalTo(2));
+		assertThat(snapshots.get(), equalTo(2));
+		assertThat(reporterA.values.get("piped.d.cached.gauge"), equalTo((Object) 2));
+		assertThat(metricGroup.getReportCache().size(), equalTo(2));
+
+		metricGroup.evict();
+		assertThat(metricGroup.getReportCache().size(), equalTo(0));
+	}
+
+	@Test
+	public void unitViewsAndGroupMBeanShareOneSnapshot() throws Exception {
+		this.template.sendBodyAndHeader("test", "infix", "e");
+		MetricGroup metricGroup = getMetricsComponent().getMetricGroups().get("piped.e");
+		final AtomicInteger snapshots = new AtomicInteger();
+		Histogram nanosHistogram = new Histogram(new UniformReservoir() {
+			@Override
+			public Snapshot getSnapshot() {
+				snapshots.incrementAndGet();
+				return super.getSnapshot();
+			}
+		});
+		nanosHistogram.update(TimeUnit.SECONDS.toNanos(2));
+		metricGroup.getPartition().register("piped.e.shared.milliseconds", new TimeUnitHistogram(nanosHistogram, TimeUnit.MILLISECONDS));
+		metricGroup.getPartition().register("piped.e.shared.seconds", new TimeUnitHistogram(nanosHistogram, TimeUnit.SECONDS));
+		ReadingReporter reporterA = new ReadingReporter();
+		ReadingReporter reporterB = new ReadingReporter();
+		ReporterPipeline reporterPipelineA = new ReporterPipeline(this.context, "e", 1, TimeUnit.HOURS);
+		ReporterPipeline reporterPipelineB = new ReporterPipeline(this.context, "f", 1, TimeUnit.HOURS);
+		reporterPipelineA.add(metricGroup, reporterA, new PrefixFilter("piped.e.shared"), null);
+		reporterPipelineB.add(metricGroup, reporterB, new PrefixFilter("piped.e.shared"), null);
+
+		// one snapshot of nanoseconds for the views in every unit, each converted once
+		reporterPipelineA.run();
+		reporterPipelineB.run();
+		assertThat(snapshots.get(), equalTo(1));
+		assertThat(metricGroup.getReportCache().size(), equalTo(3));
+		assertThat(reporterB.values.get("piped.e.shared.seconds"), sameInstance(reporterA.values.get("piped.e.shared.seconds")));
+		// converted again along with the snapshot of nanoseconds
+		reporterPipelineA.run();
+		assertThat(snapshots.get(), equalTo(2));
+		assertThat(reporterA.values.get("piped.e.shared.seconds"), not(sameInstance(reporterB.values.get("piped.e.shared.seconds"))));
+
+		// and for a compact MBean reading right after
+		GroupMBean groupMBean = new GroupMBean(metricGroup.getPartition(), MetricFilter.ALL, "test", "piped.e", TimeUnit.SECONDS, TimeUnit.MILLISECONDS);
+		groupMBean.setReportCache(metricGroup.getReportCache());
+		AttributeList attributes = groupMBean.getAttributes(new String[] {"shared.milliseconds.Max", "shared.seconds.Max"});
+		assertThat(((Attribute) attributes.get(0)).getValue(), equalTo((Object) 2000.0));
+		assertThat(((Attribute) attributes.get(1)).getValue(), equalTo((Object) 2.0));
+		assertThat(groupMBean.getAttribute("shared.seconds.Mean"), equalTo((Object) 2.0));
+		assertThat(snapshots.get(), equalTo(2));
+	}
+
+	/**
+	 * @return
+	 */
+	private MetricsComponent getMetricsComponent() {
+		return this.context.getComponent("metrics", MetricsComponent.class);
+	}
+
+	@Override
+	protected RouteBuilder createRouteBuilder() {
+		return new RouteBuilder() {
+			@Override
+			public void configure() {
+				from("direct:start").to("metrics://piped?infix='${header.infix}'&slf4jReporters=[{periodDuration=1,periodDurationUnit=HOURS}]&counter={value=1,name=size}");
+			}
+		};
+	}
+
+}
@@ -0,0 +1,175 @@
+// @formatter:off
+/**
+ * Copyright 2014 Initium.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+// @formatter:on
+package io.initium.camel.component.metrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.camel.EndpointInject;
+import org.apache.camel.Produce;
+import org.apache.camel.ProducerTemplate;
+import org.apache.camel.ResolveEndpointFailedException;
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.component.mock.MockEndpoint;
+import org.apache.camel.test.junit4.CamelTestSupport;
+import org.junit.Test;
+
+import com.codahale.metrics.Clock;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Snapshot;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.instanceOf;
+
+public class ReservoirTest extends CamelTestSupport {
+
+	// constants
+	private static final int		VALUES		= 100000;
+	private static final int		THREADS		= 4;
+
+	@EndpointInject(uri = "mock:resultOne")
+	protected MockEndpoint			resultEndpointOne;
+
+	@Produce(uri = "direct:startOne")
+	protected ProducerTemplate		templateOne;
+
+	@Test
+	public void hdrReservoirQuantilesAreWithinPrecision() {
+		HdrHistogramReservoir reservoir = new HdrHistogramReservoir(TimeUnit.HOURS.toNanos(1), 3, 1, TimeUnit.MINUTES);
+		List<Long> values = new ArrayList<Long>();
+		for (long i = 1; i <= VALUES; i++) {
+			values.add(i * 1000);
+		}
+		Collections.shuffle(values);
+		for (long value : values) {
+			reservoir.update(value);
+		}
+		assertThat(reservoir.size(), equalTo(VALUES));
+		Snapshot snapshot = reservoir.getSnapshot();
+		assertThat(snapshot.size(), equalTo(snapshot.getValues().length));
+		assertWithinPrecision(snapshot.get999thPercentile(), 0.999 * VALUES * 1000);
+		assertWithinPrecision(snapshot.get99thPercentile(), 0.99 * VALUES * 1000);
+		assertWithinPrecision(snapshot.getMedian(), 0.5 * VALUES * 1000);
+		assertWithinPrecision(snapshot.getMax(), VALUES * 1000);
+		assertWithinPrecision(snapshot.getMin(), 1000);
+	}
+
+	@Test
+	public void hdrReservoirKeepsEveryConcurrentValue() throws Exception {
+		final HdrHistogramReservoir reservoir = new HdrHistogramReservoir(TimeUnit.HOURS.toNanos(1), 2, 1, TimeUnit.MINUTES);
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int i = 0; i < THREADS; i++) {
+			threads.add(new Thread() {
+				@Override
+				public void run() {
+					for (int j = 0; j < VALUES; j++) {
+						reservoir.update(j);
+						if (j % 1000 == 0) {
+							reservoir.getSnapshot();
+						}
+					}
+				}
+			});
+		}
+		for (Thread thread : threads) {
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertThat(reservoir.size(), equalTo(THREADS * VALUES));
+	}
+
+	@Test
+	public void hdrReservoirDropsValuesOlderThanTheWindow() {
+		final AtomicLong tick = new AtomicLong();
+		HdrHistogramReservoir reservoir = new HdrHistogramReservoir(1000, 2, 60, TimeUnit.SECONDS, new Clock() {
+			@Override
+			public long getTick() {
+				return tick.get();
+			}
+		});
+		reservoir.update(100);
+		assertThat(reservoir.getSnapshot().getMax(), equalTo(100L));
+		tick.addAndGet(TimeUnit.SECONDS.toNanos(30));
+		reservoir.update(10);
+		Snapshot snapshot = reservoir.getSnapshot();
+		assertThat(snapshot.getMin(), equalTo(10L));
+		assertThat(snapshot.getMax(), equalTo(100L));
+		tick.addAndGet(TimeUnit.SECONDS.toNanos(40));
+		snapshot = reservoir.getSnapshot();
+		assertThat(snapshot.getMax(), equalTo(10L));
+		assertThat(reservoir.size(), equalTo(1));
+		tick.addAndGet(TimeUnit.MINUTES.toNanos(5));
+		assertThat(reservoir.getSnapshot().getValues().length, equalTo(0));
+	}
+
+	@Test
+	public void hdrReservoirClampsValuesOutsideItsRange() {
+		HdrHistogramReservoir reservoir = new HdrHistogramReservoir(1000, 2, 1, TimeUnit.MINUTES);
+		reservoir.update(-5);
+		reservoir.update(1000000);
+		Snapshot snapshot = reservoir.getSnapshot();
+		assertThat(snapshot.getMin(), equalTo(0L));
+		assertWithinPrecision(snapshot.getMax(), 1000);
+	}
+
+	@Test
+	public void endpointReservoirsAreUsed() throws Exception {
+		int exchanges = 5;
+		this.resultEndpointOne.expectedMessageCount(exchanges);
+		for (int i = 0; i < exchanges; i++) {
+			this.templateOne.sendBody("test");
+		}
+		this.resultEndpointOne.assertIsSatisfied();
+		MetricRegistry metricRegistry = this.context.getComponent("metrics", MetricsComponent.class).getMetricRegistry();
+		assertThat(metricRegistry.timer("reservoirs.timing").getSnapshot(), instanceOf(HdrHistogramReservoir.HdrSnapshot.class));
+		assertThat(metricRegistry.timer("reservoirs.timing").getSnapshot().size(), equalTo(exchanges));
+		// the sliding windows keep the last values only
+		assertThat(metricRegistry.histogram("reservoirs.sizes").getSnapshot().size(), equalTo(2));
+		assertThat(metricRegistry.histogram("reservoirs.sizes").getCount(), equalTo((long) exchanges));
+		assertThat(metricRegistry.histogram("reservoirs.interval.milliseconds").getSnapshot().size(), equalTo(3));
+	}
+
+	@Test(expected = ResolveEndpointFailedException.class)
+	public void unknownReservoirTypeFails() {
+		this.context.getEndpoint("metrics://unknownReservoir?timing=start&timingReservoir=unknown");
+	}
+
+	/**
+	 * @param actual
+	 * @param expected
+	 */
+	private void assertWithinPrecision(final double actual, final double expected) {
+		assertThat("actual: " + actual + ", expected: " + expected, Math.abs(actual - expected) <= expected * 0.01, equalTo(true));
+	}
+
+	@Override
+	protected RouteBuilder createRouteBuilder() {
+		return new RouteBuilder() {
+			@Override
+			public void configure() {
+				from("direct:startOne")
+						.to("metrics://reservoirs?timing=start&timingReservoir=hdr&intervalReservoir={type=slidingWindow,size=3}&jmxReporters=[{}]&histogram={value=5,name=sizes,reservoir={type=slidingWindow,size=2}}")
+						.to("metrics://reservoirs?timing=stop").to("mock:resultOne");
+			}
+		};
+	}
+
+}
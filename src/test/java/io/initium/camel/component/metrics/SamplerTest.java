@@ -0,0 +1,134 @@
+// @formatter:off
+/**
+ * Copyright 2014 Initium.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+// @formatter:on
+package io.initium.camel.component.metrics;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.camel.EndpointInject;
+import org.apache.camel.Produce;
+import org.apache.camel.ProducerTemplate;
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.component.mock.MockEndpoint;
+import org.apache.camel.test.junit4.CamelTestSupport;
+import org.junit.Test;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Snapshot;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+
+public class SamplerTest extends CamelTestSupport {
+
+	// constants
+	private static final int		SAMPLE_EVERY	= 10;
+	private static final int		DECISIONS		= 1000000;
+
+	@EndpointInject(uri = "mock:resultOne")
+	protected MockEndpoint			resultEndpointOne;
+
+	@Produce(uri = "direct:startOne")
+	protected ProducerTemplate		templateOne;
+
+	@Produce(uri = "direct:startTwo")
+	protected ProducerTemplate		templateTwo;
+
+	@Test
+	public void fixedSamplingIsExactPerCycle() {
+		Sampler sampler = Sampler.everyN(SAMPLE_EVERY);
+		long recorded = 0;
+		long totalWeight = 0;
+		for (int i = 0; i < DECISIONS; i++) {
+			long weight = sampler.sample();
+			if (weight > 0) {
+				recorded++;
+				totalWeight += weight;
+			}
+		}
+		// the first cycle of a thread starts at a random point
+		assertThat(Math.abs(recorded - DECISIONS / SAMPLE_EVERY) <= 1, equalTo(true));
+		assertThat(Math.abs(totalWeight - DECISIONS) <= SAMPLE_EVERY, equalTo(true));
+	}
+
+	@Test
+	public void probabilisticSamplingIsUnbiased() {
+		Sampler sampler = Sampler.withRate(0.3);
+		long recorded = 0;
+		long totalWeight = 0;
+		for (int i = 0; i < DECISIONS; i++) {
+			long weight = sampler.sample();
+			if (weight > 0) {
+				recorded++;
+				totalWeight += weight;
+			}
+		}
+		assertThat("recorded: " + recorded, Math.abs(recorded - 0.3 * DECISIONS) < 0.01 * DECISIONS, equalTo(true));
+		assertThat("totalWeight: " + totalWeight, Math.abs(totalWeight - DECISIONS) < 0.01 * DECISIONS, equalTo(true));
+	}
+
+	@Test
+	public void sampledEndpointScalesCountersAndRate() throws Exception {
+		int exchanges = 1000;
+		this.resultEndpointOne.expectedMessageCount(exchanges);
+		for (int i = 0; i < exchanges; i++) {
+			this.templateOne.sendBody("test");
+		}
+		this.resultEndpointOne.assertIsSatisfied();
+		MetricRegistry metricRegistry = this.context.getComponent("metrics", MetricsComponent.class).getMetricRegistry();
+		long rate = metricRegistry.meter("sampled.rate").getCount();
+		long counter = metricRegistry.counter("sampled.size").getCount();
+		long histogramCount = metricRegistry.histogram("sampled.sizes").getCount();
+		assertThat("rate: " + rate, Math.abs(rate - exchanges) <= SAMPLE_EVERY, equalTo(true));
+		assertThat(counter, equalTo(2 * rate));
+		assertThat(histogramCount, equalTo(rate / SAMPLE_EVERY));
+	}
+
+	@Test
+	public void sampledIntervalsAreNotScaled() throws Exception {
+		this.resultEndpointOne.expectedMessageCount(1);
+		this.templateOne.sendBody("test");
+		this.resultEndpointOne.assertIsSatisfied();
+		MetricsComponent metricsComponent = this.context.getComponent("metrics", MetricsComponent.class);
+		MetricGroup metricGroup = metricsComponent.getMetricGroups().get("sampled");
+		long[] values = new long[metricGroup.getEvaluatedValueCount()];
+		Arrays.fill(values, MetricGroup.NO_VALUE);
+		long nanoTime = System.nanoTime();
+		metricGroup.apply(nanoTime, values, SAMPLE_EVERY);
+		metricGroup.apply(nanoTime + TimeUnit.SECONDS.toNanos(2), values, SAMPLE_EVERY);
+		// the gap between two sampled exchanges is recorded as it is, not divided by the weight
+		Snapshot snapshot = metricsComponent.getMetricRegistry().histogram("sampled.interval.seconds").getSnapshot();
+		assertThat(snapshot.getMax(), equalTo(2L));
+	}
+
+	@Test
+	public void stopEndpointIgnoresSampling() throws Exception {
+		this.templateTwo.sendBody("test");
+		MetricsEndpoint stopEndpoint = this.context.getEndpoint("metrics://sampledTimer?timing=stop&sampleEvery=10", MetricsEndpoint.class);
+		assertNull(stopEndpoint.getSampler());
+	}
+
+	@Override
+	protected RouteBuilder createRouteBuilder() {
+		return new RouteBuilder() {
+			@Override
+			public void configure() {
+				from("direct:startOne").to("metrics://sampled?sampleEvery=" + SAMPLE_EVERY + "&jmxReporters=[{}]&counter={value=2,name=size}&histogram={value=5,name=sizes}").to("mock:resultOne");
+				from("direct:startTwo").to("metrics://sampledTimer?timing=start&jmxReporters=[{}]").to("metrics://sampledTimer?timing=stop&sampleEvery=10");
+			}
+		};
+	}
+
+}
@@ -0,0 +1,194 @@
+// @formatter:off
+/**
+ * Copyright 2014 Initium.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+// @formatter:on
+package io.initium.camel.component.metrics;
+
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.camel.impl.DefaultCamelContext;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricFilter;
+import com.codahale.metrics.MetricRegistry;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class StatsdReporterTest {
+
+	// constants
+	private static final String		HOST			= "127.0.0.1";
+	private static final int		TIMEOUT_MILLIS	= 5000;
+	private static final Charset	UTF_8			= Charset.forName("UTF-8");
+
+	// fields
+	private DefaultCamelContext		camelContext;
+	private MetricsComponent		metricsComponent;
+
+	/**
+	 * @param datagramSocket
+	 * @return the lines of the next datagram
+	 * @throws Exception
+	 */
+	private static List<String> receive(final DatagramSocket datagramSocket) throws Exception {
+		DatagramPacket datagramPacket = new DatagramPacket(new byte[2048], 2048);
+		datagramSocket.receive(datagramPacket);
+		List<String> lines = new ArrayList<String>();
+		for (String line : new String(datagramPacket.getData(), 0, datagramPacket.getLength(), UTF_8).split("\n")) {
+			lines.add(line);
+		}
+		return lines;
+	}
+
+	@Before
+	public void setUp() throws Exception {
+		this.camelContext = new DefaultCamelContext();
+		this.metricsComponent = new MetricsComponent();
+		this.camelContext.addComponent("metrics", this.metricsComponent);
+		this.camelContext.start();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		this.camelContext.stop();
+	}
+
+	@Test
+	public void countsAreSentAsDeltas() throws Exception {
+		DatagramSocket datagramSocket = new DatagramSocket(new InetSocketAddress(HOST, 0));
+		datagramSocket.setSoTimeout(TIMEOUT_MILLIS);
+		MetricRegistry metricRegistry = new MetricRegistry();
+		StatsdReporter statsdReporter = new StatsdReporter(metricRegistry, MetricFilter.ALL, TimeUnit.SECONDS, TimeUnit.MILLISECONDS, "app", null, 1432, StatsdSender.open(this.metricsComponent, HOST, datagramSocket.getLocalPort()));
+		try {
+			metricRegistry.counter("orders.size").inc(3);
+			metricRegistry.meter("orders.rate").mark(2);
+			metricRegistry.register("orders.open", new Gauge<Integer>() {
+				@Override
+				public Integer getValue() {
+					return -4;
+				}
+			});
+			statsdReporter.report();
+			List<String> lines = receive(datagramSocket);
+			assertThat(lines.toString(), equalTo("[app.orders.open:0|g, app.orders.open:-4|g, app.orders.size:3|c, app.orders.rate:2|c]"));
+			metricRegistry.counter("orders.size").inc(2);
+			statsdReporter.report();
+			lines = receive(datagramSocket);
+			// the unchanged meter is not sent again
+			assertThat(lines.toString(), equalTo("[app.orders.open:0|g, app.orders.open:-4|g, app.orders.size:2|c]"));
+		} finally {
+			statsdReporter.stop();
+			datagramSocket.close();
+		}
+	}
+
+	@Test
+	public void linesArePackedUnderTheMtu() throws Exception {
+		DatagramSocket datagramSocket = new DatagramSocket(new InetSocketAddress(HOST, 0));
+		datagramSocket.setSoTimeout(TIMEOUT_MILLIS);
+		MetricRegistry metricRegistry = new MetricRegistry();
+		StatsdSender statsdSender = StatsdSender.open(this.metricsComponent, HOST, datagramSocket.getLocalPort());
+		StatsdReporter statsdReporter = new StatsdReporter(metricRegistry, MetricFilter.ALL, TimeUnit.SECONDS, TimeUnit.MILLISECONDS, null, "env:test", 100, statsdSender);
+		try {
+			metricRegistry.histogram("orders.amount").update(5);
+			statsdReporter.report();
+			List<String> lines = new ArrayList<String>();
+			// the count and the nine values of the snapshot
+			while (lines.size() < 10) {
+				DatagramPacket datagramPacket = new DatagramPacket(new byte[2048], 2048);
+				datagramSocket.receive(datagramPacket);
+				assertTrue(Integer.toString(datagramPacket.getLength()), datagramPacket.getLength() <= 100);
+				for (String line : new String(datagramPacket.getData(), 0, datagramPacket.getLength(), UTF_8).split("\n")) {
+					assertTrue(line, line.endsWith("|#env:test"));
+					lines.add(line);
+				}
+			}
+			assertThat(lines.get(0), equalTo("orders.amount.count:1|c|#env:test"));
+			assertThat(lines.get(9), equalTo("orders.amount.p999:5|g|#env:test"));
+			// several lines per datagram
+			assertTrue(Long.toString(statsdSender.getSentCount()), statsdSender.getSentCount() < 10);
+		} finally {
+			statsdReporter.stop();
+			datagramSocket.close();
+		}
+	}
+
+	@Test
+	public void reportersSharingASenderKeepTheirMtu() throws Exception {
+		DatagramSocket datagramSocket = new DatagramSocket(new InetSocketAddress(HOST, 0));
+		datagramSocket.setSoTimeout(TIMEOUT_MILLIS);
+		MetricRegistry metricRegistry = new MetricRegistry();
+		metricRegistry.histogram("orders.amount").update(5);
+		StatsdReporter largeReporter = new StatsdReporter(metricRegistry, MetricFilter.ALL, TimeUnit.SECONDS, TimeUnit.MILLISECONDS, "large", null, 1432, StatsdSender.open(this.metricsComponent, HOST, datagramSocket.getLocalPort()));
+		StatsdReporter smallReporter = new StatsdReporter(metricRegistry, MetricFilter.ALL, TimeUnit.SECONDS, TimeUnit.MILLISECONDS, "small", null, 60, StatsdSender.open(this.metricsComponent, HOST, datagramSocket.getLocalPort()));
+		try {
+			largeReporter.report();
+			// the count and the nine values of the snapshot in one datagram
+			assertThat(receive(datagramSocket).size(), equalTo(10));
+			smallReporter.report();
+			int lineCount = 0;
+			DatagramPacket datagramPacket = new DatagramPacket(new byte[2048], 2048);
+			while (lineCount < 10) {
+				datagramSocket.receive(datagramPacket);
+				assertTrue(Integer.toString(datagramPacket.getLength()), datagramPacket.getLength() <= 60);
+				lineCount += new String(datagramPacket.getData(), 0, datagramPacket.getLength(), UTF_8).split("\n").length;
+			}
+		} finally {
+			largeReporter.stop();
+			smallReporter.stop();
+			datagramSocket.close();
+		}
+	}
+
+	@Test
+	public void sendersAreShared() throws Exception {
+		StatsdSender statsdSender = StatsdSender.open(this.metricsComponent, HOST, 8125);
+		StatsdSender otherStatsdSender = StatsdSender.open(this.metricsComponent, HOST, 8125);
+		try {
+			assertTrue(statsdSender.getChannel() == otherStatsdSender.getChannel());
+			// closing a sender twice releases the channel once
+			statsdSender.close();
+			statsdSender.close();
+			assertThat(this.metricsComponent.getStatsdChannels().size(), equalTo(1));
+			assertTrue(!otherStatsdSender.getChannel().isStopped());
+		} finally {
+			otherStatsdSender.close();
+		}
+		assertTrue(this.metricsComponent.getStatsdChannels().isEmpty());
+		assertTrue(statsdSender.getChannel().isStopped());
+	}
+
+	@Test
+	public void stoppingTheComponentClosesItsChannels() throws Exception {
+		StatsdSender statsdSender = StatsdSender.open(this.metricsComponent, HOST, 8125);
+		assertThat(this.metricsComponent.getStatsdChannels().size(), equalTo(1));
+		this.metricsComponent.stop();
+		assertTrue(this.metricsComponent.getStatsdChannels().isEmpty());
+		assertTrue(statsdSender.getChannel().isStopped());
+		// closing a sender of a closed channel is harmless
+		statsdSender.close();
+	}
+
+}
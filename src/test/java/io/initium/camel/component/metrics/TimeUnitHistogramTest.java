@@ -0,0 +1,129 @@
+// @formatter:off
+/**
+ * Copyright 2014 Initium.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+// @formatter:on
+package io.initium.camel.component.metrics;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.codahale.metrics.ExponentiallyDecayingReservoir;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.UniformReservoir;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class TimeUnitHistogramTest {
+
+	// constants
+	private static final int		SAMPLES		= 500;
+	private static final double[]	QUANTILES	= {0, 0.5, 0.75, 0.95, 0.98, 0.99, 0.999, 1};
+
+	@Test
+	public void viewsMatchPerUnitHistograms() {
+		Random random = new Random(42);
+		// the uniform reservoir keeps all samples while there are fewer than its size
+		Histogram nanosHistogram = new Histogram(new UniformReservoir());
+		Histogram millisHistogram = new Histogram(new UniformReservoir());
+		Histogram secondsHistogram = new Histogram(new UniformReservoir());
+		for (int i = 0; i < SAMPLES; i++) {
+			long nanos = (long) (random.nextDouble() * TimeUnit.SECONDS.toNanos(5));
+			nanosHistogram.update(nanos);
+			millisHistogram.update(TimeUnit.NANOSECONDS.toMillis(nanos));
+			secondsHistogram.update(TimeUnit.NANOSECONDS.toSeconds(nanos));
+		}
+		assertSameValues(new TimeUnitHistogram(nanosHistogram, TimeUnit.MILLISECONDS), millisHistogram, 1);
+		assertSameValues(new TimeUnitHistogram(nanosHistogram, TimeUnit.SECONDS), secondsHistogram, 1);
+	}
+
+	@Test
+	public void viewsConvertTheNanosecondSnapshot() {
+		Random random = new Random();
+		Histogram nanosHistogram = new Histogram(new ExponentiallyDecayingReservoir());
+		int samples = 1 + random.nextInt(2 * SAMPLES);
+		for (int i = 0; i < samples; i++) {
+			nanosHistogram.update((long) (random.nextDouble() * TimeUnit.SECONDS.toNanos(5)));
+		}
+		Snapshot nanosSnapshot = nanosHistogram.getSnapshot();
+		for (TimeUnit timeUnit : new TimeUnit[] {TimeUnit.MICROSECONDS, TimeUnit.MILLISECONDS, TimeUnit.SECONDS}) {
+			Snapshot snapshot = new TimeUnitHistogram(nanosHistogram, timeUnit).getSnapshot(nanosSnapshot);
+			String message = samples + " samples in " + timeUnit;
+			for (double quantile : QUANTILES) {
+				assertThat(message, snapshot.getValue(quantile), equalTo((double) timeUnit.convert((long) nanosSnapshot.getValue(quantile), TimeUnit.NANOSECONDS)));
+			}
+			assertThat(message, snapshot.getMin(), equalTo(timeUnit.convert(nanosSnapshot.getMin(), TimeUnit.NANOSECONDS)));
+			assertThat(message, snapshot.getMax(), equalTo(timeUnit.convert(nanosSnapshot.getMax(), TimeUnit.NANOSECONDS)));
+			assertThat(message, snapshot.getMean(), equalTo(nanosSnapshot.getMean() / timeUnit.toNanos(1)));
+			assertThat(message, snapshot.getStdDev(), equalTo(nanosSnapshot.getStdDev() / timeUnit.toNanos(1)));
+			long[] values = snapshot.getValues();
+			long[] nanosValues = nanosSnapshot.getValues();
+			assertThat(message, values.length, equalTo(nanosValues.length));
+			for (int i = 0; i < values.length; i++) {
+				assertThat(message, values[i], equalTo(timeUnit.convert(nanosValues[i], TimeUnit.NANOSECONDS)));
+			}
+		}
+	}
+
+	@Test
+	public void meanIsNotTruncated() {
+		Histogram nanosHistogram = new Histogram(new UniformReservoir());
+		nanosHistogram.update(TimeUnit.MILLISECONDS.toNanos(1900));
+		nanosHistogram.update(TimeUnit.MILLISECONDS.toNanos(500));
+		Snapshot snapshot = new TimeUnitHistogram(nanosHistogram, TimeUnit.SECONDS).getSnapshot();
+		assertThat(snapshot.getMean(), equalTo(1.2));
+		assertThat(snapshot.getMax(), equalTo(1L));
+	}
+
+	@Test
+	public void updatesAreRecordedInNanoseconds() {
+		Histogram nanosHistogram = new Histogram(new UniformReservoir());
+		TimeUnitHistogram secondsHistogram = new TimeUnitHistogram(nanosHistogram, TimeUnit.SECONDS);
+		secondsHistogram.update(2);
+		TimeUnitHistogram millisHistogram = new TimeUnitHistogram(nanosHistogram, TimeUnit.MILLISECONDS);
+		assertThat(nanosHistogram.getSnapshot().getMax(), equalTo(TimeUnit.SECONDS.toNanos(2)));
+		// one snapshot of the nanoseconds serves every view
+		Snapshot nanosSnapshot = nanosHistogram.getSnapshot();
+		assertThat(millisHistogram.getSnapshot(nanosSnapshot).getMax(), equalTo(2000L));
+		assertThat(secondsHistogram.getSnapshot(nanosSnapshot).getMax(), equalTo(2L));
+		assertThat(millisHistogram.getCount(), equalTo(1L));
+	}
+
+	/**
+	 * @param view
+	 * @param expected
+	 * @param truncation
+	 *            the largest difference in the mean caused by truncating each value
+	 */
+	private void assertSameValues(final Histogram view, final Histogram expected, final double truncation) {
+		Snapshot viewSnapshot = view.getSnapshot();
+		Snapshot expectedSnapshot = expected.getSnapshot();
+		assertThat(view.getCount(), equalTo(expected.getCount()));
+		assertThat(viewSnapshot.size(), equalTo(expectedSnapshot.size()));
+		long[] viewValues = viewSnapshot.getValues();
+		long[] expectedValues = expectedSnapshot.getValues();
+		Arrays.sort(viewValues);
+		Arrays.sort(expectedValues);
+		assertThat(Arrays.equals(viewValues, expectedValues), equalTo(true));
+		assertThat(viewSnapshot.getMin(), equalTo(expectedSnapshot.getMin()));
+		assertThat(viewSnapshot.getMax(), equalTo(expectedSnapshot.getMax()));
+		double meanDifference = viewSnapshot.getMean() - expectedSnapshot.getMean();
+		assertThat("mean difference: " + meanDifference, meanDifference >= 0 && meanDifference < truncation, equalTo(true));
+	}
+
+}
@@ -0,0 +1,150 @@
+// @formatter:off
+/**
+ * Copyright 2014 Initium.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+// @formatter:on
+package io.initium.camel.component.metrics;
+
+import java.lang.management.ManagementFactory;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.Producer;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.impl.DefaultExchange;
+import org.apache.camel.util.ServiceHelper;
+import org.junit.Assume;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.codahale.metrics.Timer;
+import com.codahale.metrics.UniformReservoir;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class TimerSlotsAllocationTest {
+
+	// logging
+	private static final String	SELF						= Thread.currentThread().getStackTrace()[1].getClassName();
+	private static final Logger	LOGGER						= LoggerFactory.getLogger(SELF);
+
+	// constants
+	private static final int	EXCHANGES					= 20000;
+	// a slot far beyond the slots the exchange uses, which must not size its array
+	private static final int	SLOT						= 5000;
+	private static final String	START_URI					= "metrics://allocation?timing=start&timingReservoir=uniform&intervalReservoir=uniform&jmxReporters=[{}]";
+	private static final String	STOP_URI					= "metrics://allocation?timing=stop&timingReservoir=uniform&intervalReservoir=uniform";
+	// one long[4], the property map entry and the lazily created map table, with headroom
+	private static final long	MAX_BYTES_PER_EXCHANGE		= 192;
+
+	@Test
+	public void startStopPairAllocatesOnlyTheSlotArray() throws Exception {
+		com.sun.management.ThreadMXBean threadMXBean = getThreadMXBean();
+		Assume.assumeTrue(threadMXBean != null && threadMXBean.isThreadAllocatedMemorySupported());
+		threadMXBean.setThreadAllocatedMemoryEnabled(true);
+		long threadId = Thread.currentThread().getId();
+
+		DefaultCamelContext camelContext = new DefaultCamelContext();
+		camelContext.start();
+		try {
+			// uniform reservoirs, so that the timer and interval updates themselves allocate nothing
+			Producer startProducer = camelContext.getEndpoint(START_URI).createProducer();
+			Producer stopProducer = camelContext.getEndpoint(STOP_URI).createProducer();
+			ServiceHelper.startServices(startProducer, stopProducer);
+
+			// warm up
+			runStartStopPairs(createExchanges(camelContext), startProducer, stopProducer);
+
+			Exchange[] exchanges = createExchanges(camelContext);
+			long before = threadMXBean.getThreadAllocatedBytes(threadId);
+			runStartStopPairs(exchanges, startProducer, stopProducer);
+			long allocated = threadMXBean.getThreadAllocatedBytes(threadId) - before;
+
+			long bytesPerExchange = allocated / EXCHANGES;
+			LOGGER.info("allocated {} bytes for {} start/stop pairs, {} bytes per exchange", allocated, EXCHANGES, bytesPerExchange);
+			MetricsComponent metricsComponent = camelContext.getComponent("metrics", MetricsComponent.class);
+			assertThat(metricsComponent.getMetricRegistry().timer("allocation.timing").getCount(), equalTo(2L * EXCHANGES));
+			assertThat("bytes per exchange: " + bytesPerExchange, bytesPerExchange <= MAX_BYTES_PER_EXCHANGE, equalTo(true));
+		} finally {
+			camelContext.stop();
+		}
+	}
+
+	@Test
+	public void slotArrayHoldsOnlyTheTimersInUse() {
+		Timer timer = new Timer(new UniformReservoir());
+		Exchange exchange = new DefaultExchange(new DefaultCamelContext());
+		TimerSlots.start(exchange, SLOT, timer);
+		assertThat(exchange.getProperty(MetricsComponent.TIMING_SLOTS_NAME, long[].class).length, equalTo(4));
+		TimerSlots.start(exchange, 1, timer);
+		TimerSlots.start(exchange, 2, timer);
+		assertThat(exchange.getProperty(MetricsComponent.TIMING_SLOTS_NAME, long[].class).length, equalTo(8));
+		TimerSlots.stop(exchange, SLOT, timer);
+		TimerSlots.stop(exchange, 1, timer);
+		TimerSlots.stop(exchange, 2, timer);
+		assertThat(timer.getCount(), equalTo(3L));
+		// a freed pair is reused
+		TimerSlots.start(exchange, 3, timer);
+		assertThat(exchange.getProperty(MetricsComponent.TIMING_SLOTS_NAME, long[].class).length, equalTo(8));
+	}
+
+	@Test
+	public void stopWithoutStartRecordsNothing() {
+		Timer timer = new Timer(new UniformReservoir());
+		Exchange exchange = new DefaultExchange(new DefaultCamelContext());
+		TimerSlots.stop(exchange, 0, timer);
+		TimerSlots.start(exchange, 2, timer);
+		TimerSlots.stop(exchange, 2, timer);
+		TimerSlots.stop(exchange, 2, timer);
+		assertThat(timer.getCount(), equalTo(1L));
+	}
+
+	/**
+	 * @param camelContext
+	 * @return exchanges with their property maps already created
+	 */
+	private Exchange[] createExchanges(final DefaultCamelContext camelContext) {
+		Exchange[] exchanges = new Exchange[EXCHANGES];
+		for (int i = 0; i < EXCHANGES; i++) {
+			exchanges[i] = new DefaultExchange(camelContext);
+			exchanges[i].getProperties();
+		}
+		return exchanges;
+	}
+
+	/**
+	 * @return the HotSpot ThreadMXBean, or null if not available
+	 */
+	private com.sun.management.ThreadMXBean getThreadMXBean() {
+		java.lang.management.ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+		if (threadMXBean instanceof com.sun.management.ThreadMXBean) {
+			return (com.sun.management.ThreadMXBean) threadMXBean;
+		}
+		return null;
+	}
+
+	/**
+	 * @param exchanges
+	 * @param startProducer
+	 * @param stopProducer
+	 * @throws Exception
+	 */
+	private void runStartStopPairs(final Exchange[] exchanges, final Producer startProducer, final Producer stopProducer) throws Exception {
+		for (Exchange exchange : exchanges) {
+			startProducer.process(exchange);
+			stopProducer.process(exchange);
+		}
+	}
+
+}
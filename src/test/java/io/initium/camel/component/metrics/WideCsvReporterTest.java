@@ -0,0 +1,214 @@
+// @formatter:off
+/**
+ * Copyright 2014 Initium.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+// @formatter:on
+package io.initium.camel.component.metrics;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.camel.impl.DefaultCamelContext;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.codahale.metrics.CsvReporter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricFilter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.ScheduledReporter;
+
+import io.initium.camel.component.metrics.definition.reporter.CsvReporterDefinition;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class WideCsvReporterTest {
+
+	@Rule
+	public TemporaryFolder		temporaryFolder	= new TemporaryFolder();
+
+	// fields
+	private DefaultCamelContext	camelContext;
+	private MetricsComponent	metricsComponent;
+
+	/**
+	 * @param inputStream
+	 * @return
+	 * @throws IOException
+	 */
+	private static List<String> readLines(final InputStream inputStream) throws IOException {
+		BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, "UTF-8"));
+		try {
+			List<String> lines = new ArrayList<String>();
+			String line;
+			while ((line = reader.readLine()) != null) {
+				lines.add(line);
+			}
+			return lines;
+		} finally {
+			reader.close();
+		}
+	}
+
+	@Before
+	public void setUp() throws Exception {
+		this.camelContext = new DefaultCamelContext();
+		this.metricsComponent = new MetricsComponent();
+		this.camelContext.addComponent("metrics", this.metricsComponent);
+		this.camelContext.start();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		this.camelContext.stop();
+	}
+
+	@Test
+	public void conflictingSettingsAreRejected() throws Exception {
+		File file = new File(this.temporaryFolder.getRoot(), "metrics.csv");
+		RotatingCsvFile rotatingCsvFile = RotatingCsvFile.open(this.metricsComponent, file, WideCsvReporter.HEADER, 1000, 0, false, null);
+		try {
+			RotatingCsvFile.open(this.metricsComponent, file, WideCsvReporter.HEADER, 2000, 0, false, null);
+			fail("another maxFileSize must not get the settings of the first");
+		} catch (IOException e) {
+			// expected
+		}
+		try {
+			RotatingCsvFile.open(this.metricsComponent, file, WideCsvReporter.HEADER, 1000, 0, true, null);
+			fail("another compress must not get the settings of the first");
+		} catch (IOException e) {
+			// expected
+		}
+		assertThat(RotatingCsvFile.open(this.metricsComponent, file, WideCsvReporter.HEADER, 1000, 0, false, null), sameInstance(rotatingCsvFile));
+		rotatingCsvFile.close();
+		assertThat(this.metricsComponent.getCsvFiles().size(), equalTo(1));
+		// the component closes the files still open
+		this.metricsComponent.stop();
+		assertThat(this.metricsComponent.getCsvFiles().isEmpty(), equalTo(true));
+		rotatingCsvFile.close();
+	}
+
+	@Test
+	@SuppressWarnings("deprecation")
+	public void definitionBuildsTheReporterOfItsLayout() {
+		CsvReporterDefinition csvReporterDefinition = new CsvReporterDefinition();
+		csvReporterDefinition.setDirectory(this.temporaryFolder.getRoot().getPath());
+		csvReporterDefinition.setLayout("wide");
+		ScheduledReporter reporter = csvReporterDefinition.buildScheduledReporter(new MetricRegistry(), null, null);
+		assertThat(reporter, instanceOf(WideCsvReporter.class));
+		reporter.stop();
+		// the original method keeps building the reporter of the perMetric layout
+		assertThat(csvReporterDefinition.buildReporter(new MetricRegistry(), null, null), instanceOf(CsvReporter.class));
+	}
+
+	@Test
+	public void rowsHaveFixedColumns() throws Exception {
+		MetricRegistry metricRegistry = new MetricRegistry();
+		metricRegistry.counter("a.counter").inc(3);
+		metricRegistry.meter("a.meter").mark();
+		metricRegistry.histogram("a.histogram").update(5);
+		metricRegistry.timer("a.timer").update(2, TimeUnit.MILLISECONDS);
+		metricRegistry.register("a.gauge", new Gauge<String>() {
+			@Override
+			public String getValue() {
+				return "x,y";
+			}
+		});
+		File file = new File(this.temporaryFolder.getRoot(), "metrics.csv");
+		WideCsvReporter reporter = new WideCsvReporter(metricRegistry, MetricFilter.ALL, TimeUnit.SECONDS, TimeUnit.MILLISECONDS, RotatingCsvFile.open(this.metricsComponent, file, WideCsvReporter.HEADER, 0, 0, false, null));
+		reporter.report();
+		reporter.report();
+		reporter.stop();
+
+		List<String> lines = readLines(new FileInputStream(file));
+		assertThat(lines.size(), equalTo(11));
+		assertThat(lines.get(0), equalTo(WideCsvReporter.HEADER));
+		int columns = WideCsvReporter.HEADER.split(",").length;
+		for (String line : lines.subList(1, lines.size())) {
+			assertThat(line, line.replace("\"x,y\"", "x").split(",", -1).length, equalTo(columns));
+		}
+		assertThat(lines.get(1).split(",", 3)[2], equalTo("gauge,,\"x,y\",,,,,,,,,,,,,,,,"));
+		assertThat(lines.get(2).split(",", 3)[2], equalTo("counter,3,,,,,,,,,,,,,,,,,"));
+		String[] timerColumns = lines.get(5).split(",", -1);
+		assertThat(timerColumns[1], equalTo("a.timer"));
+		assertThat(timerColumns[5], equalTo("2.0"));
+		assertThat(timerColumns[19] + "," + timerColumns[20], equalTo("events/second,milliseconds"));
+	}
+
+	@Test
+	public void rotatesBySizeAndCompresses() throws Exception {
+		MetricRegistry metricRegistry = new MetricRegistry();
+		metricRegistry.counter("a.counter").inc();
+		File file = new File(this.temporaryFolder.getRoot(), "metrics.csv");
+		final List<Runnable> compressions = new ArrayList<Runnable>();
+		Executor compressor = new Executor() {
+			@Override
+			public void execute(final Runnable command) {
+				compressions.add(command);
+			}
+		};
+		RotatingCsvFile rotatingCsvFile = RotatingCsvFile.open(this.metricsComponent, file, WideCsvReporter.HEADER, WideCsvReporter.HEADER.length() + 60, 0, true, compressor);
+		WideCsvReporter reporter = new WideCsvReporter(metricRegistry, MetricFilter.ALL, TimeUnit.SECONDS, TimeUnit.MILLISECONDS, rotatingCsvFile);
+		// a second reporter of the same file shares it
+		WideCsvReporter otherReporter = new WideCsvReporter(metricRegistry, MetricFilter.ALL, TimeUnit.SECONDS, TimeUnit.MILLISECONDS, RotatingCsvFile.open(this.metricsComponent, file, WideCsvReporter.HEADER, WideCsvReporter.HEADER.length() + 60, 0, true, compressor));
+		reporter.report();
+		otherReporter.report();
+		reporter.report();
+		otherReporter.stop();
+		reporter.stop();
+
+		// the reporters only renamed the rotated segments
+		assertThat(compressions.size(), equalTo(2));
+		assertThat(this.temporaryFolder.getRoot().listFiles().length, equalTo(3));
+		for (File rotatedFile : this.temporaryFolder.getRoot().listFiles()) {
+			assertThat(rotatedFile.getName(), rotatedFile.getName().endsWith(".csv"), equalTo(true));
+		}
+		for (Runnable compression : compressions) {
+			compression.run();
+		}
+
+		List<String> rotatedLines = new ArrayList<String>();
+		int rotatedFiles = 0;
+		for (File rotatedFile : this.temporaryFolder.getRoot().listFiles()) {
+			if (!rotatedFile.equals(file)) {
+				assertThat(rotatedFile.getName(), rotatedFile.getName().matches("metrics-\\d{8}T\\d{6}\\.\\d{3}(-\\d+)?\\.csv\\.gz"), equalTo(true));
+				List<String> lines = readLines(new GZIPInputStream(new FileInputStream(rotatedFile)));
+				assertThat(lines.get(0), equalTo(WideCsvReporter.HEADER));
+				rotatedLines.addAll(lines.subList(1, lines.size()));
+				rotatedFiles++;
+			}
+		}
+		assertThat(rotatedFiles, equalTo(2));
+		assertThat(rotatedLines.size(), equalTo(2));
+		List<String> lines = readLines(new FileInputStream(file));
+		assertThat(lines.size(), equalTo(2));
+		assertThat(lines.get(0), equalTo(WideCsvReporter.HEADER));
+	}
+
+}
@@ -0,0 +1,75 @@
+package io.initium.camel.component.metrics.jmx.reporter;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+
+import javax.management.MBeanAttributeInfo;
+import javax.management.ObjectName;
+
+import org.apache.camel.EndpointInject;
+import org.apache.camel.Produce;
+import org.apache.camel.ProducerTemplate;
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.component.mock.MockEndpoint;
+import org.apache.camel.util.ServiceHelper;
+import org.junit.Test;
+
+import io.initium.camel.component.metrics.MetricsComponent;
+
+public class CamelMetricsJmxReporterCompactTest extends CamelMetricsJmxReporterTestSupport {
+
+	@EndpointInject(uri = "mock:result")
+	protected MockEndpoint resultEndpoint;
+
+	@Produce(uri = "direct:start")
+	protected ProducerTemplate template;
+
+	/**
+	 * The MBean is registered and unregistered by another thread.
+	 */
+	private void awaitRegistration(final String objectNameName, final boolean isRegistered) throws InterruptedException {
+		for (int i = 0; i < 100 && verifyObjectNameIsRegistered(objectNameName) != isRegistered; i++) {
+			Thread.sleep(50);
+		}
+	}
+
+	@Test
+	public void testOneMBeanPerMetricGroup() throws Exception {
+		this.resultEndpoint.expectedMessageCount(2);
+		this.template.sendBody("test");
+		this.template.sendBody("test");
+		awaitRegistration("metrics:type=MetricGroup,name=compact", true);
+		assertThat(verifyObjectNameIsRegistered("metrics:type=MetricGroup,name=compact"), equalTo(true));
+		assertThat(verifyObjectNameIsRegistered("metrics:name=compact.myCounter"), equalTo(false));
+		assertThat(verifyAttributeValueLong("metrics:type=MetricGroup,name=compact", "myCounter.Count", 2L), equalTo(true));
+		assertThat(verifyAttributeValueLong("metrics:type=MetricGroup,name=compact", "myHistogram.Count", 2L), equalTo(true));
+		assertThat(verifyAttributeExists("metrics:type=MetricGroup,name=compact", "myHistogram.99thPercentile"), equalTo(true));
+		assertThat(verifyAttributeValueString("metrics:type=MetricGroup,name=compact", "rate.RateUnit", "events/second"), equalTo(true));
+		assertThat(verifyAttributeExists("metrics:type=MetricGroup,name=compact", "missing.Count"), equalTo(false));
+		boolean hasCounterAttribute = false;
+		for (MBeanAttributeInfo attributeInfo : this.mbeanServer.getMBeanInfo(new ObjectName("metrics:type=MetricGroup,name=compact")).getAttributes()) {
+			hasCounterAttribute |= attributeInfo.getName().equals("myCounter.Count");
+		}
+		assertThat(hasCounterAttribute, equalTo(true));
+		this.resultEndpoint.assertIsSatisfied();
+	}
+
+	@Test
+	public void testMBeanIsUnregisteredWhenTheGroupStops() throws Exception {
+		this.template.sendBody("test");
+		awaitRegistration("metrics:type=MetricGroup,name=compact", true);
+		assertThat(verifyObjectNameIsRegistered("metrics:type=MetricGroup,name=compact"), equalTo(true));
+		ServiceHelper.stopService(this.context.getComponent("metrics", MetricsComponent.class).getMetricGroups().get("compact"));
+		awaitRegistration("metrics:type=MetricGroup,name=compact", false);
+		assertThat(verifyObjectNameIsRegistered("metrics:type=MetricGroup,name=compact"), equalTo(false));
+	}
+
+	@Override
+	protected RouteBuilder createRouteBuilder() {
+		return new RouteBuilder() {
+			@Override
+			public void configure() {
+				from("direct:start").to("metrics://compact?jmxReporters=[{mode=compact}]&counter={value=1,name=myCounter}&histogram={value=1,name=myHistogram}").to("mock:result");
+			}
+		};
+	}
+}
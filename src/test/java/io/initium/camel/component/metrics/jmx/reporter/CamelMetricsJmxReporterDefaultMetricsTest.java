@@ -61,6 +61,23 @@ public class CamelMetricsJmxReporterDefaultMetricsTest extends CamelMetricsJmxRe
 		this.resultEndpointTwo.expectedMessageCount(1);
 	}
 
+	@Test
+	public void testIntervalTimeUnitsAreViewsOfOneHistogram() throws InterruptedException {
+		this.templateOne.sendBody("test");
+		Thread.sleep(20);
+		this.templateOne.sendBody("test");
+		Thread.sleep(20);
+		this.templateOne.sendBody("test");
+
+		assertThat(verifyAttributeValueLong("metrics:name=test.interval.milliseconds", "Count", 2L), equalTo(true));
+		assertThat(verifyAttributeValueLong("metrics:name=test.interval.seconds", "Count", 2L), equalTo(true));
+		assertThat(getValue("metrics:name=test.interval.milliseconds", "Min", Long.class) >= 20L, equalTo(true));
+		assertThat(verifyAttributeValueLong("metrics:name=test.interval.seconds", "Max", 0L), equalTo(true));
+		// the mean is not truncated
+		assertThat(getValue("metrics:name=test.interval.seconds", "Mean", Double.class) > 0.0, equalTo(true));
+		assertThat(getValue("metrics:name=test.interval.milliseconds", "Mean", Double.class) >= 20.0, equalTo(true));
+	}
+
 	@Test
 	public void testRateDecreases() throws InterruptedException {
 		this.templateOne.sendBody("test");
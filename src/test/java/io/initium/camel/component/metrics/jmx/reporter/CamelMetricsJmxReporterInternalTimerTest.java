@@ -0,0 +1,63 @@
+package io.initium.camel.component.metrics.jmx.reporter;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+
+import org.apache.camel.EndpointInject;
+import org.apache.camel.Produce;
+import org.apache.camel.ProducerTemplate;
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.component.mock.MockEndpoint;
+import org.junit.Test;
+
+
+public class CamelMetricsJmxReporterInternalTimerTest extends CamelMetricsJmxReporterTestSupport {
+
+	@EndpointInject(uri = "mock:resultOne")
+	protected MockEndpoint resultEndpointOne;
+
+	@Produce(uri = "direct:startOne")
+	protected ProducerTemplate templateOne;
+
+	@EndpointInject(uri = "mock:resultTwo")
+	protected MockEndpoint resultEndpointTwo;
+
+	@Produce(uri = "direct:startTwo")
+	protected ProducerTemplate templateTwo;
+
+	@Test
+	public void testInternalTimerNoopJmx() {
+		templateOne.sendBodyAndHeader("test", "infix", "a");
+		templateOne.sendBodyAndHeader("test", "infix", "b");
+		resultEndpointOne.expectedMessageCount(2);
+		assertThat(verifyAttributeValueLong("metrics:name=internal.internal.noop.total", "Count", 2L), equalTo(true));
+		// one lookup for the base group and one for the infix group per exchange
+		assertThat(verifyAttributeValueLong("metrics:name=internal.internal.noop.lookup", "Count", 4L), equalTo(true));
+		// the infix and the counter of both groups
+		assertThat(verifyAttributeValueLong("metrics:name=internal.internal.noop.evaluate", "Count", 6L), equalTo(true));
+		assertThat(verifyAttributeValueLong("metrics:name=internal.internal.noop.update", "Count", 4L), equalTo(true));
+		assertThat(verifyObjectNameIsRegistered("metrics:name=internal.internal.noop.timing"), equalTo(false));
+		assertThat(getValue("metrics:name=internal.internal.noop.total", "Max", Double.class) > 0, equalTo(true));
+	}
+
+	@Test
+	public void testInternalTimerStartStopJmx() {
+		templateTwo.sendBody("test");
+		resultEndpointTwo.expectedMessageCount(1);
+		assertThat(verifyAttributeValueLong("metrics:name=internalTiming.internal.start.timing", "Count", 1L), equalTo(true));
+		assertThat(verifyAttributeValueLong("metrics:name=internalTiming.internal.stop.timing", "Count", 1L), equalTo(true));
+		assertThat(verifyAttributeValueLong("metrics:name=internalTiming.internal.stop.total", "Count", 1L), equalTo(true));
+		assertThat(verifyObjectNameIsRegistered("metrics:name=internalTiming.internal.stop.update"), equalTo(false));
+		assertThat(verifyAttributeValueLong("metrics:name=internalTiming.timing", "Count", 1L), equalTo(true));
+	}
+
+	@Override
+	protected RouteBuilder createRouteBuilder() {
+		return new RouteBuilder() {
+			@Override
+			public void configure() {
+				from("direct:startOne").to("metrics://internal?enableInternalTimer=true&infix='${header.infix}'&jmxReporters=[{}]&counter={value=1,name=myCounter}").to("mock:resultOne");
+				from("direct:startTwo").to("metrics://internalTiming?timing=start&enableInternalTimer=true&jmxReporters=[{}]").to("metrics://internalTiming?timing=stop&enableInternalTimer=true").to("mock:resultTwo");
+			}
+		};
+	}
+}
@@ -0,0 +1,77 @@
+// @formatter:off
+/**
+ * Copyright 2014 Initium.io
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ * except in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+// @formatter:on
+package io.initium.common.util;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class NameMatcherTest {
+
+	// constants
+	private static final String[]	NAMES	= {"", "myMetric01", "myMetric01.rate", "myMetric01Xrate", "myMetric01.rate.extra", "myMetric02.rate", "myMetric01.intervalSeconds", "other.rate", "a|b", "a"};
+
+	@Test
+	public void compiledFiltersAreShared() {
+		assertThat(NameMatcher.compile("^myMetric0[12]\\.rate$"), sameInstance(NameMatcher.compile("^myMetric0[12]\\.rate$")));
+		assertThat(NameMatcher.compile(null), sameInstance(NameMatcher.ALL));
+	}
+
+	@Test
+	public void fastPathsAreChosen() {
+		assertThat(NameMatcher.compile("^myMetric01\\.rate$").toString(), equalTo("literal[myMetric01.rate]"));
+		assertThat(NameMatcher.compile("myMetric01\\.rate").toString(), equalTo("literal[myMetric01.rate]"));
+		assertThat(NameMatcher.compile("^(myMetric01\\.rate)$").toString(), equalTo("literal[myMetric01.rate]"));
+		assertThat(NameMatcher.compile("^myMetric01\\..*").toString(), equalTo("prefix[myMetric01.]"));
+		assertThat(NameMatcher.compile("glob:myMetric01.*").toString(), equalTo("prefix[myMetric01.]"));
+		assertThat(NameMatcher.compile("glob:myMetric0?.rate").toString(), equalTo("glob[myMetric0?.rate]"));
+		// an unescaped dot matches any character
+		assertThat(NameMatcher.compile("^(myMetric01.rate|myMetric01.intervalSeconds)$").toString(), equalTo("regex[^(myMetric01.rate|myMetric01.intervalSeconds)$]"));
+	}
+
+	@Test
+	public void globs() {
+		NameMatcher nameMatcher = NameMatcher.compile("glob:*.rate");
+		assertThat(nameMatcher.matches("myMetric01.rate"), equalTo(true));
+		assertThat(nameMatcher.matches("myMetric01.rate.extra"), equalTo(false));
+		assertThat(nameMatcher.matches("rate"), equalTo(false));
+		nameMatcher = NameMatcher.compile("glob:my*.*.rate");
+		assertThat(nameMatcher.matches("myMetric01.a.rate"), equalTo(true));
+		assertThat(nameMatcher.matches("myMetric01.rate"), equalTo(false));
+		nameMatcher = NameMatcher.compile("glob:myMetric0?.rate");
+		assertThat(nameMatcher.matches("myMetric02.rate"), equalTo(true));
+		assertThat(nameMatcher.matches("myMetric012.rate"), equalTo(false));
+		nameMatcher = NameMatcher.compile("glob:other.rate");
+		assertThat(nameMatcher.matches("other.rate"), equalTo(true));
+		assertThat(nameMatcher.matches("otherXrate"), equalTo(false));
+	}
+
+	@Test
+	public void regularExpressionsMatchLikeStringMatches() {
+		String[] filters = {"myMetric01", "^myMetric01\\.rate$", "^(myMetric01\\.rate|other\\.rate)$", "myMetric01\\..*", "myMetric01.*", "^(myMetric01.rate)$", "myMetric0[12]\\.rate", "a\\|b", "(a|)", "^.*\\.rate$", "\\d+"};
+		for (String filter : filters) {
+			NameMatcher nameMatcher = NameMatcher.compile(filter);
+			for (int i = 0; i < 2; i++) {
+				for (String name : NAMES) {
+					assertThat(filter + " on " + name, nameMatcher.matches(name), equalTo(name.matches(filter)));
+				}
+			}
+		}
+	}
+
+}